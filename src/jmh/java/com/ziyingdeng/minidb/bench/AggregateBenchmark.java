@@ -0,0 +1,89 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ziyingdeng.minidb.exec.Aggregation;
+import com.ziyingdeng.minidb.exec.Filter;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.Parser;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.MemoryTable;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+// One aggregate over a 100M-row (a INT, x FLOAT) table without NULLs, and the
+// vectorized filter `a < 500` on its own, with the jdk.incubator.vector kernels
+// (`simd` = true) or the scalar loops (false). Each value of `simd` runs in its
+// own fork, where the property is set before the engine loads its kernels.
+// Scores are ns per row.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx3g", "--add-modules=jdk.incubator.vector" })
+public class AggregateBenchmark {
+    private static final int ROWS = 100_000_000;
+
+    @Param({ "true", "false" })
+    public String simd;
+
+    @Param({ "SUM(a)", "MAX(a)", "SUM(x)", "MIN(x)" })
+    public String aggregate;
+
+    private MemoryTable table;
+    private Aggregation aggregation;
+    private Filter filter;
+
+    @Setup
+    public void setup() {
+        System.setProperty("minidb.simd", simd);
+        Schema schema = new Schema(List.of(
+                new Schema.ColumnDef("a", AST.DataType.INTEGER, false, null),
+                new Schema.ColumnDef("x", AST.DataType.FLOAT, false, null)));
+        table = new MemoryTable("t", schema);
+        Random rnd = new Random(18);
+        for (int done = 0; done < ROWS; done += 1 << 16) {
+            int n = Math.min(1 << 16, ROWS - done);
+            ColumnVector[] columns = { ColumnVector.allocate(AST.DataType.INTEGER, n), ColumnVector.allocate(AST.DataType.FLOAT, n) };
+            for (int r = 0; r < n; r++) {
+                columns[0].appendInt(rnd.nextInt(1000));
+                columns[1].appendDouble(rnd.nextDouble());
+            }
+            table.append(columns, n);
+        }
+        AST.Select select = (AST.Select) new Parser("SELECT " + aggregate + " FROM t WHERE a < 500;").parse();
+        aggregation = Aggregation.compile(select.aggregates(), schema);
+        filter = Filter.compile(select.where(), schema);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public RowBatch aggregate() {
+        return aggregation.apply(table.scan());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long filter() {
+        long count = 0;
+        for (Iterator<RowBatch> it = filter.apply(table.scan()); it.hasNext(); ) count += it.next().size();
+        return count;
+    }
+}
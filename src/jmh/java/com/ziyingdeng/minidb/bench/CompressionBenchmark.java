@@ -0,0 +1,88 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ziyingdeng.minidb.exec.Filter;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.Parser;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.MemoryTable;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+import com.ziyingdeng.minidb.storage.TableOptions;
+
+// WHERE over a 1M-row (day INT sorted, status STRING of 8 values, ok BOOLEAN)
+// table with its chunks encoded (`compression` = auto) or plain (none), counting
+// qualifying rows. Scores are ns per row; column memory is printed at the end.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+    private static final int ROWS = 1 << 20;
+    private static final String[] STATUSES = { "new", "paid", "packed", "shipped", "delivered", "returned", "refunded", "lost" };
+
+    @Param({ "auto", "none" })
+    public String compression;
+
+    @Param({ "status = 'shipped'", "status >= 'p'", "ok", "day = 100" })
+    public String predicate;
+
+    private MemoryTable table;
+    private Filter filter;
+
+    @Setup
+    public void setup() {
+        Schema schema = new Schema(List.of(
+                new Schema.ColumnDef("day", AST.DataType.INTEGER, false, null),
+                new Schema.ColumnDef("status", AST.DataType.STRING, true, null),
+                new Schema.ColumnDef("ok", AST.DataType.BOOLEAN, true, null)));
+        table = new MemoryTable("t", schema, TableOptions.of(Map.of("compression", compression)));
+        Random rnd = new Random(19);
+        for (int done = 0; done < ROWS; done += 1 << 16) {
+            ColumnVector[] columns = new ColumnVector[3];
+            for (int c = 0; c < 3; c++) columns[c] = ColumnVector.allocate(schema.column(c).type(), 1 << 16);
+            for (int r = 0; r < 1 << 16; r++) {
+                columns[0].appendInt((done + r) / 2_000);
+                columns[1].appendString(STATUSES[rnd.nextInt(STATUSES.length)]);
+                columns[2].appendBoolean(rnd.nextInt(4) == 0);
+            }
+            table.append(columns, 1 << 16);
+        }
+        filter = Filter.compile(((AST.Select) new Parser("SELECT * FROM t WHERE " + predicate + ";").parse()).where(), schema);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%ncolumn data: %.1f MiB%n", table.memoryBytes() / (1024.0 * 1024));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public long filter() {
+        long count = 0;
+        for (Iterator<RowBatch> it = filter.apply(table.scan()); it.hasNext(); ) count += it.next().size();
+        return count;
+    }
+}
@@ -0,0 +1,83 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.util.Random;
+
+// Deterministic SQL corpora for the benchmarks
+public final class Corpus {
+    private Corpus() {}
+
+    private static final String[] TYPES = { "INT", "INTEGER", "FLOAT", "DOUBLE", "BOOL", "STRING", "TEXT", "VARCHAR" };
+    private static final String[] NAMES = { "alice", "bob", "carol o''brien", "dave", "eve", "mallory", "trent", "peggy" };
+
+    // `tables` CREATE TABLE statements with `columns` mixed-case columns each
+    public static String createTables(int tables, int columns) {
+        Random rnd = new Random(42);
+        StringBuilder sb = new StringBuilder();
+        for (int t = 0; t < tables; t++) {
+            sb.append("CREATE TABLE customer_orders_").append(t).append(" (\n");
+            for (int c = 0; c < columns; c++) {
+                if (c > 0) sb.append(",\n");
+                sb.append("    column_name_").append(c).append(' ').append(TYPES[rnd.nextInt(TYPES.length)]);
+                if (rnd.nextInt(4) == 0) sb.append(" not null");
+                if (rnd.nextInt(4) == 0) sb.append(" DEFAULT ").append(rnd.nextInt(1000));
+            }
+            sb.append("\n);\n");
+        }
+        return sb.toString();
+    }
+
+    // Columns of the orders table the INSERT corpora target
+    public static final String ORDERS_DDL =
+            "CREATE TABLE orders (id INT NOT NULL, customer STRING, amount FLOAT, paid BOOL, note TEXT);";
+
+    // One INSERT of `rows` dump-style rows into `orders`
+    public static String insert(int rows) {
+        Random rnd = new Random(7);
+        StringBuilder sb = new StringBuilder("INSERT INTO orders (id, customer, amount, paid, note) VALUES\n");
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) sb.append(",\n");
+            row(sb, rnd, r);
+        }
+        return sb.append(';').toString();
+    }
+
+    // `statements` single-row INSERTs, as an OLTP client would send them
+    public static String singleRowInserts(int statements) {
+        Random rnd = new Random(7);
+        StringBuilder sb = new StringBuilder();
+        for (int r = 0; r < statements; r++) {
+            sb.append("INSERT INTO orders VALUES ");
+            row(sb, rnd, r);
+            sb.append(";\n");
+        }
+        return sb.toString();
+    }
+
+    // `statements` SELECTs over generated table names
+    public static String selects(int statements) {
+        StringBuilder sb = new StringBuilder();
+        for (int s = 0; s < statements; s++) sb.append("SELECT * FROM customer_orders_").append(s).append(";\n");
+        return sb.toString();
+    }
+
+    private static void row(StringBuilder sb, Random rnd, int id) {
+        sb.append('(').append(id)
+          .append(", '").append(NAMES[rnd.nextInt(NAMES.length)]).append('\'')
+          .append(", ").append(rnd.nextInt(100_000) / 100.0)
+          .append(", ").append(rnd.nextBoolean() ? "TRUE" : "FALSE")
+          .append(", ").append(rnd.nextInt(5) == 0 ? "NULL" : "'order note " + rnd.nextInt(1000) + "'")
+          .append(')');
+    }
+
+    // Number of top-level statements in a corpus
+    public static int statementCount(String sql) {
+        int n = 0;
+        boolean quoted = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') quoted = !quoted;
+            else if (c == ';' && !quoted) n++;
+        }
+        return n;
+    }
+}
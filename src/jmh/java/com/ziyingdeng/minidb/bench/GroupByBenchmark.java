@@ -0,0 +1,112 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ziyingdeng.minidb.exec.HashAggregation;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.MemoryTable;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+// SELECT k, COUNT(*), SUM(v), MAX(v) FROM t GROUP BY k over 8M rows of t (k INT,
+// v INT), with `groups` distinct random keys:
+//   hashAggregation  HashAggregation on a pool of `threads` workers
+//   spilled          the same with a 4 MiB budget, so partial states go to disk
+//   boxedHashMap     the baseline, a HashMap<Integer, long[]> filled row by row
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class GroupByBenchmark {
+    private static final int ROWS = 8_000_000;
+
+    @Param({ "100", "1000000" })
+    int groups;
+
+    @Param({ "1", "4" })
+    int threads;
+
+    private MemoryTable table;
+    private ForkJoinPool pool;
+    private final List<AST.Aggregate> items = List.of(new AST.Aggregate(null, "k"),
+            new AST.Aggregate(AST.AggregateFunction.COUNT, null),
+            new AST.Aggregate(AST.AggregateFunction.SUM, "v"),
+            new AST.Aggregate(AST.AggregateFunction.MAX, "v"));
+
+    @Setup
+    public void setup() {
+        Random rnd = new Random(25);
+        table = new MemoryTable("t", new Schema(List.of(
+                new Schema.ColumnDef("k", AST.DataType.INTEGER, false, null),
+                new Schema.ColumnDef("v", AST.DataType.INTEGER, false, null))));
+        for (int from = 0; from < ROWS; from += 1 << 16) {
+            int n = Math.min(1 << 16, ROWS - from);
+            ColumnVector[] c = { ColumnVector.allocate(AST.DataType.INTEGER, n), ColumnVector.allocate(AST.DataType.INTEGER, n) };
+            for (int i = 0; i < n; i++) {
+                c[0].appendInt(rnd.nextInt(groups));
+                c[1].appendInt(rnd.nextInt(1_000));
+            }
+            table.append(c, n);
+        }
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public long hashAggregation() {
+        return drain(HashAggregation.compile(items, List.of("k"), table.schema(), pool, 1L << 30, null).apply(table.scan()));
+    }
+
+    @Benchmark
+    public long spilled() {
+        return drain(HashAggregation.compile(items, List.of("k"), table.schema(), pool, 4L << 20, null).apply(table.scan()));
+    }
+
+    @Benchmark
+    public Map<Integer, long[]> boxedHashMap() {
+        Map<Integer, long[]> out = new HashMap<>();
+        for (Iterator<RowBatch> it = table.scan(); it.hasNext(); ) {
+            RowBatch b = it.next();
+            for (int r = 0; r < b.size(); r++) {
+                int i = b.rowIndex(r), v = b.column(1).getInt(i);
+                long[] s = out.computeIfAbsent(b.column(0).getInt(i), k -> new long[] { 0, 0, Long.MIN_VALUE });
+                s[0]++;
+                s[1] += v;
+                s[2] = Math.max(s[2], v);
+            }
+        }
+        return out;
+    }
+
+    private static long drain(Iterator<RowBatch> batches) {
+        long n = 0;
+        while (batches.hasNext()) n += batches.next().size();
+        return n;
+    }
+}
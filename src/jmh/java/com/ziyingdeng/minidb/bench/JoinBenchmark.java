@@ -0,0 +1,118 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ziyingdeng.minidb.engine.Database;
+import com.ziyingdeng.minidb.engine.Result;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.MemoryTable;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+import com.ziyingdeng.minidb.storage.Table;
+
+// SELECT COUNT(*), SUM(customers.v) FROM customers JOIN orders ON customers.id =
+// orders.customer, where both tables have `rows` rows and every order names a
+// random customer, so the join yields `rows` rows:
+//   hashJoin*     the query, run by HashJoin (10M rows: radix-partitioned)
+//   nestedLoop    the baseline, for every batch of customers a full scan of
+//                 orders comparing every pair; quadratic, so 20k rows only
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class JoinBenchmark {
+    private static final String QUERY = "SELECT COUNT(*), SUM(customers.v) FROM customers JOIN orders ON customers.id = orders.customer;";
+
+    @State(Scope.Benchmark)
+    public static class Small {
+        final Database db = load(20_000);
+    }
+
+    @State(Scope.Benchmark)
+    public static class Large {
+        Database db;
+
+        @Setup
+        public void setup() {
+            db = load(10_000_000);
+        }
+    }
+
+    @Benchmark
+    public List<Object[]> hashJoinSmall(Small s) {
+        return ((Result.Rows) s.db.execute(QUERY).get(0)).toList();
+    }
+
+    @Benchmark
+    public long[] nestedLoopSmall(Small s) {
+        Table customers = s.db.catalog().get("customers"), orders = s.db.catalog().get("orders");
+        long count = 0, sum = 0;
+        for (Iterator<RowBatch> outer = customers.scan(); outer.hasNext(); ) {
+            RowBatch c = outer.next();
+            for (Iterator<RowBatch> inner = orders.scan(); inner.hasNext(); ) {
+                RowBatch o = inner.next();
+                for (int i = 0; i < c.size(); i++) {
+                    int id = c.column(0).getInt(c.rowIndex(i));
+                    for (int j = 0; j < o.size(); j++) {
+                        if (o.column(1).getInt(o.rowIndex(j)) == id) {
+                            count++;
+                            sum += c.column(1).getInt(c.rowIndex(i));
+                        }
+                    }
+                }
+            }
+        }
+        return new long[] { count, sum };
+    }
+
+    @Benchmark
+    public List<Object[]> hashJoinLarge(Large s) {
+        return ((Result.Rows) s.db.execute(QUERY).get(0)).toList();
+    }
+
+    // customers (id INT, v INT) with ids 0..rows-1, orders (id INT, customer INT)
+    private static Database load(int rows) {
+        Database db = new Database();
+        Random rnd = new Random(23);
+        MemoryTable customers = new MemoryTable("customers", schema("id", "v"));
+        MemoryTable orders = new MemoryTable("orders", schema("id", "customer"));
+        for (int from = 0; from < rows; from += 1 << 16) {
+            int n = Math.min(1 << 16, rows - from);
+            ColumnVector[] c = { ColumnVector.allocate(AST.DataType.INTEGER, n), ColumnVector.allocate(AST.DataType.INTEGER, n) };
+            ColumnVector[] o = { ColumnVector.allocate(AST.DataType.INTEGER, n), ColumnVector.allocate(AST.DataType.INTEGER, n) };
+            for (int i = from; i < from + n; i++) {
+                c[0].appendInt(i);
+                c[1].appendInt(i % 100);
+                o[0].appendInt(i);
+                o[1].appendInt(rnd.nextInt(rows));
+            }
+            customers.append(c, n);
+            orders.append(o, n);
+        }
+        db.catalog().add(customers);
+        db.catalog().add(orders);
+        return db;
+    }
+
+    private static Schema schema(String first, String second) {
+        return new Schema(List.of(
+                new Schema.ColumnDef(first, AST.DataType.INTEGER, false, null),
+                new Schema.ColumnDef(second, AST.DataType.INTEGER, false, null)));
+    }
+}
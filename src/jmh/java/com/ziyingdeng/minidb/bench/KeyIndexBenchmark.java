@@ -0,0 +1,78 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ziyingdeng.minidb.index.BPlusTree;
+import com.ziyingdeng.minidb.index.KeyIndex;
+import com.ziyingdeng.minidb.index.LongHashIndex;
+
+// Primary key index structures against a boxed HashMap<Long, Long>.
+// insert runs in SampleTime mode: the p99.99 / p100 columns show whether growing
+// the index stalls an insert (HashMap rehashes everything at once; the hash index
+// moves a few slots per insert). Add -prof gc for bytes allocated per insert.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class KeyIndexBenchmark {
+    private static final int PRELOADED = 1 << 20;
+
+    @Param({ "btree", "hash", "hashmap" })
+    public String kind;
+
+    private KeyIndex index;
+    private HashMap<Long, Long> map;
+    private long next;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        index = switch (kind) {
+            case "btree" -> new BPlusTree();
+            case "hash" -> new LongHashIndex();
+            default -> null;
+        };
+        map = (index == null) ? new HashMap<>() : null;
+        for (next = 0; next < PRELOADED; next++) put(key(next));
+    }
+
+    @Benchmark
+    public boolean insert() {
+        return put(key(next++));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public long get() {
+        long key = key(ThreadLocalRandom.current().nextLong(PRELOADED));
+        if (index != null) return index.get(key);
+        Long v = map.get(key);
+        return v == null ? KeyIndex.ABSENT : v;
+    }
+
+    // Distinct keys in no particular order, like keys arriving from clients
+    private static long key(long n) {
+        return (n * 0x9E3779B97F4A7C15L) >>> 8;
+    }
+
+    private boolean put(long key) {
+        if (index != null) return index.insert(key, key);
+        return map.putIfAbsent(key, key) == null;
+    }
+}
@@ -0,0 +1,83 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ziyingdeng.minidb.parser.Lexer;
+import com.ziyingdeng.minidb.parser.Lexer.Keyword;
+
+// Keyword recognition on identifier-heavy DDL: the old copy + upper-case + HashMap
+// lookup against Keyword.match over the source chars
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeywordLookupBenchmark {
+
+    private String ddl;
+    private int[] wordStart;
+    private int[] wordLength;
+    private Map<String, Keyword> legacyLookup;
+
+    @Setup
+    public void setup() {
+        ddl = Corpus.createTables(200, 24);
+
+        // offsets of every identifier/keyword in the corpus
+        int count = 0;
+        int[] starts = new int[ddl.length()];
+        int[] lengths = new int[ddl.length()];
+        for (int i = 0; i < ddl.length(); ) {
+            if (!Character.isLetter(ddl.charAt(i))) { i++; continue; }
+            int start = i;
+            while (i < ddl.length() && (Character.isLetterOrDigit(ddl.charAt(i)) || ddl.charAt(i) == '_')) i++;
+            starts[count] = start;
+            lengths[count] = i - start;
+            count++;
+        }
+        wordStart = Arrays.copyOf(starts, count);
+        wordLength = Arrays.copyOf(lengths, count);
+
+        legacyLookup = new HashMap<>();
+        for (Keyword kw : Keyword.values()) legacyLookup.put(kw.name().toUpperCase(), kw);
+    }
+
+    @Benchmark
+    public void legacyStringLookup(Blackhole bh) {
+        for (int w = 0; w < wordStart.length; w++) {
+            String t = ddl.substring(wordStart[w], wordStart[w] + wordLength[w]);
+            bh.consume(legacyLookup.get(t.toUpperCase().toUpperCase()));
+        }
+    }
+
+    @Benchmark
+    public void keywordMatch(Blackhole bh) {
+        for (int w = 0; w < wordStart.length; w++) {
+            bh.consume(Keyword.match(ddl, wordStart[w], wordLength[w]));
+        }
+    }
+
+    @Benchmark
+    public int lexDdl() {
+        Lexer lexer = new Lexer(ddl);
+        int tokens = 0;
+        while (lexer.advance() != null) tokens++;
+        return tokens;
+    }
+}
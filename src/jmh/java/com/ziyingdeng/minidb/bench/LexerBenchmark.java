@@ -0,0 +1,82 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ziyingdeng.minidb.parser.Lexer;
+
+// Tokenizer throughput over generated corpora. The `tokens` and `bytes` counters
+// turn into tokens/s and chars/s next to the ops/s score; run with -prof gc for
+// bytes allocated per pass (gc.alloc.rate.norm):
+//   java -jar target/benchmarks.jar LexerBenchmark -prof gc
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+
+    @Param({ "create", "insert", "singleRowInserts", "select" })
+    public String corpus;
+
+    private String sql;
+
+    @Setup
+    public void setup() {
+        sql = switch (corpus) {
+            case "create" -> Corpus.createTables(200, 24);
+            case "insert" -> Corpus.insert(10_000);
+            case "singleRowInserts" -> Corpus.singleRowInserts(10_000);
+            case "select" -> Corpus.selects(10_000);
+            default -> throw new IllegalArgumentException(corpus);
+        };
+    }
+
+    // Per-thread counters reported as rates
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long tokens;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            tokens = 0;
+            bytes = 0;
+        }
+    }
+
+    // Boxed Token objects collected into a list
+    @Benchmark
+    public int tokenize(Counters counters) {
+        int n = new Lexer(sql).tokenize().size();
+        counters.tokens += n;
+        counters.bytes += sql.length();
+        return n;
+    }
+
+    // Primitive token stream as the parser consumes it
+    @Benchmark
+    public int advance(Counters counters) {
+        Lexer lexer = new Lexer(sql);
+        int n = 0;
+        while (lexer.advance() != null) n++;
+        counters.tokens += n;
+        counters.bytes += sql.length();
+        return n;
+    }
+}
@@ -0,0 +1,85 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ziyingdeng.minidb.engine.Database;
+import com.ziyingdeng.minidb.engine.ReadTransaction;
+import com.ziyingdeng.minidb.engine.Result;
+import com.ziyingdeng.minidb.parser.PreparedStatement;
+
+// 10-row INSERTs into a 100k-row (id INT PRIMARY KEY, v INT) table, alone and
+// while 16 threads run full-table aggregates, each in its own read transaction.
+// Scans take no lock, so the inserter never waits on them; what it loses with
+// scanners running is CPU time, which shows on machines with fewer cores than
+// threads.
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class MvccBenchmark {
+    private static final int ROWS = 100_000;
+
+    private Database db;
+    private PreparedStatement insert;
+    private final AtomicInteger nextKey = new AtomicInteger(ROWS);
+    private final Object[] keys = new Object[10];
+
+    @Setup
+    public void setup() {
+        db = new Database();
+        db.execute("CREATE TABLE t (id INT PRIMARY KEY, v INT) WITH (storage = memory);");
+        StringBuilder sql = new StringBuilder();
+        for (int from = 0; from < ROWS; from += 1_000) {
+            sql.append("INSERT INTO t VALUES ");
+            for (int i = from; i < from + 1_000; i++) sql.append(i == from ? "" : ", ").append('(').append(i).append(", ").append(i % 100).append(')');
+            sql.append(';');
+        }
+        db.execute(sql.toString());
+        insert = db.prepare("INSERT INTO t VALUES " + "(?, 1), ".repeat(9) + "(?, 1);");
+    }
+
+    @Benchmark
+    @Group("alone")
+    public Result insertAlone() {
+        return insert();
+    }
+
+    @Benchmark
+    @Group("scanned")
+    @GroupThreads(1)
+    public Result insertWhileScanned() {
+        return insert();
+    }
+
+    @Benchmark
+    @Group("scanned")
+    @GroupThreads(16)
+    public List<Object[]> scan() {
+        try (ReadTransaction tx = db.beginRead()) {
+            return ((Result.Rows) tx.execute("SELECT COUNT(*), SUM(v) FROM t;").get(0)).toList();
+        }
+    }
+
+    private Result insert() {
+        int from = nextKey.getAndAdd(keys.length);
+        for (int k = 0; k < keys.length; k++) keys[k] = from + k;
+        return db.execute(insert, keys);
+    }
+}
@@ -0,0 +1,93 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.MemoryTable;
+import com.ziyingdeng.minidb.storage.OffHeapTable;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+import com.ziyingdeng.minidb.storage.Table;
+import com.ziyingdeng.minidb.storage.TableOptions;
+
+// Full scan of a 4M-row (id INT, v FLOAT, name STRING) table summing `v`, with
+// the columns on the heap or in direct memory. Scores are ns per row; setup prints
+// the heap the table retains after a full GC, which is what the collector has to
+// trace on every old-generation cycle.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = { "-Xmx2g", "-XX:MaxDirectMemorySize=2g" })
+public class OffHeapScanBenchmark {
+    private static final int ROWS = 1 << 22;
+
+    @Param({ "memory", "offheap" })
+    public String storage;
+
+    private Table table;
+
+    @Setup
+    public void setup() {
+        Schema schema = new Schema(List.of(
+                new Schema.ColumnDef("id", AST.DataType.INTEGER, false, null),
+                new Schema.ColumnDef("v", AST.DataType.FLOAT, true, null),
+                new Schema.ColumnDef("name", AST.DataType.STRING, true, null)));
+        long before = usedHeap();
+        TableOptions options = TableOptions.of(Map.of("storage", storage));
+        table = storage.equals("memory") ? new MemoryTable("t", schema, options) : new OffHeapTable("t", schema, options);
+        Random rnd = new Random(5);
+        for (int done = 0; done < ROWS; done += 1 << 16) {
+            ColumnVector[] columns = new ColumnVector[3];
+            for (int c = 0; c < 3; c++) columns[c] = ColumnVector.allocate(schema.column(c).type(), 1 << 16);
+            for (int r = 0; r < 1 << 16; r++) {
+                columns[0].appendInt(done + r);
+                if (rnd.nextInt(20) == 0) columns[1].appendNull(); else columns[1].appendDouble(rnd.nextDouble());
+                columns[2].appendString("name-" + rnd.nextInt(100_000));
+            }
+            table.append(columns, 1 << 16);
+        }
+        System.out.printf("%n%s: %d MiB retained on the heap%s%n", storage, (usedHeap() - before) >> 20,
+                table instanceof OffHeapTable t ? ", " + (t.offHeapBytes() >> 20) + " MiB off-heap" : "");
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double scan() {
+        double sum = 0;
+        for (Iterator<RowBatch> it = table.scan(); it.hasNext(); ) {
+            RowBatch b = it.next();
+            ColumnVector v = b.column(1);
+            for (int r = 0; r < b.size(); r++) {
+                int i = b.rowIndex(r);
+                if (!v.isNull(i)) sum += v.getDouble(i);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,116 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.BufferPool;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.MemoryTable;
+import com.ziyingdeng.minidb.storage.PageFile;
+import com.ziyingdeng.minidb.storage.PagedTable;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+import com.ziyingdeng.minidb.storage.Table;
+import com.ziyingdeng.minidb.storage.TableOptions;
+
+// Full scan of a 1M-row (id INT, v FLOAT, name STRING) table summing one column:
+// heap column chunks against slotted pages through a buffer pool that holds the
+// whole table (`frames` = 8192) or about a quarter of it (1024), where every page
+// of a scan is a miss read from the file (the OS page cache, in practice).
+// Scores are ns per row; the pool's hit rate is printed at the end.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PagedScanBenchmark {
+    private static final int ROWS = 1 << 20;
+
+    @Param({ "8192", "1024" })
+    public int frames;
+
+    private Path dir;
+    private BufferPool pool;
+    private Table paged;
+    private Table memory;
+
+    @Setup
+    public void setup() throws IOException {
+        Schema schema = new Schema(List.of(
+                new Schema.ColumnDef("id", AST.DataType.INTEGER, false, null),
+                new Schema.ColumnDef("v", AST.DataType.FLOAT, true, null),
+                new Schema.ColumnDef("name", AST.DataType.STRING, true, null)));
+        dir = Files.createTempDirectory("paged-scan");
+        pool = new BufferPool(PageFile.open(dir.resolve("data.db")), frames);
+        paged = PagedTable.open("t", schema, TableOptions.DEFAULT, pool);
+        memory = new MemoryTable("t", schema);
+        Random rnd = new Random(5);
+        for (int done = 0; done < ROWS; done += 1 << 16) {
+            ColumnVector[] columns = new ColumnVector[3];
+            for (int c = 0; c < 3; c++) columns[c] = ColumnVector.allocate(schema.column(c).type(), 1 << 16);
+            for (int r = 0; r < 1 << 16; r++) {
+                columns[0].appendInt(done + r);
+                columns[1].appendDouble(rnd.nextDouble());
+                columns[2].appendString("name-" + rnd.nextInt(100_000));
+            }
+            paged.append(columns, 1 << 16);
+            memory.append(columns, 1 << 16);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%nbuffer pool: %d frames, %d pages, hit rate %.3f, %d evictions%n",
+                pool.frames(), pool.file().pageCount(), pool.hitRate(), pool.evictions());
+        pool.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double memoryScan() {
+        return sum(memory.scan());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public double pagedScan() {
+        return sum(paged.scan());
+    }
+
+    private static double sum(Iterator<RowBatch> it) {
+        double sum = 0;
+        while (it.hasNext()) {
+            RowBatch b = it.next();
+            ColumnVector v = b.column(1);
+            for (int r = 0; r < b.size(); r++) sum += v.getDouble(b.rowIndex(r));
+        }
+        return sum;
+    }
+}
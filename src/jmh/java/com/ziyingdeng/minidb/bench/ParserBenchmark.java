@@ -0,0 +1,78 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.Parser;
+
+// Parser.parse per statement kind. Every benchmark parses exactly one statement,
+// so -prof gc's gc.alloc.rate.norm is bytes allocated per statement:
+//   java -jar target/benchmarks.jar ParserBenchmark -prof gc
+// The *Script benchmarks parse a 10k-statement script for statements/s.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+    private String createTable;
+    private String singleRowInsert;
+    private String insert10k;
+    private String select;
+    private String singleRowScript;
+    private String createScript;
+
+    @Setup
+    public void setup() {
+        createTable = Corpus.createTables(1, 24);
+        singleRowInsert = Corpus.singleRowInserts(1);
+        insert10k = Corpus.insert(10_000);
+        select = Corpus.selects(1);
+        singleRowScript = Corpus.singleRowInserts(10_000);
+        createScript = Corpus.createTables(1_000, 24);
+    }
+
+    @Benchmark
+    public AST.Statement createTable() {
+        return new Parser(createTable).parse();
+    }
+
+    @Benchmark
+    public AST.Statement singleRowInsert() {
+        return new Parser(singleRowInsert).parse();
+    }
+
+    @Benchmark
+    public AST.Statement insert10kRows() {
+        return new Parser(insert10k).parse();
+    }
+
+    @Benchmark
+    public AST.Statement select() {
+        return new Parser(select).parse();
+    }
+
+    @Benchmark
+    public List<AST.Statement> singleRowInsertScript() {
+        return new Parser(singleRowScript).parseAll();
+    }
+
+    @Benchmark
+    public List<AST.Statement> createTableScript() {
+        return new Parser(createScript).parseAll();
+    }
+}
@@ -0,0 +1,83 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ziyingdeng.minidb.engine.Database;
+import com.ziyingdeng.minidb.engine.Result;
+import com.ziyingdeng.minidb.index.BPlusTree;
+import com.ziyingdeng.minidb.parser.PreparedStatement;
+
+// `SELECT * FROM t WHERE id = ?` on a table with and without a PRIMARY KEY
+// (index lookup vs filtered full scan), plus raw B+tree reads racing inserts.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimaryKeyBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int rows;
+
+    private Database db;
+    private PreparedStatement byKey;
+    private PreparedStatement byScan;
+    private BPlusTree tree;
+
+    @Setup
+    public void setup() {
+        db = new Database();
+        db.execute("CREATE TABLE keyed (id INT PRIMARY KEY, v INT);");
+        db.execute("CREATE TABLE plain (id INT NOT NULL, v INT);");
+        StringBuilder values = new StringBuilder();
+        for (int i = 0; i < rows; i++) values.append(i == 0 ? "" : ", ").append('(').append(i * 7).append(", ").append(i).append(')');
+        db.execute("INSERT INTO keyed VALUES " + values + ";");
+        db.execute("INSERT INTO plain VALUES " + values + ";");
+        byKey = db.prepare("SELECT * FROM keyed WHERE id = ?;");
+        byScan = db.prepare("SELECT * FROM plain WHERE id = ?;");
+
+        tree = new BPlusTree();
+        for (int i = 0; i < rows; i++) tree.insert(i * 7L, i);
+    }
+
+    @Benchmark
+    public int indexLookup() {
+        return select(byKey);
+    }
+
+    @Benchmark
+    public int scanLookup() {
+        return select(byScan);
+    }
+
+    private int select(PreparedStatement stmt) {
+        int key = ThreadLocalRandom.current().nextInt(rows) * 7;
+        return ((Result.Rows) db.execute(stmt, key)).toList().size();
+    }
+
+    // Readers never block: 7 threads read while one keeps inserting fresh keys
+    @Benchmark
+    @Threads(8)
+    public long treeGetsDuringInserts() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        if (Thread.currentThread().threadId() % 8 == 0) {
+            return tree.insert(rnd.nextLong(), 0) ? 1 : 0;
+        }
+        return tree.get(rnd.nextInt(rows) * 7L);
+    }
+}
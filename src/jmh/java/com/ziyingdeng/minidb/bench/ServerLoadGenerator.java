@@ -0,0 +1,120 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.ziyingdeng.minidb.engine.Database;
+import com.ziyingdeng.minidb.server.Client;
+import com.ziyingdeng.minidb.server.Server;
+
+// Closed-loop load over loopback: `clients` connections each send `pipeline`
+// point SELECTs, wait for all replies, and repeat for `seconds`. Prints queries
+// per second and round-trip latency percentiles. Before that it opens `idle`
+// connections that only sit there, and reports the heap they cost the server.
+// Without --port it starts an in-process server on a 100k-row table.
+//   java -cp target/benchmarks.jar com.ziyingdeng.minidb.bench.ServerLoadGenerator \
+//        [--port <p>] [--clients 64] [--pipeline 1] [--seconds 10] [--idle 10000]
+// (10k idle connections to an in-process server take 20k file descriptors: ulimit -n)
+public class ServerLoadGenerator {
+    private static final int ROWS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        int port = -1, clients = 64, pipeline = 1, seconds = 10, idle = 10_000;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            int value = Integer.parseInt(args[i + 1]);
+            switch (args[i]) {
+                case "--port" -> port = value;
+                case "--clients" -> clients = value;
+                case "--pipeline" -> pipeline = value;
+                case "--seconds" -> seconds = value;
+                case "--idle" -> idle = value;
+                default -> throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+        Server server = null;
+        if (port < 0) {
+            server = Server.start(new Database(), 0);
+            port = server.port();
+        }
+        try (Client setup = Client.connect("127.0.0.1", port)) {
+            setup.query("CREATE TABLE kv (k INT PRIMARY KEY, v STRING);");
+            for (int k = 0; k < ROWS; k += 1_000) {
+                StringBuilder sql = new StringBuilder("INSERT INTO kv VALUES ");
+                for (int i = k; i < k + 1_000; i++) sql.append(i > k ? ", (" : "(").append(i).append(", 'value-").append(i).append("')");
+                setup.query(sql.append(';').toString());
+            }
+        }
+
+        List<Client> parked = idleConnections(idle, port, server);
+        try {
+            run(port, clients, pipeline, seconds);
+        } finally {
+            for (Client c : parked) c.close();
+            if (server != null) server.close();
+        }
+    }
+
+    private static List<Client> idleConnections(int count, int port, Server server) throws IOException, InterruptedException {
+        long before = usedHeap();
+        List<Client> parked = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) parked.add(Client.connect("127.0.0.1", port));
+        if (server != null && count > 0) {
+            while (server.connections() < count) Thread.sleep(10);
+            // the clients share this heap: subtract what they hold (about the same buffers and a socket each)
+            System.out.printf("%d idle connections: %.1f KiB of heap each, clients included%n",
+                    count, (usedHeap() - before) / 1024.0 / Math.max(count, 1));
+        }
+        return parked;
+    }
+
+    private static void run(int port, int clients, int pipeline, int seconds) throws Exception {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        List<Future<long[]>> results = new ArrayList<>();
+        try (ExecutorService pool = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int t = 0; t < clients; t++) {
+                results.add(pool.submit(() -> {
+                    long[] latencies = new long[1 << 16];
+                    int n = 0;
+                    try (Client c = Client.connect("127.0.0.1", port)) {
+                        while (System.nanoTime() < deadline) {
+                            long start = System.nanoTime();
+                            for (int q = 0; q < pipeline; q++) c.send("SELECT * FROM kv WHERE k = " + ThreadLocalRandom.current().nextInt(ROWS) + ";");
+                            c.flush();
+                            for (int q = 0; q < pipeline; q++) c.receive();
+                            if (n == latencies.length) latencies = Arrays.copyOf(latencies, n * 2);
+                            latencies[n++] = System.nanoTime() - start;
+                        }
+                    }
+                    return Arrays.copyOf(latencies, n);
+                }));
+            }
+        }
+        long[][] all = new long[results.size()][];
+        int total = 0;
+        for (int i = 0; i < all.length; i++) total += (all[i] = results.get(i).get()).length;
+        long[] merged = new long[total];
+        for (int i = 0, at = 0; i < all.length; at += all[i++].length) System.arraycopy(all[i], 0, merged, at, all[i].length);
+        Arrays.sort(merged);
+        System.out.printf("%d clients, pipeline %d: %.0f queries/s; round trip p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                clients, pipeline, (double) total * pipeline / seconds,
+                percentile(merged, 0.50), percentile(merged, 0.99), percentile(merged, 0.999), merged.length == 0 ? 0.0 : merged[merged.length - 1] / 1e3);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[(int) Math.min(sorted.length - 1, (long) (p * sorted.length))] / 1e3;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+}
@@ -0,0 +1,99 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ziyingdeng.minidb.engine.Database;
+import com.ziyingdeng.minidb.engine.Result;
+import com.ziyingdeng.minidb.exec.Sort;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.MemoryTable;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+import com.ziyingdeng.minidb.storage.Table;
+
+// ORDER BY v over t (id INT, v INT) with 4M rows of random v:
+//   topN            ... LIMIT 100, a bounded heap in one pass
+//   inMemory        the full sort, radix-sorted within the default budget
+//   spilled         the full sort with a 4 MiB budget: about a dozen sorted runs
+//                   written to temporary files and merged
+//   comparatorSort  the baseline, every row materialized as Object[] and sorted
+//                   by List.sort with a Comparator
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SortBenchmark {
+    private static final int ROWS = 4_000_000;
+
+    @State(Scope.Benchmark)
+    public static class Data {
+        Database db;
+        Table table;
+
+        @Setup
+        public void setup() {
+            db = new Database();
+            Random rnd = new Random(24);
+            MemoryTable t = new MemoryTable("t", new Schema(List.of(
+                    new Schema.ColumnDef("id", AST.DataType.INTEGER, false, null),
+                    new Schema.ColumnDef("v", AST.DataType.INTEGER, false, null))));
+            for (int from = 0; from < ROWS; from += 1 << 16) {
+                int n = Math.min(1 << 16, ROWS - from);
+                ColumnVector[] c = { ColumnVector.allocate(AST.DataType.INTEGER, n), ColumnVector.allocate(AST.DataType.INTEGER, n) };
+                for (int i = from; i < from + n; i++) {
+                    c[0].appendInt(i);
+                    c[1].appendInt(rnd.nextInt());
+                }
+                t.append(c, n);
+            }
+            db.catalog().add(t);
+            table = t;
+        }
+    }
+
+    @Benchmark
+    public List<Object[]> topN(Data d) {
+        return ((Result.Rows) d.db.execute("SELECT * FROM t ORDER BY v LIMIT 100;").get(0)).toList();
+    }
+
+    @Benchmark
+    public long inMemory(Data d) {
+        return drain(((Result.Rows) d.db.execute("SELECT * FROM t ORDER BY v;").get(0)).batches());
+    }
+
+    @Benchmark
+    public long spilled(Data d) {
+        return drain(Sort.compile(d.table.schema(), 1, false, -1, 4L << 20, null).apply(d.table.scan()));
+    }
+
+    @Benchmark
+    public List<Object[]> comparatorSort(Data d) {
+        List<Object[]> rows = ((Result.Rows) d.db.execute("SELECT * FROM t;").get(0)).toList();
+        rows.sort(Comparator.comparing(r -> (Integer) r[1]));
+        return rows;
+    }
+
+    // Reads every batch, as a client would, without materializing rows
+    private static long drain(Iterator<RowBatch> batches) {
+        long n = 0;
+        while (batches.hasNext()) n += batches.next().size();
+        return n;
+    }
+}
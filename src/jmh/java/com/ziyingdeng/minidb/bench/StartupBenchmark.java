@@ -0,0 +1,126 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ziyingdeng.minidb.engine.Database;
+import com.ziyingdeng.minidb.engine.Result;
+
+// Time from nothing to answering a point query on a MEMORY table of `rows` rows
+// (id INT PRIMARY KEY, name STRING, score FLOAT, ok BOOLEAN):
+//   sqlReplay      run the CREATE TABLE and INSERT script through the parser
+//   logReplay      open a directory holding the write-ahead log of that script
+//   snapshotOpen   open a directory holding a checkpoint of it
+// snapshotOpenAndScan adds a full aggregate, which reads every chunk of the file.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class StartupBenchmark {
+
+    @Param({ "1000000" })
+    public int rows;
+
+    private String script;
+    private Path logDir;
+    private Path snapshotDir;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder sql = new StringBuilder("CREATE TABLE t (id INT PRIMARY KEY, name STRING, score FLOAT, ok BOOLEAN) WITH (storage = memory);\n");
+        Random rnd = new Random(11);
+        for (int from = 0; from < rows; from += 1_000) {
+            sql.append("INSERT INTO t VALUES ");
+            for (int i = from; i < Math.min(rows, from + 1_000); i++) {
+                if (i > from) sql.append(", ");
+                sql.append('(').append(i).append(", 'customer-").append(rnd.nextInt(50_000)).append("', ")
+                        .append(rnd.nextInt(100_000) / 100.0).append(", ").append(i % 3 == 0 ? "TRUE" : "FALSE").append(')');
+            }
+            sql.append(";\n");
+        }
+        script = sql.toString();
+        logDir = Files.createTempDirectory("minidb-startup-log");
+        snapshotDir = Files.createTempDirectory("minidb-startup-snapshot");
+        try (Database db = Database.open(logDir)) {
+            db.execute(script);
+        }
+        try (Database db = Database.open(snapshotDir)) {
+            db.execute(script);
+            db.checkpoint();
+        }
+        System.out.printf("%nscript %.1f MiB, log %.1f MiB, snapshot %.1f MiB%n",
+                script.length() / 1048576.0, size(logDir.resolve("wal")) / 1048576.0, size(snapshotDir.resolve("snapshot.mdb")) / 1048576.0);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        for (Path dir : List.of(logDir, snapshotDir)) {
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Object[]> sqlReplay() throws IOException {
+        try (Database db = new Database()) {
+            db.execute(script);
+            return pointQuery(db);
+        }
+    }
+
+    @Benchmark
+    public List<Object[]> logReplay() throws IOException {
+        try (Database db = Database.open(logDir)) {
+            return pointQuery(db);
+        }
+    }
+
+    @Benchmark
+    public List<Object[]> snapshotOpen() throws IOException {
+        try (Database db = Database.open(snapshotDir)) {
+            return pointQuery(db);
+        }
+    }
+
+    @Benchmark
+    public List<Object[]> snapshotOpenAndScan() throws IOException {
+        try (Database db = Database.open(snapshotDir)) {
+            pointQuery(db);
+            return ((Result.Rows) db.execute("SELECT COUNT(*), SUM(score) FROM t;").get(0)).toList();
+        }
+    }
+
+    private List<Object[]> pointQuery(Database db) {
+        return ((Result.Rows) db.execute("SELECT * FROM t WHERE id = " + rows / 2 + ";").get(0)).toList();
+    }
+
+    private static long size(Path p) throws IOException {
+        try (Stream<Path> files = Files.walk(p)) {
+            long bytes = 0;
+            for (Path f : files.filter(Files::isRegularFile).toList()) bytes += Files.size(f);
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.ziyingdeng.minidb.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.wal.WalRecord;
+import com.ziyingdeng.minidb.wal.WriteAheadLog;
+
+// Durable single-row commits at 1, 8 and 64 concurrent writers. Throughput should
+// grow with the writer count because one force() covers every commit waiting on
+// it; SampleTime reports the latency percentiles (p50 / p99) of each commit.
+//   java -jar target/benchmarks.jar WalCommit -bm sample,thrpt
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalCommitBenchmark {
+
+    private Path dir;
+    private WriteAheadLog wal;
+    private byte[] row;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("minidb-wal-bench");
+        wal = WriteAheadLog.open(dir, r -> {});
+
+        ColumnVector id = ColumnVector.allocate(AST.DataType.INTEGER, 1);
+        ColumnVector name = ColumnVector.allocate(AST.DataType.STRING, 1);
+        id.appendInt(42);
+        name.appendString("some customer name");
+        row = WalRecord.encode(new WalRecord.Insert("t", new ColumnVector[] { id, name }, 1));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        wal.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long commit1() {
+        return commit();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long commit8() {
+        return commit();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long commit64() {
+        return commit();
+    }
+
+    private long commit() {
+        long seq = wal.append(row);
+        wal.sync(seq);
+        return seq;
+    }
+}
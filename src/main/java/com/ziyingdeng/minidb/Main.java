@@ -1,7 +1,135 @@
 package com.ziyingdeng.minidb;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import com.ziyingdeng.minidb.engine.Database;
+import com.ziyingdeng.minidb.engine.ExecutionException;
+import com.ziyingdeng.minidb.expr.ExpressionException;
+import com.ziyingdeng.minidb.engine.Result;
+import com.ziyingdeng.minidb.loader.DumpLoader;
+import com.ziyingdeng.minidb.parser.ParallelParser;
+import com.ziyingdeng.minidb.parser.Parser;
+import com.ziyingdeng.minidb.parser.StatementReader;
+import com.ziyingdeng.minidb.server.Server;
+import com.ziyingdeng.minidb.storage.RowBatch;
+
 public class Main {
-    public static void main(String[] args) {
-        
+    private static final int DEFAULT_PORT = 7878;
+
+    public static void main(String[] args) throws IOException {
+        Path data = null; // --data <dir>: durable database backed by a write-ahead log
+        if (args.length >= 2 && args[0].equals("--data")) {
+            data = Path.of(args[1]);
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+        if (args.length == 0) {
+            try (Database db = open(data)) {
+                repl(db);
+            }
+            return;
+        }
+        if (args.length == 2 && args[0].equals("load")) {
+            load(open(data), Path.of(args[1]), false);
+            return;
+        }
+        if (args.length == 3 && args[0].equals("load") && args[1].equals("--parallel")) {
+            load(open(data), Path.of(args[2]), true);
+            return;
+        }
+        if (args.length <= 2 && args[0].equals("serve")) {
+            serve(open(data), args.length == 2 ? Integer.parseInt(args[1]) : DEFAULT_PORT);
+            return;
+        }
+        if (args.length == 1 && args[0].equals("checkpoint") && data != null) {
+            try (Database db = Database.open(data)) {
+                db.checkpoint(); // the next start maps the snapshot instead of replaying the log
+            }
+            return;
+        }
+        System.err.println("usage: minidb [--data <dir>]                          (read statements from stdin)");
+        System.err.println("       minidb [--data <dir>] load [--parallel] <dump.sql>");
+        System.err.println("       minidb [--data <dir>] serve [<port>]          (loopback, default " + DEFAULT_PORT + ")");
+        System.err.println("       minidb --data <dir> checkpoint                 (snapshot the tables, drop the log)");
+        System.exit(2);
+    }
+
+    private static Database open(Path data) throws IOException {
+        return data == null ? new Database() : Database.open(data);
+    }
+
+    // Execute statements from stdin and print their results
+    private static void repl(Database db) {
+        StatementReader statements = Parser.statements(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        while (true) {
+            try {
+                if (!statements.hasNext()) return;
+                print(db.execute(statements.next()));
+            } catch (RuntimeException e) {
+                System.err.println(e.getMessage());
+                // evaluation errors surface while rows are printed; the reader is intact
+                if (!(e instanceof ExecutionException || e instanceof ExpressionException)) return; // reader state is unknown
+            }
+        }
+    }
+
+    private static void print(Result result) {
+        switch (result) {
+            case Result.Created c -> System.out.println("CREATE TABLE " + c.table());
+            case Result.Inserted i -> System.out.println("INSERT " + i.rows());
+            case Result.Rows rows -> {
+                StringBuilder line = new StringBuilder();
+                for (int c = 0; c < rows.schema().size(); c++) {
+                    if (c > 0) line.append('\t');
+                    line.append(rows.schema().column(c).name());
+                }
+                System.out.println(line);
+                long count = 0;
+                while (rows.batches().hasNext()) {
+                    RowBatch b = rows.batches().next();
+                    for (int r = 0; r < b.size(); r++, count++) {
+                        line.setLength(0);
+                        for (int c = 0; c < b.columnCount(); c++) {
+                            if (c > 0) line.append('\t');
+                            Object v = b.get(c, r);
+                            line.append(v == null ? "NULL" : v);
+                        }
+                        System.out.println(line);
+                    }
+                }
+                System.out.println("(" + count + " rows)");
+            }
+        }
+    }
+
+    // Execute a dump file through the memory-mapped loader and report throughput
+    private static void load(Database db, Path file, boolean parallel) throws IOException {
+        try (db) {
+            DumpLoader loader = new DumpLoader(db::execute);
+            if (parallel) loader.parallel(new ParallelParser());
+            DumpLoader.Stats stats = loader.load(file);
+            System.out.println("Loaded " + stats);
+        }
+    }
+
+    // Serve the database over TCP until the process is stopped
+    private static void serve(Database db, int port) throws IOException {
+        Server server = Server.start(db, port).onError(System.err::println);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try (db) {
+                server.close();
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+            }
+        }));
+        System.out.println("Listening on 127.0.0.1:" + server.port());
+        try {
+            server.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
@@ -0,0 +1,33 @@
+package com.ziyingdeng.minidb.engine;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ziyingdeng.minidb.storage.Table;
+
+// Tables by name, and the versions of their rows that readers may see
+public class Catalog {
+    private final ConcurrentHashMap<String, Table> tables = new ConcurrentHashMap<>();
+    private final Versions versions = new Versions();
+
+    // A table's rows so far are visible from the next commit stamp on
+    public void add(Table table) {
+        if (tables.putIfAbsent(table.name(), table) != null) {
+            throw new ExecutionException("[Executor] Table '" + table.name() + "' already exists");
+        }
+        versions.commit(table, table.rowCount());
+    }
+
+    public Table get(String name) {
+        Table t = tables.get(name);
+        if (t == null) throw new ExecutionException("[Executor] Unknown table '" + name + "'");
+        return t;
+    }
+
+    public boolean contains(String name) { return tables.containsKey(name); }
+
+    public Collection<Table> tables() { return Collections.unmodifiableCollection(tables.values()); }
+
+    public Versions versions() { return versions; }
+}
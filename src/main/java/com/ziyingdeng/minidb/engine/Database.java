@@ -0,0 +1,139 @@
+package com.ziyingdeng.minidb.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.ParseCache;
+import com.ziyingdeng.minidb.parser.Parser;
+import com.ziyingdeng.minidb.parser.PreparedStatement;
+import com.ziyingdeng.minidb.storage.BufferPool;
+import com.ziyingdeng.minidb.storage.PageFile;
+import com.ziyingdeng.minidb.storage.PagedTable;
+import com.ziyingdeng.minidb.storage.Snapshot;
+import com.ziyingdeng.minidb.storage.Table;
+import com.ziyingdeng.minidb.wal.WriteAheadLog;
+
+// Entry point for running SQL: parsing, the parse cache and execution
+public class Database implements Closeable {
+    private static final String SNAPSHOT = "snapshot.mdb";
+
+    private final Catalog catalog;
+    private final Executor executor;
+    private final Path dir;          // null for a purely in-memory database
+    private final WriteAheadLog wal; // null for a purely in-memory database
+    private final BufferPool pool;   // null for a purely in-memory database
+    private final Snapshot snapshot; // the one opened with the database, if any; restored tables read it
+    private final ParseCache cache = new ParseCache(1024);
+
+    // In-memory database; nothing survives the process
+    public Database() {
+        this.catalog = new Catalog();
+        this.executor = new Executor(catalog);
+        this.dir = null;
+        this.wal = null;
+        this.pool = null;
+        this.snapshot = null;
+    }
+
+    private Database(Catalog catalog, Executor executor, Path dir, WriteAheadLog wal, BufferPool pool, Snapshot snapshot) {
+        this.catalog = catalog;
+        this.executor = executor;
+        this.dir = dir;
+        this.wal = wal;
+        this.pool = pool;
+        this.snapshot = snapshot;
+    }
+
+    public static Database open(Path dir) throws IOException {
+        return open(dir, BufferPool.DEFAULT_FRAMES);
+    }
+
+    // Durable database in `dir`: tables are paged in dir/data.db through a pool of
+    // `bufferPages` pages. The tables of the last snapshot are mapped from
+    // dir/snapshot.mdb, the write-ahead log after it is replayed, and from then on
+    // the log records every change.
+    public static Database open(Path dir, int bufferPages) throws IOException {
+        Files.createDirectories(dir);
+        BufferPool pool = new BufferPool(PageFile.open(dir.resolve("data.db")), bufferPages);
+        Catalog catalog = new Catalog();
+        Executor recovery = new Executor(catalog, null, pool);
+        Snapshot snapshot = null;
+        WriteAheadLog wal;
+        try {
+            if (Files.exists(dir.resolve(SNAPSHOT))) {
+                snapshot = Snapshot.open(dir.resolve(SNAPSHOT));
+                for (Snapshot.TableImage image : snapshot.tables()) recovery.restore(snapshot, image);
+            }
+            wal = WriteAheadLog.open(dir.resolve("wal"), WriteAheadLog.DEFAULT_SEGMENT_SIZE,
+                    snapshot == null ? 1 : snapshot.walSegment(), recovery::replay);
+        } catch (IOException | RuntimeException e) {
+            if (snapshot != null) snapshot.close();
+            pool.file().close();
+            throw e;
+        }
+        return new Database(catalog, new Executor(catalog, wal, pool), dir, wal, pool, snapshot);
+    }
+
+    // Write a snapshot of every table to the database directory and drop the log
+    // it covers, so the next open maps the snapshot instead of replaying the log
+    public void checkpoint() throws IOException {
+        if (dir == null) throw new ExecutionException("[Executor] Checkpoint needs a database directory");
+        executor.checkpoint(dir.resolve(SNAPSHOT));
+    }
+
+    // Checkpoint paged tables so the next open finds their rows in the file
+    @Override
+    public void close() throws IOException {
+        try {
+            if (pool != null) {
+                for (Table t : catalog.tables()) {
+                    if (t instanceof PagedTable paged) paged.checkpoint();
+                }
+                pool.close();
+            }
+        } finally {
+            try {
+                if (wal != null) wal.close();
+            } finally {
+                if (snapshot != null) snapshot.close();
+            }
+        }
+    }
+
+    public Catalog catalog() { return catalog; }
+
+    // Page cache of the database file, with its hit rate; null for an in-memory database
+    public BufferPool bufferPool() { return pool; }
+    public ParseCache parseCache() { return cache; }
+
+    public Result execute(AST.Statement stmt) {
+        return executor.execute(stmt);
+    }
+
+    // Snapshot for a series of SELECTs that must agree with each other; close it
+    // when done
+    public ReadTransaction beginRead() {
+        return new ReadTransaction(executor, catalog.versions());
+    }
+
+    // Run every statement of a script in order
+    public List<Result> execute(String script) {
+        List<Result> out = new ArrayList<>();
+        for (AST.Statement stmt : new Parser(script).parseAll()) out.add(execute(stmt));
+        return out;
+    }
+
+    // Parse once (cached by SQL text) for repeated execution with different values
+    public PreparedStatement prepare(String sql) {
+        return cache.prepare(sql);
+    }
+
+    public Result execute(PreparedStatement stmt, Object... values) {
+        return execute(stmt.bind(values));
+    }
+}
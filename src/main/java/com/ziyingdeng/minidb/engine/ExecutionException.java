@@ -0,0 +1,6 @@
+package com.ziyingdeng.minidb.engine;
+
+public class ExecutionException extends RuntimeException {
+    public ExecutionException(String message) { super(message); }
+    public ExecutionException(String message, Throwable cause) { super(message, cause); }
+}
@@ -0,0 +1,616 @@
+package com.ziyingdeng.minidb.engine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.UnaryOperator;
+
+import com.ziyingdeng.minidb.exec.Aggregation;
+import com.ziyingdeng.minidb.exec.Filter;
+import com.ziyingdeng.minidb.exec.HashAggregation;
+import com.ziyingdeng.minidb.exec.HashJoin;
+import com.ziyingdeng.minidb.exec.Sort;
+import com.ziyingdeng.minidb.expr.ExpressionException;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.ColumnBatch;
+import com.ziyingdeng.minidb.storage.BufferPool;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.MemoryTable;
+import com.ziyingdeng.minidb.storage.OffHeapTable;
+import com.ziyingdeng.minidb.storage.PagedTable;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+import com.ziyingdeng.minidb.storage.Snapshot;
+import com.ziyingdeng.minidb.storage.StorageException;
+import com.ziyingdeng.minidb.storage.Table;
+import com.ziyingdeng.minidb.storage.TableOptions;
+import com.ziyingdeng.minidb.wal.WalRecord;
+import com.ziyingdeng.minidb.wal.WriteAheadLog;
+
+// Runs parsed statements against the catalog
+public class Executor {
+    private final Catalog catalog;
+    private final WriteAheadLog wal; // null: nothing is logged
+    private final BufferPool pool;   // null: no database file, so no paged tables
+    private final Map<String, Long> replayed = new HashMap<>(); // rows seen per table during recovery
+
+    public Executor(Catalog catalog) {
+        this(catalog, null, null);
+    }
+
+    public Executor(Catalog catalog, WriteAheadLog wal) {
+        this(catalog, wal, null);
+    }
+
+    public Executor(Catalog catalog, WriteAheadLog wal, BufferPool pool) {
+        this.catalog = catalog;
+        this.wal = wal;
+        this.pool = pool;
+    }
+
+    public Result execute(AST.Statement stmt) {
+        return switch (stmt) {
+            case AST.CreateTable create -> createTable(create);
+            case AST.Insert insert -> insert(insert);
+            case AST.Select select -> select(select);
+            default -> throw new ExecutionException("[Executor] Unsupported statement " + stmt);
+        };
+    }
+
+    // Run a SELECT as of commit stamp `stamp` (see Versions)
+    public Result read(AST.Statement stmt, long stamp) {
+        if (!(stmt instanceof AST.Select select)) {
+            throw new ExecutionException("[Executor] A read transaction only runs SELECT");
+        }
+        return select(select, stamp);
+    }
+
+    /* ================================ CREATE ================================= */
+
+    private Result createTable(AST.CreateTable create) {
+        Schema schema = schemaOf(create);
+        TableOptions options;
+        try {
+            options = TableOptions.of(create.options(), defaultStorage());
+        } catch (StorageException e) {
+            throw new ExecutionException(e.getMessage(), e);
+        }
+        if (wal == null) {
+            catalog.add(newTable(create.name(), schema, options));
+            return new Result.Created(create.name());
+        }
+        long seq;
+        synchronized (catalog) {
+            // the CREATE must be in the log before any INSERT into the new table can be
+            if (catalog.contains(create.name())) {
+                throw new ExecutionException("[Executor] Table '" + create.name() + "' already exists");
+            }
+            Table table = newTable(create.name(), schema, options);
+            seq = wal.append(WalRecord.encode(new WalRecord.CreateTable(create.name(), schema, options)));
+            catalog.add(table);
+        }
+        wal.sync(seq);
+        return new Result.Created(create.name());
+    }
+
+    // Tables of a database with a directory live in its page file unless told otherwise
+    private TableOptions.StorageKind defaultStorage() {
+        return pool != null ? TableOptions.StorageKind.PAGED : TableOptions.StorageKind.MEMORY;
+    }
+
+    private Table newTable(String name, Schema schema, TableOptions options) {
+        try {
+            return switch (options.storage()) {
+                case MEMORY -> new MemoryTable(name, schema, options);
+                case OFFHEAP -> new OffHeapTable(name, schema, options);
+                case PAGED -> {
+                    if (pool == null) {
+                        throw new ExecutionException("[Executor] Table '" + name + "' cannot be PAGED in a database without a directory");
+                    }
+                    yield PagedTable.open(name, schema, options, pool);
+                }
+            };
+        } catch (StorageException e) {
+            throw new ExecutionException(e.getMessage(), e);
+        }
+    }
+
+    static Schema schemaOf(AST.CreateTable create) {
+        List<Schema.ColumnDef> defs = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        int primaryKey = -1;
+        for (AST.Column c : create.columns()) {
+            if (!names.add(c.name())) {
+                throw new ExecutionException("[Executor] Duplicate column '" + c.name() + "'");
+            }
+            if (c.primaryKey()) {
+                if (primaryKey >= 0) throw new ExecutionException("[Executor] Table '" + create.name() + "' has more than one PRIMARY KEY");
+                if (c.DataType() != AST.DataType.INTEGER) {
+                    throw new ExecutionException("[Executor] PRIMARY KEY column '" + c.name() + "' must be INTEGER");
+                }
+                if (Boolean.TRUE.equals(c.nullable())) {
+                    throw new ExecutionException("[Executor] PRIMARY KEY column '" + c.name() + "' cannot be NULL");
+                }
+                primaryKey = defs.size();
+            }
+            boolean nullable = !c.primaryKey() && (c.nullable() == null || c.nullable()); // a key is implicitly NOT NULL
+            AST.Const def = null;
+            if (c.defaulExpr() != null) {
+                if (!(c.defaulExpr() instanceof AST.Const k)) {
+                    throw new ExecutionException("[Executor] DEFAULT of column '" + c.name() + "' must be a constant");
+                }
+                checkType(c.name(), c.DataType(), nullable, k);
+                def = k;
+            }
+            defs.add(new Schema.ColumnDef(c.name(), c.DataType(), nullable, def));
+        }
+        return new Schema(defs, primaryKey);
+    }
+
+    /* ================================ INSERT ================================= */
+
+    private Result insert(AST.Insert insert) {
+        Table table = catalog.get(insert.tableName());
+        ColumnVector[] staged = stage(table.schema(), insert);
+        int rows = insert.rowCount();
+        try {
+            if (wal == null) {
+                table.append(staged, rows);
+                catalog.versions().commit(table, table.rowCount());
+                return new Result.Inserted(rows);
+            }
+            long seq, end;
+            synchronized (table) {
+                // rows reach the log in the order they are staged, and a duplicate key fails before logging
+                end = table.stage(staged, rows);
+                seq = wal.append(WalRecord.encode(new WalRecord.Insert(table.name(), staged, rows)));
+            }
+            wal.sync(seq);
+            table.publish(end); // durable before visible
+            catalog.versions().commit(table, end);
+            return new Result.Inserted(rows);
+        } catch (StorageException e) {
+            throw new ExecutionException(e.getMessage(), e);
+        }
+    }
+
+    // Re-apply a logged change during recovery; records were validated when first executed.
+    // A paged table opens with the rows its last checkpoint wrote, so the log's first
+    // rows for it are already there and only the rest are appended.
+    public void replay(WalRecord record) {
+        switch (record) {
+            case WalRecord.CreateTable c -> {
+                TableOptions options = TableOptions.of(c.options().raw(), defaultStorage());
+                catalog.add(newTable(c.name(), c.schema(), options));
+            }
+            case WalRecord.Insert i -> {
+                Table table = catalog.get(i.table());
+                long before = replayed.getOrDefault(i.table(), 0L);
+                replayed.put(i.table(), before + i.rows());
+                long present = Math.min(table.rowCount() - before, i.rows());
+                if (present <= 0) {
+                    table.append(i.columns(), i.rows());
+                } else if (present < i.rows()) {
+                    int from = (int) present, rows = i.rows() - from;
+                    ColumnVector[] rest = new ColumnVector[i.columns().length];
+                    for (int c = 0; c < rest.length; c++) {
+                        rest[c] = ColumnVector.allocate(i.columns()[c].type(), rows);
+                        rest[c].appendFrom(i.columns()[c], from, rows);
+                    }
+                    table.append(rest, rows);
+                }
+                catalog.versions().commit(table, table.rowCount());
+            }
+        }
+    }
+
+    // Register a table of a snapshot before the log after it is replayed. Its rows
+    // count as replayed, so the log's INSERTs after the snapshot append the rest.
+    public void restore(Snapshot snapshot, Snapshot.TableImage image) {
+        TableOptions options = TableOptions.of(image.options(), defaultStorage());
+        catalog.add(options.storage() == TableOptions.StorageKind.PAGED
+                ? newTable(image.name(), image.schema(), options)
+                : snapshot.restore(image, options));
+        replayed.put(image.name(), image.rows());
+    }
+
+    // Convert and validate all rows into fresh vectors in schema order before the
+    // table is touched, so a bad row leaves the table unchanged
+    static ColumnVector[] stage(Schema schema, AST.Insert insert) {
+        int[] target = targetColumns(schema, insert.columns());
+        int rows = insert.rowCount();
+        ColumnVector[] staged = new ColumnVector[schema.size()];
+
+        if (insert.batch() != null) {
+            ColumnBatch batch = insert.batch();
+            if (batch.columnCount() != target.length) {
+                throw new ExecutionException("[Executor] Expected " + target.length + " values per row, got " + batch.columnCount());
+            }
+            for (int i = 0; i < target.length; i++) {
+                staged[target[i]] = stageColumn(schema.column(target[i]), batch.column(i), rows);
+            }
+        } else {
+            for (int t : target) staged[t] = ColumnVector.allocate(schema.column(t).type(), rows);
+            List<List<AST.Expression>> values = insert.values();
+            for (int r = 0; r < rows; r++) {
+                List<AST.Expression> row = values.get(r);
+                if (row.size() != target.length) {
+                    throw new ExecutionException("[Executor] Row " + (r + 1) + " has " + row.size()
+                            + " values, expected " + target.length);
+                }
+                for (int i = 0; i < target.length; i++) {
+                    appendValue(staged[target[i]], schema.column(target[i]), constOf(row.get(i)));
+                }
+            }
+        }
+
+        // columns left out of the column list take their DEFAULT, or NULL
+        for (int c = 0; c < staged.length; c++) {
+            if (staged[c] != null) continue;
+            Schema.ColumnDef def = schema.column(c);
+            AST.Const value = def.defaultValue() != null ? def.defaultValue() : AST.Const.ofNull();
+            staged[c] = ColumnVector.allocate(def.type(), rows);
+            for (int r = 0; r < rows; r++) appendValue(staged[c], def, value);
+        }
+        return staged;
+    }
+
+    // Schema position of each listed column; all columns in order when no list is given
+    private static int[] targetColumns(Schema schema, List<String> columns) {
+        if (columns == null) {
+            int[] all = new int[schema.size()];
+            for (int i = 0; i < all.length; i++) all[i] = i;
+            return all;
+        }
+        int[] target = new int[columns.size()];
+        boolean[] seen = new boolean[schema.size()];
+        for (int i = 0; i < target.length; i++) {
+            int c = schema.indexOf(columns.get(i));
+            if (c < 0) throw new ExecutionException("[Executor] Unknown column '" + columns.get(i) + "'");
+            if (seen[c]) throw new ExecutionException("[Executor] Column '" + columns.get(i) + "' listed twice");
+            seen[c] = true;
+            target[i] = c;
+        }
+        return target;
+    }
+
+    // Bulk-copy one parsed column straight from its primitive arrays
+    private static ColumnVector stageColumn(Schema.ColumnDef def, ColumnBatch.Vector src, int rows) {
+        if (!def.nullable() && src.hasNulls()) {
+            throw new ExecutionException("[Executor] Column '" + def.name() + "' is NOT NULL");
+        }
+        ColumnVector out = ColumnVector.allocate(def.type(), rows);
+        AST.Const.Kind kind = src.kind();
+        switch (kind) {
+            case NULL -> {
+                for (int r = 0; r < rows; r++) out.appendNull();
+                return out;
+            }
+            case INTEGER -> {
+                if (out instanceof ColumnVector.Ints ints) ints.appendInts(src.ints(), 0, rows);
+                else if (out instanceof ColumnVector.Floats floats) {
+                    int[] v = src.ints();
+                    for (int r = 0; r < rows; r++) floats.appendDouble(v[r]); // INTEGER widens to FLOAT
+                } else throw typeMismatch(def, kind);
+            }
+            case FLOAT -> {
+                if (!(out instanceof ColumnVector.Floats floats)) throw typeMismatch(def, kind);
+                floats.appendDoubles(src.doubles(), 0, rows);
+            }
+            case BOOLEAN -> {
+                if (!(out instanceof ColumnVector.Bools bools)) throw typeMismatch(def, kind);
+                bools.appendBooleans(src.booleans(), 0, rows);
+            }
+            case STRING -> {
+                if (!(out instanceof ColumnVector.Strings strings)) throw typeMismatch(def, kind);
+                int[] offsets = src.offsets();
+                byte[] bytes = src.bytes();
+                for (int r = 0; r < rows; r++) strings.appendUtf8(bytes, offsets[r], offsets[r + 1] - offsets[r]);
+            }
+        }
+        if (src.hasNulls()) {
+            for (int r = 0; r < rows; r++) {
+                if (src.isNull(r)) out.setNull(r);
+            }
+        }
+        return out;
+    }
+
+    private static AST.Const constOf(AST.Expression e) {
+        if (e instanceof AST.Const c) return c;
+        if (e instanceof AST.Param p) {
+            throw new ExecutionException("[Executor] Parameter " + (p.index() + 1) + " is not bound");
+        }
+        if (e instanceof AST.ColumnRef ref) {
+            throw new ExecutionException("[Executor] Column reference '" + ref.name() + "' is not allowed in VALUES");
+        }
+        throw new ExecutionException("[Executor] Unsupported value expression " + e);
+    }
+
+    static void appendValue(ColumnVector out, Schema.ColumnDef def, AST.Const v) {
+        checkType(def.name(), def.type(), def.nullable(), v);
+        switch (v.kind) {
+            case NULL -> out.appendNull();
+            case INTEGER -> {
+                if (def.type() == AST.DataType.FLOAT) out.appendDouble((Integer) v.value);
+                else out.appendInt((Integer) v.value);
+            }
+            case FLOAT -> out.appendDouble((Double) v.value);
+            case BOOLEAN -> out.appendBoolean((Boolean) v.value);
+            case STRING -> out.appendString((String) v.value);
+        }
+    }
+
+    // A value fits a column of the same type; INTEGER also fits FLOAT; NULL needs a nullable column
+    private static void checkType(String column, AST.DataType type, boolean nullable, AST.Const v) {
+        boolean ok = switch (v.kind) {
+            case NULL -> nullable;
+            case INTEGER -> type == AST.DataType.INTEGER || type == AST.DataType.FLOAT;
+            case FLOAT -> type == AST.DataType.FLOAT;
+            case BOOLEAN -> type == AST.DataType.BOOLEAN;
+            case STRING -> type == AST.DataType.STRING;
+        };
+        if (ok) return;
+        if (v.kind == AST.Const.Kind.NULL) {
+            throw new ExecutionException("[Executor] Column '" + column + "' is NOT NULL");
+        }
+        throw new ExecutionException("[Executor] Column '" + column + "' expects " + type + ", got " + v.kind);
+    }
+
+    private static ExecutionException typeMismatch(Schema.ColumnDef def, AST.Const.Kind kind) {
+        return new ExecutionException("[Executor] Column '" + def.name() + "' expects " + def.type() + ", got " + kind);
+    }
+
+    /* ================================ SELECT ================================= */
+
+    // A SELECT on its own reads at the latest stamp, pinned while it runs, so the
+    // row counts of a join's two tables come from the same commit
+    private Result select(AST.Select select) {
+        Versions versions = catalog.versions();
+        long stamp = versions.pin();
+        try {
+            return select(select, stamp);
+        } finally {
+            versions.release(stamp);
+        }
+    }
+
+    // Without locks: the rows are those committed at `stamp`, and they never change
+    private Result select(AST.Select select, long stamp) {
+        if (select.join() != null) return join(select, stamp);
+        Table table = catalog.get(select.tableName());
+        select = unqualify(select, table);
+        Iterator<RowBatch> rows = rows(table, catalog.versions().rows(table, stamp), select.where());
+        return order(aggregate(select.aggregates(), select.groupBy(), table.schema(), rows), select.orderBy(), select.limit());
+    }
+
+    private static Result.Rows aggregate(List<AST.Aggregate> aggregates, List<String> groupBy, Schema schema, Iterator<RowBatch> rows) {
+        if (aggregates.isEmpty()) return new Result.Rows(schema, rows);
+        try {
+            if (!groupBy.isEmpty()) {
+                HashAggregation aggregation = HashAggregation.compile(aggregates, groupBy, schema);
+                return new Result.Rows(aggregation.schema(), aggregation.apply(rows));
+            }
+            Aggregation aggregation = Aggregation.compile(aggregates, schema);
+            return new Result.Rows(aggregation.schema(), List.of(aggregation.apply(rows)).iterator());
+        } catch (ExpressionException e) {
+            throw new ExecutionException("[Executor] " + stripPrefix(e.getMessage()), e);
+        }
+    }
+
+    // FROM a JOIN b ON x = y as a hash join of the two tables' visible rows. The
+    // joined columns are named "table.column"; an unqualified name in the query
+    // stands for the one column of either table that has it.
+    private Result join(AST.Select select, long stamp) {
+        Table left = catalog.get(select.tableName());
+        Table right = catalog.get(select.join().tableName());
+        if (left == right) throw new ExecutionException("[Executor] Table '" + left.name() + "' cannot be joined with itself");
+        Schema leftSchema = qualified(left), rightSchema = qualified(right);
+        List<Schema.ColumnDef> both = new ArrayList<>(leftSchema.columns());
+        both.addAll(rightSchema.columns());
+        Schema joined = new Schema(both);
+
+        int x = joined.indexOf(resolve(select.join().left(), joined));
+        int y = joined.indexOf(resolve(select.join().right(), joined));
+        if (x < 0 || y < 0) {
+            throw new ExecutionException("[Executor] Unknown column '" + (x < 0 ? select.join().left() : select.join().right()) + "' in JOIN");
+        }
+        if ((x < left.schema().size()) == (y < left.schema().size())) {
+            throw new ExecutionException("[Executor] JOIN ON must compare a column of each table");
+        }
+        int leftKey = Math.min(x, y), rightKey = Math.max(x, y) - left.schema().size();
+
+        long leftRows = catalog.versions().rows(left, stamp), rightRows = catalog.versions().rows(right, stamp);
+        Iterator<RowBatch> rows;
+        AST.Expression where = select.where() == null ? null : resolve(select.where(), joined);
+        try {
+            HashJoin hashJoin = HashJoin.compile(leftSchema, leftKey, rightSchema, rightKey);
+            Filter filter = where == null ? null : Filter.compile(where, joined);
+            rows = hashJoin.apply(left.scan(leftRows), leftRows, right.scan(rightRows), rightRows);
+            if (filter != null) rows = filter.apply(rows);
+        } catch (ExpressionException e) {
+            throw new ExecutionException("[Executor] " + stripPrefix(e.getMessage()), e);
+        }
+        List<AST.Aggregate> aggregates = new ArrayList<>(select.aggregates().size());
+        for (AST.Aggregate a : select.aggregates()) aggregates.add(rename(a, name -> resolve(name, joined)));
+        List<String> groupBy = select.groupBy().stream().map(name -> resolve(name, joined)).toList();
+        AST.OrderBy orderBy = select.orderBy() == null ? null
+                : new AST.OrderBy(rename(select.orderBy().item(), name -> resolve(name, joined)), select.orderBy().descending());
+        return order(aggregate(aggregates, groupBy, joined, rows), orderBy, select.limit());
+    }
+
+    // ORDER BY and LIMIT over the final rows, so they may name aggregates too
+    private static Result order(Result.Rows result, AST.OrderBy orderBy, long limit) {
+        if (orderBy == null) {
+            return limit == AST.Select.NO_LIMIT ? result : new Result.Rows(result.schema(), limit(result.batches(), limit));
+        }
+        int column = result.schema().indexOf(orderBy.item().toString());
+        if (column < 0) throw new ExecutionException("[Executor] Unknown column '" + orderBy.item() + "' in ORDER BY");
+        Sort sort = Sort.compile(result.schema(), column, orderBy.descending(), limit);
+        return new Result.Rows(result.schema(), sort.apply(result.batches()));
+    }
+
+    // The first `limit` rows, in scan order
+    private static Iterator<RowBatch> limit(Iterator<RowBatch> rows, long limit) {
+        return new Iterator<>() {
+            long left = limit;
+
+            @Override public boolean hasNext() { return left > 0 && rows.hasNext(); }
+
+            @Override
+            public RowBatch next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                RowBatch b = rows.next().head((int) Math.min(left, Integer.MAX_VALUE));
+                left -= b.size();
+                return b;
+            }
+        };
+    }
+
+    // The table's schema with every column named "table.column"
+    private static Schema qualified(Table table) {
+        List<Schema.ColumnDef> columns = new ArrayList<>();
+        for (Schema.ColumnDef c : table.schema().columns()) {
+            columns.add(new Schema.ColumnDef(table.name() + "." + c.name(), c.type(), c.nullable(), c.defaultValue()));
+        }
+        return new Schema(columns);
+    }
+
+    // The joined column an unqualified name stands for; other names are returned
+    // as they are and fail later if unknown
+    private static String resolve(String name, Schema joined) {
+        if (name.indexOf('.') >= 0) return name;
+        String found = null;
+        for (Schema.ColumnDef c : joined.columns()) {
+            if (!c.name().endsWith("." + name)) continue;
+            if (found != null) throw new ExecutionException("[Executor] Column '" + name + "' is ambiguous in JOIN");
+            found = c.name();
+        }
+        return found == null ? name : found;
+    }
+
+    private static AST.Expression resolve(AST.Expression e, Schema joined) {
+        return switch (e) {
+            case AST.ColumnRef ref -> new AST.ColumnRef(resolve(ref.name(), joined));
+            case AST.Unary u -> new AST.Unary(u.op(), resolve(u.operand(), joined));
+            case AST.Binary b -> new AST.Binary(b.op(), resolve(b.left(), joined), resolve(b.right(), joined));
+            default -> e;
+        };
+    }
+
+    // A single-table SELECT may qualify its columns with the table's name
+    private static AST.Select unqualify(AST.Select select, Table table) {
+        String prefix = table.name() + ".";
+        List<AST.Aggregate> aggregates = new ArrayList<>(select.aggregates().size());
+        for (AST.Aggregate a : select.aggregates()) aggregates.add(rename(a, name -> strip(name, prefix)));
+        List<String> groupBy = select.groupBy().stream().map(name -> strip(name, prefix)).toList();
+        AST.OrderBy orderBy = select.orderBy() == null ? null
+                : new AST.OrderBy(rename(select.orderBy().item(), name -> strip(name, prefix)), select.orderBy().descending());
+        return new AST.Select(select.tableName(), null, select.where() == null ? null : strip(select.where(), prefix), aggregates,
+                groupBy, orderBy, select.limit());
+    }
+
+    // The aggregate over the column `rename` maps its column to
+    private static AST.Aggregate rename(AST.Aggregate a, UnaryOperator<String> rename) {
+        return a.column() == null ? a : new AST.Aggregate(a.function(), rename.apply(a.column()));
+    }
+
+    private static String strip(String name, String prefix) {
+        return name.startsWith(prefix) ? name.substring(prefix.length()) : name;
+    }
+
+    private static AST.Expression strip(AST.Expression e, String prefix) {
+        return switch (e) {
+            case AST.ColumnRef ref -> new AST.ColumnRef(strip(ref.name(), prefix));
+            case AST.Unary u -> new AST.Unary(u.op(), strip(u.operand(), prefix));
+            case AST.Binary b -> new AST.Binary(b.op(), strip(b.left(), prefix), strip(b.right(), prefix));
+            default -> e;
+        };
+    }
+
+    // Those of the table's first `visible` rows that satisfy `where` (all of them when it is null)
+    private static Iterator<RowBatch> rows(Table table, long visible, AST.Expression where) {
+        if (where == null) return table.scan(visible);
+        Filter filter;
+        try {
+            filter = Filter.compile(where, table.schema());
+        } catch (ExpressionException e) {
+            throw new ExecutionException("[Executor] " + stripPrefix(e.getMessage()), e);
+        }
+        Integer key = primaryKeyEquality(where, table.schema());
+        if (key == null) return filter.apply(table.scan(visible));
+
+        // point lookup through the primary key index; the filter checks the other conjuncts
+        long id = table.lookup(key);
+        Iterator<RowBatch> rows = id < 0 || id >= visible ? Collections.emptyIterator() : List.of(table.row(id)).iterator();
+        return filter.apply(rows);
+    }
+
+    // The key of a `pk = <INTEGER>` conjunct at the top of the predicate, or null
+    private static Integer primaryKeyEquality(AST.Expression e, Schema schema) {
+        if (schema.primaryKey() < 0 || !(e instanceof AST.Binary b)) return null;
+        if (b.op() == AST.BinaryOp.AND) {
+            Integer left = primaryKeyEquality(b.left(), schema);
+            return left != null ? left : primaryKeyEquality(b.right(), schema);
+        }
+        if (b.op() != AST.BinaryOp.EQ) return null;
+        String pk = schema.column(schema.primaryKey()).name();
+        if (b.left() instanceof AST.ColumnRef ref && ref.name().equals(pk)
+                && b.right() instanceof AST.Const c && c.kind == AST.Const.Kind.INTEGER) return (Integer) c.value;
+        if (b.right() instanceof AST.ColumnRef ref && ref.name().equals(pk)
+                && b.left() instanceof AST.Const c && c.kind == AST.Const.Kind.INTEGER) return (Integer) c.value;
+        return null;
+    }
+
+    private static String stripPrefix(String message) {
+        return message.startsWith("[Expr] ") ? message.substring(7) : message;
+    }
+
+    /* ============================== CHECKPOINT =============================== */
+
+    // Write a snapshot of every table as of a log segment boundary, then drop the
+    // older segments. Writers stop only while the log moves to a new segment: the
+    // rows staged by then are the ones the older segments hold, and rows are
+    // immutable once staged, so the snapshot is written while inserts go on.
+    public void checkpoint(Path file) throws IOException {
+        if (wal == null) throw new ExecutionException("[Executor] Checkpoint needs a database directory");
+        Map<String, Long> rows = new HashMap<>();
+        List<Table> tables;
+        int segment;
+        synchronized (catalog) {
+            tables = List.copyOf(catalog.tables());
+            segment = cut(tables, 0, rows);
+        }
+        for (Table t : tables) {
+            if (t instanceof PagedTable paged) paged.checkpoint(); // the file then holds at least the cut's rows
+        }
+        Snapshot.write(file, tables, rows, segment);
+        wal.deleteBefore(segment); // write() returned: the moved snapshot is on disk
+    }
+
+    // Holding every table's monitor (no INSERT is between staging and logging),
+    // roll the log over and publish what is staged: all of it is durable now
+    private int cut(List<Table> tables, int i, Map<String, Long> rows) {
+        if (i == tables.size()) {
+            int segment = wal.rollover();
+            for (Table t : tables) {
+                long staged = t.stagedRowCount();
+                t.publish(staged);
+                catalog.versions().commit(t, staged);
+                rows.put(t.name(), staged);
+            }
+            return segment;
+        }
+        synchronized (tables.get(i)) {
+            return cut(tables, i + 1, rows);
+        }
+    }
+}
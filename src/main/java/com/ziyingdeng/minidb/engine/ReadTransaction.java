@@ -0,0 +1,45 @@
+package com.ziyingdeng.minidb.engine;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.Parser;
+
+// SELECTs at one commit stamp: every statement run through the transaction sees
+// the rows committed before Database.beginRead(), in every table, however many
+// INSERTs commit meanwhile. No lock is taken; close() unpins the stamp so the
+// versions only it needed can be collected.
+public final class ReadTransaction implements Closeable {
+    private final Executor executor;
+    private final Versions versions;
+    private final long stamp;
+    private boolean closed;
+
+    ReadTransaction(Executor executor, Versions versions) {
+        this.executor = executor;
+        this.versions = versions;
+        this.stamp = versions.pin();
+    }
+
+    public long stamp() { return stamp; }
+
+    public Result execute(AST.Statement stmt) {
+        if (closed) throw new ExecutionException("[Executor] Read transaction is closed");
+        return executor.read(stmt, stamp);
+    }
+
+    public List<Result> execute(String script) {
+        List<Result> out = new ArrayList<>();
+        for (AST.Statement stmt : new Parser(script).parseAll()) out.add(execute(stmt));
+        return out;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        versions.release(stamp);
+    }
+}
@@ -0,0 +1,33 @@
+package com.ziyingdeng.minidb.engine;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+public sealed interface Result {
+
+    record Created(String table) implements Result {}
+
+    record Inserted(long rows) implements Result {}
+
+    // Query output, streamed batch by batch
+    record Rows(Schema schema, Iterator<RowBatch> batches) implements Result {
+
+        // Drain the remaining batches into boxed rows
+        public List<Object[]> toList() {
+            List<Object[]> out = new ArrayList<>();
+            while (batches.hasNext()) {
+                RowBatch b = batches.next();
+                for (int r = 0; r < b.size(); r++) {
+                    Object[] row = new Object[b.columnCount()];
+                    for (int c = 0; c < row.length; c++) row[c] = b.get(c, r);
+                    out.add(row);
+                }
+            }
+            return out;
+        }
+    }
+}
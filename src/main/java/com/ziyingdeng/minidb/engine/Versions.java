@@ -0,0 +1,114 @@
+package com.ziyingdeng.minidb.engine;
+
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ziyingdeng.minidb.storage.Table;
+
+// Multi-version visibility for the catalog's tables. Rows are only ever appended
+// and never change, so a row's versions reduce to one begin stamp: the commit
+// stamp of the INSERT that made it visible, and no row has an end stamp. Each
+// table keeps those stamps run-length encoded as its history, pairs of (commit
+// stamp, row count after that commit) in stamp order, so a reader at stamp s sees
+// the first rows(table, s) rows of every table and nothing committed after s.
+//
+// Commits take a short lock to give stamps and history entries the same order;
+// readers take none. A read transaction pins its stamp until it closes, and once
+// a history grows past its limit, entries that neither the latest count nor any
+// pinned stamp needs are dropped, so histories stay short however long the
+// insert stream runs.
+public final class Versions {
+    public static final long LATEST = Long.MAX_VALUE;
+    private static final int MIN_HISTORY = 64;
+
+    private final ConcurrentHashMap<String, History> histories = new ConcurrentHashMap<>();
+    private final TreeMap<Long, Integer> pinned = new TreeMap<>(); // open read transactions per stamp; guarded by this
+    private volatile long stamp; // last commit stamp; written under this
+
+    // Commit stamps and row counts, oldest first; entries past `count` are the
+    // committer's until it publishes a new History. `limit` is the count that
+    // triggers the next collection.
+    private record History(long[] stamps, long[] rows, int count, int limit) {
+        History add(long s, long r) {
+            long[] st = stamps, rw = rows;
+            if (count == st.length) {
+                st = Arrays.copyOf(st, count * 2);
+                rw = Arrays.copyOf(rw, count * 2);
+            }
+            st[count] = s;
+            rw[count] = r;
+            return new History(st, rw, count + 1, limit);
+        }
+
+        long latest() { return rows[count - 1]; }
+
+        // Row count as of stamp s: that of the last commit at or before it
+        long at(long s) {
+            int lo = 0, hi = count - 1;
+            if (stamps[0] > s) return 0;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (stamps[mid] <= s) lo = mid;
+                else hi = mid - 1;
+            }
+            return rows[lo];
+        }
+    }
+
+    // Record that `rows` rows of the table are visible from the next stamp on; a
+    // count at or below the latest one is already covered
+    public synchronized void commit(Table table, long rows) {
+        History h = histories.get(table.name());
+        if (h != null && rows <= h.latest()) return;
+        long s = stamp + 1;
+        h = h == null ? new History(new long[8], new long[8], 0, MIN_HISTORY).add(s, rows) : h.add(s, rows);
+        if (h.count >= h.limit) h = collect(h);
+        histories.put(table.name(), h);
+        stamp = s; // readers starting from here find the entry above
+    }
+
+    // Rows of the table visible at stamp s, or the latest count for LATEST
+    public long rows(Table table, long s) {
+        History h = histories.get(table.name());
+        if (h == null) return 0; // created after the reader's stamp was taken
+        return s == LATEST ? h.latest() : h.at(s);
+    }
+
+    // Stamp for a read transaction, pinned until release()
+    synchronized long pin() {
+        pinned.merge(stamp, 1, Integer::sum);
+        return stamp;
+    }
+
+    synchronized void release(long s) {
+        pinned.computeIfPresent(s, (k, n) -> n == 1 ? null : n - 1);
+    }
+
+    // Number of history entries of the table (for tests and diagnostics)
+    public int historySize(String table) {
+        History h = histories.get(table);
+        return h == null ? 0 : h.count;
+    }
+
+    // Keep the latest entry and, for each pinned stamp, the entry it reads; called
+    // with the lock held. With many pins the limit doubles instead of the work.
+    private History collect(History h) {
+        long[] st = new long[Math.max(8, h.count)];
+        long[] rw = new long[st.length];
+        int kept = 0;
+        for (int i = 0; i < h.count; i++) {
+            boolean needed = i == h.count - 1;
+            if (!needed) {
+                Long reader = pinned.ceilingKey(h.stamps[i]);
+                needed = reader != null && reader < h.stamps[i + 1];
+            }
+            if (needed) {
+                st[kept] = h.stamps[i];
+                rw[kept++] = h.rows[i];
+            }
+        }
+        int limit = Math.max(MIN_HISTORY, kept * 2);
+        return new History(st, rw, kept, limit);
+    }
+}
@@ -0,0 +1,302 @@
+package com.ziyingdeng.minidb.exec;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.ziyingdeng.minidb.expr.ExpressionException;
+import com.ziyingdeng.minidb.expr.Typing;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+// SELECT COUNT / SUM / MIN / MAX / AVG over a whole table: one pass over the
+// batches, one output row. A batch without a selection vector and without NULLs
+// in its range is handed to Simd as a dense array range; filtered batches and
+// batches with NULLs take a row-by-row loop. COUNT(column) counts NULL bits, and
+// run-length encoded INTEGER columns are aggregated a run at a time.
+//
+// Result types: COUNT is INTEGER, AVG is FLOAT, MIN / MAX keep the column type.
+// SUM is FLOAT, so an INTEGER sum past 2^31 is a result rather than an error; it
+// is summed as a long and exact up to 2^53. Every aggregate but COUNT is NULL when
+// no non-NULL value was seen.
+public final class Aggregation {
+    private final Schema schema;
+    private final Accumulator[] accumulators;
+
+    private Aggregation(Schema schema, Accumulator[] accumulators) {
+        this.schema = schema;
+        this.accumulators = accumulators;
+    }
+
+    public static Aggregation compile(List<AST.Aggregate> aggregates, Schema input) {
+        List<Schema.ColumnDef> out = new ArrayList<>();
+        Accumulator[] accs = new Accumulator[aggregates.size()];
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < accs.length; i++) {
+            AST.Aggregate a = aggregates.get(i);
+            if (!names.add(a.toString())) throw new ExpressionException("[Expr] Duplicate aggregate " + a);
+            accs[i] = accumulator(a, input);
+            out.add(new Schema.ColumnDef(a.toString(), accs[i].type, true, null));
+        }
+        return new Aggregation(new Schema(out), accs);
+    }
+
+    private static Accumulator accumulator(AST.Aggregate a, Schema input) {
+        if (a.function() == null) throw new ExpressionException("[Expr] Column '" + a.column() + "' must appear in GROUP BY");
+        if (a.column() == null) {
+            if (a.function() != AST.AggregateFunction.COUNT) throw new ExpressionException("[Expr] " + a.function() + " needs a column");
+            return new CountRows();
+        }
+        int col = Typing.column(input, new AST.ColumnRef(a.column()));
+        AST.DataType type = input.column(col).type();
+        if (a.function() == AST.AggregateFunction.COUNT) return new CountValues(col);
+        if (!Typing.isNumeric(type)) throw new ExpressionException("[Expr] " + a.function() + " expects a numeric column, got " + type);
+        return type == AST.DataType.INTEGER ? new IntStats(a, col) : new DoubleStats(a, col);
+    }
+
+    public Schema schema() { return schema; }
+
+    // Consume every batch and return the single result row
+    public RowBatch apply(Iterator<RowBatch> batches) {
+        for (Accumulator a : accumulators) a.reset();
+        while (batches.hasNext()) {
+            RowBatch b = batches.next();
+            for (Accumulator a : accumulators) a.add(b);
+        }
+        ColumnVector[] row = new ColumnVector[accumulators.length];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = ColumnVector.allocate(accumulators[i].type, 1);
+            accumulators[i].result(row[i]);
+        }
+        return new RowBatch(row, 0, 1);
+    }
+
+    /* ----------------------------- accumulators ---------------------------- */
+
+    private abstract static class Accumulator {
+        final AST.DataType type;
+
+        Accumulator(AST.DataType type) { this.type = type; }
+
+        abstract void reset();
+        abstract void add(RowBatch b);
+        abstract void result(ColumnVector out);
+    }
+
+    private static final class CountRows extends Accumulator {
+        private long count;
+
+        CountRows() { super(AST.DataType.INTEGER); }
+
+        @Override void reset() { count = 0; }
+        @Override void add(RowBatch b) { count += b.size(); }
+        @Override void result(ColumnVector out) { out.appendInt(toInt(count, "COUNT(*)")); }
+    }
+
+    private static final class CountValues extends Accumulator {
+        private final int col;
+        private long count;
+
+        CountValues(int col) { super(AST.DataType.INTEGER); this.col = col; }
+
+        @Override void reset() { count = 0; }
+
+        @Override
+        void add(RowBatch b) {
+            ColumnVector v = b.column(col);
+            if (b.selection() == null) {
+                count += b.size() - nullCount(v.nullBitmap(), b.start(), b.start() + b.size());
+                return;
+            }
+            for (int r = 0; r < b.size(); r++) {
+                if (!v.isNull(b.rowIndex(r))) count++;
+            }
+        }
+
+        @Override void result(ColumnVector out) { out.appendInt(toInt(count, "COUNT")); }
+    }
+
+    // Set bits of [from, to)
+    private static int nullCount(long[] nulls, int from, int to) {
+        if (from >= to) return 0;
+        int first = from >>> 6, last = (to - 1) >>> 6, n = 0;
+        for (int w = first; w <= last; w++) {
+            long word = nulls[w];
+            if (w == first) word &= -1L << from;
+            if (w == last) word &= -1L >>> (63 - ((to - 1) & 63));
+            n += Long.bitCount(word);
+        }
+        return n;
+    }
+
+    private static final class IntStats extends Accumulator {
+        private final AST.Aggregate aggregate;
+        private final int col;
+        private long count, sum;
+        private int min, max;
+
+        IntStats(AST.Aggregate aggregate, int col) {
+            super(resultType(aggregate.function(), AST.DataType.INTEGER));
+            this.aggregate = aggregate;
+            this.col = col;
+        }
+
+        @Override
+        void reset() {
+            count = sum = 0;
+            min = Integer.MAX_VALUE;
+            max = Integer.MIN_VALUE;
+        }
+
+        @Override
+        void add(RowBatch b) {
+            ColumnVector v = b.column(col);
+            if (v instanceof ColumnVector.RunInts runs) {
+                addRuns(b, runs);
+                return;
+            }
+            int[] values = ((ColumnVector.Ints) v).array();
+            int from = b.start(), to = from + b.size();
+            if (b.selection() == null && !v.hasNulls(from, to)) {
+                if (from == to) return;
+                switch (aggregate.function()) {
+                    case SUM, AVG -> sum += Simd.INSTANCE.sum(values, from, to);
+                    case MIN -> min = Math.min(min, Simd.INSTANCE.min(values, from, to));
+                    case MAX -> max = Math.max(max, Simd.INSTANCE.max(values, from, to));
+                    default -> throw new IllegalStateException(aggregate.toString());
+                }
+                count += to - from;
+                return;
+            }
+            for (int r = 0; r < b.size(); r++) {
+                int i = b.rowIndex(r);
+                if (v.isNull(i)) continue;
+                sum += values[i];
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+                count++;
+            }
+        }
+
+        // Each run contributes its value once, weighted by the rows it has in the batch
+        private void addRuns(RowBatch b, ColumnVector.RunInts v) {
+            int from = b.start(), to = from + b.size();
+            if (b.selection() != null || v.hasNulls(from, to)) {
+                for (int r = 0; r < b.size(); r++) {
+                    int i = b.rowIndex(r);
+                    if (!v.isNull(i)) add(v.getInt(i), 1);
+                }
+                return;
+            }
+            int[] ends = v.ends(), values = v.values();
+            for (int run = from < to ? v.run(from) : ends.length, at = from; at < to; run++) {
+                int end = Math.min(ends[run], to);
+                add(values[run], end - at);
+                at = end;
+            }
+        }
+
+        private void add(int value, int rows) {
+            sum += (long) value * rows;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            count += rows;
+        }
+
+        @Override
+        void result(ColumnVector out) {
+            if (count == 0) {
+                out.appendNull();
+                return;
+            }
+            switch (aggregate.function()) {
+                case SUM -> out.appendDouble(sum);
+                case AVG -> out.appendDouble((double) sum / count);
+                case MIN -> out.appendInt(min);
+                case MAX -> out.appendInt(max);
+                default -> throw new IllegalStateException(aggregate.toString());
+            }
+        }
+    }
+
+    private static final class DoubleStats extends Accumulator {
+        private final AST.Aggregate aggregate;
+        private final int col;
+        private long count;
+        private double sum, min, max;
+
+        DoubleStats(AST.Aggregate aggregate, int col) {
+            super(AST.DataType.FLOAT);
+            this.aggregate = aggregate;
+            this.col = col;
+        }
+
+        @Override
+        void reset() {
+            count = 0;
+            sum = 0;
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+        }
+
+        @Override
+        void add(RowBatch b) {
+            ColumnVector v = b.column(col);
+            double[] values = ((ColumnVector.Floats) v).array();
+            int from = b.start(), to = from + b.size();
+            if (b.selection() == null && !v.hasNulls(from, to)) {
+                if (from == to) return;
+                switch (aggregate.function()) {
+                    case SUM, AVG -> sum += Simd.INSTANCE.sum(values, from, to);
+                    case MIN -> min = Math.min(min, Simd.INSTANCE.min(values, from, to));
+                    case MAX -> max = Math.max(max, Simd.INSTANCE.max(values, from, to));
+                    default -> throw new IllegalStateException(aggregate.toString());
+                }
+                count += to - from;
+                return;
+            }
+            for (int r = 0; r < b.size(); r++) {
+                int i = b.rowIndex(r);
+                if (v.isNull(i)) continue;
+                sum += values[i];
+                min = Math.min(min, values[i]);
+                max = Math.max(max, values[i]);
+                count++;
+            }
+        }
+
+        @Override
+        void result(ColumnVector out) {
+            if (count == 0) {
+                out.appendNull();
+                return;
+            }
+            out.appendDouble(switch (aggregate.function()) {
+                case SUM -> sum;
+                case AVG -> sum / count;
+                case MIN -> min;
+                case MAX -> max;
+                default -> throw new IllegalStateException(aggregate.toString());
+            });
+        }
+    }
+
+    // The type `function` returns over a column of type `input`
+    static AST.DataType resultType(AST.AggregateFunction function, AST.DataType input) {
+        return switch (function) {
+            case COUNT -> AST.DataType.INTEGER;
+            case SUM, AVG -> AST.DataType.FLOAT;
+            case MIN, MAX -> input;
+        };
+    }
+
+    // A COUNT as an INTEGER
+    static int toInt(long value, String what) {
+        if (value != (int) value) throw new ExpressionException("[Expr] " + what + " overflows INTEGER: " + value);
+        return (int) value;
+    }
+}
@@ -0,0 +1,473 @@
+package com.ziyingdeng.minidb.exec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.ziyingdeng.minidb.expr.BatchRow;
+import com.ziyingdeng.minidb.expr.Evaluator;
+import com.ziyingdeng.minidb.expr.ExpressionCompiler;
+import com.ziyingdeng.minidb.expr.ExpressionException;
+import com.ziyingdeng.minidb.expr.Interpreter;
+import com.ziyingdeng.minidb.expr.Typing;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.ConstantFolder;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+// Vectorized WHERE. The predicate becomes a tree of kernels that each take a
+// selection vector (ascending row positions of one batch) and write the positions
+// where they are TRUE, or FALSE, to an output selection vector:
+//   - AND narrows: the right side only looks at rows the left side kept
+//   - OR runs the right side on the rows the left side rejected, then merges
+//   - NOT swaps TRUE and FALSE, which keeps SQL's three-valued logic exact
+//   - column <op> constant runs a tight loop over the primitive column array,
+//     appending every position and advancing the output by 0 or 1 (no branch);
+//     over a whole unfiltered batch, INTEGER and FLOAT columns use Simd instead;
+//     encoded vectors are compared without decoding: dictionary codes through a
+//     table of per-entry outcomes, packed booleans bit by bit, runs once per run
+//   - anything else (column <op> column, arithmetic) falls back to the compiled
+//     Evaluator row by row, still only over the selected rows
+// A Filter keeps scratch buffers, so one instance serves one scan at a time, and
+// batches may hold at most RowBatch.CAPACITY rows (as table scans produce).
+public final class Filter {
+    private static final int[] IDENTITY = new int[RowBatch.CAPACITY];
+    static {
+        for (int i = 0; i < IDENTITY.length; i++) IDENTITY[i] = i;
+    }
+
+    private final Kernel root;
+
+    private Filter(Kernel root) {
+        this.root = root;
+    }
+
+    public static Filter compile(AST.Expression predicate, Schema schema) {
+        AST.Expression folded = ConstantFolder.fold(predicate);
+        AST.DataType type = Typing.typeOf(folded, schema);
+        if (type != null && type != AST.DataType.BOOLEAN) {
+            throw new ExpressionException("[Expr] WHERE expects BOOLEAN, got " + type);
+        }
+        return new Filter(build(folded, schema));
+    }
+
+    // The batch narrowed to the qualifying rows; size() is 0 if none qualify
+    public RowBatch apply(RowBatch batch) {
+        return apply(batch, new int[batch.size()]);
+    }
+
+    // Filter a stream of batches, dropping batches in which no row qualifies.
+    // The selection buffer is reused, so each batch is only valid until the next call.
+    public Iterator<RowBatch> apply(Iterator<RowBatch> batches) {
+        return new Iterator<>() {
+            private final int[] sel = new int[RowBatch.CAPACITY];
+            private RowBatch next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && batches.hasNext()) {
+                    RowBatch b = apply(batches.next(), sel);
+                    if (b.size() > 0) next = b;
+                }
+                return next != null;
+            }
+
+            @Override
+            public RowBatch next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                RowBatch b = next;
+                next = null;
+                return b;
+            }
+        };
+    }
+
+    private RowBatch apply(RowBatch batch, int[] out) {
+        int n = batch.size();
+        int[] in = (batch.selection() != null) ? batch.selection() : IDENTITY;
+        int m = root.selectTrue(batch, in, n, out);
+        return batch.select(out, m);
+    }
+
+    /* ------------------------------ planning ------------------------------ */
+
+    private static Kernel build(AST.Expression e, Schema schema) {
+        if (e instanceof AST.Const c) return new Constant(c.kind == AST.Const.Kind.NULL ? null : (Boolean) c.value);
+        if (e instanceof AST.Binary b && b.op() == AST.BinaryOp.AND) return new And(build(b.left(), schema), build(b.right(), schema));
+        if (e instanceof AST.Binary b && b.op() == AST.BinaryOp.OR) return new Or(build(b.left(), schema), build(b.right(), schema));
+        if (e instanceof AST.Unary u && u.op() == AST.UnaryOp.NOT) return new Not(build(u.operand(), schema));
+        if (Typing.hasNullLiteral(e)) return new Constant(null); // NULL-propagating leaf
+        if (e instanceof AST.ColumnRef ref) {
+            return compareConst(schema, Typing.column(schema, ref), AST.BinaryOp.EQ, AST.Const.ofBoolean(true));
+        }
+        if (e instanceof AST.Binary b && b.op().isComparison()) {
+            if (b.left() instanceof AST.ColumnRef ref && b.right() instanceof AST.Const c) {
+                return compareConst(schema, Typing.column(schema, ref), b.op(), c);
+            }
+            if (b.left() instanceof AST.Const c && b.right() instanceof AST.ColumnRef ref) {
+                return compareConst(schema, Typing.column(schema, ref), flip(b.op()), c);
+            }
+        }
+        return new Rows(evaluator(e, schema));
+    }
+
+    private static Evaluator evaluator(AST.Expression e, Schema schema) {
+        return ExpressionCompiler.canCompile(e) ? ExpressionCompiler.compile(e, schema) : Interpreter.bind(e, schema);
+    }
+
+    private static Kernel compareConst(Schema schema, int col, AST.BinaryOp op, AST.Const c) {
+        int mask = mask(op);
+        return switch (schema.column(col).type()) {
+            case INTEGER -> (c.kind == AST.Const.Kind.INTEGER)
+                    ? new IntCompare(col, mask, (Integer) c.value)
+                    : new IntDoubleCompare(col, mask, (Double) c.value);
+            case FLOAT -> new DoubleCompare(col, mask, ((Number) c.value).doubleValue());
+            case BOOLEAN -> new BoolCompare(col, mask, (Boolean) c.value);
+            case STRING -> new StringCompare(col, mask, ((String) c.value).getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    // Outcomes accepted by a comparison, indexed by sign(left - right) + 1: bit 0 less, bit 1 equal, bit 2 greater
+    private static int mask(AST.BinaryOp op) {
+        return switch (op) {
+            case LT -> 0b001;
+            case LE -> 0b011;
+            case EQ -> 0b010;
+            case NE -> 0b101;
+            case GE -> 0b110;
+            case GT -> 0b100;
+            default -> throw new IllegalArgumentException(op.name());
+        };
+    }
+
+    // c <op> col == col <flip(op)> c
+    private static AST.BinaryOp flip(AST.BinaryOp op) {
+        return switch (op) {
+            case LT -> AST.BinaryOp.GT;
+            case LE -> AST.BinaryOp.GE;
+            case GT -> AST.BinaryOp.LT;
+            case GE -> AST.BinaryOp.LE;
+            default -> op;
+        };
+    }
+
+    /* ------------------------------- kernels ------------------------------- */
+
+    // in and out may be the same array: positions are written no faster than they are read
+    private interface Kernel {
+        // Positions in in[0, n) where the predicate is TRUE, written to out; returns their count
+        int selectTrue(RowBatch b, int[] in, int n, int[] out);
+
+        // ... where it is FALSE (NULL is neither)
+        int selectFalse(RowBatch b, int[] in, int n, int[] out);
+    }
+
+    private record Constant(Boolean value) implements Kernel {
+        @Override
+        public int selectTrue(RowBatch b, int[] in, int n, int[] out) {
+            return Boolean.TRUE.equals(value) ? copy(in, n, out) : 0;
+        }
+
+        @Override
+        public int selectFalse(RowBatch b, int[] in, int n, int[] out) {
+            return Boolean.FALSE.equals(value) ? copy(in, n, out) : 0;
+        }
+    }
+
+    private record Not(Kernel child) implements Kernel {
+        @Override
+        public int selectTrue(RowBatch b, int[] in, int n, int[] out) { return child.selectFalse(b, in, n, out); }
+
+        @Override
+        public int selectFalse(RowBatch b, int[] in, int n, int[] out) { return child.selectTrue(b, in, n, out); }
+    }
+
+    // AND: TRUE needs both sides TRUE (narrow), FALSE needs either side FALSE (union)
+    private static final class And implements Kernel {
+        private final Kernel left, right;
+        private final int[] a = new int[RowBatch.CAPACITY], rest = new int[RowBatch.CAPACITY];
+
+        And(Kernel left, Kernel right) { this.left = left; this.right = right; }
+
+        @Override
+        public int selectTrue(RowBatch b, int[] in, int n, int[] out) {
+            int m = left.selectTrue(b, in, n, out);
+            return right.selectTrue(b, out, m, out);
+        }
+
+        @Override
+        public int selectFalse(RowBatch b, int[] in, int n, int[] out) {
+            return union(left, right, false, b, in, n, out, a, rest);
+        }
+    }
+
+    // OR: TRUE needs either side TRUE (union), FALSE needs both sides FALSE (narrow)
+    private static final class Or implements Kernel {
+        private final Kernel left, right;
+        private final int[] a = new int[RowBatch.CAPACITY], rest = new int[RowBatch.CAPACITY];
+
+        Or(Kernel left, Kernel right) { this.left = left; this.right = right; }
+
+        @Override
+        public int selectTrue(RowBatch b, int[] in, int n, int[] out) {
+            return union(left, right, true, b, in, n, out, a, rest);
+        }
+
+        @Override
+        public int selectFalse(RowBatch b, int[] in, int n, int[] out) {
+            int m = left.selectFalse(b, in, n, out);
+            return right.selectFalse(b, out, m, out);
+        }
+    }
+
+    // Rows where left or right is `want`; right only sees rows left did not take
+    private static int union(Kernel left, Kernel right, boolean want, RowBatch b, int[] in, int n, int[] out, int[] a, int[] rest) {
+        int na = want ? left.selectTrue(b, in, n, a) : left.selectFalse(b, in, n, a);
+        int nr = 0;
+        for (int k = 0, j = 0; k < n; k++) { // rest = in \\ a; both ascending
+            int row = in[k];
+            if (j < na && a[j] == row) j++;
+            else rest[nr++] = row;
+        }
+        int nb = want ? right.selectTrue(b, rest, nr, rest) : right.selectFalse(b, rest, nr, rest);
+        int i = 0, j = 0, m = 0;
+        while (i < na && j < nb) out[m++] = (a[i] < rest[j]) ? a[i++] : rest[j++];
+        while (i < na) out[m++] = a[i++];
+        while (j < nb) out[m++] = rest[j++];
+        return m;
+    }
+
+    // Base for `column <op> constant`: subclasses write accept(values[row]) loops
+    private abstract static class ColumnCompare implements Kernel {
+        final int col;
+        final int mask;
+
+        ColumnCompare(int col, int mask) { this.col = col; this.mask = mask; }
+
+        @Override
+        public int selectTrue(RowBatch b, int[] in, int n, int[] out) {
+            return select(b, in, n, out, mask);
+        }
+
+        @Override
+        public int selectFalse(RowBatch b, int[] in, int n, int[] out) {
+            return select(b, in, n, out, mask ^ 0b111);
+        }
+
+        private int select(RowBatch b, int[] in, int n, int[] out, int accept) {
+            ColumnVector v = b.column(col);
+            int base = b.start();
+            int m = scan(v, base, in, n, out, accept);
+            if (m == 0 || !v.hasNulls(base + out[0], base + out[m - 1] + 1)) return m;
+            // drop NULL rows from the result
+            long[] nulls = v.nullBitmap();
+            int k = 0;
+            for (int i = 0; i < m; i++) {
+                int row = out[i];
+                int idx = base + row;
+                out[k] = row;
+                k += 1 - (int) ((nulls[idx >>> 6] >>> idx) & 1);
+            }
+            return k;
+        }
+
+        // Positions whose value compares with an outcome in `accept`
+        abstract int scan(ColumnVector v, int base, int[] in, int n, int[] out, int accept);
+    }
+
+    private static final class IntCompare extends ColumnCompare {
+        private final int c;
+
+        IntCompare(int col, int mask, int c) { super(col, mask); this.c = c; }
+
+        @Override
+        int scan(ColumnVector v, int base, int[] in, int n, int[] out, int accept) {
+            if (v instanceof ColumnVector.RunInts runs) return scanRuns(runs, base, in, n, out, accept);
+            int[] values = ((ColumnVector.Ints) v).array();
+            if (in == IDENTITY) return Simd.INSTANCE.select(values, base, n, c, accept, out);
+            int m = 0;
+            for (int k = 0; k < n; k++) {
+                int row = in[k];
+                long d = (long) values[base + row] - c; // sign without branches or overflow
+                int sign = (int) (d >> 63) | (int) (-d >>> 63);
+                out[m] = row;
+                m += (accept >>> (sign + 1)) & 1;
+            }
+            return m;
+        }
+
+        // Rows come in ascending order, so the current run only moves forward
+        private int scanRuns(ColumnVector.RunInts v, int base, int[] in, int n, int[] out, int accept) {
+            if (n == 0) return 0;
+            int[] ends = v.ends(), values = v.values();
+            int run = v.run(base + in[0]);
+            int keep = (accept >>> (Integer.compare(values[run], c) + 1)) & 1;
+            int m = 0;
+            for (int k = 0; k < n; k++) {
+                int row = in[k];
+                if (base + row >= ends[run]) {
+                    while (base + row >= ends[run]) run++;
+                    keep = (accept >>> (Integer.compare(values[run], c) + 1)) & 1;
+                }
+                out[m] = row;
+                m += keep;
+            }
+            return m;
+        }
+    }
+
+    private static final class IntDoubleCompare extends ColumnCompare {
+        private final double c;
+
+        IntDoubleCompare(int col, int mask, double c) { super(col, mask); this.c = c; }
+
+        @Override
+        int scan(ColumnVector v, int base, int[] in, int n, int[] out, int accept) {
+            int[] values = v instanceof ColumnVector.Ints ints ? ints.array() : null; // null: runs, read through getDouble
+            int m = 0;
+            for (int k = 0; k < n; k++) {
+                int row = in[k];
+                double x = values != null ? values[base + row] : v.getDouble(base + row);
+                int sign = (x > c ? 1 : 0) - (x < c ? 1 : 0);
+                out[m] = row;
+                m += (accept >>> (sign + 1)) & 1;
+            }
+            return m;
+        }
+    }
+
+    private static final class DoubleCompare extends ColumnCompare {
+        private final double c;
+
+        DoubleCompare(int col, int mask, double c) { super(col, mask); this.c = c; }
+
+        @Override
+        int scan(ColumnVector v, int base, int[] in, int n, int[] out, int accept) {
+            double[] values = ((ColumnVector.Floats) v).array();
+            if (in == IDENTITY) return Simd.INSTANCE.select(values, base, n, c, accept, out);
+            int m = 0;
+            for (int k = 0; k < n; k++) {
+                int row = in[k];
+                double x = values[base + row];
+                int sign = (x > c ? 1 : 0) - (x < c ? 1 : 0);
+                out[m] = row;
+                m += (accept >>> (sign + 1)) & 1;
+            }
+            return m;
+        }
+    }
+
+    private static final class BoolCompare extends ColumnCompare {
+        private final int c;
+
+        BoolCompare(int col, int mask, boolean c) { super(col, mask); this.c = c ? 1 : 0; }
+
+        @Override
+        int scan(ColumnVector v, int base, int[] in, int n, int[] out, int accept) {
+            if (v instanceof ColumnVector.PackedBools packed) {
+                long[] words = packed.words();
+                int m = 0;
+                for (int k = 0; k < n; k++) {
+                    int row = in[k];
+                    int idx = base + row;
+                    int x = (int) (words[idx >>> 6] >>> idx) & 1;
+                    out[m] = row;
+                    m += (accept >>> (x - c + 1)) & 1;
+                }
+                return m;
+            }
+            boolean[] values = ((ColumnVector.Bools) v).array();
+            int m = 0;
+            for (int k = 0; k < n; k++) {
+                int row = in[k];
+                int x = values[base + row] ? 1 : 0;
+                out[m] = row;
+                m += (accept >>> (x - c + 1)) & 1;
+            }
+            return m;
+        }
+    }
+
+    // Compares UTF-8 bytes in place, without decoding: unsigned byte order is code point order
+    private static final class StringCompare extends ColumnCompare {
+        private final byte[] c;
+
+        private ColumnVector.Dict dict; // the last dictionary seen and its outcomes
+        private byte[] outcomes; // sign + 1 per code
+
+        StringCompare(int col, int mask, byte[] c) { super(col, mask); this.c = c; }
+
+        @Override
+        int scan(ColumnVector v, int base, int[] in, int n, int[] out, int accept) {
+            if (v instanceof ColumnVector.Dict d) return scanCodes(d, base, in, n, out, accept);
+            ColumnVector.Strings s = (ColumnVector.Strings) v;
+            int[] offsets = s.offsets();
+            byte[] bytes = s.bytes();
+            int m = 0;
+            for (int k = 0; k < n; k++) {
+                int row = in[k];
+                int from = offsets[base + row], to = offsets[base + row + 1];
+                int sign = Integer.signum(Arrays.compareUnsigned(bytes, from, to, c, 0, c.length));
+                out[m] = row;
+                m += (accept >>> (sign + 1)) & 1;
+            }
+            return m;
+        }
+
+        // Compare each dictionary entry once per chunk, then look codes up
+        private int scanCodes(ColumnVector.Dict d, int base, int[] in, int n, int[] out, int accept) {
+            if (d != dict) {
+                byte[][] entries = d.dictionary();
+                byte[] signs = new byte[Math.max(entries.length, 1)]; // code 0 of an all-NULL chunk is read, then dropped
+                for (int k = 0; k < entries.length; k++) signs[k] = (byte) (Integer.signum(Arrays.compareUnsigned(entries[k], c)) + 1);
+                outcomes = signs;
+                dict = d;
+            }
+            byte[] signs = outcomes;
+            int m = 0;
+            for (int k = 0; k < n; k++) {
+                int row = in[k];
+                out[m] = row;
+                m += (accept >>> signs[d.code(base + row)]) & 1;
+            }
+            return m;
+        }
+    }
+
+    // Fallback: any other predicate, evaluated row by row over the selection
+    private static final class Rows implements Kernel {
+        private final Evaluator eval;
+        private final BatchRow row = new BatchRow();
+
+        Rows(Evaluator eval) { this.eval = eval; }
+
+        @Override
+        public int selectTrue(RowBatch b, int[] in, int n, int[] out) {
+            row.batch(b);
+            int m = 0;
+            for (int k = 0; k < n; k++) {
+                int pos = in[k];
+                if (eval.test(row.at(b.start() + pos))) out[m++] = pos;
+            }
+            return m;
+        }
+
+        @Override
+        public int selectFalse(RowBatch b, int[] in, int n, int[] out) {
+            row.batch(b);
+            int m = 0;
+            for (int k = 0; k < n; k++) {
+                int pos = in[k];
+                if (eval.testFalse(row.at(b.start() + pos))) out[m++] = pos;
+            }
+            return m;
+        }
+    }
+
+    private static int copy(int[] in, int n, int[] out) {
+        if (in != out) System.arraycopy(in, 0, out, 0, n);
+        return n;
+    }
+}
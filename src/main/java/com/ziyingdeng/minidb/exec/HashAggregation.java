@@ -0,0 +1,962 @@
+package com.ziyingdeng.minidb.exec;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.ziyingdeng.minidb.expr.ExpressionException;
+import com.ziyingdeng.minidb.expr.Typing;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+// GROUP BY: one output row per distinct value of the grouping columns, with the
+// select list's COUNT / SUM / MIN / MAX / AVG of that group's rows. Aggregates
+// follow Aggregation's rules; NULL grouping values form a group of their own.
+//   - groups live in an open-addressing hash table over primitive arrays: a
+//     single INTEGER, FLOAT or BOOLEAN key as a long, other keys as one byte
+//     string per group in an arena. Aggregate states are arrays indexed by group
+//   - with a pool of more than one thread, each worker takes batches from the
+//     input in turn (copying the columns it needs while it holds the input) and
+//     builds its own partial table. The partials are merged at the end, one task
+//     per hash partition
+//   - a table that outgrows its share of the memory budget writes its partial
+//     states to one spill file per hash partition and starts over. Once anything
+//     has spilled, all of it does, and each partition is then aggregated on its
+//     own as the result is read; one that is still too large is partitioned
+//     again on the next bits of the hash
+// Output order is unspecified.
+public final class HashAggregation {
+    private static final int PARTITION_BITS = 4;
+    private static final int PARTITIONS = 1 << PARTITION_BITS;
+    private static final long NULL_KEY_HASH = HashJoin.hash(0x9E3779B97F4A7C15L);
+
+    private final Schema schema;
+    private final int[] used; // input columns read, in the order of the batches the tables see
+    private final AST.DataType[] usedTypes;
+    private final int[] keys; // grouping columns, as positions in `used`
+    private final AST.DataType[] keyTypes;
+    private final Spec[] specs;
+    private final int[] output; // per output column: a key index, or -1 - an aggregate index
+    private final AST.DataType[] stateTypes; // spill blocks: the keys, then every aggregate's state
+    private final ForkJoinPool pool;
+    private final long budget;
+    private final Path spillDir; // null: the default temporary-file directory
+    private int spillFiles;
+
+    // One aggregate: column is a position in `used`, -1 for COUNT(*)
+    private record Spec(String name, AST.AggregateFunction function, int column, AST.DataType input) {}
+
+    private HashAggregation(Schema schema, int[] used, AST.DataType[] usedTypes, int[] keys, Spec[] specs, int[] output,
+            ForkJoinPool pool, long budget, Path spillDir) {
+        this.schema = schema;
+        this.used = used;
+        this.usedTypes = usedTypes;
+        this.keys = keys;
+        this.keyTypes = new AST.DataType[keys.length];
+        for (int k = 0; k < keys.length; k++) keyTypes[k] = usedTypes[keys[k]];
+        this.specs = specs;
+        this.output = output;
+        this.pool = pool;
+        this.budget = budget;
+        this.spillDir = spillDir;
+        List<AST.DataType> states = new ArrayList<>(List.of(keyTypes));
+        for (Spec s : specs) {
+            states.add(AST.DataType.INTEGER); // count, high and low halves
+            states.add(AST.DataType.INTEGER);
+            if (s.column < 0 || s.function == AST.AggregateFunction.COUNT) continue;
+            if (s.input == AST.DataType.FLOAT) {
+                states.add(AST.DataType.FLOAT);
+            } else {
+                states.add(AST.DataType.INTEGER);
+                states.add(AST.DataType.INTEGER);
+            }
+        }
+        this.stateTypes = states.toArray(AST.DataType[]::new);
+    }
+
+    // items: aggregates, and columns with a null function that must be grouped on
+    public static HashAggregation compile(List<AST.Aggregate> items, List<String> groupBy, Schema input) {
+        return compile(items, groupBy, input, ForkJoinPool.commonPool(), Spill.DEFAULT_BUDGET, null);
+    }
+
+    public static HashAggregation compile(List<AST.Aggregate> items, List<String> groupBy, Schema input,
+            ForkJoinPool pool, long budget, Path spillDir) {
+        if (groupBy.isEmpty()) throw new IllegalArgumentException("[Expr] GROUP BY needs a column");
+        if (budget <= 0) throw new IllegalArgumentException("[Expr] Aggregation memory budget must be positive");
+        List<Integer> used = new ArrayList<>();
+        int[] keys = new int[groupBy.size()];
+        for (int k = 0; k < keys.length; k++) {
+            int col = Typing.column(input, new AST.ColumnRef(groupBy.get(k)));
+            if (used.contains(col)) throw new ExpressionException("[Expr] Duplicate GROUP BY column " + groupBy.get(k));
+            keys[k] = used.size();
+            used.add(col);
+        }
+
+        List<Schema.ColumnDef> out = new ArrayList<>();
+        List<Spec> specs = new ArrayList<>();
+        int[] output = new int[items.size()];
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < output.length; i++) {
+            AST.Aggregate a = items.get(i);
+            if (!names.add(a.toString())) throw new ExpressionException("[Expr] Duplicate select item " + a);
+            if (a.function() == null) {
+                int col = Typing.column(input, new AST.ColumnRef(a.column()));
+                int k = used.indexOf(col); // keys come first in `used`
+                if (k < 0 || k >= keys.length) throw new ExpressionException("[Expr] Column '" + a.column() + "' must appear in GROUP BY");
+                output[i] = k;
+                out.add(new Schema.ColumnDef(a.column(), input.column(col).type(), true, null));
+                continue;
+            }
+            Spec spec = spec(a, input, used);
+            output[i] = -1 - specs.size();
+            specs.add(spec);
+            AST.DataType type = Aggregation.resultType(a.function(), spec.input);
+            out.add(new Schema.ColumnDef(a.toString(), type, true, null));
+        }
+
+        int[] columns = used.stream().mapToInt(Integer::intValue).toArray();
+        AST.DataType[] types = new AST.DataType[columns.length];
+        for (int c = 0; c < columns.length; c++) types[c] = input.column(columns[c]).type();
+        return new HashAggregation(new Schema(out), columns, types, keys, specs.toArray(Spec[]::new), output, pool, budget, spillDir);
+    }
+
+    private static Spec spec(AST.Aggregate a, Schema input, List<Integer> used) {
+        if (a.column() == null) {
+            if (a.function() != AST.AggregateFunction.COUNT) throw new ExpressionException("[Expr] " + a.function() + " needs a column");
+            return new Spec(a.toString(), a.function(), -1, null);
+        }
+        int col = Typing.column(input, new AST.ColumnRef(a.column()));
+        AST.DataType type = input.column(col).type();
+        if (a.function() != AST.AggregateFunction.COUNT && !Typing.isNumeric(type)) {
+            throw new ExpressionException("[Expr] " + a.function() + " expects a numeric column, got " + type);
+        }
+        if (!used.contains(col)) used.add(col);
+        return new Spec(a.toString(), a.function(), used.indexOf(col), type);
+    }
+
+    public Schema schema() { return schema; }
+
+    // Spill files written by the last apply(), at every level (for tests and diagnostics)
+    int spillFiles() { return spillFiles; }
+
+    // Consume every batch; the groups are then read from the returned iterator
+    public Iterator<RowBatch> apply(Iterator<RowBatch> batches) {
+        spillFiles = 0;
+        Spills spills = new Spills();
+        int workers = pool.getParallelism();
+        List<Table> tables = new ArrayList<>();
+        if (workers <= 1) {
+            Table t = new Table();
+            while (batches.hasNext()) t = add(t, view(batches.next()), spills, budget);
+            tables.add(t);
+        } else {
+            List<ForkJoinTask<Table>> tasks = new ArrayList<>();
+            for (int w = 0; w < workers; w++) tasks.add(pool.submit(() -> work(batches, spills, budget / workers)));
+            for (ForkJoinTask<Table> task : tasks) tables.add(task.join());
+        }
+
+        if (spills.any()) {
+            for (Table t : tables) t.spill(spills, 0);
+            return new Spilled(spills, 1);
+        }
+        if (tables.size() == 1) return tables.get(0).results();
+
+        List<ForkJoinTask<Table>> merges = new ArrayList<>();
+        for (int p = 0; p < PARTITIONS; p++) {
+            int partition = p;
+            merges.add(pool.submit(() -> {
+                Table merged = new Table();
+                for (Table t : tables) t.emit(0, partition, merged::merge);
+                return merged;
+            }));
+        }
+        return new Concat(merges);
+    }
+
+    // A worker: batches are taken one at a time while holding the input, whose
+    // batches are only valid until its next call, so they are copied then
+    private Table work(Iterator<RowBatch> batches, Spills spills, long share) {
+        Table t = new Table();
+        while (true) {
+            RowBatch b;
+            synchronized (batches) {
+                if (!batches.hasNext()) break;
+                b = copy(batches.next());
+            }
+            t = add(t, b, spills, share);
+        }
+        t.partitionBy(0);
+        return t;
+    }
+
+    private Table add(Table t, RowBatch b, Spills spills, long share) {
+        if (b.size() == 0) return t;
+        t.add(b);
+        if (t.bytes() <= share) return t;
+        t.spill(spills, 0);
+        return new Table();
+    }
+
+    // The used columns of b, as a view
+    private RowBatch view(RowBatch b) {
+        ColumnVector[] columns = new ColumnVector[used.length];
+        for (int c = 0; c < columns.length; c++) columns[c] = b.column(used[c]);
+        return new RowBatch(columns, b.start(), b.size(), b.selection());
+    }
+
+    // The used columns of b's rows, copied
+    private RowBatch copy(RowBatch b) {
+        int n = b.size();
+        int[] rows = new int[n];
+        for (int r = 0; r < n; r++) rows[r] = b.rowIndex(r);
+        ColumnVector[] columns = new ColumnVector[used.length];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = ColumnVector.allocate(usedTypes[c], Math.max(1, n));
+            if (b.selection() == null) columns[c].appendFrom(b.column(used[c]), b.start(), n);
+            else columns[c].appendRows(b.column(used[c]), rows, n);
+        }
+        return new RowBatch(columns, 0, n);
+    }
+
+    // Partition of a key hash at a spill level: level 0 takes the top bits
+    private static int partition(long hash, int level) {
+        return (int) (hash >>> (64 - PARTITION_BITS * (level + 1))) & (PARTITIONS - 1);
+    }
+
+    /* ------------------------------- tables ------------------------------ */
+
+    private interface BlockSink {
+        void accept(ColumnVector[] block, int rows);
+    }
+
+    // Groups and their aggregate states
+    private final class Table {
+        private final Groups groups = keyTypes.length == 1 && keyTypes[0] != AST.DataType.STRING
+                ? new LongGroups(keyTypes[0]) : new BytesGroups(keyTypes);
+        private final State[] states = new State[specs.length];
+        private int capacity = 16;
+        private int[] ids = new int[RowBatch.CAPACITY];
+        private int[] start, order; // groups by partition, see partitionBy()
+        private int partitionLevel = -1;
+
+        Table() {
+            for (int a = 0; a < states.length; a++) states[a] = State.of(specs[a], capacity);
+        }
+
+        long bytes() {
+            long n = groups.bytes();
+            for (State s : states) n += s.bytes();
+            return n;
+        }
+
+        // Input rows, over the used columns
+        void add(RowBatch b) {
+            find(b, keys);
+            for (State s : states) s.update(ids, b);
+        }
+
+        // A block of partial states, as emit() writes them
+        void merge(ColumnVector[] block, int rows) {
+            RowBatch b = new RowBatch(block, 0, rows);
+            int[] columns = new int[keyTypes.length];
+            for (int k = 0; k < columns.length; k++) columns[k] = k;
+            find(b, columns);
+            int at = keyTypes.length;
+            for (State s : states) at = s.combine(ids, block, at, rows);
+        }
+
+        private void find(RowBatch b, int[] columns) {
+            if (ids.length < b.size()) ids = new int[b.size()];
+            groups.find(b, columns, ids);
+            partitionLevel = -1;
+            if (groups.size > capacity) {
+                capacity = Math.max(groups.size, capacity * 2);
+                for (State s : states) s.grow(capacity);
+            }
+        }
+
+        // Group ids ordered by partition at a level: partition p holds
+        // order[start[p], start[p + 1])
+        void partitionBy(int level) {
+            if (partitionLevel == level) return;
+            start = new int[PARTITIONS + 1];
+            int[] of = new int[groups.size];
+            for (int g = 0; g < of.length; g++) start[(of[g] = partition(groups.hash(g), level)) + 1]++;
+            for (int p = 1; p <= PARTITIONS; p++) start[p] += start[p - 1];
+            int[] cursor = Arrays.copyOf(start, PARTITIONS);
+            order = new int[groups.size];
+            for (int g = 0; g < of.length; g++) order[cursor[of[g]]++] = g;
+            partitionLevel = level;
+        }
+
+        // The partial states of one partition's groups, in blocks of up to
+        // RowBatch.CAPACITY groups: key columns, then each aggregate's state
+        void emit(int level, int p, BlockSink sink) {
+            partitionBy(level);
+            int[] chunk = new int[RowBatch.CAPACITY];
+            for (int from = start[p]; from < start[p + 1]; from += chunk.length) {
+                int n = Math.min(chunk.length, start[p + 1] - from);
+                System.arraycopy(order, from, chunk, 0, n);
+                ColumnVector[] block = new ColumnVector[stateTypes.length];
+                for (int c = 0; c < block.length; c++) block[c] = ColumnVector.allocate(stateTypes[c], n);
+                groups.appendKeys(chunk, n, block);
+                int at = keyTypes.length;
+                for (State s : states) at = s.appendState(chunk, n, block, at);
+                sink.accept(block, n);
+            }
+        }
+
+        void spill(Spills spills, int level) {
+            for (int p = 0; p < PARTITIONS; p++) {
+                int partition = p;
+                emit(level, p, (block, rows) -> spills.write(partition, block, rows));
+            }
+        }
+
+        Iterator<RowBatch> results() {
+            return new Iterator<>() {
+                private int next;
+
+                @Override public boolean hasNext() { return next < groups.size; }
+
+                @Override
+                public RowBatch next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    int n = Math.min(RowBatch.CAPACITY, groups.size - next);
+                    int[] chunk = new int[n];
+                    for (int r = 0; r < n; r++) chunk[r] = next + r;
+                    next += n;
+                    ColumnVector[] key = new ColumnVector[keyTypes.length];
+                    for (int k = 0; k < key.length; k++) key[k] = ColumnVector.allocate(keyTypes[k], n);
+                    groups.appendKeys(chunk, n, key);
+                    ColumnVector[] out = new ColumnVector[output.length];
+                    for (int c = 0; c < out.length; c++) {
+                        if (output[c] >= 0) {
+                            out[c] = key[output[c]];
+                        } else {
+                            out[c] = ColumnVector.allocate(schema.column(c).type(), n);
+                            states[-1 - output[c]].result(chunk, n, out[c]);
+                        }
+                    }
+                    return new RowBatch(out, 0, n);
+                }
+            };
+        }
+    }
+
+    // One spill file per partition, created on first write; writers share it
+    private final class Spills {
+        private final Spill[] files = new Spill[PARTITIONS];
+
+        void write(int p, ColumnVector[] block, int rows) {
+            synchronized (files) {
+                if (files[p] == null) {
+                    files[p] = Spill.create(spillDir, stateTypes);
+                    spillFiles++;
+                }
+                files[p].write(block, rows);
+            }
+        }
+
+        boolean any() {
+            synchronized (files) {
+                for (Spill f : files) if (f != null) return true;
+                return false;
+            }
+        }
+
+        Spill take(int p) {
+            Spill f = files[p];
+            files[p] = null;
+            return f;
+        }
+    }
+
+    // The groups of every spilled partition at a level, one partition at a time
+    private final class Spilled implements Iterator<RowBatch> {
+        private final Spills spills;
+        private final int level; // of the partitions below these
+        private Iterator<RowBatch> current = Collections.emptyIterator();
+        private int next;
+
+        Spilled(Spills spills, int level) {
+            this.spills = spills;
+            this.level = level;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (next == PARTITIONS) return false;
+                Spill file = spills.take(next++);
+                if (file != null) current = aggregate(file);
+            }
+            return true;
+        }
+
+        @Override
+        public RowBatch next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.next();
+        }
+
+        // Merge the partition's partial states; past the budget, split it into
+        // partitions of the next level and aggregate each of those in turn
+        private Iterator<RowBatch> aggregate(Spill file) {
+            Table t = new Table();
+            Spills split = null;
+            try (file) {
+                for (ColumnVector[] block; (block = file.read()) != null; ) {
+                    t.merge(block, block[0].size());
+                    if (t.bytes() > budget && t.groups.size > RowBatch.CAPACITY && PARTITION_BITS * (level + 1) <= 64) {
+                        if (split == null) split = new Spills();
+                        t.spill(split, level);
+                        t = new Table();
+                    }
+                }
+            }
+            if (split == null) return t.results();
+            t.spill(split, level);
+            return new Spilled(split, level + 1);
+        }
+    }
+
+    // The results of the merge tasks, in task order
+    private static final class Concat implements Iterator<RowBatch> {
+        private final List<ForkJoinTask<Table>> tasks;
+        private Iterator<RowBatch> current = Collections.emptyIterator();
+        private int next;
+
+        Concat(List<ForkJoinTask<Table>> tasks) { this.tasks = tasks; }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext()) {
+                if (next == tasks.size()) return false;
+                current = tasks.get(next).join().results();
+                tasks.set(next++, null); // let the consumed table go
+            }
+            return true;
+        }
+
+        @Override
+        public RowBatch next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.next();
+        }
+    }
+
+    /* ------------------------------- groups ------------------------------ */
+
+    // Key -> dense group id, in an open-addressing table with linear probing
+    // whose slots hold 1 + a group id (0 == empty), at most half full
+    private abstract static class Groups {
+        int size;
+        int[] slots = new int[32];
+        int mask = 31;
+
+        // Group ids of the batch's rows (keyed by columns) into out[0, size),
+        // adding groups for keys not seen before
+        abstract void find(RowBatch b, int[] columns, int[] out);
+
+        // 64-bit hash of a group's key
+        abstract long hash(int group);
+
+        // Key values of the groups ids[0, n), one vector per key column
+        abstract void appendKeys(int[] ids, int n, ColumnVector[] out);
+
+        abstract long bytes();
+
+        // Claim the next id for a key that hashed to empty slot s
+        int claim(int s) {
+            slots[s] = ++size;
+            if (size * 2 > slots.length) rehash();
+            return size - 1;
+        }
+
+        // Whether a group has a slot; all do but LongGroups' NULL group
+        boolean slotted(int group) { return true; }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            mask = slots.length - 1;
+            for (int g = 0; g < size; g++) {
+                if (!slotted(g)) continue;
+                int s = (int) hash(g) & mask;
+                while (slots[s] != 0) s = (s + 1) & mask;
+                slots[s] = g + 1;
+            }
+        }
+    }
+
+    // One INTEGER, FLOAT or BOOLEAN column; keys as longs (FLOAT as the bits of
+    // the double, with -0.0 as 0.0 and one NaN), NULL as a group without a key
+    private static final class LongGroups extends Groups {
+        private final AST.DataType type;
+        private long[] keys = new long[16];
+        private int nullGroup = -1;
+
+        LongGroups(AST.DataType type) { this.type = type; }
+
+        @Override
+        void find(RowBatch b, int[] columns, int[] out) {
+            ColumnVector v = b.column(columns[0]);
+            int n = b.size(), from = b.start();
+            if (v instanceof ColumnVector.Ints ints && b.selection() == null && !v.hasNulls(from, from + n)) {
+                int[] values = ints.array();
+                for (int r = 0; r < n; r++) out[r] = group(values[from + r]);
+                return;
+            }
+            for (int r = 0; r < n; r++) {
+                int i = b.rowIndex(r);
+                if (v.isNull(i)) {
+                    out[r] = nullGroup();
+                    continue;
+                }
+                out[r] = group(switch (type) {
+                    case INTEGER -> v.getInt(i);
+                    case BOOLEAN -> v.getBoolean(i) ? 1 : 0;
+                    default -> {
+                        double d = v.getDouble(i);
+                        yield d == 0 ? 0L : Double.doubleToLongBits(d);
+                    }
+                });
+            }
+        }
+
+        private int group(long key) {
+            int s = (int) HashJoin.hash(key) & mask;
+            for (int g; (g = slots[s]) != 0; s = (s + 1) & mask) {
+                if (keys[g - 1] == key) return g - 1;
+            }
+            if (size == keys.length) keys = Arrays.copyOf(keys, size * 2);
+            keys[size] = key;
+            return claim(s);
+        }
+
+        // The NULL group is found without a lookup, so it takes no slot
+        private int nullGroup() {
+            if (nullGroup < 0) {
+                if (size == keys.length) keys = Arrays.copyOf(keys, size * 2);
+                nullGroup = size++;
+            }
+            return nullGroup;
+        }
+
+        @Override boolean slotted(int group) { return group != nullGroup; }
+
+        @Override
+        long hash(int group) {
+            return group == nullGroup ? NULL_KEY_HASH : HashJoin.hash(keys[group]);
+        }
+
+        @Override
+        void appendKeys(int[] ids, int n, ColumnVector[] out) {
+            ColumnVector v = out[0];
+            for (int r = 0; r < n; r++) {
+                int g = ids[r];
+                if (g == nullGroup) {
+                    v.appendNull();
+                    continue;
+                }
+                switch (type) {
+                    case INTEGER -> v.appendInt((int) keys[g]);
+                    case BOOLEAN -> v.appendBoolean(keys[g] != 0);
+                    default -> v.appendDouble(Double.longBitsToDouble(keys[g]));
+                }
+            }
+        }
+
+        @Override long bytes() { return keys.length * 8L + slots.length * 4L; }
+    }
+
+    // Any key columns: each group's key is encoded into a byte string, per column
+    // a tag (0 NULL, 1 value) and the value (INTEGER 4 bytes, FLOAT 8, BOOLEAN 1,
+    // STRING a 4-byte length and UTF-8), kept in one arena
+    private static final class BytesGroups extends Groups {
+        private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+        private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+        private final AST.DataType[] types;
+        private byte[] arena = new byte[1024];
+        private int[] starts = new int[17]; // group g is arena[starts[g], starts[g + 1])
+        private long[] hashes = new long[16];
+        private byte[] key = new byte[64]; // the row being looked up
+
+        BytesGroups(AST.DataType[] types) { this.types = types; }
+
+        @Override
+        void find(RowBatch b, int[] columns, int[] out) {
+            for (int r = 0; r < b.size(); r++) {
+                int len = encode(b, columns, b.rowIndex(r));
+                out[r] = group(hashKey(len), len);
+            }
+        }
+
+        private int encode(RowBatch b, int[] columns, int i) {
+            int at = 0;
+            for (int c = 0; c < columns.length; c++) {
+                ColumnVector v = b.column(columns[c]);
+                room(at + 13);
+                if (v.isNull(i)) {
+                    key[at++] = 0;
+                    continue;
+                }
+                key[at++] = 1;
+                switch (types[c]) {
+                    case INTEGER -> {
+                        INT.set(key, at, v.getInt(i));
+                        at += 4;
+                    }
+                    case FLOAT -> {
+                        double d = v.getDouble(i);
+                        LONG.set(key, at, d == 0 ? 0L : Double.doubleToLongBits(d));
+                        at += 8;
+                    }
+                    case BOOLEAN -> key[at++] = (byte) (v.getBoolean(i) ? 1 : 0);
+                    case STRING -> at = encodeString(v, i, at);
+                }
+            }
+            return at;
+        }
+
+        private int encodeString(ColumnVector v, int i, int at) {
+            byte[] src;
+            int from, len;
+            if (v instanceof ColumnVector.Strings s) {
+                src = s.bytes();
+                from = s.offsets()[i];
+                len = s.byteLength(i);
+            } else {
+                src = v instanceof ColumnVector.Dict d ? d.dictionary()[d.code(i)] : v.getString(i).getBytes(StandardCharsets.UTF_8);
+                from = 0;
+                len = src.length;
+            }
+            room(at + 4 + len + 13);
+            INT.set(key, at, len);
+            System.arraycopy(src, from, key, at + 4, len);
+            return at + 4 + len;
+        }
+
+        private void room(int n) {
+            if (key.length < n) key = Arrays.copyOf(key, Math.max(n, key.length * 2));
+        }
+
+        private long hashKey(int len) {
+            long h = len;
+            int at = 0;
+            for (; at + 8 <= len; at += 8) h = (h ^ (long) LONG.get(key, at)) * 0x9E3779B97F4A7C15L;
+            for (; at < len; at++) h = (h ^ key[at]) * 0x9E3779B97F4A7C15L;
+            return HashJoin.hash(h);
+        }
+
+        private int group(long hash, int len) {
+            int s = (int) hash & mask;
+            for (int g; (g = slots[s]) != 0; s = (s + 1) & mask) {
+                if (hashes[g - 1] == hash && Arrays.equals(arena, starts[g - 1], starts[g], key, 0, len)) return g - 1;
+            }
+            if (size == hashes.length) {
+                hashes = Arrays.copyOf(hashes, size * 2);
+                starts = Arrays.copyOf(starts, size * 2 + 1);
+            }
+            int at = starts[size];
+            if (arena.length < at + len) arena = Arrays.copyOf(arena, (int) Math.min(Math.max(at + len, arena.length * 2L), Integer.MAX_VALUE - 8));
+            System.arraycopy(key, 0, arena, at, len);
+            starts[size + 1] = at + len;
+            hashes[size] = hash;
+            return claim(s);
+        }
+
+        @Override long hash(int group) { return hashes[group]; }
+
+        @Override
+        void appendKeys(int[] ids, int n, ColumnVector[] out) {
+            for (int r = 0; r < n; r++) {
+                int at = starts[ids[r]];
+                for (int c = 0; c < types.length; c++) {
+                    ColumnVector v = out[c];
+                    if (arena[at++] == 0) {
+                        v.appendNull();
+                        continue;
+                    }
+                    switch (types[c]) {
+                        case INTEGER -> {
+                            v.appendInt((int) INT.get(arena, at));
+                            at += 4;
+                        }
+                        case FLOAT -> {
+                            v.appendDouble(Double.longBitsToDouble((long) LONG.get(arena, at)));
+                            at += 8;
+                        }
+                        case BOOLEAN -> v.appendBoolean(arena[at++] != 0);
+                        case STRING -> {
+                            int len = (int) INT.get(arena, at);
+                            ((ColumnVector.Strings) v).appendUtf8(arena, at + 4, len);
+                            at += 4 + len;
+                        }
+                    }
+                }
+            }
+        }
+
+        @Override
+        long bytes() {
+            return arena.length + starts.length * 4L + hashes.length * 8L + slots.length * 4L + key.length;
+        }
+    }
+
+    /* ------------------------------- states ------------------------------ */
+
+    // One aggregate's state per group: the count of the values it took, and for
+    // SUM / AVG / MIN / MAX their sum, minimum or maximum, starting from that
+    // function's identity. In a spill block the count takes two INTEGER columns
+    // (high and low halves), and so does an INTEGER column's value; a FLOAT
+    // column's value takes one FLOAT column.
+    private abstract static class State {
+        final Spec spec;
+        long[] counts;
+
+        State(Spec spec, int capacity) {
+            this.spec = spec;
+            this.counts = new long[capacity];
+        }
+
+        static State of(Spec spec, int capacity) {
+            if (spec.column < 0 || spec.function == AST.AggregateFunction.COUNT) return new Count(spec, capacity);
+            return spec.input == AST.DataType.FLOAT ? new DoubleState(spec, capacity) : new LongState(spec, capacity);
+        }
+
+        void grow(int capacity) { counts = Arrays.copyOf(counts, capacity); }
+
+        long bytes() { return counts.length * 8L; }
+
+        // Input rows whose groups are ids[0, b.size())
+        abstract void update(int[] ids, RowBatch b);
+
+        // Partial states at block[at, ...) of rows whose groups are ids[0, rows);
+        // returns the first column after them
+        int combine(int[] ids, ColumnVector[] block, int at, int rows) {
+            for (int r = 0; r < rows; r++) counts[ids[r]] += getLong(block[at], block[at + 1], r);
+            return at + 2;
+        }
+
+        int appendState(int[] ids, int n, ColumnVector[] out, int at) {
+            for (int r = 0; r < n; r++) appendLong(counts[ids[r]], out[at], out[at + 1]);
+            return at + 2;
+        }
+
+        abstract void result(int[] ids, int n, ColumnVector out);
+
+        static long getLong(ColumnVector high, ColumnVector low, int i) {
+            return (long) high.getInt(i) << 32 | (low.getInt(i) & 0xFFFFFFFFL);
+        }
+
+        static void appendLong(long v, ColumnVector high, ColumnVector low) {
+            high.appendInt((int) (v >>> 32));
+            low.appendInt((int) v);
+        }
+    }
+
+    // COUNT(*) and COUNT(column)
+    private static final class Count extends State {
+        Count(Spec spec, int capacity) { super(spec, capacity); }
+
+        @Override
+        void update(int[] ids, RowBatch b) {
+            int n = b.size();
+            if (spec.column < 0) {
+                for (int r = 0; r < n; r++) counts[ids[r]]++;
+                return;
+            }
+            ColumnVector v = b.column(spec.column);
+            for (int r = 0; r < n; r++) {
+                if (!v.isNull(b.rowIndex(r))) counts[ids[r]]++;
+            }
+        }
+
+        @Override
+        void result(int[] ids, int n, ColumnVector out) {
+            for (int r = 0; r < n; r++) out.appendInt(Aggregation.toInt(counts[ids[r]], spec.name));
+        }
+    }
+
+    // SUM / AVG / MIN / MAX of an INTEGER column, as longs
+    private static final class LongState extends State {
+        private long[] values;
+
+        LongState(Spec spec, int capacity) {
+            super(spec, capacity);
+            values = new long[capacity];
+            Arrays.fill(values, identity());
+        }
+
+        private long identity() {
+            return switch (spec.function) {
+                case MIN -> Long.MAX_VALUE;
+                case MAX -> Long.MIN_VALUE;
+                default -> 0;
+            };
+        }
+
+        @Override
+        void grow(int capacity) {
+            int old = values.length;
+            super.grow(capacity);
+            values = Arrays.copyOf(values, capacity);
+            Arrays.fill(values, old, capacity, identity());
+        }
+
+        @Override long bytes() { return super.bytes() + values.length * 8L; }
+
+        @Override
+        void update(int[] ids, RowBatch b) {
+            ColumnVector v = b.column(spec.column);
+            int n = b.size(), from = b.start();
+            if (v instanceof ColumnVector.Ints ints && b.selection() == null && !v.hasNulls(from, from + n)) {
+                int[] a = ints.array();
+                switch (spec.function) {
+                    case MIN -> { for (int r = 0; r < n; r++) values[ids[r]] = Math.min(values[ids[r]], a[from + r]); }
+                    case MAX -> { for (int r = 0; r < n; r++) values[ids[r]] = Math.max(values[ids[r]], a[from + r]); }
+                    default -> { for (int r = 0; r < n; r++) values[ids[r]] += a[from + r]; }
+                }
+                for (int r = 0; r < n; r++) counts[ids[r]]++;
+                return;
+            }
+            for (int r = 0; r < n; r++) {
+                int i = b.rowIndex(r);
+                if (v.isNull(i)) continue;
+                accept(ids[r], v.getInt(i));
+                counts[ids[r]]++;
+            }
+        }
+
+        private void accept(int g, long x) {
+            switch (spec.function) {
+                case MIN -> values[g] = Math.min(values[g], x);
+                case MAX -> values[g] = Math.max(values[g], x);
+                default -> values[g] += x;
+            }
+        }
+
+        @Override
+        int combine(int[] ids, ColumnVector[] block, int at, int rows) {
+            at = super.combine(ids, block, at, rows);
+            for (int r = 0; r < rows; r++) accept(ids[r], getLong(block[at], block[at + 1], r));
+            return at + 2;
+        }
+
+        @Override
+        int appendState(int[] ids, int n, ColumnVector[] out, int at) {
+            at = super.appendState(ids, n, out, at);
+            for (int r = 0; r < n; r++) appendLong(values[ids[r]], out[at], out[at + 1]);
+            return at + 2;
+        }
+
+        @Override
+        void result(int[] ids, int n, ColumnVector out) {
+            for (int r = 0; r < n; r++) {
+                int g = ids[r];
+                if (counts[g] == 0) out.appendNull();
+                else if (spec.function == AST.AggregateFunction.AVG) out.appendDouble((double) values[g] / counts[g]);
+                else if (spec.function == AST.AggregateFunction.SUM) out.appendDouble(values[g]);
+                else out.appendInt((int) values[g]); // MIN / MAX of ints
+            }
+        }
+    }
+
+    // SUM / AVG / MIN / MAX of a FLOAT column
+    private static final class DoubleState extends State {
+        private double[] values;
+
+        DoubleState(Spec spec, int capacity) {
+            super(spec, capacity);
+            values = new double[capacity];
+            Arrays.fill(values, identity());
+        }
+
+        private double identity() {
+            return switch (spec.function) {
+                case MIN -> Double.POSITIVE_INFINITY;
+                case MAX -> Double.NEGATIVE_INFINITY;
+                default -> 0;
+            };
+        }
+
+        @Override
+        void grow(int capacity) {
+            int old = values.length;
+            super.grow(capacity);
+            values = Arrays.copyOf(values, capacity);
+            Arrays.fill(values, old, capacity, identity());
+        }
+
+        @Override long bytes() { return super.bytes() + values.length * 8L; }
+
+        @Override
+        void update(int[] ids, RowBatch b) {
+            ColumnVector v = b.column(spec.column);
+            int n = b.size(), from = b.start();
+            if (v instanceof ColumnVector.Floats floats && b.selection() == null && !v.hasNulls(from, from + n)) {
+                double[] a = floats.array();
+                switch (spec.function) {
+                    case MIN -> { for (int r = 0; r < n; r++) values[ids[r]] = Math.min(values[ids[r]], a[from + r]); }
+                    case MAX -> { for (int r = 0; r < n; r++) values[ids[r]] = Math.max(values[ids[r]], a[from + r]); }
+                    default -> { for (int r = 0; r < n; r++) values[ids[r]] += a[from + r]; }
+                }
+                for (int r = 0; r < n; r++) counts[ids[r]]++;
+                return;
+            }
+            for (int r = 0; r < n; r++) {
+                int i = b.rowIndex(r);
+                if (v.isNull(i)) continue;
+                accept(ids[r], v.getDouble(i));
+                counts[ids[r]]++;
+            }
+        }
+
+        private void accept(int g, double x) {
+            switch (spec.function) {
+                case MIN -> values[g] = Math.min(values[g], x);
+                case MAX -> values[g] = Math.max(values[g], x);
+                default -> values[g] += x;
+            }
+        }
+
+        @Override
+        int combine(int[] ids, ColumnVector[] block, int at, int rows) {
+            at = super.combine(ids, block, at, rows);
+            for (int r = 0; r < rows; r++) accept(ids[r], block[at].getDouble(r));
+            return at + 1;
+        }
+
+        @Override
+        int appendState(int[] ids, int n, ColumnVector[] out, int at) {
+            at = super.appendState(ids, n, out, at);
+            for (int r = 0; r < n; r++) out[at].appendDouble(values[ids[r]]);
+            return at + 1;
+        }
+
+        @Override
+        void result(int[] ids, int n, ColumnVector out) {
+            for (int r = 0; r < n; r++) {
+                int g = ids[r];
+                if (counts[g] == 0) out.appendNull();
+                else out.appendDouble(spec.function == AST.AggregateFunction.AVG ? values[g] / counts[g] : values[g]);
+            }
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.ziyingdeng.minidb.exec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import com.ziyingdeng.minidb.expr.ExpressionException;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+// Inner equi-join of two row streams on one column each. The input with fewer
+// rows is the build side: it is copied (columns and keys) and hashed, and the
+// other input probes it.
+//   - keys are primitive longs: INTEGER and BOOLEAN values as they are, FLOAT
+//     (and an INTEGER joined with a FLOAT) as the bits of the double. NULL and
+//     NaN keys never match, so those rows are dropped as they are read
+//   - a build side of up to partitionRows rows becomes one chained hash table,
+//     and probe batches stream through it as they arrive
+//   - a larger one is radix-partitioned on the top bits of the key hash, and so
+//     is the probe side, into partitions of about partitionRows build rows whose
+//     table (keys, chain links, bucket heads) stays in the L2 cache. Partition
+//     pairs are then joined in parallel on a ForkJoinPool while the caller
+//     consumes the output of the ones already done
+// Output rows are the left columns, then the right ones, gathered from the
+// inputs' vectors in batches of up to RowBatch.CAPACITY rows; their order is
+// unspecified.
+public final class HashJoin {
+    public static final int DEFAULT_PARTITION_ROWS = 1 << 15; // ~640 KiB of table per partition
+    private static final int MAX_PARTITION_BITS = 12;
+
+    private final Schema schema;
+    private final int leftColumns;
+    private final int leftKey, rightKey;
+    private final boolean leftAsDouble, rightAsDouble; // INTEGER key joined with a FLOAT one
+    private final ForkJoinPool pool;
+    private final int partitionRows;
+
+    private HashJoin(Schema left, int leftKey, Schema right, int rightKey, ForkJoinPool pool, int partitionRows) {
+        List<Schema.ColumnDef> columns = new ArrayList<>(left.columns());
+        columns.addAll(right.columns());
+        this.schema = new Schema(columns);
+        this.leftColumns = left.size();
+        this.leftKey = leftKey;
+        this.rightKey = rightKey;
+        AST.DataType l = left.column(leftKey).type(), r = right.column(rightKey).type();
+        this.leftAsDouble = l == AST.DataType.INTEGER && r == AST.DataType.FLOAT;
+        this.rightAsDouble = r == AST.DataType.INTEGER && l == AST.DataType.FLOAT;
+        this.pool = pool;
+        this.partitionRows = partitionRows;
+    }
+
+    // Column names of the two schemas must differ (the caller qualifies them)
+    public static HashJoin compile(Schema left, int leftKey, Schema right, int rightKey) {
+        return compile(left, leftKey, right, rightKey, ForkJoinPool.commonPool(), DEFAULT_PARTITION_ROWS);
+    }
+
+    public static HashJoin compile(Schema left, int leftKey, Schema right, int rightKey, ForkJoinPool pool, int partitionRows) {
+        if (partitionRows <= 0) throw new IllegalArgumentException("[Expr] partitionRows must be positive");
+        AST.DataType l = left.column(leftKey).type(), r = right.column(rightKey).type();
+        if (l == AST.DataType.STRING || r == AST.DataType.STRING) {
+            throw new ExpressionException("[Expr] JOIN keys must be INTEGER, FLOAT or BOOLEAN, got " + (l == AST.DataType.STRING ? l : r));
+        }
+        if (l != r && (l == AST.DataType.BOOLEAN || r == AST.DataType.BOOLEAN)) {
+            throw new ExpressionException("[Expr] JOIN compares " + l + " with " + r);
+        }
+        return new HashJoin(left, leftKey, right, rightKey, pool, partitionRows);
+    }
+
+    public Schema schema() { return schema; }
+
+    // Joined rows of the two inputs; leftRows and rightRows are the expected row
+    // counts, which pick the build side and size its copy
+    public Iterator<RowBatch> apply(Iterator<RowBatch> left, long leftRows, Iterator<RowBatch> right, long rightRows) {
+        boolean buildLeft = leftRows <= rightRows;
+        Rows build = buildLeft ? Rows.read(left, leftKey, leftAsDouble, leftRows) : Rows.read(right, rightKey, rightAsDouble, rightRows);
+        Iterator<RowBatch> probe = buildLeft ? right : left;
+        int probeKey = buildLeft ? rightKey : leftKey;
+        boolean probeAsDouble = buildLeft ? rightAsDouble : leftAsDouble;
+        if (build.size <= partitionRows) return new Streamed(build, buildLeft, probe, probeKey, probeAsDouble);
+
+        int bits = Math.min(MAX_PARTITION_BITS, 64 - Long.numberOfLeadingZeros((build.size - 1) / partitionRows));
+        Partitions built = Partitions.of(build, bits);
+        Rows probed = Rows.read(probe, probeKey, probeAsDouble, buildLeft ? rightRows : leftRows);
+        return new Partitioned(build, built, probed, Partitions.of(probed, bits), buildLeft);
+    }
+
+    /* ------------------------------ inputs ------------------------------- */
+
+    // murmur3's finalizer: partitions take the top bits, buckets the low ones
+    static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+
+    private static long bits(double d) {
+        return d == 0 ? 0L : Double.doubleToLongBits(d); // -0.0 == 0.0
+    }
+
+    // Keys of the batch's rows into keys[0, n) and their vector positions into
+    // pos[0, n), skipping NULL and NaN keys; returns n
+    private static int keys(RowBatch b, int column, boolean asDouble, long[] keys, int[] pos) {
+        ColumnVector v = b.column(column);
+        int n = 0;
+        for (int r = 0; r < b.size(); r++) {
+            int i = b.rowIndex(r);
+            if (v.isNull(i)) continue;
+            long k;
+            switch (v.type()) {
+                case INTEGER -> k = asDouble ? bits(v.getInt(i)) : v.getInt(i);
+                case BOOLEAN -> k = v.getBoolean(i) ? 1 : 0;
+                default -> {
+                    double d = v.getDouble(i);
+                    if (d != d) continue;
+                    k = bits(d);
+                }
+            }
+            keys[n] = k;
+            pos[n++] = i;
+        }
+        return n;
+    }
+
+    // A whole input copied into one vector per column, with its rows' keys
+    private static final class Rows {
+        ColumnVector[] columns;
+        long[] keys;
+        int size;
+
+        static Rows read(Iterator<RowBatch> in, int key, boolean asDouble, long expected) {
+            Rows rows = new Rows();
+            long[] batchKeys = new long[RowBatch.CAPACITY];
+            int[] pos = new int[RowBatch.CAPACITY];
+            while (in.hasNext()) {
+                RowBatch b = in.next();
+                if (rows.columns == null) rows.allocate(b, (int) Math.min(Math.max(expected, b.size()), Integer.MAX_VALUE - 8));
+                if (b.size() > batchKeys.length) {
+                    batchKeys = new long[b.size()];
+                    pos = new int[b.size()];
+                }
+                int n = keys(b, key, asDouble, batchKeys, pos);
+                if (rows.size + n > rows.keys.length) rows.grow(rows.size + n);
+                System.arraycopy(batchKeys, 0, rows.keys, rows.size, n);
+                for (int c = 0; c < rows.columns.length; c++) rows.columns[c].appendRows(b.column(c), pos, n);
+                rows.size += n;
+            }
+            if (rows.columns == null) rows.keys = new long[0];
+            return rows;
+        }
+
+        private void allocate(RowBatch b, int capacity) {
+            columns = new ColumnVector[b.columnCount()];
+            for (int c = 0; c < columns.length; c++) columns[c] = ColumnVector.allocate(b.column(c).type(), capacity);
+            keys = new long[capacity];
+        }
+
+        // More rows than expected (the input grew): copy into vectors twice as large
+        private void grow(int needed) {
+            int capacity = (int) Math.min(Math.max(needed, 2L * keys.length), Integer.MAX_VALUE - 8);
+            for (int c = 0; c < columns.length; c++) {
+                ColumnVector larger = ColumnVector.allocate(columns[c].type(), capacity);
+                larger.appendFrom(columns[c], 0, size);
+                columns[c] = larger;
+            }
+            keys = Arrays.copyOf(keys, capacity);
+        }
+    }
+
+    // The rows of a Rows in partition order: partition p holds the rows
+    // order[start[p], start[p + 1]), whose keys are keys[start[p], start[p + 1])
+    private record Partitions(int bits, int[] start, int[] order, long[] keys) {
+        static Partitions of(Rows rows, int bits) {
+            int[] start = new int[(1 << bits) + 1];
+            for (int r = 0; r < rows.size; r++) start[partition(rows.keys[r], bits) + 1]++;
+            for (int p = 1; p < start.length; p++) start[p] += start[p - 1];
+            int[] cursor = Arrays.copyOf(start, start.length - 1);
+            int[] order = new int[rows.size];
+            long[] keys = new long[rows.size];
+            for (int r = 0; r < rows.size; r++) {
+                int j = cursor[partition(rows.keys[r], bits)]++;
+                order[j] = r;
+                keys[j] = rows.keys[r];
+            }
+            return new Partitions(bits, start, order, keys);
+        }
+
+        static int partition(long key, int bits) {
+            return (int) (hash(key) >>> (64 - bits));
+        }
+
+        int count() { return start.length - 1; }
+    }
+
+    /* ------------------------------- probe ------------------------------- */
+
+    // Matched (probe, build) row positions, in probe order
+    private static final class Matches {
+        int[] probe = new int[RowBatch.CAPACITY];
+        int[] build = new int[RowBatch.CAPACITY];
+        int size;
+
+        void add(int p, int b) {
+            if (size == probe.length) {
+                probe = Arrays.copyOf(probe, size * 2);
+                build = Arrays.copyOf(build, size * 2);
+            }
+            probe[size] = p;
+            build[size++] = b;
+        }
+    }
+
+    // Chained hash table over keys[from, to): heads[bucket] and next[j] hold
+    // 1 + a key position, and 0 ends a chain. `next` is indexed like `keys`, so
+    // tables over disjoint ranges share one array.
+    private static final class Buckets {
+        private int[] heads = new int[0];
+        private int mask;
+
+        void build(long[] keys, int from, int to, int[] next) {
+            int size = Integer.highestOneBit(Math.max(1, to - from) * 2 - 1) * 2; // load factor <= 1/2
+            if (heads.length < size) heads = new int[size];
+            else Arrays.fill(heads, 0, size, 0);
+            mask = size - 1;
+            for (int j = from; j < to; j++) {
+                int b = (int) hash(keys[j]) & mask;
+                next[j] = heads[b];
+                heads[b] = j + 1;
+            }
+        }
+
+        // Add (probe[q], match) for every key position j with keys[j] == probeKeys[q]
+        void probe(long[] probeKeys, int[] probe, int from, int to, long[] keys, int[] next, int[] positions, Matches out) {
+            for (int q = from; q < to; q++) {
+                long k = probeKeys[q];
+                for (int j = heads[(int) hash(k) & mask] - 1; j >= 0; j = next[j] - 1) {
+                    if (keys[j] == k) out.add(probe == null ? q : probe[q], positions == null ? j : positions[j]);
+                }
+            }
+        }
+    }
+
+    // Gathers output batches from a Matches and the vectors its positions index
+    private abstract class Output implements Iterator<RowBatch> {
+        private final boolean buildLeft;
+        private final int[] slice = new int[RowBatch.CAPACITY];
+        protected Matches matches;
+        protected ColumnVector[] probeColumns;
+        protected ColumnVector[] buildColumns;
+        private int at;
+
+        Output(boolean buildLeft) { this.buildLeft = buildLeft; }
+
+        // Load the next non-empty Matches, or return false at the end
+        protected abstract boolean advance();
+
+        @Override
+        public boolean hasNext() {
+            while (matches == null || at == matches.size) {
+                at = 0;
+                if (!advance()) {
+                    matches = null;
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public RowBatch next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int n = Math.min(RowBatch.CAPACITY, matches.size - at);
+            ColumnVector[] out = new ColumnVector[schema.size()];
+            gather(buildLeft ? buildColumns : probeColumns, buildLeft ? matches.build : matches.probe, n, out, 0);
+            gather(buildLeft ? probeColumns : buildColumns, buildLeft ? matches.probe : matches.build, n, out, leftColumns);
+            at += n;
+            return new RowBatch(out, 0, n);
+        }
+
+        private void gather(ColumnVector[] from, int[] positions, int n, ColumnVector[] out, int first) {
+            System.arraycopy(positions, at, slice, 0, n);
+            for (int c = 0; c < from.length; c++) {
+                out[first + c] = ColumnVector.allocate(from[c].type(), n);
+                out[first + c].appendRows(from[c], slice, n);
+            }
+        }
+    }
+
+    // One build table; each probe batch is matched as it arrives
+    private final class Streamed extends Output {
+        private final Iterator<RowBatch> probe;
+        private final int probeKey;
+        private final boolean asDouble;
+        private final Rows build;
+        private final Buckets buckets = new Buckets();
+        private final int[] next;
+        private long[] probeKeys = new long[RowBatch.CAPACITY];
+        private int[] positions = new int[RowBatch.CAPACITY];
+
+        Streamed(Rows build, boolean buildLeft, Iterator<RowBatch> probe, int probeKey, boolean asDouble) {
+            super(buildLeft);
+            this.build = build;
+            this.probe = probe;
+            this.probeKey = probeKey;
+            this.asDouble = asDouble;
+            this.next = new int[build.size];
+            buckets.build(build.keys, 0, build.size, next);
+            buildColumns = build.columns;
+        }
+
+        @Override
+        protected boolean advance() {
+            if (build.size == 0) return false;
+            while (probe.hasNext()) {
+                RowBatch b = probe.next();
+                if (b.size() > probeKeys.length) {
+                    probeKeys = new long[b.size()];
+                    positions = new int[b.size()];
+                }
+                int n = keys(b, probeKey, asDouble, probeKeys, positions);
+                Matches m = new Matches();
+                buckets.probe(probeKeys, positions, 0, n, build.keys, next, null, m);
+                if (m.size == 0) continue;
+                matches = m;
+                probeColumns = columns(b);
+                return true;
+            }
+            return false;
+        }
+
+        private static ColumnVector[] columns(RowBatch b) {
+            ColumnVector[] columns = new ColumnVector[b.columnCount()];
+            for (int c = 0; c < columns.length; c++) columns[c] = b.column(c);
+            return columns;
+        }
+    }
+
+    // Both sides partitioned; tasks over runs of partitions run on the pool, and
+    // their matches are handed out in task order
+    private final class Partitioned extends Output {
+        private final List<ForkJoinTask<Matches>> tasks = new ArrayList<>();
+        private int task;
+
+        Partitioned(Rows build, Partitions built, Rows probe, Partitions probed, boolean buildLeft) {
+            super(buildLeft);
+            buildColumns = build.columns;
+            probeColumns = probe.columns;
+            int[] next = new int[build.size];
+            int count = built.count();
+            int per = Math.max(1, count / (pool.getParallelism() * 4));
+            for (int from = 0; from < count; from += per) {
+                int first = from, last = Math.min(count, from + per);
+                tasks.add(pool.submit(() -> join(built, probed, first, last, next)));
+            }
+        }
+
+        private static Matches join(Partitions build, Partitions probe, int from, int to, int[] next) {
+            Matches m = new Matches();
+            Buckets buckets = new Buckets();
+            for (int p = from; p < to; p++) {
+                int bs = build.start[p], be = build.start[p + 1];
+                int ps = probe.start[p], pe = probe.start[p + 1];
+                if (bs == be || ps == pe) continue;
+                buckets.build(build.keys, bs, be, next);
+                buckets.probe(probe.keys, probe.order, ps, pe, build.keys, next, build.order, m);
+            }
+            return m;
+        }
+
+        @Override
+        protected boolean advance() {
+            while (task < tasks.size()) {
+                Matches m = tasks.get(task).join();
+                tasks.set(task++, null); // let the consumed matches go
+                if (m.size == 0) continue;
+                matches = m;
+                return true;
+            }
+            return false;
+        }
+    }
+}
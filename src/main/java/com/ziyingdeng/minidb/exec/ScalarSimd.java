@@ -0,0 +1,71 @@
+package com.ziyingdeng.minidb.exec;
+
+// Plain loops; the reference the vector kernels are tested against
+final class ScalarSimd implements Simd {
+
+    @Override
+    public long sum(int[] values, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) sum += values[i];
+        return sum;
+    }
+
+    @Override
+    public double sum(double[] values, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) sum += values[i];
+        return sum;
+    }
+
+    @Override
+    public int min(int[] values, int from, int to) {
+        int min = values[from];
+        for (int i = from + 1; i < to; i++) min = Math.min(min, values[i]);
+        return min;
+    }
+
+    @Override
+    public int max(int[] values, int from, int to) {
+        int max = values[from];
+        for (int i = from + 1; i < to; i++) max = Math.max(max, values[i]);
+        return max;
+    }
+
+    @Override
+    public double min(double[] values, int from, int to) {
+        double min = values[from];
+        for (int i = from + 1; i < to; i++) min = Math.min(min, values[i]);
+        return min;
+    }
+
+    @Override
+    public double max(double[] values, int from, int to) {
+        double max = values[from];
+        for (int i = from + 1; i < to; i++) max = Math.max(max, values[i]);
+        return max;
+    }
+
+    @Override
+    public int select(int[] values, int base, int n, int c, int accept, int[] out) {
+        int m = 0;
+        for (int p = 0; p < n; p++) {
+            long d = (long) values[base + p] - c; // sign without branches or overflow
+            int sign = (int) (d >> 63) | (int) (-d >>> 63);
+            out[m] = p;
+            m += (accept >>> (sign + 1)) & 1;
+        }
+        return m;
+    }
+
+    @Override
+    public int select(double[] values, int base, int n, double c, int accept, int[] out) {
+        int m = 0;
+        for (int p = 0; p < n; p++) {
+            double x = values[base + p];
+            int sign = (x > c ? 1 : 0) - (x < c ? 1 : 0);
+            out[m] = p;
+            m += (accept >>> (sign + 1)) & 1;
+        }
+        return m;
+    }
+}
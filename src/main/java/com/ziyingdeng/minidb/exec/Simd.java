@@ -0,0 +1,38 @@
+package com.ziyingdeng.minidb.exec;
+
+// Loops over dense ranges of primitive column arrays: the part of filtering and
+// aggregation that SIMD instructions speed up. INSTANCE is VectorSimd, written
+// with jdk.incubator.vector, when the JVM runs with
+// --add-modules jdk.incubator.vector; otherwise, or with -Dminidb.simd=false,
+// it is ScalarSimd, whose plain loops C2 may still partly vectorize.
+interface Simd {
+    Simd INSTANCE = load();
+
+    long sum(int[] values, int from, int to);
+    double sum(double[] values, int from, int to);
+
+    // Ranges must not be empty
+    int min(int[] values, int from, int to);
+    int max(int[] values, int from, int to);
+    double min(double[] values, int from, int to);
+    double max(double[] values, int from, int to);
+
+    // Positions p in [0, n) where values[base + p] compared with c has an outcome
+    // in `accept` (bit 0 less, bit 1 equal, bit 2 greater), ascending into out;
+    // returns their count. For doubles "equal" means neither less nor greater.
+    int select(int[] values, int base, int n, int c, int accept, int[] out);
+    int select(double[] values, int base, int n, double c, int accept, int[] out);
+
+    private static Simd load() {
+        if (!Boolean.parseBoolean(System.getProperty("minidb.simd", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return new ScalarSimd();
+        }
+        try {
+            // by name, so the incubator classes are only linked when the module is there
+            return (Simd) Class.forName("com.ziyingdeng.minidb.exec.VectorSimd").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarSimd();
+        }
+    }
+}
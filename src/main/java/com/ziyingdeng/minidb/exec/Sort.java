@@ -0,0 +1,455 @@
+package com.ziyingdeng.minidb.exec;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.IntBinaryOperator;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+// ORDER BY one column, ASC or DESC, with an optional LIMIT. NULL sorts after
+// every value, so it comes last in ASC and first in DESC order; STRINGs sort in
+// code point order, FLOATs as Double.compare does. Rows with equal keys keep
+// their input order.
+//   - with a LIMIT of n, a bounded heap keeps the n best rows seen so far: one
+//     pass, O(n) memory, and a row that cannot make the cut is rejected on its
+//     key before any of it is copied
+//   - without one, rows are copied into memory until they exceed the memory
+//     budget; each such run is sorted and spilled to a temporary file, and the
+//     runs are merged at the end. Input that fits is sorted in place. INTEGER,
+//     FLOAT and BOOLEAN keys are sorted as order-preserving longs by an LSD radix
+//     sort, STRING keys by a merge sort over their UTF-8 bytes
+public final class Sort {
+    private final Schema schema;
+    private final int column;
+    private final AST.DataType type;
+    private final boolean descending;
+    private final long limit;
+    private final long budget;
+    private final Path spillDir; // null: the default temporary-file directory
+    private int spilledRuns;
+
+    private Sort(Schema schema, int column, boolean descending, long limit, long budget, Path spillDir) {
+        this.schema = schema;
+        this.column = column;
+        this.type = schema.column(column).type();
+        this.descending = descending;
+        this.limit = limit;
+        this.budget = budget;
+        this.spillDir = spillDir;
+    }
+
+    // A negative limit is none
+    public static Sort compile(Schema schema, int column, boolean descending, long limit) {
+        return compile(schema, column, descending, limit, Spill.DEFAULT_BUDGET, null);
+    }
+
+    public static Sort compile(Schema schema, int column, boolean descending, long limit, long budget, Path spillDir) {
+        if (budget <= 0) throw new IllegalArgumentException("[Expr] Sort memory budget must be positive");
+        return new Sort(schema, column, descending, limit, budget, spillDir);
+    }
+
+    // Runs written to disk by the last apply() (for tests and diagnostics)
+    int spilledRuns() { return spilledRuns; }
+
+    public Iterator<RowBatch> apply(Iterator<RowBatch> batches) {
+        spilledRuns = 0;
+        if (limit == 0) return Collections.emptyIterator();
+        if (limit > 0) return new TopN((int) Math.min(limit, Integer.MAX_VALUE - 8)).apply(batches);
+
+        Buffer buffer = new Buffer();
+        List<Spill> runs = new ArrayList<>();
+        while (batches.hasNext()) {
+            buffer.add(batches.next());
+            if (buffer.bytes() > budget) {
+                runs.add(buffer.spill());
+                buffer = new Buffer();
+            }
+        }
+        if (runs.isEmpty()) return buffer.sorted();
+        if (buffer.size > 0) runs.add(buffer.spill());
+        spilledRuns = runs.size();
+        return new Merge(runs);
+    }
+
+    /* ------------------------------- keys -------------------------------- */
+
+    // A numeric key as a long in the requested order: NULL above every value,
+    // everything inverted for DESC
+    private long key(ColumnVector v, int i) {
+        long k;
+        if (v.isNull(i)) k = Long.MAX_VALUE;
+        else k = switch (type) {
+            case INTEGER -> v.getInt(i);
+            case BOOLEAN -> v.getBoolean(i) ? 1 : 0;
+            default -> {
+                long bits = Double.doubleToLongBits(v.getDouble(i));
+                yield bits ^ ((bits >> 63) & Long.MAX_VALUE); // NaN canonicalizes below Long.MAX_VALUE
+            }
+        };
+        return descending ? ~k : k;
+    }
+
+    // Row i of a against row j of b, on the key column's vectors
+    private int compare(ColumnVector a, int i, ColumnVector b, int j) {
+        boolean na = a.isNull(i), nb = b.isNull(j);
+        int c;
+        if (na || nb) c = Boolean.compare(na, nb);
+        else c = switch (type) {
+            case INTEGER -> Integer.compare(a.getInt(i), b.getInt(j));
+            case FLOAT -> Double.compare(a.getDouble(i), b.getDouble(j));
+            case BOOLEAN -> Boolean.compare(a.getBoolean(i), b.getBoolean(j));
+            case STRING -> a instanceof ColumnVector.Strings x && b instanceof ColumnVector.Strings y
+                    ? Arrays.compareUnsigned(x.bytes(), x.offsets()[i], x.offsets()[i + 1], y.bytes(), y.offsets()[j], y.offsets()[j + 1])
+                    : compare(utf8(a, i), utf8(b, j));
+        };
+        return descending ? -c : c;
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b);
+    }
+
+    private static byte[] utf8(ColumnVector v, int i) {
+        return v.getString(i).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Stable LSD radix sort of keys[0, n), carrying rows along; 8 bits a pass,
+    // and passes where every key has the same byte are skipped
+    static void radixSort(long[] keys, int[] rows, int n) {
+        long[] k = keys, kTo = new long[n];
+        int[] r = rows, rTo = new int[n];
+        int[] count = new int[257];
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(count, 0);
+            for (int j = 0; j < n; j++) count[(int) ((k[j] ^ Long.MIN_VALUE) >>> shift & 0xFF) + 1]++;
+            boolean same = false;
+            for (int b = 1; b <= 256; b++) same |= count[b] == n;
+            if (same) continue;
+            for (int b = 1; b <= 256; b++) count[b] += count[b - 1];
+            for (int j = 0; j < n; j++) {
+                int p = count[(int) ((k[j] ^ Long.MIN_VALUE) >>> shift & 0xFF)]++;
+                kTo[p] = k[j];
+                rTo[p] = r[j];
+            }
+            long[] kt = k; k = kTo; kTo = kt;
+            int[] rt = r; r = rTo; rTo = rt;
+        }
+        if (k != keys) {
+            System.arraycopy(k, 0, keys, 0, n);
+            System.arraycopy(r, 0, rows, 0, n);
+        }
+    }
+
+    // Stable merge sort of rows[0, n) by `order`
+    static void mergeSort(int[] rows, int n, IntBinaryOperator order) {
+        int[] scratch = new int[n];
+        for (int width = 1; width < n; width *= 2) {
+            for (int lo = 0; lo < n; lo += 2 * width) {
+                int mid = Math.min(lo + width, n), hi = Math.min(lo + 2 * width, n);
+                int i = lo, j = mid, o = lo;
+                while (i < mid && j < hi) scratch[o++] = order.applyAsInt(rows[j], rows[i]) < 0 ? rows[j++] : rows[i++];
+                while (i < mid) scratch[o++] = rows[i++];
+                while (j < hi) scratch[o++] = rows[j++];
+            }
+            System.arraycopy(scratch, 0, rows, 0, n);
+        }
+    }
+
+    private ColumnVector[] allocate(int capacity) {
+        ColumnVector[] out = new ColumnVector[schema.size()];
+        for (int c = 0; c < out.length; c++) out[c] = ColumnVector.allocate(schema.column(c).type(), capacity);
+        return out;
+    }
+
+    /* ------------------------------- runs -------------------------------- */
+
+    // Rows copied into chunks of RowBatch.CAPACITY rows; row r is row r & 1023 of
+    // chunk r >>> 10
+    private final class Buffer {
+        private final List<ColumnVector[]> chunks = new ArrayList<>();
+        private final int[] positions = new int[RowBatch.CAPACITY];
+        private long full; // bytes of every chunk but the last
+        int size;
+
+        void add(RowBatch b) {
+            for (int r = 0; r < b.size(); ) {
+                if ((size & (RowBatch.CAPACITY - 1)) == 0) {
+                    if (!chunks.isEmpty()) full += bytes(chunks.get(chunks.size() - 1));
+                    chunks.add(allocate(RowBatch.CAPACITY));
+                }
+                ColumnVector[] chunk = chunks.get(chunks.size() - 1);
+                int n = Math.min(b.size() - r, chunk[0].remaining());
+                for (int k = 0; k < n; k++) positions[k] = b.rowIndex(r + k);
+                for (int c = 0; c < chunk.length; c++) chunk[c].appendRows(b.column(c), positions, n);
+                r += n;
+                size += n;
+            }
+        }
+
+        // Held bytes, with the 16 per row that sorting them takes
+        long bytes() {
+            return full + (chunks.isEmpty() ? 0 : bytes(chunks.get(chunks.size() - 1))) + 16L * size;
+        }
+
+        private static long bytes(ColumnVector[] chunk) {
+            long n = 0;
+            for (ColumnVector v : chunk) n += v.memoryBytes();
+            return n;
+        }
+
+        ColumnVector keyOf(int row) { return chunks.get(row >>> 10)[column]; }
+
+        // Row numbers in sorted order
+        int[] order() {
+            int[] rows = new int[size];
+            for (int r = 0; r < size; r++) rows[r] = r;
+            if (type == AST.DataType.STRING) {
+                mergeSort(rows, size, (x, y) -> compare(keyOf(x), x & 1023, keyOf(y), y & 1023));
+            } else {
+                long[] keys = new long[size];
+                for (int r = 0; r < size; r++) keys[r] = key(keyOf(r), r & 1023);
+                radixSort(keys, rows, size);
+            }
+            return rows;
+        }
+
+        // Rows order[from, from + n) as one block
+        ColumnVector[] gather(int[] order, int from, int n) {
+            ColumnVector[] out = allocate(Math.max(1, n));
+            for (int k = from; k < from + n; k++) {
+                ColumnVector[] chunk = chunks.get(order[k] >>> 10);
+                for (int c = 0; c < out.length; c++) out[c].appendFrom(chunk[c], order[k] & 1023, 1);
+            }
+            return out;
+        }
+
+        Iterator<RowBatch> sorted() {
+            int[] order = order();
+            return new Iterator<>() {
+                int at;
+
+                @Override public boolean hasNext() { return at < size; }
+
+                @Override
+                public RowBatch next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    int n = Math.min(RowBatch.CAPACITY, size - at);
+                    ColumnVector[] block = gather(order, at, n);
+                    at += n;
+                    return new RowBatch(block, 0, n);
+                }
+            };
+        }
+
+        Spill spill() {
+            AST.DataType[] types = new AST.DataType[schema.size()];
+            for (int c = 0; c < types.length; c++) types[c] = schema.column(c).type();
+            Spill run = Spill.create(spillDir, types);
+            int[] order = order();
+            for (int at = 0; at < size; at += RowBatch.CAPACITY) {
+                int n = Math.min(RowBatch.CAPACITY, size - at);
+                run.write(gather(order, at, n), n);
+            }
+            return run;
+        }
+    }
+
+    // k-way merge of sorted runs through a heap of run numbers; equal keys come
+    // out in run order, which is input order
+    private final class Merge implements Iterator<RowBatch> {
+        private final List<Spill> runs;
+        private final ColumnVector[][] blocks;
+        private final int[] at;
+        private final int[] heap;
+        private int live;
+
+        Merge(List<Spill> runs) {
+            this.runs = runs;
+            blocks = new ColumnVector[runs.size()][];
+            at = new int[runs.size()];
+            heap = new int[runs.size()];
+            for (int k = 0; k < runs.size(); k++) {
+                blocks[k] = runs.get(k).read();
+                if (blocks[k] == null) runs.get(k).close();
+                else heap[live++] = k;
+            }
+            for (int i = live / 2 - 1; i >= 0; i--) siftDown(i);
+        }
+
+        @Override public boolean hasNext() { return live > 0; }
+
+        @Override
+        public RowBatch next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            ColumnVector[] out = allocate(RowBatch.CAPACITY);
+            int n = 0;
+            while (n < RowBatch.CAPACITY && live > 0) {
+                int k = heap[0];
+                for (int c = 0; c < out.length; c++) out[c].appendFrom(blocks[k][c], at[k], 1);
+                n++;
+                if (++at[k] == blocks[k][0].size()) {
+                    at[k] = 0;
+                    blocks[k] = runs.get(k).read();
+                    if (blocks[k] == null) {
+                        runs.get(k).close();
+                        heap[0] = heap[--live];
+                    }
+                }
+                if (live > 0) siftDown(0);
+            }
+            return new RowBatch(out, 0, n);
+        }
+
+        private boolean before(int x, int y) {
+            int c = compare(blocks[x][column], at[x], blocks[y][column], at[y]);
+            return c < 0 || (c == 0 && x < y);
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int l = 2 * i + 1, best = i;
+                if (l < live && before(heap[l], heap[best])) best = l;
+                if (l + 1 < live && before(heap[l + 1], heap[best])) best = l + 1;
+                if (best == i) return;
+                int t = heap[i]; heap[i] = heap[best]; heap[best] = t;
+                i = best;
+            }
+        }
+    }
+
+    /* ------------------------------- top-N ------------------------------- */
+
+    // A max-heap of the n best rows by (key, arrival): the root is the row the
+    // next better one replaces. Numeric keys are compared as longs, STRING keys
+    // as UTF-8 bytes (null for NULL).
+    private final class TopN {
+        private final int n;
+        private long[] keys;
+        private byte[][] strings;
+        private long[] seq;
+        private Object[][] rows;
+        private int size;
+        private long arrived;
+
+        TopN(int n) {
+            this.n = n;
+            int capacity = Math.min(n, RowBatch.CAPACITY); // grows up to n
+            if (type == AST.DataType.STRING) strings = new byte[capacity][];
+            else keys = new long[capacity];
+            seq = new long[capacity];
+            rows = new Object[capacity][];
+        }
+
+        Iterator<RowBatch> apply(Iterator<RowBatch> batches) {
+            while (batches.hasNext()) {
+                RowBatch b = batches.next();
+                ColumnVector v = b.column(column);
+                for (int r = 0; r < b.size(); r++, arrived++) {
+                    int i = b.rowIndex(r);
+                    long k = 0;
+                    byte[] s = null;
+                    if (keys != null) {
+                        k = key(v, i);
+                        if (size == n && k >= keys[0]) continue; // an equal key arrived earlier, so it wins
+                    } else {
+                        s = v.isNull(i) ? null : utf8(v, i);
+                        if (size == n && compareStrings(s, strings[0]) >= 0) continue;
+                    }
+                    boolean replace = size == n;
+                    int slot = replace ? 0 : size++;
+                    if (slot == seq.length) grow();
+                    if (keys != null) keys[slot] = k;
+                    else strings[slot] = s;
+                    seq[slot] = arrived;
+                    rows[slot] = new Object[b.columnCount()];
+                    for (int c = 0; c < rows[slot].length; c++) rows[slot][c] = b.get(c, r);
+                    if (replace) siftDown(0);
+                    else siftUp(slot);
+                }
+            }
+            return output();
+        }
+
+        private void grow() {
+            int capacity = (int) Math.min(n, 2L * seq.length);
+            if (keys != null) keys = Arrays.copyOf(keys, capacity);
+            else strings = Arrays.copyOf(strings, capacity);
+            seq = Arrays.copyOf(seq, capacity);
+            rows = Arrays.copyOf(rows, capacity);
+        }
+
+        // Key order with NULL last (first for DESC), then arrival
+        private int compareStrings(byte[] a, byte[] b) {
+            int c = a == null || b == null ? Boolean.compare(a == null, b == null) : compare(a, b);
+            return descending ? -c : c;
+        }
+
+        private int order(int x, int y) {
+            int c = keys != null ? Long.compare(keys[x], keys[y]) : compareStrings(strings[x], strings[y]);
+            return c != 0 ? c : Long.compare(seq[x], seq[y]);
+        }
+
+        private void swap(int x, int y) {
+            if (keys != null) { long t = keys[x]; keys[x] = keys[y]; keys[y] = t; }
+            else { byte[] t = strings[x]; strings[x] = strings[y]; strings[y] = t; }
+            long s = seq[x]; seq[x] = seq[y]; seq[y] = s;
+            Object[] r = rows[x]; rows[x] = rows[y]; rows[y] = r;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0 && order(i, (i - 1) / 2) > 0) {
+                swap(i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int l = 2 * i + 1, worst = i;
+                if (l < size && order(l, worst) > 0) worst = l;
+                if (l + 1 < size && order(l + 1, worst) > 0) worst = l + 1;
+                if (worst == i) return;
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        // Pop the worst row to the back until the heap is empty: ascending order
+        private Iterator<RowBatch> output() {
+            int total = size;
+            while (size > 1) {
+                swap(0, --size);
+                siftDown(0);
+            }
+            List<RowBatch> out = new ArrayList<>();
+            for (int from = 0; from < total; from += RowBatch.CAPACITY) {
+                int count = Math.min(RowBatch.CAPACITY, total - from);
+                ColumnVector[] block = allocate(count);
+                for (int r = from; r < from + count; r++) {
+                    for (int c = 0; c < block.length; c++) append(block[c], rows[r][c]);
+                }
+                out.add(new RowBatch(block, 0, count));
+            }
+            return out.iterator();
+        }
+
+        private static void append(ColumnVector v, Object value) {
+            if (value == null) v.appendNull();
+            else switch (v.type()) {
+                case INTEGER -> v.appendInt((Integer) value);
+                case FLOAT -> v.appendDouble((Double) value);
+                case BOOLEAN -> v.appendBoolean((Boolean) value);
+                case STRING -> v.appendString((String) value);
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.ziyingdeng.minidb.exec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.StorageException;
+
+// A temporary file of column blocks that an operator writes once and then reads
+// back in order, for data that outgrew its memory budget. Little-endian blocks:
+//   [i32 rows][i32 body bytes]
+//   body, per column: [null bitmap words][values]
+//     INTEGER i32, FLOAT f64, BOOLEAN u8, STRING (rows + 1) i32 offsets + UTF-8
+// The file is opened DELETE_ON_CLOSE, so it is gone once the spill is closed, or
+// once the process exits if a reader is abandoned.
+final class Spill implements Closeable {
+    // Bytes an ORDER BY or GROUP BY may hold before it spills
+    static final long DEFAULT_BUDGET = Long.getLong("minidb.workMemory", 64L << 20);
+
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private final AST.DataType[] types;
+    private final FileChannel channel;
+    private ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ORDER);
+    private long written;
+    private long read;
+
+    private Spill(AST.DataType[] types, FileChannel channel) {
+        this.types = types;
+        this.channel = channel;
+    }
+
+    // dir == null: the default temporary-file directory
+    static Spill create(Path dir, AST.DataType[] types) {
+        try {
+            Path file = dir == null ? Files.createTempFile("minidb-spill", ".tmp") : Files.createTempFile(dir, "minidb-spill", ".tmp");
+            return new Spill(types, FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE));
+        } catch (IOException e) {
+            throw new StorageException("[Storage] Cannot create a spill file: " + e.getMessage(), e);
+        }
+    }
+
+    long bytes() { return written; }
+
+    // Append rows [0, rows) of the vectors as one block
+    void write(ColumnVector[] block, int rows) {
+        int words = (rows + 63) >>> 6;
+        long size = 8;
+        for (int c = 0; c < types.length; c++) {
+            size += words * 8L + switch (types[c]) {
+                case INTEGER -> rows * 4L;
+                case FLOAT -> rows * 8L;
+                case BOOLEAN -> rows;
+                case STRING -> (rows + 1) * 4L + utf8Length(block[c], rows);
+            };
+        }
+        if (size > Integer.MAX_VALUE - 8) throw new StorageException("[Storage] Spill block of " + size + " bytes");
+        ByteBuffer b = room((int) size);
+        b.putInt(rows).putInt((int) size - 8);
+        for (int c = 0; c < types.length; c++) {
+            ColumnVector v = block[c];
+            for (int w = 0; w < words; w++) {
+                long word = v.nullBitmap()[w];
+                if (w == words - 1 && (rows & 63) != 0) word &= -1L >>> (64 - (rows & 63));
+                b.putLong(word);
+            }
+            switch (types[c]) {
+                case INTEGER -> {
+                    if (v instanceof ColumnVector.Ints ints) {
+                        b.asIntBuffer().put(ints.array(), 0, rows);
+                        b.position(b.position() + rows * 4);
+                    } else {
+                        for (int i = 0; i < rows; i++) b.putInt(v.isNull(i) ? 0 : v.getInt(i));
+                    }
+                }
+                case FLOAT -> {
+                    if (v instanceof ColumnVector.Floats floats) {
+                        b.asDoubleBuffer().put(floats.array(), 0, rows);
+                        b.position(b.position() + rows * 8);
+                    } else {
+                        for (int i = 0; i < rows; i++) b.putDouble(v.isNull(i) ? 0 : v.getDouble(i));
+                    }
+                }
+                case BOOLEAN -> {
+                    for (int i = 0; i < rows; i++) b.put((byte) (!v.isNull(i) && v.getBoolean(i) ? 1 : 0));
+                }
+                case STRING -> putStrings(b, v, rows);
+            }
+        }
+        b.flip();
+        try {
+            while (b.hasRemaining()) written += channel.write(b, written);
+        } catch (IOException e) {
+            throw new StorageException("[Storage] Cannot write a spill file: " + e.getMessage(), e);
+        }
+    }
+
+    // The next block as new vectors, or null after the last one
+    ColumnVector[] read() {
+        if (read == written) return null;
+        try {
+            ByteBuffer header = ByteBuffer.allocate(8).order(ORDER);
+            fill(header);
+            int rows = header.getInt(0), size = header.getInt(4);
+            ByteBuffer b = room(size);
+            b.limit(size);
+            fill(b);
+            ColumnVector[] block = new ColumnVector[types.length];
+            int words = (rows + 63) >>> 6;
+            for (int c = 0; c < types.length; c++) {
+                long[] nulls = new long[words];
+                for (int w = 0; w < words; w++) nulls[w] = b.getLong();
+                ColumnVector v = ColumnVector.allocate(types[c], Math.max(1, rows));
+                switch (types[c]) {
+                    case INTEGER -> ((ColumnVector.Ints) v).appendInts(slice(b, rows * 4).asIntBuffer(), 0, rows);
+                    case FLOAT -> ((ColumnVector.Floats) v).appendDoubles(slice(b, rows * 8).asDoubleBuffer(), 0, rows);
+                    case BOOLEAN -> ((ColumnVector.Bools) v).appendBooleans(slice(b, rows), 0, rows);
+                    case STRING -> {
+                        IntBuffer offsets = slice(b, (rows + 1) * 4).asIntBuffer();
+                        ((ColumnVector.Strings) v).appendUtf8(slice(b, offsets.get(rows)), offsets, 0, rows);
+                    }
+                }
+                for (int w = 0; w < words; w++) {
+                    for (long word = nulls[w]; word != 0; word &= word - 1) v.setNull(w * 64 + Long.numberOfTrailingZeros(word));
+                }
+                block[c] = v;
+            }
+            return block;
+        } catch (IOException e) {
+            throw new StorageException("[Storage] Cannot read a spill file: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new StorageException("[Storage] Cannot close a spill file: " + e.getMessage(), e);
+        }
+    }
+
+    private ByteBuffer room(int size) {
+        if (buf.capacity() < size) buf = ByteBuffer.allocate(Math.max(size, buf.capacity() * 2)).order(ORDER);
+        return buf.clear();
+    }
+
+    private void fill(ByteBuffer b) throws IOException {
+        while (b.hasRemaining()) {
+            int n = channel.read(b, read);
+            if (n < 0) throw new IOException("unexpected end of file");
+            read += n;
+        }
+        b.flip();
+    }
+
+    // The next n bytes of b, which it then skips
+    private static ByteBuffer slice(ByteBuffer b, int n) {
+        ByteBuffer s = b.slice(b.position(), n).order(ORDER);
+        b.position(b.position() + n);
+        return s;
+    }
+
+    private static long utf8Length(ColumnVector v, int rows) {
+        if (v instanceof ColumnVector.Strings s) return s.offsets()[rows] - s.offsets()[0];
+        long n = 0;
+        for (int i = 0; i < rows; i++) {
+            if (!v.isNull(i)) n += v.getString(i).getBytes(StandardCharsets.UTF_8).length;
+        }
+        return n;
+    }
+
+    private static void putStrings(ByteBuffer b, ColumnVector v, int rows) {
+        if (v instanceof ColumnVector.Strings s) {
+            int base = s.offsets()[0];
+            for (int i = 0; i <= rows; i++) b.putInt(s.offsets()[i] - base);
+            b.put(s.bytes(), base, s.offsets()[rows] - base);
+            return;
+        }
+        byte[][] utf8 = new byte[rows][];
+        int at = 0;
+        b.putInt(0);
+        for (int i = 0; i < rows; i++) {
+            utf8[i] = v.isNull(i) ? new byte[0] : v.getString(i).getBytes(StandardCharsets.UTF_8);
+            b.putInt(at += utf8[i].length);
+        }
+        for (byte[] s : utf8) b.put(s);
+    }
+}
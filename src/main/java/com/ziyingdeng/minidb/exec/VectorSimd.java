@@ -0,0 +1,143 @@
+package com.ziyingdeng.minidb.exec;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Simd on the preferred vector shape of the CPU (512 bits with AVX-512). Whole
+// vectors are handled first and the remaining tail with ScalarSimd's loops.
+// Double sums add lanes in a different order than a scalar loop, so they may
+// differ from it in the last bits.
+final class VectorSimd implements Simd {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    // Values an int sum adds in int lanes before moving the lanes into its long total
+    private static final int SUM_BLOCK = 1 << 15;
+
+    private final ScalarSimd tail = new ScalarSimd();
+
+    // Each value is split into its signed high and unsigned low 16 bits, which are
+    // summed in full-width int lanes. SUM_BLOCK values add at most 2^31 - 2^15 to
+    // the low halves and 2^30 in magnitude to the high halves, across all lanes, so
+    // a block is reduced exactly in int and widened once.
+    @Override
+    public long sum(int[] values, int from, int to) {
+        long sum = 0;
+        int i = from;
+        for (int end = from + INTS.loopBound(to - from); i < end; ) {
+            IntVector high = IntVector.zero(INTS), low = IntVector.zero(INTS);
+            for (int block = i + Math.min(end - i, SUM_BLOCK); i < block; i += INTS.length()) {
+                IntVector v = IntVector.fromArray(INTS, values, i);
+                high = high.add(v.lanewise(VectorOperators.ASHR, 16));
+                low = low.add(v.and(0xFFFF));
+            }
+            sum += ((long) high.reduceLanes(VectorOperators.ADD) << 16) + low.reduceLanes(VectorOperators.ADD);
+        }
+        return sum + tail.sum(values, i, to);
+    }
+
+    @Override
+    public double sum(double[] values, int from, int to) {
+        DoubleVector acc = DoubleVector.zero(DOUBLES);
+        int i = from;
+        for (int end = from + DOUBLES.loopBound(to - from); i < end; i += DOUBLES.length()) {
+            acc = acc.add(DoubleVector.fromArray(DOUBLES, values, i));
+        }
+        return acc.reduceLanes(VectorOperators.ADD) + tail.sum(values, i, to);
+    }
+
+    @Override
+    public int min(int[] values, int from, int to) {
+        int end = from + INTS.loopBound(to - from);
+        if (end == from) return tail.min(values, from, to);
+        IntVector acc = IntVector.fromArray(INTS, values, from);
+        for (int i = from + INTS.length(); i < end; i += INTS.length()) acc = acc.min(IntVector.fromArray(INTS, values, i));
+        int min = acc.reduceLanes(VectorOperators.MIN);
+        return end == to ? min : Math.min(min, tail.min(values, end, to));
+    }
+
+    @Override
+    public int max(int[] values, int from, int to) {
+        int end = from + INTS.loopBound(to - from);
+        if (end == from) return tail.max(values, from, to);
+        IntVector acc = IntVector.fromArray(INTS, values, from);
+        for (int i = from + INTS.length(); i < end; i += INTS.length()) acc = acc.max(IntVector.fromArray(INTS, values, i));
+        int max = acc.reduceLanes(VectorOperators.MAX);
+        return end == to ? max : Math.max(max, tail.max(values, end, to));
+    }
+
+    @Override
+    public double min(double[] values, int from, int to) {
+        int end = from + DOUBLES.loopBound(to - from);
+        if (end == from) return tail.min(values, from, to);
+        DoubleVector acc = DoubleVector.fromArray(DOUBLES, values, from);
+        for (int i = from + DOUBLES.length(); i < end; i += DOUBLES.length()) acc = acc.min(DoubleVector.fromArray(DOUBLES, values, i));
+        double min = acc.reduceLanes(VectorOperators.MIN);
+        return end == to ? min : Math.min(min, tail.min(values, end, to));
+    }
+
+    @Override
+    public double max(double[] values, int from, int to) {
+        int end = from + DOUBLES.loopBound(to - from);
+        if (end == from) return tail.max(values, from, to);
+        DoubleVector acc = DoubleVector.fromArray(DOUBLES, values, from);
+        for (int i = from + DOUBLES.length(); i < end; i += DOUBLES.length()) acc = acc.max(DoubleVector.fromArray(DOUBLES, values, i));
+        double max = acc.reduceLanes(VectorOperators.MAX);
+        return end == to ? max : Math.max(max, tail.max(values, end, to));
+    }
+
+    // Compare a vector at a time, then turn the mask's set bits into positions
+    @Override
+    public int select(int[] values, int base, int n, int c, int accept, int[] out) {
+        boolean lt = (accept & 0b001) != 0, eq = (accept & 0b010) != 0, gt = (accept & 0b100) != 0;
+        int m = 0, p = 0;
+        for (int end = INTS.loopBound(n); p < end; p += INTS.length()) {
+            IntVector v = IntVector.fromArray(INTS, values, base + p);
+            VectorMask<Integer> less = v.lt(c), greater = v.compare(VectorOperators.GT, c);
+            VectorMask<Integer> keep = INTS.maskAll(false);
+            if (lt) keep = keep.or(less);
+            if (gt) keep = keep.or(greater);
+            if (eq) keep = keep.or(less.or(greater).not());
+            m = positions(keep.toLong(), p, out, m);
+        }
+        for (; p < n; p++) {
+            long d = (long) values[base + p] - c;
+            int sign = (int) (d >> 63) | (int) (-d >>> 63);
+            out[m] = p;
+            m += (accept >>> (sign + 1)) & 1;
+        }
+        return m;
+    }
+
+    @Override
+    public int select(double[] values, int base, int n, double c, int accept, int[] out) {
+        boolean lt = (accept & 0b001) != 0, eq = (accept & 0b010) != 0, gt = (accept & 0b100) != 0;
+        int m = 0, p = 0;
+        for (int end = DOUBLES.loopBound(n); p < end; p += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, values, base + p);
+            VectorMask<Double> less = v.lt(c), greater = v.compare(VectorOperators.GT, c);
+            VectorMask<Double> keep = DOUBLES.maskAll(false);
+            if (lt) keep = keep.or(less);
+            if (gt) keep = keep.or(greater);
+            if (eq) keep = keep.or(less.or(greater).not()); // NaN counts as equal, as in the scalar loop
+            m = positions(keep.toLong(), p, out, m);
+        }
+        for (; p < n; p++) {
+            double x = values[base + p];
+            int sign = (x > c ? 1 : 0) - (x < c ? 1 : 0);
+            out[m] = p;
+            m += (accept >>> (sign + 1)) & 1;
+        }
+        return m;
+    }
+
+    private static int positions(long bits, int p, int[] out, int m) {
+        while (bits != 0) {
+            out[m++] = p + Long.numberOfTrailingZeros(bits);
+            bits &= bits - 1;
+        }
+        return m;
+    }
+}
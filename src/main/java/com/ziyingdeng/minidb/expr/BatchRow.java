@@ -0,0 +1,29 @@
+package com.ziyingdeng.minidb.expr;
+
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.RowBatch;
+
+// RowAccessor cursor over the rows of a RowBatch; reused across rows and batches
+public final class BatchRow implements RowAccessor {
+    private ColumnVector[] columns = new ColumnVector[0];
+    private int offset; // vector index of the current row
+
+    public BatchRow batch(RowBatch batch) {
+        if (columns.length != batch.columnCount()) columns = new ColumnVector[batch.columnCount()];
+        for (int c = 0; c < columns.length; c++) columns[c] = batch.column(c);
+        offset = batch.start();
+        return this;
+    }
+
+    // Move to row `row` of the vectors (not of the batch: add batch.start())
+    public BatchRow at(int row) {
+        offset = row;
+        return this;
+    }
+
+    @Override public boolean isNull(int column) { return columns[column].isNull(offset); }
+    @Override public int getInt(int column) { return columns[column].getInt(offset); }
+    @Override public double getDouble(int column) { return columns[column].getDouble(offset); }
+    @Override public boolean getBoolean(int column) { return columns[column].getBoolean(offset); }
+    @Override public String getString(int column) { return columns[column].getString(offset); }
+}
@@ -0,0 +1,241 @@
+package com.ziyingdeng.minidb.expr;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Minimal class file writer for generated expression classes: one public final
+// class with methods, no fields. Class file version 49 (Java 5) so branches need
+// no StackMapTable; the verifier infers the frames.
+final class ClassBuilder {
+    static final int V1_5 = 49;
+
+    // opcodes
+    static final int ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11, LDC_W = 0x13, LDC2_W = 0x14;
+    static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b;
+    static final int DADD = 0x63, DSUB = 0x67, DMUL = 0x6b, DNEG = 0x77, IXOR = 0x82, I2D = 0x87;
+    static final int DCMPL = 0x97;
+    static final int IFEQ = 0x99, IFNE = 0x9a, IFLT = 0x9b, IFGE = 0x9c, IFGT = 0x9d, IFLE = 0x9e;
+    static final int IF_ICMPEQ = 0x9f, IF_ICMPNE = 0xa0, IF_ICMPLT = 0xa1, IF_ICMPGE = 0xa2, IF_ICMPGT = 0xa3, IF_ICMPLE = 0xa4;
+    static final int GOTO = 0xa7;
+    static final int IRETURN = 0xac, DRETURN = 0xaf, ARETURN = 0xb0, RETURN = 0xb1;
+    static final int GETSTATIC = 0xb2, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8, INVOKEINTERFACE = 0xb9;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int poolCount = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final List<Integer> interfaces = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+
+    ClassBuilder(String name, String superName, String... interfaceNames) {
+        thisClass = classRef(name);
+        superClass = classRef(superName);
+        for (String i : interfaceNames) interfaces.add(classRef(i));
+    }
+
+    /* ----------------------------- constant pool ----------------------------- */
+
+    int utf8(String s) {
+        return constant("U" + s, () -> { poolOut.writeByte(1); poolOut.writeUTF(s); }, 1);
+    }
+
+    int classRef(String internalName) {
+        int name = utf8(internalName);
+        return constant("C" + internalName, () -> { poolOut.writeByte(7); poolOut.writeShort(name); }, 1);
+    }
+
+    int string(String v) {
+        int value = utf8(v);
+        return constant("S" + v, () -> { poolOut.writeByte(8); poolOut.writeShort(value); }, 1);
+    }
+
+    int integer(int v) {
+        return constant("I" + v, () -> { poolOut.writeByte(3); poolOut.writeInt(v); }, 1);
+    }
+
+    int doubleConst(double v) {
+        long bits = Double.doubleToRawLongBits(v);
+        return constant("D" + bits, () -> { poolOut.writeByte(6); poolOut.writeLong(bits); }, 2);
+    }
+
+    int fieldRef(String owner, String name, String desc) { return memberRef(9, owner, name, desc); }
+    int methodRef(String owner, String name, String desc) { return memberRef(10, owner, name, desc); }
+    int interfaceMethodRef(String owner, String name, String desc) { return memberRef(11, owner, name, desc); }
+
+    private int memberRef(int tag, String owner, String name, String desc) {
+        int cls = classRef(owner);
+        int n = utf8(name);
+        int d = utf8(desc);
+        int nat = constant("N" + name + ' ' + desc, () -> { poolOut.writeByte(12); poolOut.writeShort(n); poolOut.writeShort(d); }, 1);
+        return constant(tag + owner + '.' + name + desc, () -> { poolOut.writeByte(tag); poolOut.writeShort(cls); poolOut.writeShort(nat); }, 1);
+    }
+
+    private interface Entry { void write() throws IOException; }
+
+    private int constant(String key, Entry entry, int slots) {
+        Integer index = constants.get(key);
+        if (index != null) return index;
+        try {
+            entry.write();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        constants.put(key, poolCount);
+        poolCount += slots;
+        return poolCount - slots;
+    }
+
+    /* -------------------------------- methods -------------------------------- */
+
+    // Bytecode of one method body; tracks the operand stack depth for max_stack
+    final class Code {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private int stack;
+        private int maxStack;
+
+        Code op(int opcode, int stackDelta) {
+            bytes.write(opcode);
+            return adjust(stackDelta);
+        }
+
+        Code pushInt(int v) {
+            if (v >= -1 && v <= 5) return op(ICONST_0 + v, 1);
+            if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) { op(BIPUSH, 1); bytes.write(v); return this; }
+            if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) { op(SIPUSH, 1); u2(v); return this; }
+            op(LDC_W, 1);
+            u2(integer(v));
+            return this;
+        }
+
+        Code pushString(String v) {
+            op(LDC_W, 1);
+            u2(string(v));
+            return this;
+        }
+
+        Code pushDouble(double v) {
+            op(LDC2_W, 2);
+            u2(doubleConst(v));
+            return this;
+        }
+
+        Code getStatic(String owner, String name, String desc, int size) {
+            op(GETSTATIC, size);
+            u2(fieldRef(owner, name, desc));
+            return this;
+        }
+
+        Code invokeStatic(String owner, String name, String desc, int stackDelta) {
+            op(INVOKESTATIC, stackDelta);
+            u2(methodRef(owner, name, desc));
+            return this;
+        }
+
+        // argSlots excludes the receiver
+        Code invokeInterface(String owner, String name, String desc, int argSlots, int stackDelta) {
+            op(INVOKEINTERFACE, stackDelta);
+            u2(interfaceMethodRef(owner, name, desc));
+            bytes.write(argSlots + 1);
+            bytes.write(0);
+            return this;
+        }
+
+        Code invokeSpecial(String owner, String name, String desc, int stackDelta) {
+            op(INVOKESPECIAL, stackDelta);
+            u2(methodRef(owner, name, desc));
+            return this;
+        }
+
+        // Emit a branch with a placeholder offset; returns its position for patch()
+        int branch(int opcode, int stackDelta) {
+            int at = bytes.size();
+            op(opcode, stackDelta);
+            u2(0);
+            return at;
+        }
+
+        // Point the branch at `at` to the current position
+        void patch(int at) {
+            byte[] b = bytes.toByteArray();
+            int offset = b.length - at;
+            b[at + 1] = (byte) (offset >> 8);
+            b[at + 2] = (byte) offset;
+            bytes.reset();
+            bytes.writeBytes(b);
+        }
+
+        // Operand stack depth at the current position
+        int depth() { return stack; }
+
+        // Set the depth at a jump target that follows an unconditional jump
+        void depth(int d) { stack = d; }
+
+        private Code adjust(int delta) {
+            stack += delta;
+            maxStack = Math.max(maxStack, stack);
+            return this;
+        }
+
+        private void u2(int v) {
+            bytes.write(v >> 8);
+            bytes.write(v);
+        }
+    }
+
+    Code code() { return new Code(); }
+
+    void method(int access, String name, String desc, int maxLocals, Code code) {
+        byte[] body = code.bytes.toByteArray();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DataOutputStream m = new DataOutputStream(out)) {
+            m.writeShort(access);
+            m.writeShort(utf8(name));
+            m.writeShort(utf8(desc));
+            m.writeShort(1);                   // attributes: Code
+            m.writeShort(utf8("Code"));
+            m.writeInt(12 + body.length);
+            m.writeShort(code.maxStack);
+            m.writeShort(maxLocals);
+            m.writeInt(body.length);
+            m.write(body);
+            m.writeShort(0);                   // exception table
+            m.writeShort(0);                   // attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        methods.add(out.toByteArray());
+    }
+
+    byte[] toByteArray() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (DataOutputStream c = new DataOutputStream(out)) {
+            c.writeInt(0xCAFEBABE);
+            c.writeShort(0);
+            c.writeShort(V1_5);
+            c.writeShort(poolCount);
+            poolOut.flush();
+            c.write(pool.toByteArray());
+            c.writeShort(0x0001 | 0x0010 | 0x0020); // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+            c.writeShort(thisClass);
+            c.writeShort(superClass);
+            c.writeShort(interfaces.size());
+            for (int i : interfaces) c.writeShort(i);
+            c.writeShort(0);                      // fields
+            c.writeShort(methods.size());
+            for (byte[] m : methods) c.write(m);
+            c.writeShort(0);                      // attributes
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,36 @@
+package com.ziyingdeng.minidb.expr;
+
+import com.ziyingdeng.minidb.parser.AST;
+
+// A type-checked expression bound to a schema, evaluated one row at a time.
+// Call isNull(row) first; the typed eval method is only meaningful when it is false.
+public interface Evaluator {
+
+    // Result type; null when the expression is NULL for every row
+    AST.DataType type();
+
+    boolean isNull(RowAccessor row);
+
+    default int evalInt(RowAccessor row) {
+        throw new ExpressionException("[Expr] Expression of type " + type() + " is not INTEGER");
+    }
+
+    // FLOAT, or INTEGER widened to double
+    default double evalDouble(RowAccessor row) {
+        throw new ExpressionException("[Expr] Expression of type " + type() + " is not numeric");
+    }
+
+    default boolean evalBoolean(RowAccessor row) {
+        throw new ExpressionException("[Expr] Expression of type " + type() + " is not BOOLEAN");
+    }
+
+    // WHERE semantics: the row qualifies only if the value is TRUE, not FALSE or NULL
+    default boolean test(RowAccessor row) {
+        return !isNull(row) && evalBoolean(row);
+    }
+
+    // The value is FALSE (not TRUE or NULL); what NOT needs to qualify a row
+    default boolean testFalse(RowAccessor row) {
+        return !isNull(row) && !evalBoolean(row);
+    }
+}
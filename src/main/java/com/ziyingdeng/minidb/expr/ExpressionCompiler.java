@@ -0,0 +1,355 @@
+package com.ziyingdeng.minidb.expr;
+
+import static com.ziyingdeng.minidb.expr.ClassBuilder.*;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.ConstantFolder;
+import com.ziyingdeng.minidb.storage.Schema;
+
+// Compiles an expression into a hidden class implementing Evaluator. The generated
+// code reads columns through RowAccessor's primitive getters and keeps every
+// intermediate value in int / double / boolean on the operand stack, so nothing is
+// boxed. For `a * 2 + c` over (a INT, c FLOAT) the class amounts to:
+//
+//   DataType type()            { return FLOAT; }
+//   boolean isNull(row)        { return row.isNull(0) || row.isNull(1); } // nullable columns only
+//   double evalDouble(row)     { return (double) Ops.mul(row.getInt(0), 2) + row.getDouble(1); }
+//
+// Hidden classes are unloaded with their last Evaluator, so compiling per query is fine.
+public final class ExpressionCompiler {
+    private ExpressionCompiler() {}
+
+    private static final String EVALUATOR = "com/ziyingdeng/minidb/expr/Evaluator";
+    private static final String ROW = "com/ziyingdeng/minidb/expr/RowAccessor";
+    private static final String OPS = "com/ziyingdeng/minidb/expr/Ops";
+    private static final String FOLDER = "com/ziyingdeng/minidb/parser/ConstantFolder";
+    private static final String DATA_TYPE = "com/ziyingdeng/minidb/parser/AST$DataType";
+    private static final String ROW_ARG = "(L" + ROW + ";)";
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    // False when an AND / OR sits under a comparison or arithmetic operator: there it
+    // can be FALSE with a NULL operand, which the NULL-propagating leaves cannot express.
+    // Callers use Interpreter.bind for such expressions instead.
+    public static boolean canCompile(AST.Expression expr) {
+        return compilable(ConstantFolder.fold(expr));
+    }
+
+    // Mirrors truth(): logical operators are walked, every leaf is emitted
+    private static boolean compilable(AST.Expression e) {
+        if (!Typing.isLogical(e)) return !hasLogical(e);
+        return switch (e) {
+            case AST.Unary u -> compilable(u.operand());
+            case AST.Binary b -> compilable(b.left()) && compilable(b.right());
+            default -> true;
+        };
+    }
+
+    private static boolean hasLogical(AST.Expression e) {
+        return switch (e) {
+            case AST.Unary u -> hasLogical(u.operand());
+            case AST.Binary b -> b.op().isLogical() || hasLogical(b.left()) || hasLogical(b.right());
+            default -> false;
+        };
+    }
+
+    public static Evaluator compile(AST.Expression expr, Schema schema) {
+        AST.Expression folded = ConstantFolder.fold(expr);
+        if (!compilable(folded)) {
+            throw new ExpressionException("[Expr] AND / OR inside another operator is not compiled: " + expr);
+        }
+        AST.DataType type = Typing.typeOf(folded, schema);
+        if (type == AST.DataType.STRING) {
+            throw new ExpressionException("[Expr] STRING expressions are not compiled");
+        }
+
+        ClassBuilder cb = new ClassBuilder("com/ziyingdeng/minidb/expr/CompiledExpression", "java/lang/Object", EVALUATOR);
+
+        ClassBuilder.Code init = cb.code();
+        init.op(ALOAD_0, 1).invokeSpecial("java/lang/Object", "<init>", "()V", -1).op(RETURN, 0);
+        cb.method(0x0001, "<init>", "()V", 1, init);
+
+        ClassBuilder.Code typeCode = cb.code();
+        if (type == null) typeCode.op(0x01, 1); // aconst_null
+        else typeCode.getStatic(DATA_TYPE, type.name(), "L" + DATA_TYPE + ";", 1);
+        typeCode.op(ARETURN, -1);
+        cb.method(0x0001, "type", "()L" + DATA_TYPE + ";", 1, typeCode);
+
+        if (Typing.isLogical(folded)) {
+            // three-valued: NULL is "neither TRUE nor FALSE"
+            ClassBuilder.Code isNull = cb.code();
+            truth(isNull, folded, schema, true);
+            int notNull1 = isNull.branch(IFNE, -1);
+            truth(isNull, folded, schema, false);
+            int notNull2 = isNull.branch(IFNE, -1);
+            isNull.pushInt(1).op(IRETURN, -1);
+            isNull.patch(notNull1);
+            isNull.patch(notNull2);
+            isNull.pushInt(0).op(IRETURN, -1);
+            cb.method(0x0001, "isNull", ROW_ARG + "Z", 2, isNull);
+
+            ClassBuilder.Code eval = cb.code();
+            truth(eval, folded, schema, true);
+            cb.method(0x0001, "evalBoolean", ROW_ARG + "Z", 2, eval.op(IRETURN, -1));
+            ClassBuilder.Code test = cb.code();
+            truth(test, folded, schema, true);
+            cb.method(0x0001, "test", ROW_ARG + "Z", 2, test.op(IRETURN, -1));
+            return load(cb, expr);
+        }
+
+        cb.method(0x0001, "isNull", ROW_ARG + "Z", 2, nullCheck(cb, folded, schema));
+
+        // a NULL literal makes every row NULL: isNull() is constant and no value method is needed
+        boolean values = !Typing.hasNullLiteral(folded);
+        if (values && type == AST.DataType.INTEGER) {
+            cb.method(0x0001, "evalInt", ROW_ARG + "I", 2, body(cb, folded, schema, 'I').op(IRETURN, -1));
+        }
+        if (values && (type == AST.DataType.INTEGER || type == AST.DataType.FLOAT)) {
+            cb.method(0x0001, "evalDouble", ROW_ARG + "D", 2, body(cb, folded, schema, 'D').op(DRETURN, -2));
+        }
+        if (values && type == AST.DataType.BOOLEAN) {
+            cb.method(0x0001, "evalBoolean", ROW_ARG + "Z", 2, body(cb, folded, schema, 'Z').op(IRETURN, -1));
+            ClassBuilder.Code test = cb.code();
+            truth(test, folded, schema, true);
+            cb.method(0x0001, "test", ROW_ARG + "Z", 2, test.op(IRETURN, -1));
+        }
+        return load(cb, expr);
+    }
+
+    private static Evaluator load(ClassBuilder cb, AST.Expression expr) {
+        try {
+            MethodHandles.Lookup hidden = LOOKUP.defineHiddenClass(cb.toByteArray(), true);
+            return (Evaluator) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("[Expr] Failed to load generated class for " + expr, e);
+        }
+    }
+
+    // isNull: true for a NULL literal, otherwise an OR over the nullable columns read
+    private static ClassBuilder.Code nullCheck(ClassBuilder cb, AST.Expression e, Schema schema) {
+        ClassBuilder.Code code = cb.code();
+        if (Typing.hasNullLiteral(e)) return code.pushInt(1).op(IRETURN, -1);
+
+        Set<Integer> columns = new TreeSet<>();
+        collectNullable(e, schema, columns);
+        int[] jumps = new int[columns.size()];
+        int k = 0;
+        for (int c : columns) {
+            code.op(ALOAD_1, 1).pushInt(c).invokeInterface(ROW, "isNull", "(I)Z", 1, -1);
+            jumps[k++] = code.branch(IFNE, -1);
+        }
+        code.pushInt(0).op(IRETURN, -1);
+        if (jumps.length > 0) {
+            for (int at : jumps) code.patch(at);
+            code.pushInt(1).op(IRETURN, -1);
+        }
+        return code;
+    }
+
+    private static void collectNullable(AST.Expression e, Schema schema, Set<Integer> out) {
+        switch (e) {
+            case AST.ColumnRef ref -> {
+                int c = Typing.column(schema, ref);
+                if (schema.column(c).nullable()) out.add(c);
+            }
+            case AST.Unary u -> collectNullable(u.operand(), schema, out);
+            case AST.Binary b -> {
+                collectNullable(b.left(), schema, out);
+                collectNullable(b.right(), schema, out);
+            }
+            default -> {}
+        }
+    }
+
+    // Push 1 if `e` evaluates to `want` (and is not NULL), else 0. AND / OR short-circuit.
+    private static void truth(ClassBuilder.Code code, AST.Expression e, Schema schema, boolean want) {
+        if (e instanceof AST.Unary u && Typing.isLogical(e)) {
+            truth(code, u.operand(), schema, !want); // NOT
+            return;
+        }
+        if (e instanceof AST.Binary b && b.op().isLogical()) {
+            // AND wants both sides TRUE but either side FALSE; OR the other way round
+            boolean either = (b.op() == AST.BinaryOp.OR) == want;
+            int depth = code.depth();
+            truth(code, b.left(), schema, want);
+            int decided = code.branch(either ? IFNE : IFEQ, -1);
+            truth(code, b.right(), schema, want);
+            int end = code.branch(GOTO, 0);
+            code.patch(decided);
+            code.depth(depth);
+            code.pushInt(either ? 1 : 0);
+            code.patch(end);
+            return;
+        }
+        // NULL-propagating leaf: FALSE when NULL, else the (possibly negated) value
+        if (Typing.hasNullLiteral(e)) {
+            code.pushInt(0);
+            return;
+        }
+        Set<Integer> columns = new TreeSet<>();
+        collectNullable(e, schema, columns);
+        int depth = code.depth();
+        int[] toNull = new int[columns.size()];
+        int k = 0;
+        for (int c : columns) {
+            code.op(ALOAD_1, 1).pushInt(c).invokeInterface(ROW, "isNull", "(I)Z", 1, -1);
+            toNull[k++] = code.branch(IFNE, -1);
+        }
+        emit(code, e, schema, 'Z');
+        if (!want) code.pushInt(1).op(IXOR, -1);
+        if (toNull.length == 0) return;
+        int end = code.branch(GOTO, 0);
+        for (int at : toNull) code.patch(at);
+        code.depth(depth);
+        code.pushInt(0);
+        code.patch(end);
+    }
+
+    private static ClassBuilder.Code body(ClassBuilder cb, AST.Expression e, Schema schema, char as) {
+        ClassBuilder.Code code = cb.code();
+        emit(code, e, schema, as);
+        return code;
+    }
+
+    // Push the value of `e` as `as`: 'I' int, 'D' double or 'Z' boolean.
+    // Called only for expressions without NULL literals that type-check as `as`
+    // (or as INTEGER when `as` is 'D', which is widened).
+    private static void emit(ClassBuilder.Code code, AST.Expression e, Schema schema, char as) {
+        switch (e) {
+            case AST.Const c -> {
+                switch (c.kind) {
+                    case INTEGER -> {
+                        if (as == 'D') code.pushDouble((Integer) c.value);
+                        else code.pushInt((Integer) c.value);
+                    }
+                    case FLOAT -> code.pushDouble((Double) c.value);
+                    case BOOLEAN -> code.pushInt((Boolean) c.value ? 1 : 0);
+                    default -> throw new ExpressionException("[Expr] Unexpected constant " + c);
+                }
+            }
+            case AST.ColumnRef ref -> {
+                int col = Typing.column(schema, ref);
+                code.op(ALOAD_1, 1).pushInt(col);
+                switch (schema.column(col).type()) {
+                    case INTEGER -> {
+                        code.invokeInterface(ROW, "getInt", "(I)I", 1, -1);
+                        if (as == 'D') code.op(I2D, 1);
+                    }
+                    case FLOAT -> code.invokeInterface(ROW, "getDouble", "(I)D", 1, 0);
+                    case BOOLEAN -> code.invokeInterface(ROW, "getBoolean", "(I)Z", 1, -1);
+                    case STRING -> throw new ExpressionException("[Expr] STRING column '" + ref.name() + "' in arithmetic");
+                }
+            }
+            case AST.Unary u -> {
+                if (u.op() == AST.UnaryOp.MINUS && Typing.typeOf(u.operand(), schema) == AST.DataType.INTEGER) {
+                    emit(code, u.operand(), schema, 'I');
+                    code.invokeStatic(OPS, "neg", "(I)I", 0);
+                    if (as == 'D') code.op(I2D, 1);
+                    return;
+                }
+                emit(code, u.operand(), schema, as);
+                switch (u.op()) {
+                    case PLUS -> {}
+                    case MINUS -> code.op(DNEG, 0);
+                    case NOT -> code.pushInt(1).op(IXOR, -1);
+                }
+            }
+            case AST.Binary b when b.op().isComparison() -> {
+                AST.DataType l = Typing.typeOf(b.left(), schema), r = Typing.typeOf(b.right(), schema);
+                int depth = code.depth();
+                int toTrue;
+                if (l == AST.DataType.STRING) {
+                    emitString(code, b.left(), schema);
+                    emitString(code, b.right(), schema);
+                    code.invokeStatic(FOLDER, "compare", "(Ljava/lang/String;Ljava/lang/String;)I", -1);
+                    toTrue = code.branch(ifZero(b.op()), -1);
+                } else if (l == AST.DataType.BOOLEAN || (l == AST.DataType.INTEGER && r == AST.DataType.INTEGER)) {
+                    char as2 = (l == AST.DataType.BOOLEAN) ? 'Z' : 'I';
+                    emit(code, b.left(), schema, as2);
+                    emit(code, b.right(), schema, as2);
+                    toTrue = code.branch(ifIntCompare(b.op()), -2);
+                } else {
+                    emit(code, b.left(), schema, 'D');
+                    emit(code, b.right(), schema, 'D');
+                    code.op(DCMPL, -3); // IEEE comparison: -0.0 == 0.0
+                    toTrue = code.branch(ifZero(b.op()), -1);
+                }
+                code.pushInt(0);
+                int end = code.branch(GOTO, 0);
+                code.patch(toTrue);
+                code.depth(depth);
+                code.pushInt(1);
+                code.patch(end);
+            }
+            case AST.Binary b -> {
+                // INTEGER arithmetic stays in int (checked) and is widened afterwards if needed
+                if (Typing.typeOf(b, schema) == AST.DataType.INTEGER) {
+                    emit(code, b.left(), schema, 'I');
+                    emit(code, b.right(), schema, 'I');
+                    code.invokeStatic(OPS, name(b.op()), "(II)I", -1);
+                    if (as == 'D') code.op(I2D, 1);
+                    return;
+                }
+                emit(code, b.left(), schema, 'D');
+                emit(code, b.right(), schema, 'D');
+                switch (b.op()) {
+                    case ADD -> code.op(DADD, -2);
+                    case SUB -> code.op(DSUB, -2);
+                    case MUL -> code.op(DMUL, -2);
+                    case DIV -> code.invokeStatic(OPS, "div", "(DD)D", -2);
+                }
+            }
+            default -> throw new ExpressionException("[Expr] Unsupported expression " + e);
+        }
+    }
+
+    private static void emitString(ClassBuilder.Code code, AST.Expression e, Schema schema) {
+        switch (e) {
+            case AST.Const c -> code.pushString((String) c.value);
+            case AST.ColumnRef ref -> code.op(ALOAD_1, 1).pushInt(Typing.column(schema, ref))
+                    .invokeInterface(ROW, "getString", "(I)Ljava/lang/String;", 1, -1);
+            default -> throw new ExpressionException("[Expr] Unsupported STRING expression " + e);
+        }
+    }
+
+    private static String name(AST.BinaryOp op) {
+        return switch (op) {
+            case ADD -> "add";
+            case SUB -> "sub";
+            case MUL -> "mul";
+            case DIV -> "div";
+            default -> throw new IllegalArgumentException(op.name());
+        };
+    }
+
+    // Jump taken when `op` holds for the int comparison result on the stack
+    private static int ifZero(AST.BinaryOp op) {
+        return switch (op) {
+            case EQ -> IFEQ;
+            case NE -> IFNE;
+            case LT -> IFLT;
+            case LE -> IFLE;
+            case GT -> IFGT;
+            case GE -> IFGE;
+            default -> throw new IllegalArgumentException(op.name());
+        };
+    }
+
+    // Jump taken when `op` holds between the two ints on the stack
+    private static int ifIntCompare(AST.BinaryOp op) {
+        return switch (op) {
+            case EQ -> IF_ICMPEQ;
+            case NE -> IF_ICMPNE;
+            case LT -> IF_ICMPLT;
+            case LE -> IF_ICMPLE;
+            case GT -> IF_ICMPGT;
+            case GE -> IF_ICMPGE;
+            default -> throw new IllegalArgumentException(op.name());
+        };
+    }
+}
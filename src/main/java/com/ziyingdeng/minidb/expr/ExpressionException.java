@@ -0,0 +1,5 @@
+package com.ziyingdeng.minidb.expr;
+
+public class ExpressionException extends RuntimeException {
+    public ExpressionException(String message) { super(message); }
+}
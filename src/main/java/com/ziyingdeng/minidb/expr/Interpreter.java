@@ -0,0 +1,111 @@
+package com.ziyingdeng.minidb.expr;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.ConstantFolder;
+import com.ziyingdeng.minidb.storage.Schema;
+
+// Reference evaluator: walks the tree for every row, passing boxed values
+// (Integer / Double / Boolean, null for NULL) between nodes. Simple and always
+// available; ExpressionCompiler produces the fast equivalent.
+public final class Interpreter implements Evaluator {
+
+    private sealed interface Node {}
+    private record Literal(Object value) implements Node {}
+    private record Column(int index, AST.DataType type) implements Node {}
+    private record Unary(AST.UnaryOp op, Node operand) implements Node {}
+    private record Binary(AST.BinaryOp op, Node left, Node right) implements Node {}
+
+    private final AST.DataType type;
+    private final Node root;
+
+    private Interpreter(AST.DataType type, Node root) {
+        this.type = type;
+        this.root = root;
+    }
+
+    public static Interpreter bind(AST.Expression expr, Schema schema) {
+        AST.Expression folded = ConstantFolder.fold(expr);
+        return new Interpreter(Typing.typeOf(folded, schema), resolve(folded, schema));
+    }
+
+    private static Node resolve(AST.Expression e, Schema schema) {
+        return switch (e) {
+            case AST.Const c -> new Literal(c.value);
+            case AST.ColumnRef ref -> {
+                int c = Typing.column(schema, ref);
+                yield new Column(c, schema.column(c).type());
+            }
+            case AST.Unary u -> new Unary(u.op(), resolve(u.operand(), schema));
+            case AST.Binary b -> new Binary(b.op(), resolve(b.left(), schema), resolve(b.right(), schema));
+            default -> throw new ExpressionException("[Expr] Unsupported expression " + e);
+        };
+    }
+
+    @Override public AST.DataType type() { return type; }
+    @Override public boolean isNull(RowAccessor row) { return eval(root, row) == null; }
+    @Override public int evalInt(RowAccessor row) { return (Integer) eval(root, row); }
+    @Override public double evalDouble(RowAccessor row) { return ((Number) eval(root, row)).doubleValue(); }
+    @Override public boolean evalBoolean(RowAccessor row) { return (Boolean) eval(root, row); }
+
+    // Boxed value of the expression for this row, null for NULL
+    public Object eval(RowAccessor row) {
+        return eval(root, row);
+    }
+
+    private static int compare(Object l, Object r) {
+        if (l instanceof String x) return ConstantFolder.compare(x, (String) r);
+        if (l instanceof Boolean x) return Boolean.compare(x, (Boolean) r);
+        if (l instanceof Integer x && r instanceof Integer y) return Integer.compare(x, y);
+        return ConstantFolder.compare(((Number) l).doubleValue(), ((Number) r).doubleValue());
+    }
+
+    private static Object eval(Node node, RowAccessor row) {
+        return switch (node) {
+            case Literal l -> l.value();
+            case Column c -> {
+                if (row.isNull(c.index())) yield null;
+                yield switch (c.type()) {
+                    case INTEGER -> row.getInt(c.index());
+                    case FLOAT -> row.getDouble(c.index());
+                    case BOOLEAN -> row.getBoolean(c.index());
+                    case STRING -> row.getString(c.index());
+                };
+            }
+            case Unary u -> {
+                Object v = eval(u.operand(), row);
+                if (v == null) yield null;
+                yield switch (u.op()) {
+                    case NOT -> !(Boolean) v;
+                    case PLUS -> v;
+                    case MINUS -> (v instanceof Integer i) ? (Object) Ops.neg(i) : (Object) (-(Double) v);
+                };
+            }
+            case Binary b -> {
+                Object l = eval(b.left(), row);
+                Object r = eval(b.right(), row);
+                if (b.op().isLogical()) {
+                    boolean dominant = (b.op() == AST.BinaryOp.OR); // decides the result alone
+                    if (Boolean.valueOf(dominant).equals(l) || Boolean.valueOf(dominant).equals(r)) yield dominant;
+                    yield (l == null || r == null) ? null : !dominant;
+                }
+                if (l == null || r == null) yield null;
+                if (b.op().isComparison()) yield ConstantFolder.test(b.op(), compare(l, r));
+                if (l instanceof Integer x && r instanceof Integer y) {
+                    yield switch (b.op()) {
+                        case ADD -> Ops.add(x, y);
+                        case SUB -> Ops.sub(x, y);
+                        case MUL -> Ops.mul(x, y);
+                        default -> Ops.div(x, y);
+                    };
+                }
+                double x = ((Number) l).doubleValue(), y = ((Number) r).doubleValue();
+                yield switch (b.op()) {
+                    case ADD -> x + y;
+                    case SUB -> x - y;
+                    case MUL -> x * y;
+                    default -> Ops.div(x, y);
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package com.ziyingdeng.minidb.expr;
+
+// Checked arithmetic called from generated code, with the same errors as
+// ConstantFolder reports for constant operands
+public final class Ops {
+    private Ops() {}
+
+    public static int add(int a, int b) {
+        int r = a + b;
+        if (((a ^ r) & (b ^ r)) < 0) throw overflow();
+        return r;
+    }
+
+    public static int sub(int a, int b) {
+        int r = a - b;
+        if (((a ^ b) & (a ^ r)) < 0) throw overflow();
+        return r;
+    }
+
+    public static int mul(int a, int b) {
+        long r = (long) a * b;
+        if ((int) r != r) throw overflow();
+        return (int) r;
+    }
+
+    public static int div(int a, int b) {
+        if (b == 0) throw divisionByZero();
+        if (a == Integer.MIN_VALUE && b == -1) throw overflow();
+        return a / b;
+    }
+
+    public static int neg(int a) {
+        if (a == Integer.MIN_VALUE) throw overflow();
+        return -a;
+    }
+
+    public static double div(double a, double b) {
+        if (b == 0) throw divisionByZero();
+        return a / b;
+    }
+
+    private static ExpressionException overflow() {
+        return new ExpressionException("[Expr] INTEGER overflow");
+    }
+
+    private static ExpressionException divisionByZero() {
+        return new ExpressionException("[Expr] Division by zero");
+    }
+}
@@ -0,0 +1,11 @@
+package com.ziyingdeng.minidb.expr;
+
+// Primitive, unboxed access to the columns of the current row. A getter is only
+// called for a column of the matching type, and only when isNull(column) is false.
+public interface RowAccessor {
+    boolean isNull(int column);
+    int getInt(int column);
+    double getDouble(int column);
+    boolean getBoolean(int column);
+    String getString(int column);
+}
@@ -0,0 +1,94 @@
+package com.ziyingdeng.minidb.expr;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.ConstantFolder;
+import com.ziyingdeng.minidb.storage.Schema;
+
+// Static result types of expressions over a schema; null is the type of NULL,
+// which takes on the type of whatever it is combined with
+public final class Typing {
+    private Typing() {}
+
+    public static AST.DataType typeOf(AST.Expression e, Schema schema) {
+        return switch (e) {
+            case AST.Const c -> switch (c.kind) {
+                case NULL -> null;
+                case BOOLEAN -> AST.DataType.BOOLEAN;
+                case INTEGER -> AST.DataType.INTEGER;
+                case FLOAT -> AST.DataType.FLOAT;
+                case STRING -> AST.DataType.STRING;
+            };
+            case AST.ColumnRef ref -> schema.column(column(schema, ref)).type();
+            case AST.Unary u -> {
+                AST.DataType t = typeOf(u.operand(), schema);
+                if (u.op() == AST.UnaryOp.NOT) {
+                    if (t != null && t != AST.DataType.BOOLEAN) throw typeError("NOT", t);
+                    yield AST.DataType.BOOLEAN;
+                }
+                if (t != null && !isNumeric(t)) throw typeError(u.op() == AST.UnaryOp.MINUS ? "-" : "+", t);
+                yield t;
+            }
+            case AST.Binary b -> {
+                AST.DataType l = typeOf(b.left(), schema);
+                AST.DataType r = typeOf(b.right(), schema);
+                if (b.op().isLogical()) {
+                    if (l != null && l != AST.DataType.BOOLEAN) throw typeError(ConstantFolder.symbol(b.op()), l);
+                    if (r != null && r != AST.DataType.BOOLEAN) throw typeError(ConstantFolder.symbol(b.op()), r);
+                    yield AST.DataType.BOOLEAN;
+                }
+                if (b.op().isComparison()) {
+                    checkComparable(b.op(), l, r);
+                    yield AST.DataType.BOOLEAN;
+                }
+                if (l != null && !isNumeric(l)) throw typeError(ConstantFolder.symbol(b.op()), l);
+                if (r != null && !isNumeric(r)) throw typeError(ConstantFolder.symbol(b.op()), r);
+                if (l == null) yield r;
+                if (r == null) yield l;
+                yield (l == AST.DataType.FLOAT || r == AST.DataType.FLOAT) ? AST.DataType.FLOAT : AST.DataType.INTEGER;
+            }
+            case AST.Param p -> throw new ExpressionException("[Expr] Parameter " + (p.index() + 1) + " is not bound");
+            default -> throw new ExpressionException("[Expr] Unsupported expression " + e);
+        };
+    }
+
+    public static int column(Schema schema, AST.ColumnRef ref) {
+        int c = schema.indexOf(ref.name());
+        if (c < 0) throw new ExpressionException("[Expr] Unknown column '" + ref.name() + "'");
+        return c;
+    }
+
+    private static void checkComparable(AST.BinaryOp op, AST.DataType l, AST.DataType r) {
+        if (l == null || r == null) return;
+        boolean ok = (isNumeric(l) && isNumeric(r)) || (l == r && l == AST.DataType.STRING)
+                || (l == r && l == AST.DataType.BOOLEAN && (op == AST.BinaryOp.EQ || op == AST.BinaryOp.NE));
+        if (!ok) throw new ExpressionException("[Expr] Cannot compare " + l + " " + ConstantFolder.symbol(op) + " " + r);
+    }
+
+    // AND / OR, or NOT over one of them: the only three-valued operators. Every
+    // other operator propagates NULL, so outside these the result is NULL exactly
+    // when a NULL literal appears or one of the columns read is NULL.
+    public static boolean isLogical(AST.Expression e) {
+        return switch (e) {
+            case AST.Binary b -> b.op().isLogical();
+            case AST.Unary u -> u.op() == AST.UnaryOp.NOT && isLogical(u.operand());
+            default -> false;
+        };
+    }
+
+    public static boolean hasNullLiteral(AST.Expression e) {
+        return switch (e) {
+            case AST.Const c -> c.kind == AST.Const.Kind.NULL;
+            case AST.Unary u -> hasNullLiteral(u.operand());
+            case AST.Binary b -> hasNullLiteral(b.left()) || hasNullLiteral(b.right());
+            default -> false;
+        };
+    }
+
+    public static boolean isNumeric(AST.DataType t) {
+        return t == AST.DataType.INTEGER || t == AST.DataType.FLOAT;
+    }
+
+    private static ExpressionException typeError(String op, AST.DataType t) {
+        return new ExpressionException("[Expr] Operator " + op + " is not defined for " + t);
+    }
+}
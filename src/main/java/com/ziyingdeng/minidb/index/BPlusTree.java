@@ -0,0 +1,255 @@
+package com.ziyingdeng.minidb.index;
+
+import java.util.concurrent.locks.StampedLock;
+
+// B+tree from long keys to long values (row ids) with optimistic lock coupling.
+//
+// Every node carries a StampedLock used as a version counter. Readers never take
+// a lock: they read a node under an optimistic stamp, pick the child, take the
+// child's stamp and only then validate the parent, restarting from the root if
+// any node they passed through changed meanwhile. Writers descend the same way
+// and upgrade the leaf's stamp to a write lock; only when the leaf is full do they
+// restart pessimistically, write-locking top-down and releasing ancestors as soon
+// as a child has room (latch crabbing), so a split locks just the nodes it changes.
+//
+// Keys are never removed, so a leaf's key range only changes when the leaf itself
+// splits, which is what makes validating the leaf alone enough for an insert.
+public final class BPlusTree implements KeyIndex {
+    static final int FANOUT = 64; // keys per node before it splits
+
+    private final StampedLock rootLock = new StampedLock(); // guards the root pointer
+    private volatile Node root = new Leaf();
+
+    /* ------------------------------- nodes ------------------------------- */
+
+    // Arrays have one slot of slack so an insert can overflow before the split.
+    // Readers may see a node mid-update: count is clamped and every value read is
+    // only used after the stamp validates.
+    private abstract static class Node {
+        final StampedLock lock = new StampedLock();
+        final long[] keys = new long[FANOUT + 1];
+        int count;
+
+        boolean full() { return count >= FANOUT; }
+
+        int count() { return Math.max(0, Math.min(count, FANOUT + 1)); }
+    }
+
+    private static final class Leaf extends Node {
+        final long[] values = new long[FANOUT + 1];
+    }
+
+    // children[i] holds keys < keys[i]; children[count] holds the rest
+    private static final class Inner extends Node {
+        final Node[] children = new Node[FANOUT + 2];
+    }
+
+    /* ------------------------------- reads ------------------------------- */
+
+    @Override
+    public long get(long key) {
+        while (true) {
+            long result = tryGet(key);
+            if (result != RESTART) return result;
+            Thread.onSpinWait();
+        }
+    }
+
+    private static final long RESTART = Long.MIN_VALUE;
+
+    private long tryGet(long key) {
+        long rootStamp = rootLock.tryOptimisticRead();
+        Node node = root;
+        long stamp = node.lock.tryOptimisticRead();
+        if (rootStamp == 0 || stamp == 0 || !rootLock.validate(rootStamp)) return RESTART;
+        while (node instanceof Inner inner) {
+            Node child = inner.children[childIndex(inner, key)];
+            long childStamp = (child == null) ? 0 : child.lock.tryOptimisticRead();
+            if (childStamp == 0 || !inner.lock.validate(stamp)) return RESTART;
+            node = child;
+            stamp = childStamp;
+        }
+        Leaf leaf = (Leaf) node;
+        int n = leaf.count();
+        int i = lowerBound(leaf.keys, n, key);
+        long value = (i < n && leaf.keys[i] == key) ? leaf.values[i] : ABSENT;
+        return leaf.lock.validate(stamp) ? value : RESTART;
+    }
+
+    /* ------------------------------- writes ------------------------------ */
+
+    @Override
+    public boolean insert(long key, long value) {
+        while (true) {
+            int outcome = tryInsertOptimistic(key, value);
+            if (outcome == INSERTED) return true;
+            if (outcome == DUPLICATE) return false;
+            if (outcome == LEAF_FULL) return insertPessimistic(key, value);
+            Thread.onSpinWait();
+        }
+    }
+
+    private static final int INSERTED = 0, DUPLICATE = 1, LEAF_FULL = 2, RETRY = 3;
+
+    private int tryInsertOptimistic(long key, long value) {
+        long rootStamp = rootLock.tryOptimisticRead();
+        Node node = root;
+        long stamp = node.lock.tryOptimisticRead();
+        if (rootStamp == 0 || stamp == 0 || !rootLock.validate(rootStamp)) return RETRY;
+        while (node instanceof Inner inner) {
+            Node child = inner.children[childIndex(inner, key)];
+            long childStamp = (child == null) ? 0 : child.lock.tryOptimisticRead();
+            if (childStamp == 0 || !inner.lock.validate(stamp)) return RETRY;
+            node = child;
+            stamp = childStamp;
+        }
+        Leaf leaf = (Leaf) node;
+        long write = leaf.lock.tryConvertToWriteLock(stamp);
+        if (write == 0) return RETRY;
+        try {
+            int i = lowerBound(leaf.keys, leaf.count, key);
+            if (i < leaf.count && leaf.keys[i] == key) return DUPLICATE;
+            if (leaf.full()) return LEAF_FULL;
+            insertAt(leaf, i, key, value);
+            return INSERTED;
+        } finally {
+            leaf.lock.unlockWrite(write);
+        }
+    }
+
+    // Latch crabbing: hold write locks only on the nodes a split can reach
+    private boolean insertPessimistic(long key, long value) {
+        Node[] path = new Node[64];
+        long[] stamps = new long[64];
+        int[] slots = new int[64]; // child index taken at each inner node
+        long rootStamp = rootLock.writeLock();
+        boolean rootHeld = true;
+        int top = 0, low = 0; // locked nodes are path[low, top]
+        path[0] = root;
+        stamps[0] = path[0].lock.writeLock();
+        if (!path[0].full()) {
+            rootLock.unlockWrite(rootStamp);
+            rootHeld = false;
+        }
+        try {
+            while (path[top] instanceof Inner inner) {
+                int slot = childIndex(inner, key);
+                Node child = inner.children[slot];
+                slots[top] = slot;
+                path[++top] = child;
+                stamps[top] = child.lock.writeLock();
+                if (!child.full()) { // safe: a split below stops here
+                    for (; low < top; low++) path[low].lock.unlockWrite(stamps[low]);
+                    if (rootHeld) {
+                        rootLock.unlockWrite(rootStamp);
+                        rootHeld = false;
+                    }
+                }
+            }
+            Leaf leaf = (Leaf) path[top];
+            int i = lowerBound(leaf.keys, leaf.count, key);
+            if (i < leaf.count && leaf.keys[i] == key) return false;
+            insertAt(leaf, i, key, value);
+
+            // split upwards while the node overflowed
+            int level = top;
+            while (path[level].count > FANOUT) {
+                Node right;
+                long separator;
+                if (path[level] instanceof Leaf l) {
+                    Leaf r = splitLeaf(l);
+                    separator = r.keys[0];
+                    right = r;
+                } else {
+                    Inner in = (Inner) path[level];
+                    separator = in.keys[FANOUT / 2];
+                    right = splitInner(in);
+                }
+                if (level == low) { // only the root can be unsafe at the top of the locked path
+                    Inner newRoot = new Inner();
+                    newRoot.keys[0] = separator;
+                    newRoot.children[0] = path[level];
+                    newRoot.children[1] = right;
+                    newRoot.count = 1;
+                    root = newRoot;
+                    break;
+                }
+                Inner parent = (Inner) path[level - 1];
+                insertChild(parent, slots[level - 1], separator, right);
+                level--;
+            }
+            return true;
+        } finally {
+            for (int k = top; k >= low; k--) path[k].lock.unlockWrite(stamps[k]);
+            if (rootHeld) rootLock.unlockWrite(rootStamp);
+        }
+    }
+
+    private static void insertAt(Leaf leaf, int i, long key, long value) {
+        int n = leaf.count;
+        System.arraycopy(leaf.keys, i, leaf.keys, i + 1, n - i);
+        System.arraycopy(leaf.values, i, leaf.values, i + 1, n - i);
+        leaf.keys[i] = key;
+        leaf.values[i] = value;
+        leaf.count = n + 1;
+    }
+
+    // Separator goes at keys[slot], the new right sibling at children[slot + 1]
+    private static void insertChild(Inner parent, int slot, long separator, Node right) {
+        int n = parent.count;
+        System.arraycopy(parent.keys, slot, parent.keys, slot + 1, n - slot);
+        System.arraycopy(parent.children, slot + 1, parent.children, slot + 2, n - slot);
+        parent.keys[slot] = separator;
+        parent.children[slot + 1] = right;
+        parent.count = n + 1;
+    }
+
+    // Move the upper half of an overflowing leaf into a new right sibling
+    private static Leaf splitLeaf(Leaf left) {
+        Leaf right = new Leaf();
+        int keep = left.count / 2;
+        int move = left.count - keep;
+        System.arraycopy(left.keys, keep, right.keys, 0, move);
+        System.arraycopy(left.values, keep, right.values, 0, move);
+        right.count = move;
+        left.count = keep;
+        return right;
+    }
+
+    // keys[FANOUT / 2] moves up to the parent; the keys after it go right
+    private static Inner splitInner(Inner left) {
+        Inner right = new Inner();
+        int mid = FANOUT / 2;
+        int move = left.count - mid - 1;
+        System.arraycopy(left.keys, mid + 1, right.keys, 0, move);
+        System.arraycopy(left.children, mid + 1, right.children, 0, move + 1);
+        for (int k = mid + 1; k <= left.count; k++) left.children[k] = null;
+        right.count = move;
+        left.count = mid;
+        return right;
+    }
+
+    /* ------------------------------ search ------------------------------ */
+
+    // First position in keys[0, n) whose key is >= key
+    private static int lowerBound(long[] keys, int n, long key) {
+        int lo = 0, hi = n;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    // Number of separators <= key, i.e. the child that covers key
+    private static int childIndex(Inner inner, long key) {
+        int lo = 0, hi = inner.count();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (inner.keys[mid] <= key) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+}
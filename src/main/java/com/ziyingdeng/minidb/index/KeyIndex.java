@@ -0,0 +1,14 @@
+package com.ziyingdeng.minidb.index;
+
+// Unique index from long keys to long values (row ids). Lookups never block;
+// inserts may run concurrently with each other and with lookups.
+public interface KeyIndex {
+    long ABSENT = -1;
+
+    // Value stored for `key`, or ABSENT
+    long get(long key);
+
+    // Map `key` to `value` unless the key is present; returns false (and changes
+    // nothing) if it is. value must be >= 0
+    boolean insert(long key, long value);
+}
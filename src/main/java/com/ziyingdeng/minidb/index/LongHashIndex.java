@@ -0,0 +1,166 @@
+package com.ziyingdeng.minidb.index;
+
+import java.util.concurrent.locks.StampedLock;
+
+// Open-addressing hash table from long keys to long values in one flat primitive
+// array per segment: 16 bytes per slot (24-48 per key between resizes) and no
+// boxing, against ~70 bytes per entry for a HashMap<Long, Long>.
+//
+// Keys are spread over STRIPES independent segments by the top bits of their
+// hash, each with its own lock, so inserts into different segments run in
+// parallel. Lookups take no lock: they probe under an optimistic stamp and only
+// fall back to the read lock if a writer got in the way.
+//
+// Segments grow incrementally. When one passes its load factor it allocates a
+// table twice the size and keeps the old one; every later insert moves the next
+// MIGRATE_STEP old slots across, and lookups probe the new table, then the old,
+// until the move is complete. No single insert ever rehashes a whole segment.
+public final class LongHashIndex implements KeyIndex {
+    static final int STRIPES = 256;
+    static final int MIGRATE_STEP = 8;
+    private static final int INITIAL_CAPACITY = 64; // slots per segment
+
+    private final Segment[] segments = new Segment[STRIPES];
+
+    public LongHashIndex() {
+        for (int s = 0; s < STRIPES; s++) segments[s] = new Segment();
+    }
+
+    @Override
+    public long get(long key) {
+        long h = hash(key);
+        Segment seg = segments[(int) (h >>> 56)];
+        long stamp = seg.lock.tryOptimisticRead();
+        long value = seg.find(key, h);
+        if (seg.lock.validate(stamp)) return value;
+        stamp = seg.lock.readLock();
+        try {
+            return seg.find(key, h);
+        } finally {
+            seg.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean insert(long key, long value) {
+        long h = hash(key);
+        Segment seg = segments[(int) (h >>> 56)];
+        long stamp = seg.lock.writeLock();
+        try {
+            return seg.insert(key, h, value);
+        } finally {
+            seg.lock.unlockWrite(stamp);
+        }
+    }
+
+    // Number of keys; exact only while no insert is running
+    public long size() {
+        long n = 0;
+        for (Segment seg : segments) {
+            long stamp = seg.lock.readLock();
+            n += seg.size;
+            seg.lock.unlockRead(stamp);
+        }
+        return n;
+    }
+
+    // Whether any segment is still moving entries into a grown table
+    boolean resizing() {
+        for (Segment seg : segments) {
+            long stamp = seg.lock.readLock();
+            try {
+                if (seg.old != null) return true;
+            } finally {
+                seg.lock.unlockRead(stamp);
+            }
+        }
+        return false;
+    }
+
+    // murmur3 finalizer: every key bit affects the stripe and the slot bits
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /* ------------------------------ segments ----------------------------- */
+
+    // Slot i is entries[2i] (key) and entries[2i + 1] (value), so a probe touches one
+    // cache line. A value of 0 marks an empty slot; a stored value v is kept as v + 1
+    private static final class Slots {
+        final long[] entries;
+        final int mask;
+
+        Slots(int capacity) {
+            entries = new long[capacity * 2];
+            mask = capacity - 1;
+        }
+
+        int capacity() { return mask + 1; }
+
+        // Linear probing, bounded by the capacity so a torn optimistic read cannot spin
+        long find(long key, long h) {
+            for (int i = (int) h & mask, probes = 0; probes <= mask; i = (i + 1) & mask, probes++) {
+                long v = entries[2 * i + 1];
+                if (v == 0) return ABSENT;
+                if (entries[2 * i] == key) return v - 1;
+            }
+            return ABSENT;
+        }
+
+        // Caller knows the key is absent and a free slot exists
+        void put(long key, long h, long stored) {
+            int i = (int) h & mask;
+            while (entries[2 * i + 1] != 0) i = (i + 1) & mask;
+            entries[2 * i] = key;
+            entries[2 * i + 1] = stored;
+        }
+    }
+
+    private static final class Segment {
+        final StampedLock lock = new StampedLock();
+        Slots current = new Slots(INITIAL_CAPACITY);
+        Slots old;        // non-null while a resize is in progress
+        int migrated;     // old slots [0, migrated) have been moved to current
+        int size;
+
+        // Entries already moved stay in `old` too, so probing it after current is exact
+        long find(long key, long h) {
+            Slots cur = current, prev = old;
+            long v = cur.find(key, h);
+            return (v == ABSENT && prev != null) ? prev.find(key, h) : v;
+        }
+
+        boolean insert(long key, long h, long value) {
+            if (find(key, h) != ABSENT) return false;
+            if (old != null) migrate(MIGRATE_STEP);
+            if (size + 1 > current.capacity() * 2 / 3) {
+                if (old != null) migrate(Integer.MAX_VALUE); // cannot happen at these rates; stay correct anyway
+                old = current;
+                migrated = 0;
+                current = new Slots(current.capacity() * 2);
+                migrate(MIGRATE_STEP);
+            }
+            current.put(key, h, value + 1);
+            size++;
+            return true;
+        }
+
+        private void migrate(int slots) {
+            Slots from = old;
+            int end = (int) Math.min((long) migrated + slots, from.capacity());
+            for (int i = migrated; i < end; i++) {
+                long v = from.entries[2 * i + 1];
+                if (v == 0) continue;
+                long k = from.entries[2 * i];
+                current.put(k, hash(k), v);
+            }
+            migrated = end;
+            if (migrated == from.capacity()) old = null;
+        }
+    }
+}
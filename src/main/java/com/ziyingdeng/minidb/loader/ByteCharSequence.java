@@ -0,0 +1,53 @@
+package com.ziyingdeng.minidb.loader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// A CharSequence view over UTF-8 bytes (typically a mapped file region) that the
+// Lexer can scan without decoding. All SQL syntax is ASCII, so ASCII bytes map 1:1
+// to chars; multi-byte UTF-8 can only legally appear inside '...' literals, and is
+// decoded when that literal's text is materialized through toString().
+public final class ByteCharSequence implements CharSequence {
+    private final ByteBuffer buf;
+    private final int offset;
+    private final int length;
+
+    public ByteCharSequence(ByteBuffer buf) {
+        this(buf, 0, buf.limit());
+    }
+
+    private ByteCharSequence(ByteBuffer buf, int offset, int length) {
+        this.buf = buf;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() { return length; }
+
+    // Bytes >= 0x80 come back as Latin-1 chars, which the Lexer rejects outside literals
+    @Override
+    public char charAt(int index) {
+        return (char) (buf.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("[Loader] Invalid range [" + start + ", " + end + ")");
+        }
+        return new ByteCharSequence(buf, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        byte[] bytes = new byte[length];
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            byte b = buf.get(offset + i);
+            bytes[i] = b;
+            ascii &= b >= 0;
+        }
+        return new String(bytes, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,117 @@
+package com.ziyingdeng.minidb.loader;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.Lexer;
+import com.ziyingdeng.minidb.parser.ParallelParser;
+import com.ziyingdeng.minidb.parser.ParseException;
+import com.ziyingdeng.minidb.parser.Parser;
+import com.ziyingdeng.minidb.parser.StatementBoundary;
+
+// Restores a .sql dump by memory-mapping it window by window and running the
+// Parser straight over the mapped bytes (see ByteCharSequence). The file is never
+// copied into a heap String/char[]; only identifiers and string literals are.
+public class DumpLoader {
+    public static final long DEFAULT_WINDOW = 256L << 20;
+
+    private final Consumer<AST.Statement> sink;
+    private final long window;
+    private final long maxSpan;      // largest window a single statement may grow to
+    private ParallelParser parallel; // null: parse each window on the calling thread
+
+    public DumpLoader(Consumer<AST.Statement> sink) {
+        this(sink, DEFAULT_WINDOW);
+    }
+
+    public DumpLoader(Consumer<AST.Statement> sink, long window) {
+        this(sink, window, Integer.MAX_VALUE);
+    }
+
+    DumpLoader(Consumer<AST.Statement> sink, long window, long maxSpan) {
+        if (window <= 0 || window > maxSpan || maxSpan > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("[Loader] Window must be in (0, " + maxSpan + "]: " + window);
+        }
+        this.sink = sink;
+        this.window = window;
+        this.maxSpan = maxSpan;
+    }
+
+    // Parse each window with a ParallelParser; the sink still sees statements in file order
+    public DumpLoader parallel(ParallelParser parser) {
+        this.parallel = parser;
+        return this;
+    }
+
+    public record Stats(long statements, long bytes, long nanos) {
+        public double seconds() { return nanos / 1e9; }
+        public double statementsPerSec() { return nanos == 0 ? 0 : statements / seconds(); }
+        public double bytesPerSec() { return nanos == 0 ? 0 : bytes / seconds(); }
+
+        @Override
+        public String toString() {
+            return String.format("%d statements, %.1f MiB in %.3f s (%.0f stmts/s, %.1f MiB/s)",
+                    statements, bytes / 1048576.0, seconds(), statementsPerSec(), bytesPerSec() / 1048576.0);
+        }
+    }
+
+    public Stats load(Path file) throws IOException {
+        long begin = System.nanoTime();
+        long statements = 0;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            long pos = 0;           // file offset of the next unparsed statement
+            long span = window;
+            StatementBoundary boundary = new StatementBoundary();
+            while (pos < size) {
+                int len = (int) Math.min(span, size - pos);
+                boolean last = pos + len == size;
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+                ByteCharSequence text = new ByteCharSequence(buf);
+
+                // parse every statement that ends inside this window
+                int start = 0;
+                if (parallel != null) {
+                    ParallelParser.Result parsed = parallel.parsePrefix(text);
+                    parsed.statements().forEach(sink);
+                    statements += parsed.statements().size();
+                    start = parsed.consumed();
+                } else {
+                    boundary.reset();
+                    for (int end; (end = boundary.next(text, start, len)) >= 0; start = end) {
+                        sink.accept(parse(text, start, end, statements));
+                        statements++;
+                    }
+                }
+
+                if (last) {
+                    if (!Lexer.isBlank(text, start, len)) parse(text, start, len, statements); // throws: no ';'
+                    pos = size;
+                } else if (start == 0) {
+                    // one statement outgrew the window; a mapping cannot exceed 2 GiB
+                    if (span >= maxSpan) {
+                        throw new ParseException("[Loader] Statement at offset " + pos + " is longer than " + maxSpan + " bytes");
+                    }
+                    span = Math.min(span * 2, maxSpan);
+                } else {
+                    pos += start; // remap from the first incomplete statement
+                    span = window;
+                }
+            }
+            return new Stats(statements, size, System.nanoTime() - begin);
+        }
+    }
+
+    private static AST.Statement parse(CharSequence text, int start, int end, long index) {
+        try {
+            return new Parser(text, start, end).parse();
+        } catch (ParseException e) {
+            throw new ParseException("[Parser] Statement " + (index + 1) + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -1,27 +1,116 @@
 package com.ziyingdeng.minidb.parser;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class AST {
 
     /* ------------ Statements ------------ */
     public interface Statement {}
 
-    // SELECT * FROM tableName
-    public record Select(String tableName) implements Statement {}
+    // SELECT (* | items) FROM tableName [JOIN ...] [WHERE where] [GROUP BY groupBy]
+    // [ORDER BY ...] [LIMIT limit]
+    public record Select(
+        String tableName,
+        Join join, // null == a single table
+        Expression where, // null == every row
+        List<Aggregate> aggregates, // empty == "*"
+        List<String> groupBy, // empty == no grouping
+        OrderBy orderBy, // null == scan order
+        long limit // NO_LIMIT == every row
+    ) implements Statement {
+        public static final long NO_LIMIT = -1;
+
+        public Select(String tableName) {
+            this(tableName, null);
+        }
+
+        public Select(String tableName, Expression where) {
+            this(tableName, where, List.of());
+        }
+
+        public Select(String tableName, Expression where, List<Aggregate> aggregates) {
+            this(tableName, null, where, aggregates);
+        }
+
+        public Select(String tableName, Join join, Expression where, List<Aggregate> aggregates) {
+            this(tableName, join, where, aggregates, List.of(), null, NO_LIMIT);
+        }
+    }
+
+    // JOIN tableName ON left = right; both sides are column names, qualified
+    // ("t.c") or not, and either may name a column of either table
+    public record Join(String tableName, String left, String right) {}
+
+    // ORDER BY item [ASC | DESC]; the item is a column, named like those of
+    // WHERE, or one of the select list's aggregates
+    public record OrderBy(Aggregate item, boolean descending) {
+        public OrderBy(String column, boolean descending) {
+            this(new Aggregate(null, column), descending);
+        }
+    }
+
+    public enum AggregateFunction { COUNT, SUM, MIN, MAX, AVG }
+
+    // function(column); COUNT(*) has a null column. A select list item that is a
+    // plain (GROUP BY) column has a null function.
+    public record Aggregate(AggregateFunction function, String column) {
+        @Override
+        public String toString() {
+            return function == null ? column : function + "(" + (column == null ? "*" : column) + ")";
+        }
+    }
 
     // INSERT INTO tableName [(columns)] VALUES (rows...)
+    // When every cell is a literal the rows arrive column-wise in `batch` and
+    // `values` is null; rows() builds them (as AST.Const cells) in either form.
+    // Equality compares the rows, so both forms of one INSERT are equal.
     public record Insert(
         String tableName,
         List<String> columns,
-        List<List<Expression>> values
-    ) implements Statement {}
+        List<List<Expression>> values,
+        ColumnBatch batch // null == row-wise values
+    ) implements Statement {
+        public Insert(String tableName, List<String> columns, List<List<Expression>> values) {
+            this(tableName, columns, values, null);
+        }
+
+        public Insert(String tableName, List<String> columns, ColumnBatch batch) {
+            this(tableName, columns, null, batch);
+        }
+
+        // The rows, materialized from the batch on every call in the column-wise form
+        public List<List<Expression>> rows() {
+            return batch != null ? batch.toRows() : values;
+        }
+
+        public int rowCount() {
+            return batch != null ? batch.rowCount() : values.size();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Insert other && tableName.equals(other.tableName)
+                    && Objects.equals(columns, other.columns) && rows().equals(other.rows());
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tableName, columns, rows());
+        }
+    }
     
-    // CREATE TABLE name (columns...)
+    // CREATE TABLE name (columns...) [WITH (option = value, ...)]
     public record CreateTable(
         String name,
-        List<Column> columns
-    ) implements Statement {}
+        List<Column> columns,
+        Map<String, String> options // lower-case names; empty == defaults
+    ) implements Statement {
+        public CreateTable(String name, List<Column> columns) {
+            this(name, columns, Map.of());
+        }
+    }
 
     /* -------------- Column -------------- */
     public enum DataType { BOOLEAN, INTEGER, FLOAT, STRING }
@@ -29,14 +118,39 @@ public class AST {
         String name,
         DataType DataType,
         Boolean nullable, // null == unspecified; T/F = explictly specified
-        Expression defaulExpr // null == no default
-    ) {}
+        Expression defaulExpr, // null == no default
+        boolean primaryKey
+    ) {
+        public Column(String name, DataType DataType, Boolean nullable, Expression defaulExpr) {
+            this(name, DataType, nullable, defaulExpr, false);
+        }
+    }
 
     /* ----------- Expressions ------------ */
 
-    // Only support const for now
+    // Const / Param / ColumnRef leaves under Unary and Binary operator nodes.
+    // The parser folds every subtree without column references or parameters into a Const.
     public interface Expression {}
 
+    // "?" placeholder, numbered from 0 in order of appearance; see PreparedStatement
+    public record Param(int index) implements Expression {}
+
+    // A column of the row being evaluated
+    public record ColumnRef(String name) implements Expression {}
+
+    public enum UnaryOp { PLUS, MINUS, NOT }
+    public enum BinaryOp {
+        ADD, SUB, MUL, DIV,
+        EQ, NE, LT, LE, GT, GE,
+        AND, OR;
+
+        public boolean isComparison() { return this.ordinal() >= EQ.ordinal() && this.ordinal() <= GE.ordinal(); }
+        public boolean isLogical() { return this == AND || this == OR; }
+    }
+
+    public record Unary(UnaryOp op, Expression operand) implements Expression {}
+    public record Binary(BinaryOp op, Expression left, Expression right) implements Expression {}
+
     public static class Const implements Expression {
         public enum Kind { NULL, BOOLEAN, INTEGER, FLOAT, STRING }
         public final Kind kind;
@@ -50,6 +164,15 @@ public class AST {
         public static Const ofInteger(int v)        { return new Const(Kind.INTEGER, v); }
         public static Const ofFloat(double v)        { return new Const(Kind.FLOAT, v); }
         public static Const ofString(String v)       { return new Const(Kind.STRING, v); }
+
+        @Override
+        public boolean equals(Object o) { return o instanceof Const c && kind == c.kind && Objects.equals(value, c.value); }
+
+        @Override
+        public int hashCode() { return kind.hashCode() * 31 + Objects.hashCode(value); }
+
+        @Override
+        public String toString() { return kind == Kind.STRING ? "'" + value + "'" : String.valueOf(value).toUpperCase(); }
     }
 
 }
@@ -0,0 +1,196 @@
+package com.ziyingdeng.minidb.parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Column-wise payload of a multi-row INSERT whose cells are all literals.
+// Each column is one typed Vector of primitives (int[] / double[] / boolean[],
+// or offsets + UTF-8 bytes for strings) plus a null bitmap, instead of one
+// boxed AST.Const per cell.
+public final class ColumnBatch {
+    private final List<Vector> columns = new ArrayList<>();
+    private int rowCount;
+
+    public int columnCount() { return columns.size(); }
+    public int rowCount() { return rowCount; }
+    public Vector column(int col) { return columns.get(col); }
+
+    // Column `col` of the row being filled; the first row defines the columns
+    Vector cellColumn(int col) {
+        if (col < columns.size()) return columns.get(col);
+        if (rowCount > 0) return null; // wider than the first row
+        Vector v = new Vector();
+        columns.add(v);
+        return v;
+    }
+
+    // Seal the row being filled; false if it has a different width than the first row
+    boolean endRow() {
+        for (Vector v : columns) {
+            if (v.size != rowCount + 1) return false;
+        }
+        rowCount++;
+        return true;
+    }
+
+    // Materialize completed rows as AST.Const cells
+    public List<List<AST.Expression>> toRows() {
+        List<List<AST.Expression>> rows = new ArrayList<>(rowCount);
+        for (int r = 0; r < rowCount; r++) {
+            List<AST.Expression> row = new ArrayList<>(columns.size());
+            for (Vector v : columns) row.add(v.get(r));
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    // Cells already appended to the row being filled
+    List<AST.Expression> pendingRow() {
+        List<AST.Expression> row = new ArrayList<>();
+        for (Vector v : columns) {
+            if (v.size > rowCount) row.add(v.get(rowCount));
+        }
+        return row;
+    }
+
+    public static final class Vector {
+        private AST.Const.Kind kind = AST.Const.Kind.NULL; // NULL until the first non-null value
+        private int size;
+        private long[] nulls = new long[1];        // bit set = NULL
+        private int[] ints;
+        private double[] doubles;
+        private boolean[] bools;
+        private int[] offsets;                     // string i = bytes[offsets[i], offsets[i + 1])
+        private byte[] bytes;
+
+        public AST.Const.Kind kind() { return kind; }
+        public int size() { return size; }
+
+        public boolean isNull(int row) { return (nulls[row >>> 6] & (1L << row)) != 0; }
+        public int getInt(int row) { return ints[row]; }
+        public double getDouble(int row) { return doubles[row]; }
+        public boolean getBoolean(int row) { return bools[row]; }
+        public String getString(int row) {
+            return new String(bytes, offsets[row], offsets[row + 1] - offsets[row], StandardCharsets.UTF_8);
+        }
+
+        // Backing arrays for bulk copies; only the first size() entries are meaningful
+        public long[] nullBitmap() { return nulls; }
+        public int[] ints() { return ints; }
+        public double[] doubles() { return doubles; }
+        public boolean[] booleans() { return bools; }
+        public int[] offsets() { return offsets; }
+        public byte[] bytes() { return bytes; }
+
+        public boolean hasNulls() {
+            for (int w = 0, words = (size + 63) >>> 6; w < words; w++) {
+                if (nulls[w] != 0) return true;
+            }
+            return false;
+        }
+
+        public AST.Const get(int row) {
+            if (isNull(row)) return AST.Const.ofNull();
+            return switch (kind) {
+                case INTEGER -> AST.Const.ofInteger(ints[row]);
+                case FLOAT -> AST.Const.ofFloat(doubles[row]);
+                case BOOLEAN -> AST.Const.ofBoolean(bools[row]);
+                case STRING -> AST.Const.ofString(getString(row));
+                case NULL -> AST.Const.ofNull();
+            };
+        }
+
+        // Whether a value of this kind can be stored without changing its type
+        boolean accepts(AST.Const.Kind k) { return k == AST.Const.Kind.NULL || kind == AST.Const.Kind.NULL || kind == k; }
+
+        // Append a constant cell; false (nothing appended) if its kind does not fit
+        boolean append(AST.Const c) {
+            if (!accepts(c.kind)) return false;
+            switch (c.kind) {
+                case NULL -> appendNull();
+                case INTEGER -> appendInt((Integer) c.value);
+                case FLOAT -> appendDouble((Double) c.value);
+                case BOOLEAN -> appendBoolean((Boolean) c.value);
+                case STRING -> appendString((String) c.value);
+            }
+            return true;
+        }
+
+        void appendNull() {
+            grow();
+            nulls[size >>> 6] |= 1L << size;
+            if (kind == AST.Const.Kind.STRING) offsets[size + 1] = offsets[size];
+            size++;
+        }
+
+        void appendInt(int v) { become(AST.Const.Kind.INTEGER); grow(); ints[size++] = v; }
+        void appendDouble(double v) { become(AST.Const.Kind.FLOAT); grow(); doubles[size++] = v; }
+        void appendBoolean(boolean v) { become(AST.Const.Kind.BOOLEAN); grow(); bools[size++] = v; }
+
+        void appendString(String v) {
+            byte[] encoded = v.getBytes(StandardCharsets.UTF_8);
+            become(AST.Const.Kind.STRING);
+            grow();
+            int at = offsets[size];
+            ensureBytes(at + encoded.length);
+            System.arraycopy(encoded, 0, bytes, at, encoded.length);
+            offsets[++size] = at + encoded.length;
+        }
+
+        // Copy an ASCII string straight from the source chars; false (nothing
+        // appended) if it contains any non-ASCII char
+        boolean appendAscii(CharSequence s, int start, int len) {
+            become(AST.Const.Kind.STRING);
+            grow();
+            int at = offsets[size];
+            ensureBytes(at + len);
+            for (int k = 0; k < len; k++) {
+                char c = s.charAt(start + k);
+                if (c >= 0x80) return false;
+                bytes[at + k] = (byte) c;
+            }
+            offsets[++size] = at + len;
+            return true;
+        }
+
+        // Fix the column type on its first non-null value; earlier rows are all NULL
+        private void become(AST.Const.Kind k) {
+            if (kind == k) return;
+            kind = k;
+            int capacity = Math.max(16, nulls.length * 64);
+            switch (k) {
+                case INTEGER -> ints = new int[capacity];
+                case FLOAT -> doubles = new double[capacity];
+                case BOOLEAN -> bools = new boolean[capacity];
+                case STRING -> { offsets = new int[capacity + 1]; bytes = new byte[capacity * 8]; }
+                case NULL -> {}
+            }
+        }
+
+        private void grow() {
+            if ((size >>> 6) >= nulls.length) nulls = Arrays.copyOf(nulls, nulls.length * 2);
+            int capacity = switch (kind) {
+                case INTEGER -> ints.length;
+                case FLOAT -> doubles.length;
+                case BOOLEAN -> bools.length;
+                case STRING -> offsets.length - 1;
+                case NULL -> Integer.MAX_VALUE;
+            };
+            if (size < capacity) return;
+            int next = capacity * 2;
+            switch (kind) {
+                case INTEGER -> ints = Arrays.copyOf(ints, next);
+                case FLOAT -> doubles = Arrays.copyOf(doubles, next);
+                case BOOLEAN -> bools = Arrays.copyOf(bools, next);
+                case STRING -> offsets = Arrays.copyOf(offsets, next + 1);
+                case NULL -> {}
+            }
+        }
+
+        private void ensureBytes(int needed) {
+            if (needed > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(needed, bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.ziyingdeng.minidb.parser;
+
+import java.util.function.IntSupplier;
+
+// Collapses operator subtrees whose operands are all constants into one AST.Const,
+// so e.g. DEFAULT 60*60*24 is computed once at parse time instead of per row.
+// The operator semantics here are the single definition shared with row evaluation:
+//   - NULL in, NULL out
+//   - INTEGER op INTEGER stays INTEGER (division truncates); a FLOAT operand makes it FLOAT
+//   - NOT takes a BOOLEAN; arithmetic takes numbers
+//   - comparisons take two numbers, two STRINGs (code point order) or two BOOLEANs (= and <> only)
+//   - AND / OR are three-valued: FALSE AND NULL is FALSE, TRUE OR NULL is TRUE
+public final class ConstantFolder {
+    private ConstantFolder() {}
+
+    // Fold bottom-up; subtrees with a column reference or parameter are kept
+    public static AST.Expression fold(AST.Expression e) {
+        return switch (e) {
+            case AST.Unary u -> {
+                AST.Expression operand = fold(u.operand());
+                yield (operand instanceof AST.Const c) ? apply(u.op(), c)
+                        : (operand == u.operand()) ? u : new AST.Unary(u.op(), operand);
+            }
+            case AST.Binary b -> {
+                AST.Expression left = fold(b.left());
+                AST.Expression right = fold(b.right());
+                if (left instanceof AST.Const l && right instanceof AST.Const r) yield apply(b.op(), l, r);
+                yield (left == b.left() && right == b.right()) ? b : new AST.Binary(b.op(), left, right);
+            }
+            default -> e;
+        };
+    }
+
+    public static AST.Const apply(AST.UnaryOp op, AST.Const v) {
+        if (v.kind == AST.Const.Kind.NULL) return v;
+        return switch (op) {
+            case NOT -> {
+                if (v.kind != AST.Const.Kind.BOOLEAN) throw typeError("NOT", v.kind);
+                yield AST.Const.ofBoolean(!(Boolean) v.value);
+            }
+            case PLUS -> {
+                if (!isNumber(v)) throw typeError("+", v.kind);
+                yield v;
+            }
+            case MINUS -> switch (v.kind) {
+                case INTEGER -> AST.Const.ofInteger(checked(() -> Math.negateExact((Integer) v.value)));
+                case FLOAT -> AST.Const.ofFloat(-(Double) v.value);
+                default -> throw typeError("-", v.kind);
+            };
+        };
+    }
+
+    public static AST.Const apply(AST.BinaryOp op, AST.Const l, AST.Const r) {
+        if (op.isLogical()) return logical(op, l, r);
+        if (op.isComparison()) return compare(op, l, r);
+        if (!isNumber(l) && l.kind != AST.Const.Kind.NULL) throw typeError(symbol(op), l.kind);
+        if (!isNumber(r) && r.kind != AST.Const.Kind.NULL) throw typeError(symbol(op), r.kind);
+        if (l.kind == AST.Const.Kind.NULL || r.kind == AST.Const.Kind.NULL) return AST.Const.ofNull();
+
+        if (l.kind == AST.Const.Kind.INTEGER && r.kind == AST.Const.Kind.INTEGER) {
+            int a = (Integer) l.value, b = (Integer) r.value;
+            return AST.Const.ofInteger(switch (op) {
+                case ADD -> checked(() -> Math.addExact(a, b));
+                case SUB -> checked(() -> Math.subtractExact(a, b));
+                case MUL -> checked(() -> Math.multiplyExact(a, b));
+                case DIV -> {
+                    if (b == 0) throw new ParseException("[Parser] Division by zero");
+                    yield checked(() -> Math.divideExact(a, b));
+                }
+                default -> throw new IllegalStateException();
+            });
+        }
+        double a = ((Number) l.value).doubleValue(), b = ((Number) r.value).doubleValue();
+        return AST.Const.ofFloat(switch (op) {
+            case ADD -> a + b;
+            case SUB -> a - b;
+            case MUL -> a * b;
+            case DIV -> {
+                if (b == 0) throw new ParseException("[Parser] Division by zero");
+                yield a / b;
+            }
+            default -> throw new IllegalStateException();
+        });
+    }
+
+    public static String symbol(AST.BinaryOp op) {
+        return switch (op) {
+            case ADD -> "+";
+            case SUB -> "-";
+            case MUL -> "*";
+            case DIV -> "/";
+            case EQ -> "=";
+            case NE -> "<>";
+            case LT -> "<";
+            case LE -> "<=";
+            case GT -> ">";
+            case GE -> ">=";
+            case AND -> "AND";
+            case OR -> "OR";
+        };
+    }
+
+    private static AST.Const logical(AST.BinaryOp op, AST.Const l, AST.Const r) {
+        Boolean a = truth(op, l), b = truth(op, r);
+        boolean dominant = (op == AST.BinaryOp.OR); // the value that decides the result alone
+        if ((a != null && a == dominant) || (b != null && b == dominant)) return AST.Const.ofBoolean(dominant);
+        if (a == null || b == null) return AST.Const.ofNull();
+        return AST.Const.ofBoolean(!dominant);
+    }
+
+    private static Boolean truth(AST.BinaryOp op, AST.Const c) {
+        if (c.kind == AST.Const.Kind.NULL) return null;
+        if (c.kind != AST.Const.Kind.BOOLEAN) throw typeError(symbol(op), c.kind);
+        return (Boolean) c.value;
+    }
+
+    private static AST.Const compare(AST.BinaryOp op, AST.Const l, AST.Const r) {
+        checkComparable(op, l.kind, r.kind);
+        if (l.kind == AST.Const.Kind.NULL || r.kind == AST.Const.Kind.NULL) return AST.Const.ofNull();
+        int cmp = switch (l.kind) {
+            case STRING -> compare((String) l.value, (String) r.value);
+            case BOOLEAN -> Boolean.compare((Boolean) l.value, (Boolean) r.value);
+            default -> (l.kind == AST.Const.Kind.INTEGER && r.kind == AST.Const.Kind.INTEGER)
+                    ? Integer.compare((Integer) l.value, (Integer) r.value)
+                    : compare(((Number) l.value).doubleValue(), ((Number) r.value).doubleValue());
+        };
+        return AST.Const.ofBoolean(test(op, cmp));
+    }
+
+    private static void checkComparable(AST.BinaryOp op, AST.Const.Kind l, AST.Const.Kind r) {
+        if (l == AST.Const.Kind.NULL || r == AST.Const.Kind.NULL) return;
+        boolean numbers = (l == AST.Const.Kind.INTEGER || l == AST.Const.Kind.FLOAT)
+                && (r == AST.Const.Kind.INTEGER || r == AST.Const.Kind.FLOAT);
+        boolean ok = numbers || (l == r && l == AST.Const.Kind.STRING)
+                || (l == r && l == AST.Const.Kind.BOOLEAN && (op == AST.BinaryOp.EQ || op == AST.BinaryOp.NE));
+        if (!ok) throw new ParseException("[Parser] Cannot compare " + l + " " + symbol(op) + " " + r);
+    }
+
+    // Outcome of comparison `op` given the sign of compare(left, right)
+    public static boolean test(AST.BinaryOp op, int cmp) {
+        return switch (op) {
+            case EQ -> cmp == 0;
+            case NE -> cmp != 0;
+            case LT -> cmp < 0;
+            case LE -> cmp <= 0;
+            case GT -> cmp > 0;
+            case GE -> cmp >= 0;
+            default -> throw new IllegalArgumentException("[Parser] Not a comparison: " + op);
+        };
+    }
+
+    // Numeric order where -0.0 equals 0.0 (unlike Double.compare)
+    public static int compare(double a, double b) {
+        return (a > b ? 1 : 0) - (a < b ? 1 : 0);
+    }
+
+    // Code point order, which is also the unsigned byte order of the UTF-8 encodings
+    public static int compare(String a, String b) {
+        int i = 0, j = 0;
+        while (i < a.length() && j < b.length()) {
+            int x = a.codePointAt(i), y = b.codePointAt(j);
+            if (x != y) return Integer.compare(x, y);
+            i += Character.charCount(x);
+            j += Character.charCount(y);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    private static boolean isNumber(AST.Const c) {
+        return c.kind == AST.Const.Kind.INTEGER || c.kind == AST.Const.Kind.FLOAT;
+    }
+
+    private static int checked(IntSupplier op) {
+        try {
+            return op.getAsInt();
+        } catch (ArithmeticException e) {
+            throw new ParseException("[Parser] INTEGER overflow");
+        }
+    }
+
+    private static ParseException typeError(String op, AST.Const.Kind kind) {
+        return new ParseException("[Parser] Operator " + op + " is not defined for " + kind);
+    }
+}
@@ -1,6 +1,7 @@
 package com.ziyingdeng.minidb.parser;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -18,7 +19,8 @@ public class Lexer {
         And, Or, Not, 
         True, False, 
         Boolean, Bool, Float, Double, Integer, Int, String, Text, Varchar,
-        Values, Primary, Key;
+        Values, Primary, Key, With,
+        Join, On, Order, By, Asc, Desc, Limit, Group;
 
         private static final Map<String, Keyword> LOOKUP;
         static {
@@ -36,12 +38,54 @@ public class Lexer {
             m.put("STRING", String);    m.put("TEXT", Text);
             m.put("VARCHAR", Varchar);  m.put("VALUES", Values);
             m.put("PRIMARY", Primary);  m.put("KEY", Key);
+            m.put("WITH", With);        m.put("JOIN", Join);
+            m.put("ON", On);            m.put("ORDER", Order);
+            m.put("BY", By);            m.put("ASC", Asc);
+            m.put("DESC", Desc);        m.put("LIMIT", Limit);
+            m.put("GROUP", Group);
             LOOKUP = Collections.unmodifiableMap(m);
         }
 
+        // Candidates bucketed by (length, first letter): every bucket holds at most
+        // a couple of keywords, so a match is one array index plus a short compare
+        private static final int MAX_LENGTH;
+        private static final Keyword[][][] BUCKETS;
+        private static final char[][] SPELLING = new char[values().length][];
+        static {
+            int max = 0;
+            for (String word : LOOKUP.keySet()) max = Math.max(max, word.length());
+            MAX_LENGTH = max;
+            BUCKETS = new Keyword[max + 1][26][];
+            for (Map.Entry<String, Keyword> e : LOOKUP.entrySet()) {
+                String word = e.getKey();
+                Keyword[] bucket = BUCKETS[word.length()][word.charAt(0) - 'A'];
+                bucket = (bucket == null) ? new Keyword[1] : Arrays.copyOf(bucket, bucket.length + 1);
+                bucket[bucket.length - 1] = e.getValue();
+                BUCKETS[word.length()][word.charAt(0) - 'A'] = bucket;
+                SPELLING[e.getValue().ordinal()] = word.toCharArray();
+            }
+        }
+
         // Convert String to Keyword
         public static Keyword fromString(String str) {
-            return LOOKUP.get(str.toUpperCase());
+            return match(str, 0, str.length());
+        }
+
+        // Case-insensitive lookup of s[start, start + len) without copying it
+        public static Keyword match(CharSequence s, int start, int len) {
+            if (len == 0 || len > MAX_LENGTH) return null;
+            int first = (s.charAt(start) & 0xFFDF) - 'A'; // clearing bit 5 upper-cases an ASCII letter
+            if (first < 0 || first >= 26) return null;
+            Keyword[] bucket = BUCKETS[len][first];
+            if (bucket == null) return null;
+            for (Keyword kw : bucket) {
+                char[] word = SPELLING[kw.ordinal()];
+                int k = 1;
+                // keyword spellings are upper-case letters only, so '_' and digits never match
+                while (k < len && (s.charAt(start + k) & 0xFFDF) == word[k]) k++;
+                if (k == len) return kw;
+            }
+            return null;
         }
     }
 
@@ -56,22 +100,45 @@ public class Lexer {
         IDENTITY, 
         STRING, 
         NUMBER, 
-        OPEN_PAREN, CLOSE_PAREN, COMMA, SEMICOLON,
-        ASTERISK, PLUS, MINUS, SLASH
+        OPEN_PAREN, CLOSE_PAREN, COMMA, SEMICOLON, DOT,
+        ASTERISK, PLUS, MINUS, SLASH,
+        EQ, NE, LT, LE, GT, GE,
+        QUESTION // parameter placeholder
     }
 
     public static class Token {
-        protected TokenKind kind;
-        protected String text;        // IDENT/STRING/NUMBER/symbol
-        protected Keyword keyword;    // KEYWORD
+        protected final TokenKind kind;
+        protected final String text;        // IDENT/STRING/NUMBER/symbol
+        protected final Keyword keyword;    // KEYWORD
+
+        // Keyword and symbol tokens carry no per-occurrence data, so one instance of each is shared
+        private static final Token[] KEYWORD_TOKENS = new Token[Keyword.values().length];
+        private static final Token[] SYMBOL_TOKENS = new Token[TokenKind.values().length];
+        static {
+            for (Keyword kw : Keyword.values()) {
+                KEYWORD_TOKENS[kw.ordinal()] = new Token(TokenKind.KEYWORD, kw.name(), kw);
+            }
+            for (TokenKind k : TokenKind.values()) {
+                String literal = symbolText(k);
+                if (literal != null) SYMBOL_TOKENS[k.ordinal()] = new Token(k, literal, null);
+            }
+        }
 
         private Token(TokenKind tk, String t, Keyword kw) { this.kind = tk; this.text = t; this.keyword = kw; }
 
-        public static Token keyword(Keyword kw) { return new Token(TokenKind.KEYWORD, kw.name(), kw); }
+        public static Token keyword(Keyword kw) { return KEYWORD_TOKENS[kw.ordinal()]; }
         public static Token identity(String s) { return new Token(TokenKind.IDENTITY, s, null); }
         public static Token string(String s) { return new Token(TokenKind.STRING, s, null); }
         public static Token number(String s) { return new Token(TokenKind.NUMBER, s, null); }
-        public static Token symbol(TokenKind k, String literal) { return new Token(k, literal, null); }
+        public static Token symbol(TokenKind k) { return SYMBOL_TOKENS[k.ordinal()]; }
+        public static Token symbol(TokenKind k, String literal) {
+            Token interned = SYMBOL_TOKENS[k.ordinal()];
+            return (interned != null && interned.text.equals(literal)) ? interned : new Token(k, literal, null);
+        }
+
+        public TokenKind kind() { return kind; }
+        public String text() { return text; }
+        public Keyword keyword() { return keyword; }
 
         @Override
         public boolean equals(Object o) {
@@ -94,19 +161,173 @@ public class Lexer {
         }
     }
 
+    // Literal text of a symbol kind, null for kinds that carry their own text
+    static String symbolText(TokenKind k) {
+        return switch (k) {
+            case OPEN_PAREN -> "(";
+            case CLOSE_PAREN -> ")";
+            case COMMA -> ",";
+            case SEMICOLON -> ";";
+            case DOT -> ".";
+            case ASTERISK -> "*";
+            case PLUS -> "+";
+            case MINUS -> "-";
+            case SLASH -> "/";
+            case EQ -> "=";
+            case NE -> "<>";
+            case LT -> "<";
+            case LE -> "<=";
+            case GT -> ">";
+            case GE -> ">=";
+            case QUESTION -> "?";
+            default -> null;
+        };
+    }
+
     // Lexer code
-    private char[] s; // consume sql text char by char
+    private final CharSequence s; // sql text, scanned in place and never copied
     private int i;  // record position
-    private int n; // length of string
+    private final int n; // end of the scanned region
     private boolean finished; // if we reach the end of input
     private Token cachedToken; // saved next token for peek()
 
-    public Lexer(String sqlText) {
-        this.s = sqlText.toCharArray();
-        this.i = 0;
-        this.n = sqlText.length();
+    // Primitive token stream: the token most recently scanned by advance(),
+    // described by offsets into s. Text is only materialized on demand.
+    private TokenKind kind;    // null once the input is exhausted
+    private int start;         // offset of the first char (string literals: after the opening quote)
+    private int length;        // number of chars (string literals: without the quotes)
+    private Keyword keyword;   // KEYWORD only
+    private boolean isFloat;   // NUMBER only: literal contains '.'
+
+    public Lexer(CharSequence sqlText) {
+        this(sqlText, 0, sqlText.length());
+    }
+
+    // Scan only sqlText[start, end)
+    public Lexer(CharSequence sqlText, int start, int end) {
+        if (start < 0 || end > sqlText.length() || start > end) {
+            throw new IndexOutOfBoundsException("[Lexer] Invalid range [" + start + ", " + end + ")");
+        }
+        this.s = sqlText;
+        this.i = start;
+        this.n = end;
+    }
+
+    /* ========================= primitive token stream ========================= */
+    // advance() and the token*() accessors form an allocation-free alternative to
+    // hasNext()/nextToken(). Do not mix the two modes on one Lexer instance.
+
+    // Scan the next token and return its kind, or null at end of input
+    public TokenKind advance() {
+        skipWhiteSpace();
+        if (eof()) {
+            kind = null;
+            keyword = null;
+            start = i;
+            length = 0;
+            return null;
+        }
+
+        char c = s.charAt(i);
+        keyword = null;
+        if (c == '\'') scanString();
+        else if (isDigit(c)) scanNumber();
+        else if (isLetter(c)) scanIdentityKeyword();
+        else if (isSymbol(c)) scanSymbol(c);
+        else throw new ParseException("[Lexer] Unexpected character: '" + c + "'");
+        return kind;
+    }
+
+    public TokenKind tokenKind() { return kind; }
+    public int tokenStart() { return start; }
+    public int tokenLength() { return length; }
+    public Keyword tokenKeyword() { return keyword; }
+    public boolean tokenIsFloat() { return isFloat; }
+    public CharSequence source() { return s; }
+
+    // First non-blank char after the current token, or 0 at end of input; a one-char
+    // look past the lookahead token without scanning it
+    public char nextNonBlank() {
+        int p = i;
+        while (p < n && isWhiteSpace(s.charAt(p))) p++;
+        return p < n ? s.charAt(p) : 0;
     }
 
+    // True if s[start, end) holds only the whitespace the lexer skips, i.e. no token
+    public static boolean isBlank(CharSequence s, int start, int end) {
+        for (int p = start; p < end; p++) {
+            if (!isWhiteSpace(s.charAt(p))) return false;
+        }
+        return true;
+    }
+
+    // Materialize the text of the current token
+    public String tokenText() {
+        if (kind == TokenKind.KEYWORD) return keyword.name();
+        String symbol = symbolText(kind);
+        if (symbol != null) return symbol;
+        return s.subSequence(start, start + length).toString();
+    }
+
+    // Box the current token; keywords and symbols come back as shared instances
+    public Token token() {
+        if (kind == null) return null;
+        return switch (kind) {
+            case KEYWORD -> Token.keyword(keyword);
+            case IDENTITY -> Token.identity(tokenText());
+            case STRING -> Token.string(tokenText());
+            case NUMBER -> Token.number(tokenText());
+            default -> Token.symbol(kind);
+        };
+    }
+
+    // Parse the current integer literal straight from the source chars
+    public int tokenInt() {
+        if (kind != TokenKind.NUMBER || isFloat) {
+            throw new ParseException("[Lexer] Not an integer literal: " + token());
+        }
+        long v = 0;
+        for (int p = start, end = start + length; p < end; p++) {
+            v = v * 10 + (s.charAt(p) - '0');
+            if (v > Integer.MAX_VALUE) {
+                throw new ParseException("[Lexer] Invalid numeric literal: " + tokenText());
+            }
+        }
+        return (int) v;
+    }
+
+    // Parse the current numeric literal as a double. Literals with at most 15
+    // significant digits are exact as mantissa / 10^scale; longer ones fall back to the JDK.
+    public double tokenDouble() {
+        if (kind != TokenKind.NUMBER) {
+            throw new ParseException("[Lexer] Not a numeric literal: " + token());
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean fraction = false;
+        for (int p = start, end = start + length; p < end; p++) {
+            char c = s.charAt(p);
+            if (c == '.') { fraction = true; continue; }
+            if (digits == 0 && c == '0') { // leading zeros are not significant
+                if (fraction) scale++;
+                continue;
+            }
+            if (++digits > 15) return Double.parseDouble(tokenText());
+            mantissa = mantissa * 10 + (c - '0');
+            if (fraction) scale++;
+        }
+        if (scale >= POW10.length) return Double.parseDouble(tokenText());
+        return mantissa / POW10[scale];
+    }
+
+    private static final double[] POW10 = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /* ============================== token objects ============================== */
+
     // Scan and check if there is the next token
     // -- if true, scan one token and store in cache, advance pointer
     // -- if false, set finisehd = true
@@ -135,8 +356,8 @@ public class Lexer {
         return hasNext()? cachedToken : null;
     }
     
-    // For test: collect all the tokens
-    List<Token> tokenize() {
+    // Collect all the remaining tokens
+    public List<Token> tokenize() {
         List<Token> out = new ArrayList<>();
         while (hasNext()) {
             out.add(nextToken());
@@ -144,84 +365,102 @@ public class Lexer {
         return out;
     }
 
-    // Scan and return one token from the char array
+    // Scan and return one token from the source
     private Token scanToken() {
-        // skip all white space before each token
-        skipWhiteSpace();
-        if (eof()) return null;
-
-        char c = s[i];
-        if (c == '\'') return scanString();
-        if (isDigit(c)) return scanNumber();
-        if (isLetter(c)) return scanIdentityKeyword();
-        if (isSymbol(c)) return scanSymbol(c);
-        throw new ParseException("[Lexer] Unexpected character: '" + c + "'");
+        return advance() == null ? null : token();
     }
 
     // String format: '...'
-    private Token scanString() {
+    private void scanString() {
         i++; // skip the beginning '\''
-        int start = i;
+        int begin = i;
         while (!eof()) { 
-            char c = s[i++];
+            char c = s.charAt(i++);
             if (c == '\'') {
-                return Token.string(new String(s, start, (i - 1) - start));  // skip the ending '\''
+                setToken(TokenKind.STRING, begin, (i - 1) - begin);  // skip the ending '\''
+                return;
             }
         }
         throw new ParseException("[Lexer] Unexpected end of string");
     }
 
     // Number format: 1234 and 12.34
-    private Token scanNumber() {
-        int start = i;
-        while (!eof() && isDigit(s[i])) { i++; }
-        if (!eof() && s[i] == '.') { // handle float
+    private void scanNumber() {
+        int begin = i;
+        isFloat = false;
+        while (!eof() && isDigit(s.charAt(i))) { i++; }
+        if (!eof() && s.charAt(i) == '.') { // handle float
+            isFloat = true;
             i++;
-            while (!eof() && isDigit(s[i])) { i++; }
+            while (!eof() && isDigit(s.charAt(i))) { i++; }
         }
-        return Token.number(new String(s, start, i - start));
+        setToken(TokenKind.NUMBER, begin, i - begin);
     }
 
     // Identity format: must start with letter, followed by letter/number/'_'
     // Keyword format: LOOK UP table
-    private Token scanIdentityKeyword() {
-        int start = i;
+    private void scanIdentityKeyword() {
+        int begin = i;
         i++; // first letter checked
         while (!eof()) {
-            char c = s[i];
+            char c = s.charAt(i);
             if (isLetter(c) || isDigit(c) || c == '_') { i++; }
             else break;
         }
-        String t = new String(s, start, i - start);
-        Keyword kw = Keyword.fromString(t.toUpperCase());
-        return (kw == null) ?  Token.identity(t) : Token.keyword(kw);
-        
+        Keyword kw = Keyword.match(s, begin, i - begin); // no allocation: identifiers are materialized on demand
+        setToken(kw == null ? TokenKind.IDENTITY : TokenKind.KEYWORD, begin, i - begin);
+        keyword = kw;
     }
     
-    // Suppported symbols: ( ) , ; * + - / 
-    private Token scanSymbol(char c) {
-        i++; // consume
-        return switch (c) {
-            case '(' -> Token.symbol(TokenKind.OPEN_PAREN, "(");
-            case ')' -> Token.symbol(TokenKind.CLOSE_PAREN, ")");
-            case ',' -> Token.symbol(TokenKind.COMMA, ",");
-            case ';' -> Token.symbol(TokenKind.SEMICOLON, ";");
-            case '*' -> Token.symbol(TokenKind.ASTERISK, "*");
-            case '+' -> Token.symbol(TokenKind.PLUS, "+");
-            case '-' -> Token.symbol(TokenKind.MINUS, "-");
-            case '/' -> Token.symbol(TokenKind.SLASH, "/");
+    // Suppported symbols: ( ) , ; . * + - / ? = <> != < <= > >=
+    private void scanSymbol(char c) {
+        char next = (i + 1 < n) ? s.charAt(i + 1) : 0;
+        TokenKind two = switch (c) {
+            case '<' -> next == '=' ? TokenKind.LE : next == '>' ? TokenKind.NE : null;
+            case '>' -> next == '=' ? TokenKind.GE : null;
+            case '!' -> next == '=' ? TokenKind.NE : null;
+            default -> null;
+        };
+        if (two != null) {
+            setToken(two, i, 2);
+            i += 2;
+            return;
+        }
+        TokenKind k = switch (c) {
+            case '(' -> TokenKind.OPEN_PAREN;
+            case ')' -> TokenKind.CLOSE_PAREN;
+            case ',' -> TokenKind.COMMA;
+            case ';' -> TokenKind.SEMICOLON;
+            case '.' -> TokenKind.DOT;
+            case '*' -> TokenKind.ASTERISK;
+            case '+' -> TokenKind.PLUS;
+            case '-' -> TokenKind.MINUS;
+            case '/' -> TokenKind.SLASH;
+            case '?' -> TokenKind.QUESTION;
+            case '=' -> TokenKind.EQ;
+            case '<' -> TokenKind.LT;
+            case '>' -> TokenKind.GT;
             default  -> throw new ParseException("[Lexer] Unknown symbol: '" + c + "'");
         };
+        setToken(k, i, 1);
+        i++; // consume
+    }
+
+    private void setToken(TokenKind k, int begin, int len) {
+        this.kind = k;
+        this.start = begin;
+        this.length = len;
     }
 
-    private void skipWhiteSpace() { while (!eof() && isWhiteSpace(s[i])) { i++; }}
+    private void skipWhiteSpace() { while (!eof() && isWhiteSpace(s.charAt(i))) { i++; }}
     private boolean eof() { return i >= n; }
 
-    private boolean isWhiteSpace(char c) { return c == ' ' || c == '\t' || c == '\n' || c == '\r'; }
+    private static boolean isWhiteSpace(char c) { return c == ' ' || c == '\t' || c == '\n' || c == '\r'; }
     private boolean isDigit(char c) { return c >= '0' && c <= '9'; }
     private boolean isLetter(char c) { return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'); }
     private boolean isSymbol(char c) {
-        return c == '(' || c == ')' || c == ',' || c == ';' || c == '*' || c == '+' || c == '-' || c == '/';
+        return c == '(' || c == ')' || c == ',' || c == ';' || c == '.' || c == '*' || c == '+' || c == '-' || c == '/' || c == '?'
+            || c == '=' || c == '<' || c == '>' || c == '!';
     }
 
 }
@@ -0,0 +1,115 @@
+package com.ziyingdeng.minidb.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+
+// Parses a script of independent ";"-terminated statements on a ForkJoinPool.
+// Every phase runs in parallel, so there is no serial pre-scan of the input:
+//   1. cut the text into equal slices and count the quotes in each
+//   2. a prefix sum of the quote parity tells whether each slice starts inside a '...' literal
+//   3. each slice moves its start forward to the first top-level ";" (a statement boundary)
+//   4. each resulting chunk is parsed by its own Parser; results are concatenated in order
+public class ParallelParser {
+    public static final int DEFAULT_MIN_CHUNK = 1 << 16;
+
+    private final ForkJoinPool pool;
+    private final int minChunk;
+
+    public ParallelParser() {
+        this(ForkJoinPool.commonPool(), DEFAULT_MIN_CHUNK);
+    }
+
+    public ParallelParser(ForkJoinPool pool, int minChunk) {
+        if (minChunk <= 0) throw new IllegalArgumentException("[Parser] minChunk must be positive");
+        this.pool = pool;
+        this.minChunk = minChunk;
+    }
+
+    // Statements parsed from the complete prefix text[0, consumed)
+    public record Result(List<AST.Statement> statements, int consumed) {}
+
+    // program := ( statement ";" )* EOF
+    public List<AST.Statement> parse(CharSequence script) {
+        return parse(script, false).statements();
+    }
+
+    // Parse every complete statement and stop before a trailing incomplete one,
+    // so a caller reading a window of a larger input can resume from `consumed`
+    public Result parsePrefix(CharSequence script) {
+        return parse(script, true);
+    }
+
+    private Result parse(CharSequence text, boolean partial) {
+        int n = text.length();
+        int parts = (int) Math.max(1, Math.min(n / minChunk, pool.getParallelism() * 4L));
+
+        int[] cuts = new int[parts + 1];
+        cuts[parts] = n;
+        if (parts > 1) {
+            // 1. quote parity per slice
+            List<Boolean> odd = invokeAll(parts, k -> {
+                int count = 0;
+                for (int i = slice(k, n, parts), end = slice(k + 1, n, parts); i < end; i++) {
+                    if (text.charAt(i) == '\'') count++;
+                }
+                return (count & 1) == 1;
+            });
+
+            // 2. whether each slice begins inside a string literal
+            boolean[] quoted = new boolean[parts];
+            for (int k = 1; k < parts; k++) quoted[k] = quoted[k - 1] ^ odd.get(k - 1);
+
+            // 3. the first statement boundary at or after each slice start
+            List<Integer> starts = invokeAll(parts - 1, j -> {
+                int k = j + 1;
+                StatementBoundary boundary = new StatementBoundary(quoted[k]);
+                int end = boundary.next(text, slice(k, n, parts), n);
+                return end < 0 ? n : end;
+            });
+            for (int k = 1; k < parts; k++) cuts[k] = Math.max(cuts[k - 1], starts.get(k - 1));
+        }
+
+        // 4. parse chunk by chunk; only the chunk ending at n may end mid-statement. Slices
+        // with no boundary after their start were clamped to n, leaving empty chunks after it
+        int tail = parts - 1;
+        while (tail > 0 && cuts[tail] == n) tail--;
+        int last = tail;
+        List<Result> chunks = invokeAll(last + 1, k -> parseChunk(text, cuts[k], cuts[k + 1], partial && k == last));
+
+        List<AST.Statement> out = new ArrayList<>();
+        for (Result r : chunks) out.addAll(r.statements());
+        return new Result(out, chunks.get(last).consumed());
+    }
+
+    private static Result parseChunk(CharSequence text, int start, int end, boolean partial) {
+        List<AST.Statement> out = new ArrayList<>();
+        StatementBoundary boundary = new StatementBoundary();
+        int pos = start;
+        for (int stop; (stop = boundary.next(text, pos, end)) >= 0; pos = stop) {
+            out.add(new Parser(text, pos, stop).parse());
+        }
+        if (!partial) {
+            out.addAll(new Parser(text, pos, end).parseAll()); // blank, or throws for a missing ';'
+            pos = end;
+        }
+        return new Result(out, pos);
+    }
+
+    private static int slice(int k, int n, int parts) {
+        return (int) ((long) n * k / parts);
+    }
+
+    private <T> List<T> invokeAll(int count, IntFunction<T> work) {
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            int index = k;
+            tasks.add(pool.submit(() -> work.apply(index)));
+        }
+        List<T> out = new ArrayList<>(count);
+        for (ForkJoinTask<T> t : tasks) out.add(t.join());
+        return out;
+    }
+}
@@ -0,0 +1,52 @@
+package com.ziyingdeng.minidb.parser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Bounded LRU cache of PreparedStatements keyed by SQL text, so a statement shape
+// that is sent over and over is lexed and parsed only once
+public class ParseCache {
+    private final int capacity;
+    private final LinkedHashMap<String, PreparedStatement> entries;
+    private long hits;
+    private long misses;
+
+    public ParseCache(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("[Parser] Cache capacity must be positive");
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) { // access order: eldest == least recently used
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                return size() > ParseCache.this.capacity;
+            }
+        };
+    }
+
+    public PreparedStatement prepare(String sql) {
+        synchronized (this) {
+            PreparedStatement cached = entries.get(sql);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+        // parse outside the lock; a concurrent miss on the same text just parses twice
+        PreparedStatement prepared = PreparedStatement.prepare(sql);
+        synchronized (this) {
+            entries.put(sql, prepared);
+        }
+        return prepared;
+    }
+
+    public synchronized long hits() { return hits; }
+    public synchronized long misses() { return misses; }
+    public synchronized int size() { return entries.size(); }
+    public int capacity() { return capacity; }
+
+    public synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+    }
+}
@@ -1,8 +1,19 @@
 package com.ziyingdeng.minidb.parser;
 
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import com.ziyingdeng.minidb.parser.Lexer.Keyword;
 import com.ziyingdeng.minidb.parser.Lexer.Token;
@@ -10,11 +21,33 @@ import com.ziyingdeng.minidb.parser.Lexer.TokenKind;
 
 public class Parser {
     private Lexer lexer;
-    private Token look; 
+    private TokenKind look; // kind of the lookahead token, which is the lexer's current token
+    private int paramCount; // "?" placeholders seen so far
 
-    public Parser(String input) {
-        this.lexer = new Lexer(input);
-        this.look = lexer.hasNext()? lexer.nextToken() : null; // take the first token
+    public Parser(CharSequence input) {
+        this(input, 0, input.length());
+    }
+
+    // Parse only input[start, end)
+    public Parser(CharSequence input, int start, int end) {
+        this.lexer = new Lexer(input, start, end);
+        this.look = lexer.advance(); // take the first token
+    }
+
+    // Stream statements from a script one at a time, see StatementReader
+    public static StatementReader statements(Reader reader) {
+        return new StatementReader(reader);
+    }
+
+    public static StatementReader statements(ReadableByteChannel channel) {
+        return new StatementReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+    }
+
+    public static Stream<AST.Statement> stream(Reader reader) {
+        StatementReader statements = new StatementReader(reader);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(statements, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(statements::close);
     }
 
     /* ================================ entry ================================ */
@@ -22,188 +55,451 @@ public class Parser {
     // program := statement ";" EOF
     public AST.Statement parse() {
         AST.Statement stmt = parseStatement();
-        nextExpect(Token.symbol(TokenKind.SEMICOLON, ";"));
+        expect(TokenKind.SEMICOLON);
         if (look != null) {
-            throw new ParseException("[Parser] Unexpected token after ';': " + look);
+            throw new ParseException("[Parser] Unexpected token after ';': " + lexer.token());
         }
         return stmt;
     }
     
+    // Number of "?" placeholders parsed so far
+    public int parameterCount() { return paramCount; }
+
+    // program := ( statement ";" )* EOF
+    public List<AST.Statement> parseAll() {
+        List<AST.Statement> out = new ArrayList<>();
+        while (look != null) {
+            out.add(parseStatement());
+            expect(TokenKind.SEMICOLON);
+        }
+        return out;
+    }
+
     private AST.Statement parseStatement() {
-        Token t = peek();
-        if (t.kind == TokenKind.KEYWORD) {
-            return switch (t.keyword) {
+        peek();
+        if (look == TokenKind.KEYWORD) {
+            return switch (lexer.tokenKeyword()) {
                 case Create -> parseDDL();
                 case Select -> parseSelect();
                 case Insert -> parseInsert();
-                default -> throw new ParseException("[Parser] Unexpected keyword " + t);
+                default -> throw new ParseException("[Parser] Unexpected keyword " + lexer.token());
             };
         }
-        throw new ParseException("[Parser] Unexpected token " + t);
+        throw new ParseException("[Parser] Unexpected token " + lexer.token());
     }
 
     /* ================================ CREATE ================================= */
     private AST.Statement parseDDL() {
-        nextExpect(Token.keyword(Keyword.Create));
-        nextExpect(Token.keyword(Keyword.Table));
+        expect(Keyword.Create);
+        expect(Keyword.Table);
         return parseDDLCreateTable();
     }
 
-    // CREATE TABLE name "(" column_def ("," column_def)* ")"
+    // CREATE TABLE name "(" column_def ("," column_def)* ")" [ WITH "(" option ("," option)* ")" ]
     private AST.Statement parseDDLCreateTable() {
         String tableName = nextIdentity();
-        nextExpect(Token.symbol(TokenKind.OPEN_PAREN, "("));
+        expect(TokenKind.OPEN_PAREN);
 
         List<AST.Column> columns = new ArrayList<>();
         while (true) {
             columns.add(parseDDLColumns());
-            if (nextIfToken(Token.symbol(TokenKind.COMMA, ",")) == null) break;
+            if (!nextIf(TokenKind.COMMA)) break;
         }
-        nextExpect(Token.symbol(TokenKind.CLOSE_PAREN, ")"));
-        return new AST.CreateTable(tableName, columns);
+        expect(TokenKind.CLOSE_PAREN);
+        if (!isKeyword(Keyword.With)) return new AST.CreateTable(tableName, columns);
+
+        advance();
+        expect(TokenKind.OPEN_PAREN);
+        Map<String, String> options = new LinkedHashMap<>();
+        while (true) {
+            String option = nextIdentity().toLowerCase(Locale.ROOT);
+            if (options.put(option, parseDDLOptionValue()) != null) {
+                throw new ParseException("[Parser] Option '" + option + "' given twice");
+            }
+            if (!nextIf(TokenKind.COMMA)) break;
+        }
+        expect(TokenKind.CLOSE_PAREN);
+        return new AST.CreateTable(tableName, columns, Collections.unmodifiableMap(options));
+    }
+
+    // option := ident "=" ( ident | literal ); the storage layer interprets the text
+    private String parseDDLOptionValue() {
+        expect(TokenKind.EQ);
+        return switch (parseExpression()) {
+            case AST.ColumnRef ref -> ref.name();
+            case AST.Const c when c.kind != AST.Const.Kind.NULL -> String.valueOf(c.value);
+            case AST.Expression e -> throw new ParseException("[Parser] Option value must be a name or literal, got " + e);
+        };
     }
 
-    // column_def := ident data_type ( "NOT" "NULL" | "NULL" | "DEFAULT" expr )*
+    // column_def := ident data_type ( "NOT" "NULL" | "NULL" | "DEFAULT" expr | "PRIMARY" "KEY" )*
     private AST.Column parseDDLColumns() {
         String name = nextIdentity();
         
         // Convert Token.KEYWORD -> AST.DataType
-        Token t = next();
-        if (t.kind != TokenKind.KEYWORD) {
-            throw new ParseException("[Parser] Unexpected token " + t);
-        }
-        AST.DataType dataType = switch (t.keyword) {
+        Keyword typeKeyword = nextKeyword();
+        AST.DataType dataType = switch (typeKeyword) {
             case Boolean, Bool -> AST.DataType.BOOLEAN;
             case Integer, Int  -> AST.DataType.INTEGER;
             case Float, Double -> AST.DataType.FLOAT;
             case String, Text, Varchar -> AST.DataType.STRING;
-            default -> throw new ParseException("[Parser] Unexpected keyword " + t.keyword);
+            default -> throw new ParseException("[Parser] Unexpected keyword " + typeKeyword);
         };
 
         // If unspecified in sql text, set to null initially
         Boolean nullable = null;  
         AST.Expression defaultExpr = null;
+        boolean primaryKey = false;
 
-        while (true) {
-            // continue to retrieve keyword until no keyword
-            Token k = nextIfKeyword();
-            if (k == null) break;
-
-            switch (k.keyword) {
+        // continue to retrieve keyword until no keyword
+        while (look == TokenKind.KEYWORD) {
+            Keyword k = nextKeyword();
+            switch (k) {
                 // Nullable is set when "NOT NULL"/"NULL" provided, otherwise remains null
                 case Null -> nullable = Boolean.TRUE;
                 case Not -> { 
-                    nextExpect(Token.keyword(Keyword.Null)); 
+                    expect(Keyword.Null); 
                     nullable = Boolean.FALSE; 
                 }
                 case Default -> defaultExpr = parseExpression();
-                default -> throw new ParseException("[Parser] Unexpected keyword " + k.keyword);
+                case Primary -> {
+                    expect(Keyword.Key);
+                    primaryKey = true;
+                }
+                default -> throw new ParseException("[Parser] Unexpected keyword " + k);
             }
         }
-        return new AST.Column(name, dataType, nullable, defaultExpr);
+        return new AST.Column(name, dataType, nullable, defaultExpr, primaryKey);
     }
 
-    // Now only support：NUMBER / STRING / TRUE / FALSE / NULL
+    /* ============================== EXPRESSION ============================= */
+
+    // expr := or_expr, folded to a Const where possible
     private AST.Expression parseExpression() {
-        Token t = next();
-        // convert Token.KEYWORD/Token.STRING/Token.NUMBER -> AST.Expression
-        return switch (t.kind) {
-            case STRING -> AST.Const.ofString(t.text);
-            case NUMBER -> {
-                String raw = t.text;
-                boolean isFloat = raw.indexOf('.') >= 0;
-                try {
-                    if (isFloat) {
-                        double v = Double.parseDouble(raw);
-                        yield AST.Const.ofFloat(v);
-                    } else {
-                        int v = Integer.parseInt(raw); 
-                        yield AST.Const.ofInteger(v);
-                    }
+        return ConstantFolder.fold(parseOr(null));
+    }
+
+    // Each level takes `first`, an already-parsed leading factor, or null
+
+    // or_expr := and_expr ( "OR" and_expr )*
+    private AST.Expression parseOr(AST.Expression first) {
+        AST.Expression left = parseAnd(first);
+        while (isKeyword(Keyword.Or)) {
+            advance();
+            left = new AST.Binary(AST.BinaryOp.OR, left, parseAnd(null));
+        }
+        return left;
+    }
+
+    // and_expr := not_expr ( "AND" not_expr )*
+    private AST.Expression parseAnd(AST.Expression first) {
+        AST.Expression left = parseNot(first);
+        while (isKeyword(Keyword.And)) {
+            advance();
+            left = new AST.Binary(AST.BinaryOp.AND, left, parseNot(null));
+        }
+        return left;
+    }
+
+    // not_expr := "NOT" not_expr | comparison
+    private AST.Expression parseNot(AST.Expression first) {
+        if (first == null && isKeyword(Keyword.Not)) {
+            advance();
+            return new AST.Unary(AST.UnaryOp.NOT, parseNot(null));
+        }
+        return parseComparison(first);
+    }
+
+    // comparison := sum [ ( "=" | "<>" | "!=" | "<" | "<=" | ">" | ">=" ) sum ]
+    private AST.Expression parseComparison(AST.Expression first) {
+        AST.Expression left = parseSum(first);
+        AST.BinaryOp op = (look == null) ? null : switch (look) {
+            case EQ -> AST.BinaryOp.EQ;
+            case NE -> AST.BinaryOp.NE;
+            case LT -> AST.BinaryOp.LT;
+            case LE -> AST.BinaryOp.LE;
+            case GT -> AST.BinaryOp.GT;
+            case GE -> AST.BinaryOp.GE;
+            default -> null;
+        };
+        if (op == null) return left;
+        advance();
+        return new AST.Binary(op, left, parseSum(null));
+    }
+
+    // sum := term ( ("+" | "-") term )*
+    private AST.Expression parseSum(AST.Expression first) {
+        AST.Expression left = parseTerm(first);
+        while (look == TokenKind.PLUS || look == TokenKind.MINUS) {
+            AST.BinaryOp op = (look == TokenKind.PLUS) ? AST.BinaryOp.ADD : AST.BinaryOp.SUB;
+            advance();
+            left = new AST.Binary(op, left, parseTerm(null));
+        }
+        return left;
+    }
+
+    // term := factor ( ("*" | "/") factor )*
+    private AST.Expression parseTerm(AST.Expression first) {
+        AST.Expression left = (first != null) ? first : parseFactor();
+        while (look == TokenKind.ASTERISK || look == TokenKind.SLASH) {
+            AST.BinaryOp op = (look == TokenKind.ASTERISK) ? AST.BinaryOp.MUL : AST.BinaryOp.DIV;
+            advance();
+            left = new AST.Binary(op, left, parseFactor());
+        }
+        return left;
+    }
 
-                } catch (NumberFormatException e) {
-                    throw new ParseException("[Parser] Invalid numeric literal: " + raw, e);
-                } 
+    // factor := literal | "?" | column | "(" expr ")" | ( "NOT" | "+" | "-" ) factor
+    private AST.Expression parseFactor() {
+        switch (peek()) {
+            case PLUS, MINUS -> {
+                AST.UnaryOp op = (look == TokenKind.PLUS) ? AST.UnaryOp.PLUS : AST.UnaryOp.MINUS;
+                advance();
+                return new AST.Unary(op, parseFactor());
             }
-            case KEYWORD -> switch (t.keyword) {
+            case OPEN_PAREN -> {
+                advance();
+                AST.Expression inner = parseOr(null);
+                expect(TokenKind.CLOSE_PAREN);
+                return inner;
+            }
+            case IDENTITY -> {
+                return new AST.ColumnRef(parseColumnName());
+            }
+            case KEYWORD -> {
+                if (lexer.tokenKeyword() == Keyword.Not) {
+                    advance();
+                    return new AST.Unary(AST.UnaryOp.NOT, parseFactor());
+                }
+            }
+            default -> {}
+        }
+        // single-token leaves; literals are read straight from the lexer's offsets
+        AST.Expression expr = switch (look) {
+            case STRING -> AST.Const.ofString(lexer.tokenText());
+            case QUESTION -> new AST.Param(paramCount++);
+            case NUMBER -> lexer.tokenIsFloat()
+                    ? AST.Const.ofFloat(lexer.tokenDouble())
+                    : AST.Const.ofInteger(lexer.tokenInt());
+            case KEYWORD -> switch (lexer.tokenKeyword()) {
                 case True -> AST.Const.ofBoolean(true);
                 case False -> AST.Const.ofBoolean(false);
                 case Null -> AST.Const.ofNull();
-                default -> throw new ParseException("[Parser] Unexpected keyword" + t.keyword);
+                default -> throw new ParseException("[Parser] Unexpected keyword " + lexer.tokenKeyword());
             };
-            default -> throw new ParseException("[Parser] Unexpected token" + t);
+            default -> throw new ParseException("[Parser] Unexpected token " + lexer.token());
         };
+        advance();
+        return expr;
     }
 
     /* ================================= SELECT ============================= */
 
-    // Now only support: SELECT "*" FROM ident
+    // SELECT ( "*" | item ( "," item )* ) FROM ident
+    //     [ JOIN ident ON column "=" column ] [ WHERE expr ]
+    //     [ GROUP BY column ( "," column )* ]
+    //     [ ORDER BY item [ ASC | DESC ] ] [ LIMIT int ]
+    // item   := aggregate | column
+    // column := ident [ "." ident ]
     private AST.Statement parseSelect() {
-        nextExpect(Token.keyword(Keyword.Select));
-        nextExpect(Token.symbol(TokenKind.ASTERISK, "*"));
-        nextExpect(Token.keyword(Keyword.From));
+        expect(Keyword.Select);
+        List<AST.Aggregate> aggregates = List.of();
+        if (!nextIf(TokenKind.ASTERISK)) {
+            aggregates = new ArrayList<>();
+            do {
+                aggregates.add(parseSelectItem());
+            } while (nextIf(TokenKind.COMMA));
+        }
+        expect(Keyword.From);
         String table = nextIdentity();
-        return new AST.Select(table);
+        AST.Join join = null;
+        if (isKeyword(Keyword.Join)) {
+            advance();
+            String other = nextIdentity();
+            expect(Keyword.On);
+            String left = parseColumnName();
+            expect(TokenKind.EQ);
+            join = new AST.Join(other, left, parseColumnName());
+        }
+        AST.Expression where = null;
+        if (isKeyword(Keyword.Where)) {
+            advance();
+            where = parseExpression();
+        }
+        List<String> groupBy = List.of();
+        if (isKeyword(Keyword.Group)) {
+            if (aggregates.isEmpty()) throw new ParseException("[Parser] GROUP BY needs a select list, not *");
+            advance();
+            expect(Keyword.By);
+            groupBy = new ArrayList<>();
+            do {
+                groupBy.add(parseColumnName());
+            } while (nextIf(TokenKind.COMMA));
+        }
+        AST.OrderBy orderBy = null;
+        if (isKeyword(Keyword.Order)) {
+            advance();
+            expect(Keyword.By);
+            AST.Aggregate item = parseSelectItem();
+            boolean descending = isKeyword(Keyword.Desc);
+            if (descending || isKeyword(Keyword.Asc)) advance();
+            orderBy = new AST.OrderBy(item, descending);
+        }
+        long limit = AST.Select.NO_LIMIT;
+        if (isKeyword(Keyword.Limit)) {
+            advance();
+            if (peek() != TokenKind.NUMBER || lexer.tokenIsFloat()) {
+                throw new ParseException("[Parser] LIMIT expects a non-negative INTEGER, got " + lexer.token());
+            }
+            limit = lexer.tokenInt();
+            advance();
+        }
+        return new AST.Select(table, join, where, aggregates, groupBy, orderBy, limit);
+    }
+
+    // ident [ "." ident ], a qualified name kept as one "table.column" string
+    private String parseColumnName() {
+        String name = nextIdentity();
+        if (look != TokenKind.DOT) return name;
+        advance();
+        return name + "." + nextIdentity();
+    }
+
+    // aggregate := ( COUNT | SUM | MIN | MAX | AVG ) "(" column ")" | COUNT "(" "*" ")"
+    // or a plain column, as an Aggregate without a function. Function names are
+    // identifiers, matched case-insensitively
+    private AST.Aggregate parseSelectItem() {
+        String name = nextIdentity();
+        if (look != TokenKind.OPEN_PAREN) {
+            if (look != TokenKind.DOT) return new AST.Aggregate(null, name);
+            advance();
+            return new AST.Aggregate(null, name + "." + nextIdentity());
+        }
+        AST.AggregateFunction function;
+        try {
+            function = AST.AggregateFunction.valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("[Parser] Expected an aggregate function, got " + name);
+        }
+        advance();
+        String column = (function == AST.AggregateFunction.COUNT && nextIf(TokenKind.ASTERISK)) ? null : parseColumnName();
+        expect(TokenKind.CLOSE_PAREN);
+        return new AST.Aggregate(function, column);
     }
 
     /* ================================= INSERT ============================= */
 
     // INSERT INTO table [(col,...)] VALUES (expr,...) [, (expr,...)]*
     private AST.Statement parseInsert() {
-        nextExpect(Token.keyword(Keyword.Insert));
-        nextExpect(Token.keyword(Keyword.Into));
+        expect(Keyword.Insert);
+        expect(Keyword.Into);
         
         String table = nextIdentity();
 
         // Parse list of column names
         List<String> colNames = null;
-        if (nextIfToken(Token.symbol(TokenKind.OPEN_PAREN, "(")) != null) {
+        if (nextIf(TokenKind.OPEN_PAREN)) {
             colNames = new ArrayList<>();
             while (true) {
                 // continue to retrieve pair of [ col_name, "," ], until ")" is met
                 colNames.add(nextIdentity());
-                Token sep = next();
-                if (sep.equals(Token.symbol(TokenKind.CLOSE_PAREN, ")"))) break; 
-                if (sep.equals(Token.symbol(TokenKind.COMMA, ","))) continue;
-                throw new ParseException("[Parser] Unexpected token " + sep);
+                if (nextListSeparator()) break;
             }
         }
 
         // Parse list of values 
-        nextExpect(Token.keyword(Keyword.Values));
+        expect(Keyword.Values);
 
-        // Values could be a single expression or contain nested tuples
-        List<List<AST.Expression>> rows = new ArrayList<>();
+        // Values could be a single expression or contain nested tuples.
+        // Rows are filled straight into a ColumnBatch while every cell is a literal
+        // of a consistent type; the first cell that isn't switches to row-wise lists.
+        ColumnBatch batch = new ColumnBatch();
+        List<List<AST.Expression>> rows = null;
         while (true) {
-            nextExpect(Token.symbol(TokenKind.OPEN_PAREN, "("));
-            List<AST.Expression> exprs = new ArrayList<>();
+            expect(TokenKind.OPEN_PAREN);
+            List<AST.Expression> exprs = (rows == null) ? null : new ArrayList<>();
+            int col = 0;
             while (true) {
-                if (peek().equals(Token.symbol(TokenKind.OPEN_PAREN, "("))) {
-                    exprs.add(parseParenthesizedConst());
+                if (rows == null) {
+                    ColumnBatch.Vector v = batch.cellColumn(col);
+                    if (v == null || !appendLiteral(v)) {
+                        // not a lone literal: parse the whole cell, which may still fold to a constant
+                        AST.Expression value = parseValue();
+                        if (v == null || !(value instanceof AST.Const c) || !v.append(c)) {
+                            rows = batch.toRows();
+                            exprs = batch.pendingRow();
+                            exprs.add(value);
+                        }
+                    }
+                } else {
+                    exprs.add(parseValue());
+                }
+                col++;
+                if (nextListSeparator()) break;
+            }
+            if (rows == null && !batch.endRow()) {
+                rows = batch.toRows();
+                exprs = batch.pendingRow();
+            }
+            if (rows != null) rows.add(exprs);
+            if (!nextIf(TokenKind.COMMA)) break;
+        }
+        return rows == null
+                ? new AST.Insert(table, colNames, batch)
+                : new AST.Insert(table, colNames, rows);
+    }
+
+    // Append a single-token literal cell to the batch column without building an
+    // AST.Const. Returns false, consuming nothing, if the cell is anything else
+    // (an operator follows, it is not a literal, or its type does not fit).
+    private boolean appendLiteral(ColumnBatch.Vector v) {
+        char next = lexer.nextNonBlank();
+        if (next != ',' && next != ')') return false;
+        switch (peek()) {
+            case NUMBER -> {
+                if (lexer.tokenIsFloat()) {
+                    if (!v.accepts(AST.Const.Kind.FLOAT)) return false;
+                    v.appendDouble(lexer.tokenDouble());
                 } else {
-                    exprs.add(parseExpression());
+                    if (!v.accepts(AST.Const.Kind.INTEGER)) return false;
+                    v.appendInt(lexer.tokenInt());
+                }
+            }
+            case STRING -> {
+                if (!v.accepts(AST.Const.Kind.STRING)) return false;
+                if (!v.appendAscii(lexer.source(), lexer.tokenStart(), lexer.tokenLength())) {
+                    v.appendString(lexer.tokenText());
+                }
+            }
+            case KEYWORD -> {
+                switch (lexer.tokenKeyword()) {
+                    case True, False -> {
+                        if (!v.accepts(AST.Const.Kind.BOOLEAN)) return false;
+                        v.appendBoolean(lexer.tokenKeyword() == Keyword.True);
+                    }
+                    case Null -> v.appendNull();
+                    default -> { return false; }
                 }
-                Token sep = next();
-                if (sep.equals(Token.symbol(TokenKind.CLOSE_PAREN, ")"))) break;
-                if (sep.equals(Token.symbol(TokenKind.COMMA, ","))) continue;
-                throw new ParseException("[Parser] Unexpected token " + sep);
             }
-            rows.add(exprs);
-            if (nextIfToken(Token.symbol(TokenKind.COMMA, ",")) == null) break;
+            default -> { return false; }
         }
-        return new AST.Insert(table, colNames, rows);
+        advance();
+        return true;
     }
 
-    private AST.Const parseParenthesizedConst() {
-        nextExpect(Token.symbol(TokenKind.OPEN_PAREN, "("));
+    // value := "(" expr ( "," expr )+ ")"   a tuple, kept as one string "(a, b)"
+    //        | expr
+    private AST.Expression parseValue() {
+        if (look != TokenKind.OPEN_PAREN) return parseExpression();
+        advance();
+        AST.Expression first = parseOr(null);
+        if (nextIf(TokenKind.CLOSE_PAREN)) {
+            return ConstantFolder.fold(parseOr(first)); // just a parenthesized leading factor, e.g. (1 + 2) * 3
+        }
         List<String> parts = new ArrayList<>();
-        while (true) {
-            AST.Expression expr = parseExpression();
-            parts.add(expressionToString(expr));
-            Token sep = next();
-            if (sep.equals(Token.symbol(TokenKind.CLOSE_PAREN, ")"))) break;
-            if (sep.equals(Token.symbol(TokenKind.COMMA, ","))) continue;
-            throw new ParseException("[Parser] Unexpected token " + sep);
+        parts.add(expressionToString(ConstantFolder.fold(first)));
+        while (!nextListSeparator()) {
+            parts.add(expressionToString(parseExpression()));
         }
         return AST.Const.ofString("(" + String.join(", ", parts) + ")");
     }
@@ -224,48 +520,70 @@ public class Parser {
 
     /* ================================ helpers ============================== */
 
-    // Returns the current lookahead token without consuming it
-    private Token peek() {
+    // Returns the kind of the current lookahead token without consuming it
+    private TokenKind peek() {
         if (look == null) throw new ParseException("[Parser] Unexpected End of input");
         return look;
     }
 
-    // Returns the current token and advances look to the next token 
-    private Token next() {
-        if (look == null) throw new ParseException("[Parser] Unexpected End of input");
-        Token cur = look;
-        look = lexer.hasNext() ? lexer.nextToken() : null;
-        return cur;
+    // Consume the current token and move look to the next token
+    private void advance() {
+        peek();
+        look = lexer.advance();
     }
 
-    // Check if the next token is the expected token
-    private void nextExpect(Token expected) {
-        Token t = next();
-        if (!t.equals(expected)) {
-            throw new ParseException("[Parser] Expected token " + expected + ", got " + t);
+    // Check if the next token is the expected symbol
+    private void expect(TokenKind expected) {
+        if (peek() != expected) {
+            throw new ParseException("[Parser] Expected token " + Token.symbol(expected) + ", got " + lexer.token());
         }
+        advance();
+    }
+
+    // Check if the next token is the expected keyword
+    private void expect(Keyword expected) {
+        if (peek() != TokenKind.KEYWORD || lexer.tokenKeyword() != expected) {
+            throw new ParseException("[Parser] Expected token " + Token.keyword(expected) + ", got " + lexer.token());
+        }
+        advance();
     }
 
     // Parse and return identity
     private String nextIdentity() {
-        Token t = next();
-        if (t.kind == TokenKind.IDENTITY) return t.text;
-        throw new ParseException("[Parser] Expected ident, got token " + t); 
+        if (peek() != TokenKind.IDENTITY) {
+            throw new ParseException("[Parser] Expected ident, got token " + lexer.token());
+        }
+        String text = lexer.tokenText();
+        advance();
+        return text;
     }
 
-    // Return the next token if it satisfies the predicate
-    private Token nextIf(Predicate<Token> predicate) {
-        if (look != null && predicate.test(look)) {
-            return next();
+    // Parse and return keyword
+    private Keyword nextKeyword() {
+        if (peek() != TokenKind.KEYWORD) {
+            throw new ParseException("[Parser] Unexpected token " + lexer.token());
         }
-        return null;
+        Keyword kw = lexer.tokenKeyword();
+        advance();
+        return kw;
     }
 
-    private Token nextIfKeyword() {
-        return nextIf(t -> t.kind == TokenKind.KEYWORD);
+    // Whether the lookahead is the given keyword
+    private boolean isKeyword(Keyword kw) {
+        return look == TokenKind.KEYWORD && lexer.tokenKeyword() == kw;
     }
 
-    private Token nextIfToken(Token token) {
-        return nextIf(token::equals);
-    }  
+    // Consume the next token if it is the given symbol
+    private boolean nextIf(TokenKind kind) {
+        if (look != kind) return false;
+        advance();
+        return true;
+    }
+
+    // Consume a list separator: true for ")" (list closed), false for "," (more items)
+    private boolean nextListSeparator() {
+        if (nextIf(TokenKind.CLOSE_PAREN)) return true;
+        if (nextIf(TokenKind.COMMA)) return false;
+        throw new ParseException("[Parser] Unexpected token " + (look == null ? "<EOF>" : lexer.token()));
+    }
 }
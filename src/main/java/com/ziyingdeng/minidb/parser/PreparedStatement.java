@@ -0,0 +1,97 @@
+package com.ziyingdeng.minidb.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A statement parsed once with "?" placeholders. bind() substitutes values into
+// the AST template directly; the SQL text is never lexed or parsed again.
+public class PreparedStatement {
+    private final String sql;
+    private final AST.Statement template;
+    private final int parameterCount;
+
+    private PreparedStatement(String sql, AST.Statement template, int parameterCount) {
+        this.sql = sql;
+        this.template = template;
+        this.parameterCount = parameterCount;
+    }
+
+    public static PreparedStatement prepare(String sql) {
+        Parser parser = new Parser(sql);
+        AST.Statement stmt = parser.parse();
+        return new PreparedStatement(sql, stmt, parser.parameterCount());
+    }
+
+    public String sql() { return sql; }
+    public AST.Statement template() { return template; }
+    public int parameterCount() { return parameterCount; }
+
+    // Values are matched to placeholders by position: null, Boolean, Integer
+    // (or Short/Byte/Long within int range), Float/Double or String
+    public AST.Statement bind(Object... values) {
+        if (values.length != parameterCount) {
+            throw new IllegalArgumentException(
+                    "[Parser] Expected " + parameterCount + " parameters, got " + values.length);
+        }
+        if (parameterCount == 0) return template;
+        AST.Const[] args = new AST.Const[values.length];
+        for (int i = 0; i < values.length; i++) args[i] = toConst(values[i], i);
+
+        return switch (template) {
+            case AST.Insert insert -> new AST.Insert(insert.tableName(), insert.columns(), bindRows(insert.rows(), args));
+            case AST.CreateTable create -> new AST.CreateTable(create.name(), bindColumns(create.columns(), args), create.options());
+            case AST.Select select -> new AST.Select(select.tableName(), select.join(), bind(select.where(), args), select.aggregates(),
+                    select.groupBy(), select.orderBy(), select.limit());
+            default -> template;
+        };
+    }
+
+    private static List<List<AST.Expression>> bindRows(List<List<AST.Expression>> rows, AST.Const[] args) {
+        List<List<AST.Expression>> out = new ArrayList<>(rows.size());
+        for (List<AST.Expression> row : rows) {
+            List<AST.Expression> bound = new ArrayList<>(row.size());
+            for (AST.Expression e : row) bound.add(bind(e, args));
+            out.add(bound);
+        }
+        return out;
+    }
+
+    private static List<AST.Column> bindColumns(List<AST.Column> columns, AST.Const[] args) {
+        List<AST.Column> out = new ArrayList<>(columns.size());
+        for (AST.Column c : columns) {
+            out.add(c.defaulExpr() == null ? c
+                    : new AST.Column(c.name(), c.DataType(), c.nullable(), bind(c.defaulExpr(), args), c.primaryKey()));
+        }
+        return out;
+    }
+
+    // Substitute placeholders anywhere in the tree, then fold what became constant
+    private static AST.Expression bind(AST.Expression e, AST.Const[] args) {
+        return ConstantFolder.fold(substitute(e, args));
+    }
+
+    private static AST.Expression substitute(AST.Expression e, AST.Const[] args) {
+        return switch (e) {
+            case AST.Param p -> args[p.index()];
+            case AST.Unary u -> new AST.Unary(u.op(), substitute(u.operand(), args));
+            case AST.Binary b -> new AST.Binary(b.op(), substitute(b.left(), args), substitute(b.right(), args));
+            default -> e;
+        };
+    }
+
+    private static AST.Const toConst(Object v, int index) {
+        return switch (v) {
+            case null -> AST.Const.ofNull();
+            case Boolean b -> AST.Const.ofBoolean(b);
+            case Integer i -> AST.Const.ofInteger(i);
+            case Short s -> AST.Const.ofInteger(s);
+            case Byte b -> AST.Const.ofInteger(b);
+            case Long l when l >= Integer.MIN_VALUE && l <= Integer.MAX_VALUE -> AST.Const.ofInteger(l.intValue());
+            case Double d -> AST.Const.ofFloat(d);
+            case Float f -> AST.Const.ofFloat(f);
+            case String s -> AST.Const.ofString(s);
+            default -> throw new IllegalArgumentException(
+                    "[Parser] Unsupported value for parameter " + (index + 1) + ": " + v);
+        };
+    }
+}
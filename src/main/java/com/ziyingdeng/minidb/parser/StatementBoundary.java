@@ -0,0 +1,34 @@
+package com.ziyingdeng.minidb.parser;
+
+// Finds the ";" that ends a statement without tokenizing it. The only place a ";"
+// can appear inside a statement is a '...' literal, which (as in Lexer.scanString)
+// runs to the next quote with no escapes, so tracking quote parity is exact.
+// The scan is resumable: the quote state carries over between calls.
+public final class StatementBoundary {
+    private boolean inString;
+
+    public StatementBoundary() {}
+
+    // Resume scanning at a position already known to be inside (or outside) a literal
+    public StatementBoundary(boolean inString) { this.inString = inString; }
+
+    // Returns the index just after the first top-level ';' in s[from, to), or -1
+    public int next(CharSequence s, int from, int to) {
+        boolean quoted = inString;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (c == ';' && !quoted) {
+                inString = false;
+                return i + 1;
+            }
+        }
+        inString = quoted;
+        return -1;
+    }
+
+    public boolean inString() { return inString; }
+
+    public void reset() { inString = false; }
+}
@@ -0,0 +1,93 @@
+package com.ziyingdeng.minidb.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Parses a script one statement at a time: program := ( statement ";" )* EOF
+// Only the statement being parsed plus one read chunk is buffered, so memory stays
+// bounded by the largest statement no matter how long the script is.
+public class StatementReader implements Iterator<AST.Statement>, Closeable {
+    private static final int CHUNK = 8192;
+
+    private final Reader reader;
+    private final char[] chunk = new char[CHUNK];
+    private final StringBuilder buf = new StringBuilder(CHUNK);
+    private final StatementBoundary boundary = new StatementBoundary();
+    private int pos;        // start of the next statement in buf
+    private int scanned;    // buf[pos, scanned) holds no top-level ';'
+    private boolean eof;
+    private AST.Statement next;
+    private long count;     // statements returned so far
+
+    public StatementReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) return true;
+        while (true) {
+            int end = boundary.next(buf, scanned, buf.length());
+            if (end >= 0) {
+                next = parse(pos, end);
+                pos = scanned = end;
+                return true;
+            }
+            scanned = buf.length();
+            if (eof) {
+                if (Lexer.isBlank(buf, pos, buf.length())) return false;
+                next = parse(pos, buf.length()); // no ';': throws the usual parse error
+                pos = scanned = buf.length();
+                return true;
+            }
+            fill();
+        }
+    }
+
+    @Override
+    public AST.Statement next() {
+        if (!hasNext()) throw new NoSuchElementException("No more statements");
+        AST.Statement stmt = next;
+        next = null;
+        count++;
+        return stmt;
+    }
+
+    // Number of statements returned so far
+    public long count() { return count; }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Drop the consumed prefix and append the next chunk of input
+    private void fill() {
+        buf.delete(0, pos);
+        scanned -= pos;
+        pos = 0;
+        try {
+            int read = reader.read(chunk);
+            if (read < 0) eof = true;
+            else buf.append(chunk, 0, read);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private AST.Statement parse(int start, int end) {
+        try {
+            return new Parser(buf, start, end).parse();
+        } catch (ParseException e) {
+            throw new ParseException("[Parser] Statement " + (count + 1) + ": " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.ziyingdeng.minidb.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ziyingdeng.minidb.parser.AST;
+
+// Blocking client for Server. query() is one round trip; send() queues queries
+// without waiting, flush() sends them together, and receive() then returns their
+// replies one query at a time, in order. Not thread-safe: one client per thread.
+public final class Client implements Closeable {
+    private final Socket socket;
+    private final FrameInput in;
+    private final OutputStream os;
+    private final FrameOutput out = new FrameOutput();
+
+    // What one statement produced
+    public sealed interface Reply {}
+    public record Created(String table) implements Reply {}
+    public record Inserted(long rows) implements Reply {}
+    public record Rows(List<String> columns, List<AST.DataType> types, List<Object[]> rows) implements Reply {}
+    public record Error(String message) implements Reply {}
+
+    private Client(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new FrameInput(socket.getInputStream());
+        this.os = socket.getOutputStream();
+    }
+
+    public static Client connect(String host, int port) throws IOException {
+        Socket socket = new Socket(host, port);
+        socket.setTcpNoDelay(true);
+        return new Client(socket);
+    }
+
+    // One round trip: send the statements and wait for their replies
+    public List<Reply> query(String sql) throws IOException {
+        send(sql);
+        flush();
+        return receive();
+    }
+
+    // Queue a QUERY frame of one or more statements
+    public void send(String sql) {
+        out.begin(Protocol.QUERY);
+        byte[] text = sql.getBytes(StandardCharsets.UTF_8);
+        out.raw(text, 0, text.length);
+        out.end();
+    }
+
+    public void flush() throws IOException {
+        out.flush(os);
+    }
+
+    // Replies to the oldest query not yet received, up to its READY
+    public List<Reply> receive() throws IOException {
+        List<Reply> replies = new ArrayList<>();
+        Rows rows = null;
+        while (true) {
+            if (!in.next()) throw new ServerException("[Server] Connection closed while awaiting a reply");
+            ByteBuffer p = in.payload();
+            switch (in.type()) {
+                case Protocol.CREATED -> replies.add(new Created(FrameInput.string(p)));
+                case Protocol.INSERTED -> replies.add(new Inserted(p.getLong()));
+                case Protocol.COLUMNS -> {
+                    int n = p.getShort() & 0xFFFF;
+                    List<String> names = new ArrayList<>(n);
+                    List<AST.DataType> types = new ArrayList<>(n);
+                    for (int c = 0; c < n; c++) {
+                        names.add(FrameInput.string(p));
+                        types.add(Protocol.type(p.get()));
+                    }
+                    rows = new Rows(names, types, new ArrayList<>());
+                    replies.add(rows);
+                }
+                case Protocol.DATA -> {
+                    if (rows == null) throw new ServerException("[Server] DATA before COLUMNS");
+                    data(p, rows);
+                }
+                case Protocol.END -> rows = null;
+                case Protocol.ERROR -> replies.add(new Error(FrameInput.string(p)));
+                case Protocol.READY -> {
+                    return replies;
+                }
+                default -> throw new ServerException("[Server] Unknown frame type '" + (char) in.type() + "'");
+            }
+        }
+    }
+
+    private static void data(ByteBuffer p, Rows rows) {
+        int n = p.getInt();
+        int first = rows.rows().size();
+        for (int r = 0; r < n; r++) rows.rows().add(new Object[rows.columns().size()]);
+        for (int c = 0; c < rows.columns().size(); c++) {
+            int bitmap = p.position();
+            p.position(bitmap + ((n + 7) >>> 3));
+            for (int r = 0; r < n; r++) {
+                if ((p.get(bitmap + (r >>> 3)) & (1 << (r & 7))) != 0) continue;
+                rows.rows().get(first + r)[c] = switch (rows.types().get(c)) {
+                    case INTEGER -> p.getInt();
+                    case FLOAT -> p.getDouble();
+                    case BOOLEAN -> p.get() != 0;
+                    case STRING -> FrameInput.string(p);
+                };
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,76 @@
+package com.ziyingdeng.minidb.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Reads frames from a stream through its own buffer, which starts small and only
+// grows for large frames, so an idle connection holds well under a kilobyte.
+// The payload of a frame is valid until the next call to next().
+final class FrameInput {
+    private static final int INITIAL = 512;
+    private static final int RETAINED = 64 << 10;
+
+    private final InputStream in;
+    private byte[] buf = new byte[INITIAL];
+    private int pos, limit;
+    private byte type;
+    private ByteBuffer payload;
+
+    FrameInput(InputStream in) {
+        this.in = in;
+    }
+
+    // Read the next frame; false when the stream ends between frames
+    boolean next() throws IOException {
+        if (pos == limit && buf.length > RETAINED) buf = new byte[INITIAL]; // drop a buffer grown for one large frame
+        if (!fill(4)) {
+            if (pos == limit) return false;
+            throw new EOFException("[Server] Stream ended inside a frame header");
+        }
+        int length = ((buf[pos] & 0xFF) << 24) | ((buf[pos + 1] & 0xFF) << 16) | ((buf[pos + 2] & 0xFF) << 8) | (buf[pos + 3] & 0xFF);
+        if (length < 1 || length > Protocol.MAX_FRAME) throw new ServerException("[Server] Invalid frame length " + length);
+        if (!fill(4 + length)) throw new EOFException("[Server] Stream ended inside a frame");
+        type = buf[pos + 4];
+        payload = ByteBuffer.wrap(buf, pos + 5, length - 1).slice();
+        pos += 4 + length;
+        return true;
+    }
+
+    byte type() { return type; }
+    ByteBuffer payload() { return payload; }
+
+    // Whether bytes of a further frame are already buffered or waiting in the socket
+    boolean pending() throws IOException {
+        return pos < limit || in.available() > 0;
+    }
+
+    static String string(ByteBuffer b) {
+        int len = b.getInt();
+        String s = new String(b.array(), b.arrayOffset() + b.position(), len, StandardCharsets.UTF_8);
+        b.position(b.position() + len);
+        return s;
+    }
+
+    // Make `n` bytes available from pos; false on end of stream
+    private boolean fill(int n) throws IOException {
+        if (limit - pos >= n) return true;
+        if (buf.length < n) {
+            byte[] grown = new byte[Math.max(n, buf.length * 2)];
+            System.arraycopy(buf, pos, grown, 0, limit - pos);
+            buf = grown;
+        } else if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+        }
+        limit -= pos;
+        pos = 0;
+        while (limit < n) {
+            int read = in.read(buf, limit, buf.length - limit);
+            if (read < 0) return false;
+            limit += read;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,102 @@
+package com.ziyingdeng.minidb.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Frames being written, kept in one buffer until flush(): pipelined replies go out
+// in a single write. Like FrameInput, the buffer starts small and shrinks back
+// after a large result.
+final class FrameOutput {
+    private static final int INITIAL = 256;
+    private static final int RETAINED = 64 << 10;
+
+    private byte[] buf = new byte[INITIAL];
+    private int size;
+    private int frameStart = -1;
+
+    void begin(byte type) {
+        ensure(5);
+        frameStart = size;
+        size += 4;
+        buf[size++] = type;
+    }
+
+    void end() {
+        int length = size - frameStart - 4;
+        buf[frameStart] = (byte) (length >>> 24);
+        buf[frameStart + 1] = (byte) (length >>> 16);
+        buf[frameStart + 2] = (byte) (length >>> 8);
+        buf[frameStart + 3] = (byte) length;
+        frameStart = -1;
+    }
+
+    // A frame without payload
+    void frame(byte type) {
+        begin(type);
+        end();
+    }
+
+    void u8(int v) { ensure(1); buf[size++] = (byte) v; }
+
+    void u16(int v) {
+        ensure(2);
+        buf[size++] = (byte) (v >>> 8);
+        buf[size++] = (byte) v;
+    }
+
+    void i32(int v) {
+        ensure(4);
+        buf[size++] = (byte) (v >>> 24); buf[size++] = (byte) (v >>> 16);
+        buf[size++] = (byte) (v >>> 8); buf[size++] = (byte) v;
+    }
+
+    void i64(long v) { i32((int) (v >>> 32)); i32((int) v); }
+    void f64(double v) { i64(Double.doubleToRawLongBits(v)); }
+
+    // Length-prefixed
+    void bytes(byte[] src, int from, int len) {
+        i32(len);
+        raw(src, from, len);
+    }
+
+    void raw(byte[] src, int from, int len) {
+        ensure(len);
+        System.arraycopy(src, from, buf, size, len);
+        size += len;
+    }
+
+    void string(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        bytes(b, 0, b.length);
+    }
+
+    // Reserve `n` bytes to fill in afterwards; returns their offset
+    int skip(int n) {
+        ensure(n);
+        int at = size;
+        size += n;
+        return at;
+    }
+
+    void put(int at, byte v) { buf[at] = v; }
+    byte get(int at) { return buf[at]; }
+
+    int size() { return size; }
+
+    // Write the buffered frames; call between frames
+    void flush(OutputStream out) throws IOException {
+        out.write(buf, 0, size);
+        out.flush();
+        size = 0;
+        if (buf.length > RETAINED) buf = new byte[INITIAL];
+    }
+
+    private void ensure(int n) {
+        if (size + n > buf.length) {
+            byte[] grown = new byte[Math.max(size + n, buf.length * 2)];
+            System.arraycopy(buf, 0, grown, 0, size);
+            buf = grown;
+        }
+    }
+}
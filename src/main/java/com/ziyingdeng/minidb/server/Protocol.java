@@ -0,0 +1,56 @@
+package com.ziyingdeng.minidb.server;
+
+import com.ziyingdeng.minidb.parser.AST;
+
+// Wire protocol between Client and Server. Every message is a frame:
+//   [i32 length of what follows][u8 type][payload]
+// Integers are big-endian; a string is [i32 byte length][UTF-8 bytes].
+//
+// The client sends QUERY frames, each holding one or more SQL statements. It may
+// send several before reading (pipelining). The server answers every QUERY in
+// order with one reply per statement, then READY:
+//   CREATED  [string table]
+//   INSERTED [i64 rows]
+//   COLUMNS  [u16 count]{[string name][u8 type]}, then DATA* and END
+//   DATA     [i32 rows] then per column: null bitmap, (rows + 7) / 8 bytes with
+//            bit r of byte r / 8 set for NULL, then the non-NULL values: INTEGER
+//            i32, FLOAT f64, BOOLEAN u8, STRING string
+//   END      [i64 rows]
+//   ERROR    [string message]; ends the reply, and the statements after the
+//            failing one are not run
+//   READY    []
+// One DATA frame carries one batch of at most RowBatch.CAPACITY rows.
+final class Protocol {
+    static final byte QUERY = 'Q';
+
+    static final byte CREATED = 'C';
+    static final byte INSERTED = 'I';
+    static final byte COLUMNS = 'T';
+    static final byte DATA = 'D';
+    static final byte END = 'S';
+    static final byte ERROR = 'E';
+    static final byte READY = 'Z';
+
+    static final int MAX_FRAME = 64 << 20;
+
+    private Protocol() {}
+
+    static byte typeCode(AST.DataType type) {
+        return switch (type) {
+            case INTEGER -> 1;
+            case FLOAT -> 2;
+            case BOOLEAN -> 3;
+            case STRING -> 4;
+        };
+    }
+
+    static AST.DataType type(byte code) {
+        return switch (code) {
+            case 1 -> AST.DataType.INTEGER;
+            case 2 -> AST.DataType.FLOAT;
+            case 3 -> AST.DataType.BOOLEAN;
+            case 4 -> AST.DataType.STRING;
+            default -> throw new ServerException("[Server] Unknown column type " + code);
+        };
+    }
+}
@@ -0,0 +1,225 @@
+package com.ziyingdeng.minidb.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+import com.ziyingdeng.minidb.engine.Database;
+import com.ziyingdeng.minidb.engine.Result;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.Parser;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+// TCP server speaking Protocol, with one virtual thread per connection. A
+// connection blocks in plain socket reads; while it waits, its virtual thread is
+// unmounted and costs a small heap object instead of a platform thread stack.
+//
+// Queries on one connection run in order. Replies are buffered and flushed only
+// when no further query is already waiting, so a pipelined burst is answered with
+// one write; a large result is flushed as it is produced.
+public final class Server implements Closeable {
+    private static final int BACKLOG = 4096;
+    private static final int FLUSH_BYTES = 64 << 10;
+
+    private final Database db;
+    private final ServerSocket socket;
+    private final ExecutorService connections = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("minidb-conn-", 0).factory());
+    private final Set<Socket> open = ConcurrentHashMap.newKeySet();
+    private final Thread acceptor;
+    private volatile Consumer<String> errors = message -> {};
+
+    private Server(Database db, ServerSocket socket) {
+        this.db = db;
+        this.socket = socket;
+        this.acceptor = Thread.ofVirtual().name("minidb-accept").start(this::accept);
+    }
+
+    // Listen on `port` of the loopback address (0 picks a free port)
+    public static Server start(Database db, int port) throws IOException {
+        return start(db, new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+    }
+
+    public static Server start(Database db, InetSocketAddress address) throws IOException {
+        ServerSocket socket = new ServerSocket();
+        socket.bind(address, BACKLOG);
+        return new Server(db, socket);
+    }
+
+    public int port() { return socket.getLocalPort(); }
+
+    // Connections currently open
+    public int connections() { return open.size(); }
+
+    // Receives failures no client is told about: failed accepts and dropped connections
+    public Server onError(Consumer<String> handler) {
+        this.errors = handler;
+        return this;
+    }
+
+    // Block until the server is closed (its threads are virtual, so they alone do not keep the JVM alive)
+    public void join() throws InterruptedException {
+        acceptor.join();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+        for (Socket s : open) s.close();
+        try {
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        connections.close();
+    }
+
+    private void accept() {
+        while (!socket.isClosed()) {
+            try {
+                Socket s = socket.accept();
+                s.setTcpNoDelay(true);
+                open.add(s);
+                connections.execute(() -> serve(s));
+            } catch (IOException e) {
+                if (socket.isClosed()) return;
+                errors.accept("[Server] Accept failed: " + e.getMessage());
+                try {
+                    Thread.sleep(100); // e.g. out of file descriptors: let connections close first
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /* ----------------------------- connections ---------------------------- */
+
+    private void serve(Socket s) {
+        try (s) {
+            FrameInput in = new FrameInput(s.getInputStream());
+            OutputStream os = s.getOutputStream();
+            FrameOutput out = new FrameOutput();
+            while (in.next()) {
+                if (in.type() != Protocol.QUERY) {
+                    error(out, "[Server] Expected a QUERY frame, got '" + (char) in.type() + "'");
+                    out.flush(os);
+                    return;
+                }
+                ByteBuffer sql = in.payload();
+                run(new String(sql.array(), sql.arrayOffset() + sql.position(), sql.remaining(), StandardCharsets.UTF_8), out, os);
+                out.frame(Protocol.READY);
+                if (!in.pending()) out.flush(os);
+            }
+            out.flush(os);
+        } catch (SocketException e) {
+            // closed by the peer or by close()
+        } catch (IOException | ServerException e) {
+            errors.accept("[Server] Connection dropped: " + e.getMessage());
+        } finally {
+            open.remove(s);
+        }
+    }
+
+    // Every statement of one QUERY frame; the first error ends it
+    private void run(String sql, FrameOutput out, OutputStream os) throws IOException {
+        List<AST.Statement> statements;
+        try {
+            statements = new Parser(sql).parseAll();
+        } catch (RuntimeException e) {
+            error(out, e.getMessage());
+            return;
+        }
+        for (AST.Statement stmt : statements) {
+            try {
+                switch (db.execute(stmt)) {
+                    case Result.Created c -> {
+                        out.begin(Protocol.CREATED);
+                        out.string(c.table());
+                        out.end();
+                    }
+                    case Result.Inserted i -> {
+                        out.begin(Protocol.INSERTED);
+                        out.i64(i.rows());
+                        out.end();
+                    }
+                    case Result.Rows rows -> rows(rows, out, os);
+                }
+            } catch (RuntimeException e) { // also from evaluation while rows stream
+                error(out, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private static void rows(Result.Rows rows, FrameOutput out, OutputStream os) throws IOException {
+        Schema schema = rows.schema();
+        out.begin(Protocol.COLUMNS);
+        out.u16(schema.size());
+        for (Schema.ColumnDef def : schema.columns()) {
+            out.string(def.name());
+            out.u8(Protocol.typeCode(def.type()));
+        }
+        out.end();
+        long total = 0;
+        for (Iterator<RowBatch> it = rows.batches(); it.hasNext(); ) {
+            RowBatch b = it.next();
+            if (b.size() == 0) continue;
+            out.begin(Protocol.DATA);
+            out.i32(b.size());
+            for (int c = 0; c < b.columnCount(); c++) column(b, c, out);
+            out.end();
+            total += b.size();
+            if (out.size() >= FLUSH_BYTES) out.flush(os);
+        }
+        out.begin(Protocol.END);
+        out.i64(total);
+        out.end();
+    }
+
+    private static void column(RowBatch b, int c, FrameOutput out) {
+        ColumnVector v = b.column(c);
+        int n = b.size();
+        int bitmap = out.skip((n + 7) >>> 3);
+        for (int k = 0; k < (n + 7) >>> 3; k++) out.put(bitmap + k, (byte) 0);
+        for (int r = 0; r < n; r++) {
+            int i = b.rowIndex(r);
+            if (v.isNull(i)) {
+                out.put(bitmap + (r >>> 3), (byte) (out.get(bitmap + (r >>> 3)) | (1 << (r & 7))));
+                continue;
+            }
+            switch (v.type()) {
+                case INTEGER -> out.i32(v.getInt(i));
+                case FLOAT -> out.f64(v.getDouble(i));
+                case BOOLEAN -> out.u8(v.getBoolean(i) ? 1 : 0);
+                case STRING -> {
+                    // UTF-8 straight from the vector where it has it
+                    if (v instanceof ColumnVector.Strings s) out.bytes(s.bytes(), s.offsets()[i], s.byteLength(i));
+                    else if (v instanceof ColumnVector.Dict d) out.bytes(d.dictionary()[d.code(i)], 0, d.dictionary()[d.code(i)].length);
+                    else out.string(v.getString(i));
+                }
+            }
+        }
+    }
+
+    private static void error(FrameOutput out, String message) {
+        out.begin(Protocol.ERROR);
+        out.string(message == null ? "[Server] Internal error" : message);
+        out.end();
+    }
+}
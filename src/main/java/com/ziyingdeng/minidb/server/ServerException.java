@@ -0,0 +1,6 @@
+package com.ziyingdeng.minidb.server;
+
+public class ServerException extends RuntimeException {
+    public ServerException(String message) { super(message); }
+    public ServerException(String message, Throwable cause) { super(message, cause); }
+}
@@ -0,0 +1,98 @@
+package com.ziyingdeng.minidb.storage;
+
+import com.ziyingdeng.minidb.index.KeyIndex;
+
+// What every Table shares whatever holds its rows: the published and staged row
+// counts, the PRIMARY KEY index (key to row id, B+tree or hash per TableOptions)
+// and the checks before an append. Rows get ids in append order; a subclass
+// stores them (store) and reads one back (fetch).
+//
+// Staged rows are written but not visible: lookups, row() and scans stop at the
+// published rowCount, which readers take without locking.
+abstract class AbstractTable implements Table {
+    final String name;
+    final Schema schema;
+    final TableOptions options;
+    final KeyIndex primaryIndex; // null without a PRIMARY KEY
+    volatile long rowCount;
+    long stagedRows; // written, visible or not; guarded by this
+
+    AbstractTable(String name, Schema schema, TableOptions options) {
+        TableChecks.primaryKeyType(name, schema);
+        this.name = name;
+        this.schema = schema;
+        this.options = options;
+        this.primaryIndex = schema.primaryKey() >= 0 ? options.index().create() : null;
+    }
+
+    @Override public String name() { return name; }
+    @Override public Schema schema() { return schema; }
+    @Override public TableOptions options() { return options; }
+    @Override public long rowCount() { return rowCount; }
+
+    /* ------------------------------- writes ------------------------------ */
+
+    @Override
+    public synchronized long stage(ColumnVector[] columns, int rows) {
+        TableChecks.columns(schema, columns, rows);
+        if (primaryIndex != null) {
+            TableChecks.keys(name, schema, keys(), (ColumnVector.Ints) columns[schema.primaryKey()], rows);
+        }
+        store(columns, rows);
+        if (primaryIndex != null) {
+            int[] keys = ((ColumnVector.Ints) columns[schema.primaryKey()]).array();
+            for (int r = 0; r < rows; r++) primaryIndex.insert(keys[r], stagedRows + r);
+        }
+        stagedRows += rows;
+        return stagedRows;
+    }
+
+    // Write the rows as ids stagedRows, stagedRows + 1, ...; runs under the table
+    // lock once the rows passed the checks, and throws only before writing any
+    abstract void store(ColumnVector[] columns, int rows);
+
+    @Override
+    public synchronized void publish(long rows) {
+        if (rows > rowCount) rowCount = rows;
+    }
+
+    @Override
+    public synchronized long stagedRowCount() {
+        return stagedRows;
+    }
+
+    /* ------------------------------- reads ------------------------------- */
+
+    // The key index; MemoryTable first gives it the keys of restored rows
+    KeyIndex keys() {
+        return primaryIndex;
+    }
+
+    @Override
+    public long lookup(long key) {
+        if (primaryIndex == null) throw new StorageException("[Storage] Table '" + name + "' has no PRIMARY KEY");
+        long id = keys().get(key);
+        return (id != KeyIndex.ABSENT && id < rowCount) ? id : -1; // staged but unpublished rows stay hidden
+    }
+
+    @Override
+    public RowBatch row(long rowId) {
+        if (rowId < 0 || rowId >= rowCount) throw new StorageException("[Storage] No row " + rowId + " in table '" + name + "'");
+        return fetch(rowId);
+    }
+
+    // One-row batch holding stored row `rowId`
+    abstract RowBatch fetch(long rowId);
+
+    // Rows a scan of `rows` may return. Taken before the scan reads any storage, so
+    // every row it counts was stored by then.
+    long visible(long rows) {
+        return Math.min(rows, rowCount);
+    }
+
+    ColumnVector[] allocate(int rows) {
+        ColumnVector[] out = new ColumnVector[schema.size()];
+        for (int c = 0; c < out.length; c++) out[c] = ColumnVector.allocate(schema.column(c).type(), rows);
+        return out;
+    }
+}
@@ -0,0 +1,146 @@
+package com.ziyingdeng.minidb.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// A fixed number of in-memory frames caching pages of one PageFile.
+//
+// pin() returns the frame holding a page, reading it on a miss; the page stays in
+// its frame until every pin has been matched by an unpin. Callers read and write
+// the page's bytes directly while they hold a pin, and say on unpin whether they
+// changed it. A dirty page is written back when its frame is reused or on flush().
+//
+// Eviction is CLOCK: every hit sets a frame's reference bit, and the hand sweeps
+// the frames clearing bits until it finds an unpinned frame whose bit was already
+// clear. A sequential scan therefore only displaces frames nobody has touched
+// since the hand last passed. The frame table is guarded by the pool's monitor,
+// including the I/O of a miss; page contents are not.
+public final class BufferPool implements Closeable {
+    public static final int DEFAULT_FRAMES = 4096; // 32 MiB of 8 KiB pages
+
+    private final PageFile file;
+    private final Page[] frames;
+    private final Map<Integer, Page> resident = new HashMap<>();
+    private int hand;
+    private int used; // frames holding a page so far
+
+    private long hits, misses, evictions, writes;
+
+    // One frame; id is -1 while the frame is empty
+    public static final class Page {
+        private final ByteBuffer data = ByteBuffer.allocate(PageFile.PAGE_SIZE);
+        private int id = -1;
+        private int pins;
+        private boolean dirty;
+        private boolean referenced;
+
+        public int id() { return id; }
+
+        // The page's bytes; use absolute gets and puts, the position is shared
+        public ByteBuffer data() { return data; }
+    }
+
+    public BufferPool(PageFile file, int frames) {
+        if (frames < 2) throw new StorageException("[Storage] A buffer pool needs at least 2 frames, got " + frames);
+        this.file = file;
+        this.frames = new Page[frames];
+        for (int i = 0; i < frames; i++) this.frames[i] = new Page();
+    }
+
+    public PageFile file() { return file; }
+    public int frames() { return frames.length; }
+
+    public synchronized Page pin(int id) {
+        Page page = resident.get(id);
+        if (page != null) {
+            hits++;
+        } else {
+            page = victim();
+            misses++;
+            file.read(id, page.data);
+            page.id = id;
+            resident.put(id, page);
+        }
+        page.pins++;
+        page.referenced = true;
+        return page;
+    }
+
+    // Allocate a new page in the file and pin it, zeroed and already dirty
+    public synchronized Page allocate() {
+        Page page = victim();
+        Arrays.fill(page.data.array(), (byte) 0);
+        page.id = file.allocate();
+        page.dirty = true;
+        page.pins = 1;
+        page.referenced = true;
+        resident.put(page.id, page);
+        return page;
+    }
+
+    public synchronized void unpin(Page page, boolean dirty) {
+        if (page.pins <= 0) throw new StorageException("[Storage] Page " + page.id + " is not pinned");
+        page.pins--;
+        page.dirty |= dirty;
+    }
+
+    // Write back every dirty page, then make the file durable
+    public synchronized void flush() {
+        for (Page page : frames) {
+            if (page.id >= 0 && page.dirty) writeBack(page);
+        }
+        file.sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        file.close();
+    }
+
+    /* ------------------------------ metrics ------------------------------ */
+
+    public synchronized long hits() { return hits; }
+    public synchronized long misses() { return misses; }
+    public synchronized long evictions() { return evictions; }
+    public synchronized long writes() { return writes; }
+
+    // Fraction of pins served from memory; 0 before the first pin
+    public synchronized double hitRate() {
+        long pins = hits + misses;
+        return pins == 0 ? 0 : (double) hits / pins;
+    }
+
+    /* ------------------------------ eviction ----------------------------- */
+
+    // An empty frame, writing back and unmapping its page if it held one
+    private Page victim() {
+        if (used < frames.length) return frames[used++];
+        // two sweeps clear every reference bit, so a third finding nothing means all are pinned
+        for (int step = 0; step < 3 * frames.length; step++) {
+            Page page = frames[hand];
+            hand = (hand + 1) % frames.length;
+            if (page.pins > 0) continue;
+            if (page.referenced) {
+                page.referenced = false;
+                continue;
+            }
+            if (page.dirty) writeBack(page);
+            resident.remove(page.id);
+            page.id = -1;
+            evictions++;
+            return page;
+        }
+        throw new StorageException("[Storage] Buffer pool exhausted: all " + frames.length + " frames are pinned");
+    }
+
+    private void writeBack(Page page) {
+        file.write(page.id, page.data);
+        page.dirty = false;
+        writes++;
+    }
+}
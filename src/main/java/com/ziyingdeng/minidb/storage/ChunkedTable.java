@@ -0,0 +1,123 @@
+package com.ziyingdeng.minidb.storage;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// A table whose rows live in a list of fixed-capacity chunks. Chunks start at 1024
+// rows and double up to 64K rows, so small tables stay small and large ones never
+// copy their data when they grow. Writers fill the last chunk under the table lock
+// and then raise its size; scans read the chunk array and sizes without locking.
+// Subclasses decide what a chunk holds and how rows go in and come out.
+abstract class ChunkedTable<C extends ChunkedTable.Chunk> extends AbstractTable {
+    static final int MIN_CHUNK_ROWS = RowBatch.CAPACITY;
+    static final int MAX_CHUNK_ROWS = 1 << 16;
+
+    volatile C[] chunks;
+
+    static class Chunk {
+        final long firstRow;
+        final int capacity;
+        volatile int size;
+
+        Chunk(long firstRow, int capacity) {
+            this.firstRow = firstRow;
+            this.capacity = capacity;
+        }
+    }
+
+    // `empty` fixes the runtime type of the chunk array
+    ChunkedTable(String name, Schema schema, TableOptions options, C[] empty) {
+        super(name, schema, options);
+        this.chunks = empty;
+    }
+
+    abstract C newChunk(long firstRow, int capacity);
+
+    // Rows [from, from + n) of `columns` into rows [at, at + n) of the chunk
+    abstract void write(C chunk, ColumnVector[] columns, int from, int n, int at);
+
+    // Called under the table lock once a chunk is full
+    void filled(C chunk) {}
+
+    // Rows [offset, offset + n) of a chunk, possibly in `buffer` (see buffer)
+    abstract RowBatch batch(C chunk, int offset, int n, ColumnVector[] buffer);
+
+    // Vectors a scan reuses for every batch, or null if batches point into the chunks
+    ColumnVector[] buffer(int rows) {
+        return null;
+    }
+
+    /* ------------------------------- writes ------------------------------ */
+
+    @Override
+    final void store(ColumnVector[] columns, int rows) {
+        for (int done = 0; done < rows; ) {
+            C chunk = writableChunk();
+            int at = chunk.size;
+            int n = Math.min(rows - done, chunk.capacity - at);
+            write(chunk, columns, done, n, at);
+            chunk.size = at + n; // publishes the chunk's new rows
+            if (chunk.size == chunk.capacity) filled(chunk);
+            done += n;
+        }
+    }
+
+    private C writableChunk() {
+        C[] cs = chunks;
+        C last = cs.length == 0 ? null : cs[cs.length - 1];
+        if (last != null && last.size < last.capacity) return last;
+        int capacity = last == null ? MIN_CHUNK_ROWS : Math.min(last.capacity * 2, MAX_CHUNK_ROWS);
+        C chunk = newChunk(last == null ? 0 : last.firstRow + last.capacity, capacity);
+        C[] next = Arrays.copyOf(cs, cs.length + 1);
+        next[cs.length] = chunk;
+        chunks = next;
+        return chunk;
+    }
+
+    /* ------------------------------- reads ------------------------------- */
+
+    @Override
+    final RowBatch fetch(long rowId) {
+        C[] cs = chunks;
+        int lo = 0, hi = cs.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (cs[mid].firstRow <= rowId) lo = mid;
+            else hi = mid - 1;
+        }
+        return batch(cs[lo], (int) (rowId - cs[lo].firstRow), 1, buffer(1));
+    }
+
+    @Override
+    public Iterator<RowBatch> scan(long rows) {
+        long visible = visible(rows); // before the chunks: every chunk below holds at least these rows
+        C[] cs = chunks;
+        return new Iterator<>() {
+            private long remaining = visible;
+            private int chunk;
+            private int offset;
+            private final ColumnVector[] buffer = buffer((int) Math.min(RowBatch.CAPACITY, visible));
+
+            @Override
+            public boolean hasNext() {
+                while (remaining > 0 && chunk < cs.length && offset >= Math.min(cs[chunk].size, cs[chunk].capacity)) {
+                    chunk++;
+                    offset = 0;
+                }
+                return remaining > 0 && chunk < cs.length;
+            }
+
+            @Override
+            public RowBatch next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                C c = cs[chunk];
+                int n = (int) Math.min(Math.min(RowBatch.CAPACITY, c.size - offset), remaining);
+                RowBatch batch = batch(c, offset, n, buffer);
+                offset += n;
+                remaining -= n;
+                return batch;
+            }
+        };
+    }
+}
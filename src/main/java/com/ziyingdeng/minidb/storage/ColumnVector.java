@@ -0,0 +1,544 @@
+package com.ziyingdeng.minidb.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ziyingdeng.minidb.parser.AST;
+
+// A fixed-capacity, append-only column of one primitive type plus a null bitmap.
+// Values are written once and never change, so readers that only look below a
+// published size never see a torn value.
+public abstract class ColumnVector {
+    protected final int capacity;
+    protected int size;
+    protected final long[] nulls; // bit set = NULL
+
+    protected ColumnVector(int capacity) {
+        this.capacity = capacity;
+        this.nulls = new long[(capacity + 63) >>> 6];
+    }
+
+    public static ColumnVector allocate(AST.DataType type, int capacity) {
+        return switch (type) {
+            case INTEGER -> new Ints(capacity);
+            case FLOAT -> new Floats(capacity);
+            case BOOLEAN -> new Bools(capacity);
+            case STRING -> new Strings(capacity);
+        };
+    }
+
+    public abstract AST.DataType type();
+
+    public int size() { return size; }
+    public int capacity() { return capacity; }
+    public int remaining() { return capacity - size; }
+
+    public boolean isNull(int i) { return (nulls[i >>> 6] & (1L << i)) != 0; }
+
+    // Whether any row in [from, to) is NULL
+    public boolean hasNulls(int from, int to) {
+        if (from >= to) return false;
+        int first = from >>> 6, last = (to - 1) >>> 6;
+        for (int w = first; w <= last; w++) {
+            long word = nulls[w];
+            if (w == first) word &= -1L << from;
+            if (w == last) word &= -1L >>> (63 - ((to - 1) & 63));
+            if (word != 0) return true;
+        }
+        return false;
+    }
+
+    // Null bitmap words; bit i set == row i is NULL
+    public long[] nullBitmap() { return nulls; }
+
+    // Approximate heap bytes of the values and the null bitmap
+    public abstract long memoryBytes();
+
+    public int getInt(int i) { throw unsupported("INTEGER"); }
+    public double getDouble(int i) { throw unsupported("FLOAT"); }
+    public boolean getBoolean(int i) { throw unsupported("BOOLEAN"); }
+    public String getString(int i) { throw unsupported("STRING"); }
+
+    // Boxed value for result rows; null for NULL
+    public abstract Object get(int i);
+
+    public void appendNull() {
+        ensureRoom(1);
+        nulls[size >>> 6] |= 1L << size;
+        appendEmpty();
+        size++;
+    }
+
+    public void appendInt(int v) { throw unsupported("INTEGER"); }
+    public void appendDouble(double v) { throw unsupported("FLOAT"); }
+    public void appendBoolean(boolean v) { throw unsupported("BOOLEAN"); }
+    public void appendString(String v) { throw unsupported("STRING"); }
+
+    // Append src[from, from + count); src must have the same type
+    public void appendFrom(ColumnVector src, int from, int count) {
+        if (src.type() != type()) throw unsupported(src.type().name());
+        ensureRoom(count);
+        if (src.getClass() != getClass()) { // an encoded vector: decode value by value
+            for (int k = from; k < from + count; k++) {
+                if (src.isNull(k)) appendNull();
+                else switch (type()) {
+                    case INTEGER -> appendInt(src.getInt(k));
+                    case FLOAT -> appendDouble(src.getDouble(k));
+                    case BOOLEAN -> appendBoolean(src.getBoolean(k));
+                    case STRING -> appendString(src.getString(k));
+                }
+            }
+            return;
+        }
+        copyValues(src, from, count);
+        for (int k = 0; k < count; k++) {
+            if (src.isNull(from + k)) nulls[(size + k) >>> 6] |= 1L << (size + k);
+        }
+        size += count;
+    }
+
+    // Append src rows rows[0, count), in that order (a gather); src must have the same type
+    public void appendRows(ColumnVector src, int[] rows, int count) {
+        if (src.type() != type()) throw unsupported(src.type().name());
+        ensureRoom(count);
+        if (src.getClass() != getClass()) {
+            for (int k = 0; k < count; k++) appendFrom(src, rows[k], 1);
+            return;
+        }
+        gatherValues(src, rows, count);
+        for (int k = 0; k < count; k++) {
+            if (src.isNull(rows[k])) nulls[(size + k) >>> 6] |= 1L << (size + k);
+        }
+        size += count;
+    }
+
+    // Empty the vector for reuse, keeping its capacity
+    public void clear() {
+        Arrays.fill(nulls, 0, (size + 63) >>> 6, 0L);
+        size = 0;
+    }
+
+    // Mark already-appended row i as NULL (used by bulk loaders that write values first)
+    public void setNull(int i) { nulls[i >>> 6] |= 1L << i; }
+
+    // Null bits of rows [0, rows) of a vector that starts empty, copied from whole
+    // bitmap words src[fromWord, ...); bits past `rows` are left clear
+    void loadNulls(LongBuffer src, int fromWord, int rows) {
+        int words = (rows + 63) >>> 6;
+        src.get(fromWord, nulls, 0, words);
+        if ((rows & 63) != 0) nulls[words - 1] &= -1L >>> (64 - (rows & 63));
+    }
+
+    // Placeholder value slot for a NULL
+    protected abstract void appendEmpty();
+
+    // Copy src values into [size, size + count) without touching size or nulls
+    protected abstract void copyValues(ColumnVector src, int from, int count);
+
+    // Same for the values at positions rows[0, count) of src
+    protected abstract void gatherValues(ColumnVector src, int[] rows, int count);
+
+    protected void ensureRoom(int count) {
+        if (size + count > capacity) {
+            throw new StorageException("[Storage] Vector full: " + size + " + " + count + " > " + capacity);
+        }
+    }
+
+    private StorageException unsupported(String type) {
+        return new StorageException("[Storage] " + type() + " vector does not hold " + type + " values");
+    }
+
+    /* ------------------------------ INTEGER ------------------------------ */
+    public static final class Ints extends ColumnVector {
+        private final int[] values;
+
+        public Ints(int capacity) { super(capacity); values = new int[capacity]; }
+
+        @Override public AST.DataType type() { return AST.DataType.INTEGER; }
+        @Override public int getInt(int i) { return values[i]; }
+        @Override public double getDouble(int i) { return values[i]; }
+        @Override public Object get(int i) { return isNull(i) ? null : values[i]; }
+        @Override public void appendInt(int v) { ensureRoom(1); values[size++] = v; }
+        @Override protected void appendEmpty() { values[size] = 0; }
+        @Override public long memoryBytes() { return nulls.length * 8L + values.length * 4L; }
+
+        // Bulk append from a primitive array; rows are non-null unless marked with setNull
+        public void appendInts(int[] src, int from, int count) {
+            ensureRoom(count);
+            System.arraycopy(src, from, values, size, count);
+            size += count;
+        }
+
+        public void appendInts(IntBuffer src, int from, int count) {
+            ensureRoom(count);
+            src.get(from, values, size, count);
+            size += count;
+        }
+
+        @Override
+        protected void copyValues(ColumnVector src, int from, int count) {
+            System.arraycopy(((Ints) src).values, from, values, size, count);
+        }
+
+        @Override
+        protected void gatherValues(ColumnVector src, int[] rows, int count) {
+            int[] from = ((Ints) src).values;
+            for (int k = 0; k < count; k++) values[size + k] = from[rows[k]];
+        }
+
+        // Backing array; only [0, size) is meaningful
+        public int[] array() { return values; }
+    }
+
+    /* ------------------------------- FLOAT ------------------------------- */
+    public static final class Floats extends ColumnVector {
+        private final double[] values;
+
+        public Floats(int capacity) { super(capacity); values = new double[capacity]; }
+
+        @Override public AST.DataType type() { return AST.DataType.FLOAT; }
+        @Override public double getDouble(int i) { return values[i]; }
+        @Override public Object get(int i) { return isNull(i) ? null : values[i]; }
+        @Override public void appendDouble(double v) { ensureRoom(1); values[size++] = v; }
+        @Override protected void appendEmpty() { values[size] = 0; }
+        @Override public long memoryBytes() { return nulls.length * 8L + values.length * 8L; }
+
+        public void appendDoubles(double[] src, int from, int count) {
+            ensureRoom(count);
+            System.arraycopy(src, from, values, size, count);
+            size += count;
+        }
+
+        public void appendDoubles(DoubleBuffer src, int from, int count) {
+            ensureRoom(count);
+            src.get(from, values, size, count);
+            size += count;
+        }
+
+        @Override
+        protected void copyValues(ColumnVector src, int from, int count) {
+            System.arraycopy(((Floats) src).values, from, values, size, count);
+        }
+
+        @Override
+        protected void gatherValues(ColumnVector src, int[] rows, int count) {
+            double[] from = ((Floats) src).values;
+            for (int k = 0; k < count; k++) values[size + k] = from[rows[k]];
+        }
+
+        public double[] array() { return values; }
+    }
+
+    /* ------------------------------ BOOLEAN ------------------------------ */
+    public static final class Bools extends ColumnVector {
+        private final boolean[] values;
+
+        public Bools(int capacity) { super(capacity); values = new boolean[capacity]; }
+
+        @Override public AST.DataType type() { return AST.DataType.BOOLEAN; }
+        @Override public boolean getBoolean(int i) { return values[i]; }
+        @Override public Object get(int i) { return isNull(i) ? null : values[i]; }
+        @Override public void appendBoolean(boolean v) { ensureRoom(1); values[size++] = v; }
+        @Override protected void appendEmpty() { values[size] = false; }
+        @Override public long memoryBytes() { return nulls.length * 8L + values.length; }
+
+        public void appendBooleans(boolean[] src, int from, int count) {
+            ensureRoom(count);
+            System.arraycopy(src, from, values, size, count);
+            size += count;
+        }
+
+        // One byte per value, non-zero == TRUE
+        public void appendBooleans(ByteBuffer src, int from, int count) {
+            ensureRoom(count);
+            for (int k = 0; k < count; k++) values[size + k] = src.get(from + k) != 0;
+            size += count;
+        }
+
+        @Override
+        protected void copyValues(ColumnVector src, int from, int count) {
+            System.arraycopy(((Bools) src).values, from, values, size, count);
+        }
+
+        @Override
+        protected void gatherValues(ColumnVector src, int[] rows, int count) {
+            boolean[] from = ((Bools) src).values;
+            for (int k = 0; k < count; k++) values[size + k] = from[rows[k]];
+        }
+
+        public boolean[] array() { return values; }
+    }
+
+    /* ------------------------------- STRING ------------------------------ */
+    // UTF-8 bytes back to back; string i is bytes[offsets[i], offsets[i + 1])
+    public static final class Strings extends ColumnVector {
+        private final int[] offsets;
+        private volatile byte[] bytes; // grows; readers re-read it after the size they trust
+
+        public Strings(int capacity) {
+            super(capacity);
+            offsets = new int[capacity + 1];
+            bytes = new byte[Math.min(capacity, 1024) * 8];
+        }
+
+        @Override public AST.DataType type() { return AST.DataType.STRING; }
+
+        @Override
+        public String getString(int i) {
+            return new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+        }
+
+        @Override public Object get(int i) { return isNull(i) ? null : getString(i); }
+
+        @Override
+        public void appendString(String v) {
+            byte[] encoded = v.getBytes(StandardCharsets.UTF_8);
+            appendUtf8(encoded, 0, encoded.length);
+        }
+
+        public void appendUtf8(byte[] src, int from, int len) {
+            ensureRoom(1);
+            int at = offsets[size];
+            ensureBytes(at + len);
+            System.arraycopy(src, from, bytes, at, len);
+            offsets[++size] = at + len;
+        }
+
+        // Strings [from, from + count) of a column kept in buffers in the same layout:
+        // string i is srcBytes[srcOffsets[i], srcOffsets[i + 1])
+        public void appendUtf8(ByteBuffer srcBytes, IntBuffer srcOffsets, int from, int count) {
+            ensureRoom(count);
+            int begin = srcOffsets.get(from);
+            int len = srcOffsets.get(from + count) - begin;
+            int at = offsets[size];
+            ensureBytes(at + len);
+            srcBytes.get(begin, bytes, at, len);
+            for (int k = 1; k <= count; k++) offsets[size + k] = at + (srcOffsets.get(from + k) - begin);
+            size += count;
+        }
+
+        @Override protected void appendEmpty() { offsets[size + 1] = offsets[size]; }
+        @Override public long memoryBytes() { return nulls.length * 8L + offsets.length * 4L + bytes.length; }
+
+        @Override
+        protected void copyValues(ColumnVector src, int from, int count) {
+            Strings s = (Strings) src;
+            int begin = s.offsets[from];
+            int len = s.offsets[from + count] - begin;
+            int at = offsets[size];
+            ensureBytes(at + len);
+            System.arraycopy(s.bytes, begin, bytes, at, len);
+            for (int k = 1; k <= count; k++) {
+                offsets[size + k] = at + (s.offsets[from + k] - begin);
+            }
+        }
+
+        @Override
+        protected void gatherValues(ColumnVector src, int[] rows, int count) {
+            Strings s = (Strings) src;
+            for (int k = 0; k < count; k++) {
+                int begin = s.offsets[rows[k]];
+                int len = s.offsets[rows[k] + 1] - begin;
+                int at = offsets[size + k];
+                ensureBytes(at + len);
+                System.arraycopy(s.bytes, begin, bytes, at, len);
+                offsets[size + k + 1] = at + len;
+            }
+        }
+
+        public int[] offsets() { return offsets; }
+        public byte[] bytes() { return bytes; }
+        public int byteLength(int i) { return offsets[i + 1] - offsets[i]; }
+
+        private void ensureBytes(int needed) {
+            if (needed > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(needed, bytes.length * 2));
+        }
+    }
+
+    /* ------------------------------ encodings ---------------------------- */
+    // Read-only copies of a full vector that hold the same values in less memory.
+    // MemoryTable encodes each chunk once it is full; scans hand these vectors out
+    // like any other, and the getters decode. Filter and Aggregation look for them
+    // to work on codes and runs directly.
+
+    static final int MAX_DICTIONARY = 256;
+    static final int MIN_AVERAGE_RUN = 8;
+
+    // An encoded copy of rows [0, size) of v when one is smaller, else v itself
+    public static ColumnVector encode(ColumnVector v) {
+        return switch (v) {
+            case Strings s -> {
+                Dict d = Dict.of(s);
+                yield d != null ? d : s;
+            }
+            case Bools b -> new PackedBools(b);
+            case Ints i -> {
+                RunInts r = RunInts.of(i);
+                yield r != null ? r : i;
+            }
+            default -> v;
+        };
+    }
+
+    private abstract static class Encoded extends ColumnVector {
+        Encoded(ColumnVector src) {
+            super(src.size);
+            System.arraycopy(src.nulls, 0, nulls, 0, nulls.length);
+            size = src.size;
+        }
+
+        @Override
+        protected void ensureRoom(int count) {
+            throw new StorageException("[Storage] Encoded " + type() + " vector is read-only");
+        }
+
+        @Override protected void appendEmpty() { ensureRoom(1); }
+        @Override protected void copyValues(ColumnVector src, int from, int count) { ensureRoom(count); }
+        @Override protected void gatherValues(ColumnVector src, int[] rows, int count) { ensureRoom(count); }
+    }
+
+    // STRING as codes into a sorted dictionary of at most MAX_DICTIONARY distinct
+    // values. Codes take 1, 2, 4 or 8 bits, so none straddles two words; code
+    // order is unsigned UTF-8 byte order, which is the order comparisons use.
+    public static final class Dict extends Encoded {
+        private final String[] values;
+        private final byte[][] utf8;
+        private final int bits;
+        private final long[] codes;
+
+        private Dict(Strings src, byte[][] utf8, int[] rowCodes) {
+            super(src);
+            this.utf8 = utf8;
+            this.values = new String[utf8.length];
+            for (int k = 0; k < utf8.length; k++) values[k] = new String(utf8[k], StandardCharsets.UTF_8);
+            int width = 32 - Integer.numberOfLeadingZeros(Math.max(utf8.length - 1, 1));
+            this.bits = Integer.highestOneBit(width) == width ? width : Integer.highestOneBit(width) << 1;
+            this.codes = new long[(int) (((long) size * bits + 63) >>> 6)];
+            for (int i = 0; i < size; i++) codes[i * bits >>> 6] |= (long) rowCodes[i] << (i * bits & 63);
+        }
+
+        // null when there are more than MAX_DICTIONARY distinct values
+        static Dict of(Strings src) {
+            Map<String, Integer> ids = new HashMap<>();
+            int[] rowCodes = new int[src.size];
+            for (int i = 0; i < src.size; i++) {
+                if (src.isNull(i)) continue; // code 0, never read
+                Integer id = ids.putIfAbsent(src.getString(i), ids.size());
+                rowCodes[i] = id == null ? ids.size() - 1 : id;
+                if (ids.size() > MAX_DICTIONARY) return null;
+            }
+            byte[][] utf8 = new byte[ids.size()][];
+            for (Map.Entry<String, Integer> e : ids.entrySet()) utf8[e.getValue()] = e.getKey().getBytes(StandardCharsets.UTF_8);
+            Integer[] order = new Integer[utf8.length];
+            for (int k = 0; k < order.length; k++) order[k] = k;
+            Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(utf8[a], utf8[b]));
+            int[] recode = new int[utf8.length];
+            byte[][] sorted = new byte[utf8.length][];
+            for (int k = 0; k < order.length; k++) {
+                recode[order[k]] = k;
+                sorted[k] = utf8[order[k]];
+            }
+            for (int i = 0; i < rowCodes.length; i++) rowCodes[i] = recode[rowCodes[i]];
+            return new Dict(src, sorted, rowCodes);
+        }
+
+        @Override public AST.DataType type() { return AST.DataType.STRING; }
+        @Override public String getString(int i) { return values[code(i)]; }
+        @Override public Object get(int i) { return isNull(i) ? null : values[code(i)]; }
+        @Override public void appendString(String v) { ensureRoom(1); }
+
+        public int code(int i) {
+            return (int) (codes[i * bits >>> 6] >>> (i * bits & 63)) & ((1 << bits) - 1);
+        }
+
+        // Dictionary entries in code order, as UTF-8
+        public byte[][] dictionary() { return utf8; }
+
+        @Override
+        public long memoryBytes() {
+            long n = nulls.length * 8L + codes.length * 8L;
+            for (byte[] b : utf8) n += 2L * b.length + 64; // encoded and decoded, plus headers
+            return n;
+        }
+    }
+
+    // BOOLEAN as one bit per row
+    public static final class PackedBools extends Encoded {
+        private final long[] bits;
+
+        PackedBools(Bools src) {
+            super(src);
+            bits = new long[nulls.length];
+            boolean[] v = src.values;
+            for (int i = 0; i < size; i++) {
+                if (v[i]) bits[i >>> 6] |= 1L << i;
+            }
+        }
+
+        @Override public AST.DataType type() { return AST.DataType.BOOLEAN; }
+        @Override public boolean getBoolean(int i) { return (bits[i >>> 6] & (1L << i)) != 0; }
+        @Override public Object get(int i) { return isNull(i) ? null : getBoolean(i); }
+        @Override public void appendBoolean(boolean v) { ensureRoom(1); }
+        @Override public long memoryBytes() { return nulls.length * 8L + bits.length * 8L; }
+
+        // Bit i set == row i is TRUE
+        public long[] words() { return bits; }
+    }
+
+    // INTEGER as runs of equal values, when runs average at least MIN_AVERAGE_RUN
+    // rows (sorted or clustered columns); run j covers rows [ends[j - 1], ends[j])
+    public static final class RunInts extends Encoded {
+        private final int[] ends;
+        private final int[] values;
+
+        private RunInts(Ints src, int runs) {
+            super(src);
+            ends = new int[runs];
+            values = new int[runs];
+            int[] v = src.values;
+            for (int i = 1, j = 0; i <= size; i++) {
+                if (i == size || v[i] != v[i - 1]) {
+                    ends[j] = i;
+                    values[j++] = v[i - 1];
+                }
+            }
+        }
+
+        // null when the runs are too short to pay off
+        static RunInts of(Ints src) {
+            if (src.size == 0) return null;
+            int runs = 1;
+            for (int i = 1; i < src.size; i++) {
+                if (src.values[i] != src.values[i - 1]) runs++;
+            }
+            return (long) runs * MIN_AVERAGE_RUN <= src.size ? new RunInts(src, runs) : null;
+        }
+
+        @Override public AST.DataType type() { return AST.DataType.INTEGER; }
+        @Override public int getInt(int i) { return values[run(i)]; }
+        @Override public double getDouble(int i) { return values[run(i)]; }
+        @Override public Object get(int i) { return isNull(i) ? null : values[run(i)]; }
+        @Override public void appendInt(int v) { ensureRoom(1); }
+        @Override public long memoryBytes() { return nulls.length * 8L + ends.length * 8L; }
+
+        // Index of the run holding row i
+        public int run(int i) {
+            int lo = 0, hi = ends.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (ends[mid] <= i) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        public int[] ends() { return ends; }
+        public int[] values() { return values; }
+    }
+}
@@ -0,0 +1,150 @@
+package com.ziyingdeng.minidb.storage;
+
+import com.ziyingdeng.minidb.index.KeyIndex;
+
+// Heap table stored as a list of column chunks (see ChunkedTable). Scans return
+// batches over the chunks' own vectors, so they copy nothing.
+//
+// A chunk that fills up is sealed: each column is replaced by its encoded form
+// (ColumnVector.encode), so low-cardinality STRINGs become dictionary codes,
+// BOOLEANs bits and clustered INTEGERs runs. With `compression = none` chunks
+// keep their plain vectors.
+//
+// A table restored from a Snapshot starts with chunks that are only block
+// references into the file: each is read (and sealed, if full) the first time a
+// scan, lookup or append reaches it. The keys of restored rows go into the index
+// on the first lookup or append, read from the key column alone.
+public class MemoryTable extends ChunkedTable<MemoryTable.Chunk> {
+    private volatile boolean keysLoaded = true; // false while restored rows are missing from the index
+
+    // One fixed-capacity vector per column. Sealing swaps in a new array of
+    // encoded vectors, so a reader sees either array whole.
+    static final class Chunk extends ChunkedTable.Chunk {
+        private volatile ColumnVector[] columns; // null until a restored chunk is read
+        private final Snapshot snapshot; // source of a restored chunk, else null
+        private final Snapshot.ChunkImage image;
+        private final Schema schema;
+        private final boolean compress;
+
+        Chunk(Schema schema, long firstRow, int capacity) {
+            super(firstRow, capacity);
+            ColumnVector[] vectors = new ColumnVector[schema.size()];
+            for (int c = 0; c < vectors.length; c++) {
+                vectors[c] = ColumnVector.allocate(schema.column(c).type(), capacity);
+            }
+            this.columns = vectors;
+            this.snapshot = null;
+            this.image = null;
+            this.schema = schema;
+            this.compress = false;
+        }
+
+        Chunk(Schema schema, long firstRow, int capacity, Snapshot snapshot, Snapshot.ChunkImage image, boolean compress) {
+            super(firstRow, capacity);
+            this.size = image.rows();
+            this.snapshot = snapshot;
+            this.image = image;
+            this.schema = schema;
+            this.compress = compress;
+        }
+
+        ColumnVector[] columns() {
+            ColumnVector[] v = columns;
+            return v != null ? v : load();
+        }
+
+        private synchronized ColumnVector[] load() {
+            if (columns == null) {
+                columns = snapshot.read(image, schema, capacity);
+                if (size == capacity && compress) seal();
+            }
+            return columns;
+        }
+
+        // Key column c, without reading the other columns of a restored chunk
+        ColumnVector column(int c) {
+            ColumnVector[] v = columns;
+            return v != null ? v[c] : snapshot.read(image, c, schema.column(c).type(), capacity);
+        }
+
+        void seal() {
+            ColumnVector[] encoded = columns.clone();
+            for (int c = 0; c < encoded.length; c++) encoded[c] = ColumnVector.encode(encoded[c]);
+            columns = encoded;
+        }
+    }
+
+    public MemoryTable(String name, Schema schema) {
+        this(name, schema, TableOptions.DEFAULT);
+    }
+
+    public MemoryTable(String name, Schema schema, TableOptions options) {
+        super(name, schema, options, new Chunk[0]);
+    }
+
+    // The rows of a snapshot image; see Snapshot.restore
+    MemoryTable(String name, Schema schema, TableOptions options, Snapshot snapshot, Snapshot.TableImage image) {
+        this(name, schema, options);
+        Chunk[] cs = new Chunk[image.chunks().size()];
+        long firstRow = 0;
+        int capacity = MIN_CHUNK_ROWS;
+        for (int i = 0; i < cs.length; i++) {
+            cs[i] = new Chunk(schema, firstRow, capacity, snapshot, image.chunks().get(i), options.compression() == TableOptions.Compression.AUTO);
+            firstRow += capacity;
+            capacity = Math.min(capacity * 2, MAX_CHUNK_ROWS);
+        }
+        chunks = cs;
+        stagedRows = rowCount = image.rows();
+        keysLoaded = primaryIndex == null;
+    }
+
+    // Approximate heap bytes held by the column data; restored chunks count once read
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Chunk chunk : chunks) {
+            ColumnVector[] vectors = chunk.columns;
+            if (vectors == null) continue;
+            for (ColumnVector v : vectors) bytes += v.memoryBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    Chunk newChunk(long firstRow, int capacity) {
+        return new Chunk(schema, firstRow, capacity);
+    }
+
+    @Override
+    void write(Chunk chunk, ColumnVector[] columns, int from, int n, int at) {
+        ColumnVector[] vectors = chunk.columns();
+        for (int c = 0; c < columns.length; c++) vectors[c].appendFrom(columns[c], from, n);
+    }
+
+    @Override
+    void filled(Chunk chunk) {
+        if (options.compression() == TableOptions.Compression.AUTO) chunk.seal();
+    }
+
+    @Override
+    RowBatch batch(Chunk chunk, int offset, int n, ColumnVector[] buffer) {
+        return new RowBatch(chunk.columns(), offset, n);
+    }
+
+    // The key index, first given the keys of restored rows if they are not in it yet
+    @Override
+    KeyIndex keys() {
+        if (!keysLoaded) loadKeys();
+        return primaryIndex;
+    }
+
+    private synchronized void loadKeys() {
+        if (keysLoaded) return;
+        int key = schema.primaryKey();
+        for (Chunk chunk : chunks) {
+            if (chunk.image == null) break; // appended after the restore: indexed by stage()
+            ColumnVector keys = chunk.column(key);
+            for (int r = 0; r < chunk.image.rows(); r++) primaryIndex.insert(keys.getInt(r), chunk.firstRow + r);
+        }
+        keysLoaded = true;
+    }
+}
@@ -0,0 +1,160 @@
+package com.ziyingdeng.minidb.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+
+import com.ziyingdeng.minidb.parser.AST;
+
+// Table whose column data lives outside the Java heap, in direct buffers. Chunks
+// are sized as in MemoryTable (see ChunkedTable); each holds one buffer per column
+// with the values back to back (STRING as offsets plus UTF-8 bytes) and one for
+// the null bitmap. The heap holds only a few objects per chunk, so a
+// table of billions of cells adds nothing for the collector to trace or copy.
+//
+// Scans copy each batch into one set of heap vectors with bulk buffer reads, which
+// run as sequential memory copies; batches start on multiples of 1024 rows, so the
+// null bitmap is copied a word at a time too. Like MemoryTable, the rows are
+// rebuilt from the write-ahead log on open. Direct memory is bounded by
+// -XX:MaxDirectMemorySize (by default the maximum heap size).
+public final class OffHeapTable extends ChunkedTable<OffHeapTable.Chunk> {
+    static final class Chunk extends ChunkedTable.Chunk {
+        final Column[] columns;
+
+        Chunk(Schema schema, long firstRow, int capacity) {
+            super(firstRow, capacity);
+            this.columns = new Column[schema.size()];
+            for (int c = 0; c < columns.length; c++) columns[c] = new Column(schema.column(c).type(), capacity);
+        }
+    }
+
+    public OffHeapTable(String name, Schema schema, TableOptions options) {
+        super(name, schema, options, new Chunk[0]);
+    }
+
+    // Direct memory held by the table's columns
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (Chunk chunk : chunks) {
+            for (Column col : chunk.columns) bytes += col.bytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    Chunk newChunk(long firstRow, int capacity) {
+        return new Chunk(schema, firstRow, capacity);
+    }
+
+    @Override
+    void write(Chunk chunk, ColumnVector[] columns, int from, int n, int at) {
+        for (int c = 0; c < columns.length; c++) chunk.columns[c].write(columns[c], from, n, at);
+    }
+
+    // Each batch of a scan is copied into the same heap vectors, so a scan allocates once
+    @Override
+    ColumnVector[] buffer(int rows) {
+        return allocate(rows);
+    }
+
+    @Override
+    RowBatch batch(Chunk chunk, int offset, int n, ColumnVector[] buffer) {
+        for (int c = 0; c < buffer.length; c++) {
+            buffer[c].clear();
+            chunk.columns[c].read(offset, n, buffer[c]);
+        }
+        return new RowBatch(buffer, 0, n);
+    }
+
+    /* ------------------------------- columns ----------------------------- */
+
+    // One column of a chunk in native byte order. Only the buffer for its type is
+    // allocated; STRING bytes grow by reallocation, and readers take the buffer
+    // after the size they trust, so the one they see covers their rows.
+    static final class Column {
+        final AST.DataType type;
+        final LongBuffer nulls; // bit set = NULL
+        final IntBuffer ints;
+        final DoubleBuffer doubles;
+        final ByteBuffer bools;
+        final IntBuffer offsets; // capacity + 1 entries
+        volatile ByteBuffer bytes;
+
+        Column(AST.DataType type, int capacity) {
+            this.type = type;
+            this.nulls = direct(((capacity + 63) >>> 6) * 8).asLongBuffer();
+            this.ints = type == AST.DataType.INTEGER ? direct(capacity * 4).asIntBuffer() : null;
+            this.doubles = type == AST.DataType.FLOAT ? direct(capacity * 8).asDoubleBuffer() : null;
+            this.bools = type == AST.DataType.BOOLEAN ? direct(capacity) : null;
+            this.offsets = type == AST.DataType.STRING ? direct((capacity + 1) * 4).asIntBuffer() : null;
+            this.bytes = type == AST.DataType.STRING ? direct(capacity * 16) : null;
+        }
+
+        long bytes() {
+            long n = nulls.capacity() * 8L;
+            if (ints != null) n += ints.capacity() * 4L;
+            if (doubles != null) n += doubles.capacity() * 8L;
+            if (bools != null) n += bools.capacity();
+            if (offsets != null) n += offsets.capacity() * 4L + bytes.capacity();
+            return n;
+        }
+
+        // Rows [from, from + count) of src into rows [at, at + count)
+        void write(ColumnVector src, int from, int count, int at) {
+            switch (type) {
+                case INTEGER -> ints.put(at, ((ColumnVector.Ints) src).array(), from, count);
+                case FLOAT -> doubles.put(at, ((ColumnVector.Floats) src).array(), from, count);
+                case BOOLEAN -> {
+                    boolean[] v = ((ColumnVector.Bools) src).array();
+                    for (int k = 0; k < count; k++) bools.put(at + k, (byte) (v[from + k] ? 1 : 0));
+                }
+                case STRING -> {
+                    ColumnVector.Strings s = (ColumnVector.Strings) src;
+                    int[] srcOffsets = s.offsets();
+                    int begin = srcOffsets[from];
+                    int len = srcOffsets[from + count] - begin;
+                    int end = offsets.get(at);
+                    ByteBuffer buf = bytes;
+                    if (end + len > buf.capacity()) {
+                        ByteBuffer grown = direct((int) Math.min(Integer.MAX_VALUE - 8, Math.max(end + (long) len, buf.capacity() * 2L)));
+                        grown.put(0, buf, 0, end);
+                        bytes = buf = grown;
+                    }
+                    buf.put(end, s.bytes(), begin, len);
+                    for (int k = 1; k <= count; k++) offsets.put(at + k, end + (srcOffsets[from + k] - begin));
+                }
+            }
+            if (src.hasNulls(from, from + count)) {
+                for (int k = 0; k < count; k++) {
+                    if (!src.isNull(from + k)) continue;
+                    int row = at + k;
+                    nulls.put(row >>> 6, nulls.get(row >>> 6) | (1L << row));
+                }
+            }
+        }
+
+        // Append rows [from, from + count) to an empty vector
+        void read(int from, int count, ColumnVector out) {
+            switch (type) {
+                case INTEGER -> ((ColumnVector.Ints) out).appendInts(ints, from, count);
+                case FLOAT -> ((ColumnVector.Floats) out).appendDoubles(doubles, from, count);
+                case BOOLEAN -> ((ColumnVector.Bools) out).appendBooleans(bools, from, count);
+                case STRING -> ((ColumnVector.Strings) out).appendUtf8(bytes, offsets, from, count);
+            }
+            if ((from & 63) == 0) {
+                out.loadNulls(nulls, from >>> 6, count);
+            } else {
+                for (int k = 0; k < count; k++) {
+                    int row = from + k;
+                    if ((nulls.get(row >>> 6) & (1L << row)) != 0) out.setNull(k);
+                }
+            }
+        }
+
+        private static ByteBuffer direct(int bytes) {
+            return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.ziyingdeng.minidb.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// One file of fixed-size pages, read and written with positional I/O so any
+// number of threads can use the channel at once.
+//
+// Page 0 is the file header:
+//   [int magic][int page size][int page count][int table count]
+//   then per table [u16 name length][name UTF-8][int header page id]
+// The header is rewritten by sync(); pages allocated since the last sync may be
+// reused after a crash, which is safe because nothing durable points at them.
+public final class PageFile implements Closeable {
+    public static final int PAGE_SIZE = 8192;
+    private static final int MAGIC = 0x4D444250; // "MDBP"
+
+    private final Path path;
+    private final FileChannel channel;
+    private int pageCount = 1; // header included; guarded by this
+    private final Map<String, Integer> tables = new LinkedHashMap<>(); // guarded by this
+    private boolean headerDirty;
+
+    private PageFile(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    public static PageFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        PageFile file = new PageFile(path, channel);
+        try {
+            if (channel.size() == 0) {
+                file.headerDirty = true;
+                file.sync();
+            } else {
+                file.readHeader();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return file;
+    }
+
+    public Path path() { return path; }
+
+    public synchronized int pageCount() { return pageCount; }
+
+    // Id of a fresh page; its contents are whatever the caller writes
+    public synchronized int allocate() {
+        headerDirty = true;
+        return pageCount++;
+    }
+
+    // Header page id of the named table, or -1
+    public synchronized int table(String name) {
+        Integer id = tables.get(name);
+        return id == null ? -1 : id;
+    }
+
+    // Record a table's header page; durable with the next sync()
+    public synchronized void addTable(String name, int headerPage) {
+        if (tables.putIfAbsent(name, headerPage) != null) {
+            throw new StorageException("[Storage] Table '" + name + "' already exists in " + path);
+        }
+        headerDirty = true;
+    }
+
+    // Fill `dst` with page `id`; pages never written read as zeros
+    public void read(int id, ByteBuffer dst) {
+        ByteBuffer buf = dst.duplicate().clear();
+        long pos = (long) id * PAGE_SIZE;
+        try {
+            while (buf.hasRemaining()) {
+                int n = channel.read(buf, pos + buf.position());
+                if (n < 0) break;
+            }
+        } catch (IOException e) {
+            throw new StorageException("[Storage] Cannot read page " + id + " of " + path + ": " + e.getMessage(), e);
+        }
+        while (buf.hasRemaining()) buf.put((byte) 0);
+    }
+
+    public void write(int id, ByteBuffer src) {
+        ByteBuffer buf = src.duplicate().clear();
+        long pos = (long) id * PAGE_SIZE;
+        try {
+            while (buf.hasRemaining()) channel.write(buf, pos + buf.position());
+        } catch (IOException e) {
+            throw new StorageException("[Storage] Cannot write page " + id + " of " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    // Write the header if it changed, then force everything written so far to disk
+    public synchronized void sync() {
+        if (headerDirty) {
+            write(0, encodeHeader());
+            headerDirty = false;
+        }
+        try {
+            channel.force(true);
+        } catch (IOException e) {
+            throw new StorageException("[Storage] Cannot sync " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /* ------------------------------- header ------------------------------ */
+
+    private ByteBuffer encodeHeader() {
+        ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+        page.putInt(MAGIC).putInt(PAGE_SIZE).putInt(pageCount).putInt(tables.size());
+        for (Map.Entry<String, Integer> t : tables.entrySet()) {
+            byte[] name = t.getKey().getBytes(StandardCharsets.UTF_8);
+            if (page.remaining() < 2 + name.length + 4) {
+                throw new StorageException("[Storage] Too many tables for the header of " + path);
+            }
+            page.putShort((short) name.length).put(name).putInt(t.getValue());
+        }
+        return page;
+    }
+
+    private void readHeader() {
+        ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+        read(0, page);
+        if (page.getInt() != MAGIC) throw new StorageException("[Storage] " + path + " is not a page file");
+        int pageSize = page.getInt();
+        if (pageSize != PAGE_SIZE) {
+            throw new StorageException("[Storage] " + path + " has " + pageSize + "-byte pages, expected " + PAGE_SIZE);
+        }
+        pageCount = page.getInt();
+        for (int n = page.getInt(); n > 0; n--) {
+            byte[] name = new byte[page.getShort() & 0xFFFF];
+            page.get(name);
+            tables.put(new String(name, StandardCharsets.UTF_8), page.getInt());
+        }
+    }
+}
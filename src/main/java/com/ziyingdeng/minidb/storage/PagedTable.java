@@ -0,0 +1,251 @@
+package com.ziyingdeng.minidb.storage;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+// Table stored in slotted pages of a PageFile and read through a BufferPool, so
+// a scan holds one page at a time and tables may be larger than memory.
+//
+// Header page: [int magic][long checkpointed row count][int first data page]
+// Data page:   [int next data page][u16 slot count][u16 start of row data]
+//              [slots: u16 row offset, u16 row length ...] -> free <- [rows]
+// The slot array grows up from the header and rows grow down from the page end;
+// rows are appended in row id order, so data pages form a chain in that order.
+//
+// Rows are durable through the write-ahead log. checkpoint() writes the data
+// pages first and then the header's row count, so on open every row up to that
+// count is intact; rows after it that reached the file anyway are cut off, and
+// recovery appends them again from the log. The PRIMARY KEY index lives in
+// memory and is rebuilt from the pages on open.
+public final class PagedTable extends AbstractTable {
+    private static final int MAGIC = 0x4D444254; // "MDBT"
+    private static final int ROWS = 4, FIRST_PAGE = 12; // header page fields
+    private static final int NEXT = 0, SLOT_COUNT = 4, DATA_START = 6, SLOTS = 8, SLOT_SIZE = 4; // data page fields
+
+    private final BufferPool pool;
+    private final RowFormat format;
+    private final int headerPage;
+    private volatile Directory directory = new Directory(new int[16], new long[16], 0);
+
+    // Data pages in chain order and the id of each one's first row. Entries past
+    // `count` belong to the writer; it publishes them with a new Directory.
+    private record Directory(int[] pages, long[] firstRows, int count) {
+        Directory add(int page, long firstRow) {
+            int[] p = pages;
+            long[] f = firstRows;
+            if (count == p.length) {
+                p = Arrays.copyOf(p, count * 2);
+                f = Arrays.copyOf(f, count * 2);
+            }
+            p[count] = page;
+            f[count] = firstRow;
+            return new Directory(p, f, count + 1);
+        }
+
+        // Position of the page holding row `rowId`
+        int find(long rowId) {
+            int lo = 0, hi = count - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (firstRows[mid] <= rowId) lo = mid;
+                else hi = mid - 1;
+            }
+            return lo;
+        }
+    }
+
+    private PagedTable(String name, Schema schema, TableOptions options, BufferPool pool, int headerPage) {
+        super(name, schema, options);
+        this.pool = pool;
+        this.format = new RowFormat(schema);
+        this.headerPage = headerPage;
+    }
+
+    // The named table of the pool's file, created empty if the file has none
+    public static PagedTable open(String name, Schema schema, TableOptions options, BufferPool pool) {
+        int header = pool.file().table(name);
+        if (header >= 0) {
+            PagedTable table = new PagedTable(name, schema, options, pool, header);
+            table.load();
+            return table;
+        }
+        BufferPool.Page page = pool.allocate();
+        page.data().putInt(0, MAGIC);
+        pool.unpin(page, true);
+        pool.file().addTable(name, page.id());
+        return new PagedTable(name, schema, options, pool, page.id());
+    }
+
+    /* ------------------------------- writes ------------------------------ */
+
+    @Override
+    void store(ColumnVector[] columns, int rows) {
+        int[] sizes = new int[rows];
+        for (int r = 0; r < rows; r++) {
+            sizes[r] = format.size(columns, r);
+            if (SLOTS + SLOT_SIZE + sizes[r] > PageFile.PAGE_SIZE) {
+                throw new StorageException("[Storage] Row of " + sizes[r] + " bytes does not fit in a page of table '" + name + "'");
+            }
+        }
+        Directory dir = directory;
+        BufferPool.Page page = dir.count == 0 ? null : pool.pin(dir.pages[dir.count - 1]);
+        try {
+            for (int r = 0; r < rows; r++) {
+                if (page == null || free(page.data()) < SLOT_SIZE + sizes[r]) page = appendPage(page, stagedRows + r);
+                ByteBuffer data = page.data();
+                int slots = data.getShort(SLOT_COUNT) & 0xFFFF;
+                int at = (data.getShort(DATA_START) & 0xFFFF) - sizes[r];
+                format.write(columns, r, data, at);
+                data.putShort(SLOTS + slots * SLOT_SIZE, (short) at);
+                data.putShort(SLOTS + slots * SLOT_SIZE + 2, (short) sizes[r]);
+                data.putShort(DATA_START, (short) at);
+                data.putShort(SLOT_COUNT, (short) (slots + 1));
+            }
+        } finally {
+            if (page != null) pool.unpin(page, true);
+        }
+    }
+
+    // Write every page, then record the visible row count as intact on disk
+    public synchronized void checkpoint() {
+        pool.flush();
+        BufferPool.Page header = pool.pin(headerPage);
+        header.data().putLong(ROWS, rowCount);
+        pool.unpin(header, true);
+        pool.flush();
+    }
+
+    private static int free(ByteBuffer data) {
+        int slots = data.getShort(SLOT_COUNT) & 0xFFFF;
+        return (data.getShort(DATA_START) & 0xFFFF) - (SLOTS + slots * SLOT_SIZE);
+    }
+
+    // Start a new data page after `last` (unpinned here); the new page comes back pinned
+    private BufferPool.Page appendPage(BufferPool.Page last, long firstRow) {
+        BufferPool.Page page = pool.allocate();
+        page.data().putShort(DATA_START, (short) PageFile.PAGE_SIZE);
+        if (last != null) {
+            last.data().putInt(NEXT, page.id());
+            pool.unpin(last, true);
+        } else {
+            BufferPool.Page header = pool.pin(headerPage);
+            header.data().putInt(FIRST_PAGE, page.id());
+            pool.unpin(header, true);
+        }
+        directory = directory.add(page.id(), firstRow);
+        return page;
+    }
+
+    /* ------------------------------- reads ------------------------------- */
+
+    @Override
+    RowBatch fetch(long rowId) {
+        Directory dir = directory;
+        int p = dir.find(rowId);
+        ColumnVector[] out = allocate(1);
+        BufferPool.Page page = pool.pin(dir.pages[p]);
+        try {
+            int[] at = { rowOffset(page.data(), (int) (rowId - dir.firstRows[p])) };
+            format.read(page.data(), at, 1, new int[1], out);
+        } finally {
+            pool.unpin(page, false);
+        }
+        return new RowBatch(out, 0, 1);
+    }
+
+    // Each batch is decoded into the same vectors, so a scan allocates once
+    @Override
+    public Iterator<RowBatch> scan(long rows) {
+        long visible = visible(rows); // before the directory: it covers at least these rows
+        Directory dir = directory;
+        return new Iterator<>() {
+            private long next; // row id
+            private int page;
+            private final int[] rows = new int[RowBatch.CAPACITY]; // offsets of the rows taken from one page
+            private final int[] var = new int[RowBatch.CAPACITY];
+            private final ColumnVector[] out = allocate((int) Math.min(RowBatch.CAPACITY, visible));
+
+            @Override
+            public boolean hasNext() { return next < visible; }
+
+            @Override
+            public RowBatch next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                int n = (int) Math.min(RowBatch.CAPACITY, visible - next);
+                for (ColumnVector v : out) v.clear();
+                for (int done = 0; done < n; ) {
+                    long pageEnd = page + 1 < dir.count ? dir.firstRows[page + 1] : visible;
+                    if (next >= pageEnd) {
+                        page++;
+                        continue;
+                    }
+                    int take = (int) Math.min(n - done, pageEnd - next);
+                    BufferPool.Page p = pool.pin(dir.pages[page]);
+                    try {
+                        ByteBuffer data = p.data();
+                        int slot = (int) (next - dir.firstRows[page]);
+                        for (int k = 0; k < take; k++) rows[k] = rowOffset(data, slot + k);
+                        format.read(data, rows, take, var, out);
+                    } finally {
+                        pool.unpin(p, false);
+                    }
+                    next += take;
+                    done += take;
+                }
+                return new RowBatch(out, 0, n);
+            }
+        };
+    }
+
+    private static int rowOffset(ByteBuffer data, int slot) {
+        return data.getShort(SLOTS + slot * SLOT_SIZE) & 0xFFFF;
+    }
+
+    /* ------------------------------ recovery ----------------------------- */
+
+    // Walk the page chain up to the checkpointed row count, cutting off whatever
+    // follows it, and rebuild the directory and the key index
+    private void load() {
+        BufferPool.Page header = pool.pin(headerPage);
+        long rows;
+        int id;
+        try {
+            if (header.data().getInt(0) != MAGIC) {
+                throw new StorageException("[Storage] Page " + headerPage + " is not the header of table '" + name + "'");
+            }
+            rows = header.data().getLong(ROWS);
+            id = header.data().getInt(FIRST_PAGE);
+        } finally {
+            pool.unpin(header, false);
+        }
+        long seen = 0;
+        while (seen < rows) {
+            if (id == 0) throw new StorageException("[Storage] Table '" + name + "' is missing pages after row " + seen);
+            BufferPool.Page page = pool.pin(id);
+            ByteBuffer data = page.data();
+            int slots = data.getShort(SLOT_COUNT) & 0xFFFF;
+            directory = directory.add(id, seen);
+            boolean trimmed = false;
+            if (seen + slots >= rows) {
+                int keep = (int) (rows - seen);
+                if (keep < slots || data.getInt(NEXT) != 0) {
+                    data.putShort(SLOT_COUNT, (short) keep);
+                    data.putShort(DATA_START, (short) (keep == 0 ? PageFile.PAGE_SIZE : rowOffset(data, keep - 1)));
+                    data.putInt(NEXT, 0);
+                    trimmed = true;
+                }
+                slots = keep;
+            }
+            if (primaryIndex != null) {
+                for (int s = 0; s < slots; s++) primaryIndex.insert(format.readInt(data, rowOffset(data, s), schema.primaryKey()), seen + s);
+            }
+            seen += slots;
+            id = data.getInt(NEXT);
+            pool.unpin(page, trimmed);
+        }
+        stagedRows = rows;
+        rowCount = rows;
+    }
+}
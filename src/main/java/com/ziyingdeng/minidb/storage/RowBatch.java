@@ -0,0 +1,51 @@
+package com.ziyingdeng.minidb.storage;
+
+// Up to CAPACITY rows handed from a scan to its consumer: rows [start, start + size)
+// of the given column vectors. Batches are views; the vectors are not copied.
+// A filtered batch also carries a selection vector: its rows are then only the
+// positions sel[0, size) (ascending, relative to start) that passed the filter.
+public final class RowBatch {
+    public static final int CAPACITY = 1024;
+
+    private final ColumnVector[] columns;
+    private final int start;
+    private final int size;
+    private final int[] sel; // null == every row in [start, start + size)
+
+    public RowBatch(ColumnVector[] columns, int start, int size) {
+        this(columns, start, size, null);
+    }
+
+    public RowBatch(ColumnVector[] columns, int start, int size, int[] sel) {
+        this.columns = columns;
+        this.start = start;
+        this.size = size;
+        this.sel = sel;
+    }
+
+    public int columnCount() { return columns.length; }
+    public ColumnVector column(int col) { return columns[col]; }
+    public int start() { return start; }
+    public int size() { return size; }
+    public int[] selection() { return sel; }
+
+    // Same rows, narrowed to positions sel[0, size)
+    public RowBatch select(int[] sel, int size) {
+        return new RowBatch(columns, start, size, sel);
+    }
+
+    // The first `size` rows
+    public RowBatch head(int size) {
+        return new RowBatch(columns, start, Math.min(size, this.size), sel);
+    }
+
+    // Vector index of row `row` (0-based within the batch)
+    public int rowIndex(int row) {
+        return start + (sel == null ? row : sel[row]);
+    }
+
+    // Boxed value of row `row` (0-based within the batch); null for NULL
+    public Object get(int col, int row) {
+        return columns[col].get(rowIndex(row));
+    }
+}
@@ -0,0 +1,122 @@
+package com.ziyingdeng.minidb.storage;
+
+import java.nio.ByteBuffer;
+
+import com.ziyingdeng.minidb.parser.AST;
+
+// Byte layout of one row in a slotted page, derived from the column types:
+//   [null bitmap, one bit per column]
+//   [fixed part: INTEGER 4 bytes, FLOAT 8, BOOLEAN 1, STRING its u16 byte length]
+//   [string bytes, in column order]
+// Every column has a fixed offset in the fixed part, NULL or not, so one column
+// can be read without decoding the row.
+final class RowFormat {
+    private final AST.DataType[] types;
+    private final int[] offsets; // of each column's fixed field, from the row start
+    private final int nullBytes;
+    private final int fixedSize;
+
+    RowFormat(Schema schema) {
+        types = new AST.DataType[schema.size()];
+        offsets = new int[schema.size()];
+        nullBytes = (schema.size() + 7) >>> 3;
+        int at = nullBytes;
+        for (int c = 0; c < types.length; c++) {
+            types[c] = schema.column(c).type();
+            offsets[c] = at;
+            at += switch (types[c]) {
+                case INTEGER -> 4;
+                case FLOAT -> 8;
+                case BOOLEAN -> 1;
+                case STRING -> 2;
+            };
+        }
+        fixedSize = at;
+    }
+
+    // Encoded size of row r of the given columns
+    int size(ColumnVector[] columns, int r) {
+        int size = fixedSize;
+        for (int c = 0; c < types.length; c++) {
+            if (types[c] == AST.DataType.STRING && !columns[c].isNull(r)) {
+                size += ((ColumnVector.Strings) columns[c]).byteLength(r);
+            }
+        }
+        return size;
+    }
+
+    void write(ColumnVector[] columns, int r, ByteBuffer page, int at) {
+        for (int b = at; b < at + nullBytes; b++) page.put(b, (byte) 0);
+        int var = at + fixedSize;
+        for (int c = 0; c < types.length; c++) {
+            ColumnVector v = columns[c];
+            int field = at + offsets[c];
+            if (v.isNull(r)) {
+                page.put(at + (c >>> 3), (byte) (page.get(at + (c >>> 3)) | (1 << (c & 7))));
+                continue;
+            }
+            switch (types[c]) {
+                case INTEGER -> page.putInt(field, v.getInt(r));
+                case FLOAT -> page.putDouble(field, v.getDouble(r));
+                case BOOLEAN -> page.put(field, (byte) (v.getBoolean(r) ? 1 : 0));
+                case STRING -> {
+                    ColumnVector.Strings s = (ColumnVector.Strings) v;
+                    int len = s.byteLength(r);
+                    page.putShort(field, (short) len);
+                    page.put(var, s.bytes(), s.offsets()[r], len);
+                    var += len;
+                }
+            }
+        }
+    }
+
+    // Append the rows starting at rows[0, n) to one vector per column. Decodes a
+    // column at a time, so each inner loop handles a single type; `var` is scratch
+    // space of at least n ints for the string cursors.
+    void read(ByteBuffer page, int[] rows, int n, int[] var, ColumnVector[] out) {
+        for (int k = 0; k < n; k++) var[k] = rows[k] + fixedSize;
+        byte[] array = page.array();
+        int base = page.arrayOffset();
+        for (int c = 0; c < types.length; c++) {
+            ColumnVector v = out[c];
+            int nullByte = c >>> 3, nullBit = 1 << (c & 7), field = offsets[c];
+            switch (types[c]) {
+                case INTEGER -> {
+                    for (int k = 0; k < n; k++) {
+                        if ((page.get(rows[k] + nullByte) & nullBit) != 0) v.appendNull();
+                        else v.appendInt(page.getInt(rows[k] + field));
+                    }
+                }
+                case FLOAT -> {
+                    for (int k = 0; k < n; k++) {
+                        if ((page.get(rows[k] + nullByte) & nullBit) != 0) v.appendNull();
+                        else v.appendDouble(page.getDouble(rows[k] + field));
+                    }
+                }
+                case BOOLEAN -> {
+                    for (int k = 0; k < n; k++) {
+                        if ((page.get(rows[k] + nullByte) & nullBit) != 0) v.appendNull();
+                        else v.appendBoolean(page.get(rows[k] + field) != 0);
+                    }
+                }
+                case STRING -> {
+                    ColumnVector.Strings s = (ColumnVector.Strings) v;
+                    for (int k = 0; k < n; k++) {
+                        if ((page.get(rows[k] + nullByte) & nullBit) != 0) {
+                            s.appendNull();
+                            continue;
+                        }
+                        int len = page.getShort(rows[k] + field) & 0xFFFF;
+                        s.appendUtf8(array, base + var[k], len);
+                        var[k] += len;
+                    }
+                }
+            }
+        }
+    }
+
+    // INTEGER column c of the row at `at`; the caller knows it is not NULL
+    int readInt(ByteBuffer page, int at, int c) {
+        return page.getInt(at + offsets[c]);
+    }
+}
@@ -0,0 +1,46 @@
+package com.ziyingdeng.minidb.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ziyingdeng.minidb.parser.AST;
+
+// Resolved column metadata of a table, derived from AST.CreateTable
+public final class Schema {
+
+    // nullable is resolved (unspecified == nullable); defaultValue is null when there is no default
+    public record ColumnDef(String name, AST.DataType type, boolean nullable, AST.Const defaultValue) {}
+
+    private final List<ColumnDef> columns;
+    private final Map<String, Integer> index;
+    private final int primaryKey; // column position, or -1
+
+    public Schema(List<ColumnDef> columns) {
+        this(columns, -1);
+    }
+
+    public Schema(List<ColumnDef> columns, int primaryKey) {
+        this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+        this.primaryKey = primaryKey;
+        this.index = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            if (index.put(columns.get(i).name(), i) != null) {
+                throw new StorageException("[Storage] Duplicate column '" + columns.get(i).name() + "'");
+            }
+        }
+    }
+
+    public int size() { return columns.size(); }
+    public ColumnDef column(int i) { return columns.get(i); }
+    public List<ColumnDef> columns() { return columns; }
+    public int primaryKey() { return primaryKey; }
+
+    // Position of the named column, or -1
+    public int indexOf(String name) {
+        Integer i = index.get(name);
+        return i == null ? -1 : i;
+    }
+}
@@ -0,0 +1,448 @@
+package com.ziyingdeng.minidb.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+import com.ziyingdeng.minidb.parser.AST;
+
+// Binary image of every table at one point of the write-ahead log, so a restart
+// maps a file instead of replaying the log from its start. Little-endian:
+//
+//   header  [i32 magic][i32 version][i64 catalog offset][i32 catalog length]
+//           [i32 CRC32C of catalog][8 bytes reserved]
+//   blocks  one per column of each chunk, 8-byte aligned:
+//           [u8 has NULLs][7 bytes padding][null bitmap words, if any][values]
+//           INTEGER i32, FLOAT f64, BOOLEAN u8 per row; STRING rows + 1 i32 offsets,
+//           then the UTF-8 bytes
+//   catalog [i32 first log segment not covered][i32 tables]
+//           per table: name, columns (name, type, flags, default), options,
+//           [i64 rows][i32 chunks] and per chunk [i32 rows] plus per column
+//           [i64 block offset][i32 block length][i32 block CRC32C]
+//
+// Chunks follow the MemoryTable sizes (1024 rows doubling up to 64K), so a
+// restored table takes them as its own. Opening reads the catalog only; each
+// block is mapped and checked when its chunk is first used. PAGED tables keep
+// their rows in the database file and are listed with their row count alone.
+public final class Snapshot implements Closeable {
+    public static final int VERSION = 1;
+    private static final int MAGIC = 0x4D444253; // "MDBS"
+    private static final int HEADER = 32;
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    // column flags in the catalog
+    private static final int NULLABLE = 1;
+    private static final int PRIMARY_KEY = 2;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int walSegment;
+    private final List<TableImage> tables;
+
+    // A table as the catalog lists it; `options` is the option text of its CREATE TABLE
+    public record TableImage(String name, Schema schema, Map<String, String> options, long rows, List<ChunkImage> chunks) {}
+
+    public record ChunkImage(int rows, Block[] columns) {}
+
+    public record Block(long offset, int length, int checksum) {}
+
+    private Snapshot(Path file, FileChannel channel, int walSegment, List<TableImage> tables) {
+        this.file = file;
+        this.channel = channel;
+        this.walSegment = walSegment;
+        this.tables = tables;
+    }
+
+    // First write-ahead log segment whose records the snapshot does not hold
+    public int walSegment() { return walSegment; }
+    public List<TableImage> tables() { return tables; }
+
+    /* ------------------------------- writing ----------------------------- */
+
+    // Write the first rows.get(name) rows of each table, then move the file into
+    // place; a crash before the move leaves the previous snapshot untouched. The
+    // move itself is forced to disk before this returns, so the caller may then
+    // delete the log the snapshot replaces.
+    public static void write(Path file, Collection<Table> tables, Map<String, Long> rows, int walSegment) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output out = new Output(ch, HEADER);
+            List<TableImage> images = new ArrayList<>();
+            for (Table t : tables) {
+                long n = rows.get(t.name());
+                List<ChunkImage> chunks = t.options().storage() == TableOptions.StorageKind.PAGED ? List.of() : writeRows(out, t, n);
+                images.add(new TableImage(t.name(), t.schema(), t.options().raw(), n, chunks));
+            }
+            long catalogOffset = out.offset();
+            out.begin();
+            writeCatalog(out, images, walSegment);
+            int catalogCrc = out.end();
+            out.flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ORDER);
+            header.putInt(MAGIC).putInt(VERSION).putLong(catalogOffset)
+                    .putInt((int) (out.offset() - catalogOffset)).putInt(catalogCrc).flip();
+            while (header.hasRemaining()) ch.write(header, header.position());
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory(file.toAbsolutePath().getParent());
+    }
+
+    // A rename is durable only once its directory is
+    private static void forceDirectory(Path dir) throws IOException {
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        }
+    }
+
+    // Regroup the scan's batches into chunks and write each chunk a column at a time
+    private static List<ChunkImage> writeRows(Output out, Table table, long rows) throws IOException {
+        Schema schema = table.schema();
+        List<ChunkImage> chunks = new ArrayList<>();
+        Iterator<RowBatch> it = table.scan();
+        RowBatch batch = null;
+        int used = 0;
+        int capacity = ChunkedTable.MIN_CHUNK_ROWS;
+        for (long done = 0; done < rows; done += capacity, capacity = Math.min(capacity * 2, ChunkedTable.MAX_CHUNK_ROWS)) {
+            int take = (int) Math.min(capacity, rows - done);
+            ColumnVector[] chunk = new ColumnVector[schema.size()];
+            for (int c = 0; c < chunk.length; c++) chunk[c] = ColumnVector.allocate(schema.column(c).type(), take);
+            for (int filled = 0; filled < take; ) {
+                if (batch == null || used == batch.size()) {
+                    batch = it.next();
+                    used = 0;
+                }
+                int k = Math.min(take - filled, batch.size() - used);
+                for (int c = 0; c < chunk.length; c++) chunk[c].appendFrom(batch.column(c), batch.start() + used, k);
+                used += k;
+                filled += k;
+            }
+            Block[] blocks = new Block[chunk.length];
+            for (int c = 0; c < chunk.length; c++) blocks[c] = writeBlock(out, chunk[c], take);
+            chunks.add(new ChunkImage(take, blocks));
+        }
+        return chunks;
+    }
+
+    private static Block writeBlock(Output out, ColumnVector v, int rows) throws IOException {
+        long offset = out.offset();
+        out.begin();
+        boolean nulls = v.hasNulls(0, rows);
+        out.putLong(nulls ? 1 : 0); // the flag byte comes first in little-endian order
+        if (nulls) out.longs(v.nullBitmap(), (rows + 63) >>> 6);
+        switch (v) {
+            case ColumnVector.Ints ints -> out.ints(ints.array(), rows);
+            case ColumnVector.Floats floats -> out.doubles(floats.array(), rows);
+            case ColumnVector.Bools bools -> {
+                for (int r = 0; r < rows; r++) out.put((byte) (bools.array()[r] ? 1 : 0));
+            }
+            case ColumnVector.Strings s -> {
+                int[] offsets = s.offsets(); // a fresh vector: offsets start at 0
+                out.ints(offsets, rows + 1);
+                out.bytes(s.bytes(), offsets[rows]);
+            }
+            default -> throw new StorageException("[Storage] Cannot write " + v.getClass().getSimpleName() + " to a snapshot");
+        }
+        while ((out.offset() & 7) != 0) out.put((byte) 0);
+        int checksum = out.end();
+        return new Block(offset, (int) (out.offset() - offset), checksum);
+    }
+
+    private static void writeCatalog(Output out, List<TableImage> tables, int walSegment) throws IOException {
+        out.putInt(walSegment);
+        out.putInt(tables.size());
+        for (TableImage t : tables) {
+            out.string(t.name());
+            out.putInt(t.schema().size());
+            for (int c = 0; c < t.schema().size(); c++) {
+                Schema.ColumnDef def = t.schema().column(c);
+                out.string(def.name());
+                out.put((byte) def.type().ordinal());
+                out.put((byte) ((def.nullable() ? NULLABLE : 0) | (c == t.schema().primaryKey() ? PRIMARY_KEY : 0)));
+                writeConst(out, def.defaultValue());
+            }
+            out.putInt(t.options().size());
+            for (Map.Entry<String, String> option : t.options().entrySet()) {
+                out.string(option.getKey());
+                out.string(option.getValue());
+            }
+            out.putLong(t.rows());
+            out.putInt(t.chunks().size());
+            for (ChunkImage chunk : t.chunks()) {
+                out.putInt(chunk.rows());
+                for (Block b : chunk.columns()) {
+                    out.putLong(b.offset());
+                    out.putInt(b.length());
+                    out.putInt(b.checksum());
+                }
+            }
+        }
+    }
+
+    private static void writeConst(Output out, AST.Const c) throws IOException {
+        if (c == null) {
+            out.put((byte) 0xFF);
+            return;
+        }
+        out.put((byte) c.kind.ordinal());
+        switch (c.kind) {
+            case NULL -> {}
+            case BOOLEAN -> out.put((byte) ((Boolean) c.value ? 1 : 0));
+            case INTEGER -> out.putInt((Integer) c.value);
+            case FLOAT -> out.putLong(Double.doubleToRawLongBits((Double) c.value));
+            case STRING -> out.string((String) c.value);
+        }
+    }
+
+    /* ------------------------------- reading ----------------------------- */
+
+    // Map the file and read its catalog; the blocks are read later, on demand
+    public static Snapshot open(Path file) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            if (ch.size() < HEADER) throw corrupt(file, "is truncated");
+            ByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER).order(ORDER);
+            if (header.getInt(0) != MAGIC) throw corrupt(file, "is not a snapshot");
+            if (header.getInt(4) != VERSION) {
+                throw new StorageException("[Storage] Snapshot " + file + " has version " + header.getInt(4) + ", expected " + VERSION);
+            }
+            long offset = header.getLong(8);
+            int length = header.getInt(16);
+            if (offset < HEADER || length < 0 || offset + length > ch.size()) throw corrupt(file, "is truncated");
+            ByteBuffer catalog = ch.map(FileChannel.MapMode.READ_ONLY, offset, length).order(ORDER);
+            if (checksum(catalog) != header.getInt(20)) throw corrupt(file, "has a damaged catalog");
+            int walSegment = catalog.getInt();
+            int count = catalog.getInt();
+            List<TableImage> tables = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) tables.add(readTable(catalog));
+            return new Snapshot(file, ch, walSegment, List.copyOf(tables));
+        } catch (IOException | RuntimeException e) {
+            ch.close();
+            throw e;
+        }
+    }
+
+    private static TableImage readTable(ByteBuffer r) {
+        String name = readString(r);
+        int n = r.getInt();
+        List<Schema.ColumnDef> defs = new ArrayList<>(n);
+        int primaryKey = -1;
+        for (int c = 0; c < n; c++) {
+            String column = readString(r);
+            AST.DataType type = AST.DataType.values()[r.get()];
+            int flags = r.get();
+            if ((flags & PRIMARY_KEY) != 0) primaryKey = c;
+            defs.add(new Schema.ColumnDef(column, type, (flags & NULLABLE) != 0, readConst(r)));
+        }
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = r.getInt(); i > 0; i--) options.put(readString(r), readString(r));
+        long rows = r.getLong();
+        int count = r.getInt();
+        List<ChunkImage> chunks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int chunkRows = r.getInt();
+            Block[] blocks = new Block[n];
+            for (int c = 0; c < n; c++) blocks[c] = new Block(r.getLong(), r.getInt(), r.getInt());
+            chunks.add(new ChunkImage(chunkRows, blocks));
+        }
+        return new TableImage(name, new Schema(defs, primaryKey), Map.copyOf(options), rows, List.copyOf(chunks));
+    }
+
+    private static AST.Const readConst(ByteBuffer r) {
+        int tag = r.get() & 0xFF;
+        if (tag == 0xFF) return null;
+        return switch (AST.Const.Kind.values()[tag]) {
+            case NULL -> AST.Const.ofNull();
+            case BOOLEAN -> AST.Const.ofBoolean(r.get() == 1);
+            case INTEGER -> AST.Const.ofInteger(r.getInt());
+            case FLOAT -> AST.Const.ofFloat(Double.longBitsToDouble(r.getLong()));
+            case STRING -> AST.Const.ofString(readString(r));
+        };
+    }
+
+    private static String readString(ByteBuffer r) {
+        byte[] b = new byte[r.getInt()];
+        r.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // The table holding an image's rows: MEMORY tables read each chunk from the file
+    // when it is first used; OFFHEAP tables copy every chunk into direct memory now
+    public Table restore(TableImage image, TableOptions options) {
+        return switch (options.storage()) {
+            case MEMORY -> new MemoryTable(image.name(), image.schema(), options, this, image);
+            case OFFHEAP -> {
+                OffHeapTable table = new OffHeapTable(image.name(), image.schema(), options);
+                int capacity = ChunkedTable.MIN_CHUNK_ROWS;
+                for (ChunkImage chunk : image.chunks()) {
+                    table.append(read(chunk, image.schema(), capacity), chunk.rows());
+                    capacity = Math.min(capacity * 2, ChunkedTable.MAX_CHUNK_ROWS);
+                }
+                yield table;
+            }
+            case PAGED -> throw new StorageException("[Storage] Rows of PAGED table '" + image.name() + "' are not in the snapshot");
+        };
+    }
+
+    // Every column of a chunk, in vectors of `capacity` rows
+    ColumnVector[] read(ChunkImage chunk, Schema schema, int capacity) {
+        ColumnVector[] out = new ColumnVector[schema.size()];
+        for (int c = 0; c < out.length; c++) out[c] = read(chunk, c, schema.column(c).type(), capacity);
+        return out;
+    }
+
+    // Column c of a chunk, checked against its checksum
+    ColumnVector read(ChunkImage chunk, int c, AST.DataType type, int capacity) {
+        Block block = chunk.columns()[c];
+        int rows = chunk.rows();
+        ByteBuffer b;
+        try {
+            b = channel.map(FileChannel.MapMode.READ_ONLY, block.offset(), block.length());
+        } catch (IOException e) {
+            throw new StorageException("[Storage] Cannot read snapshot " + file + ": " + e.getMessage(), e);
+        }
+        if (checksum(b) != block.checksum()) throw corrupt(file, "has a damaged block at offset " + block.offset());
+        ColumnVector v = ColumnVector.allocate(type, capacity);
+        int at = 8;
+        int words = (rows + 63) >>> 6;
+        boolean nulls = b.get(0) == 1;
+        if (nulls) at += words * 8;
+        switch (type) {
+            case INTEGER -> ((ColumnVector.Ints) v).appendInts(b.slice(at, rows * 4).order(ORDER).asIntBuffer(), 0, rows);
+            case FLOAT -> ((ColumnVector.Floats) v).appendDoubles(b.slice(at, rows * 8).order(ORDER).asDoubleBuffer(), 0, rows);
+            case BOOLEAN -> ((ColumnVector.Bools) v).appendBooleans(b.slice(at, rows), 0, rows);
+            case STRING -> {
+                int bytesAt = at + (rows + 1) * 4;
+                ((ColumnVector.Strings) v).appendUtf8(b.slice(bytesAt, b.limit() - bytesAt),
+                        b.slice(at, (rows + 1) * 4).order(ORDER).asIntBuffer(), 0, rows);
+            }
+        }
+        if (nulls) v.loadNulls(b.slice(8, words * 8).order(ORDER).asLongBuffer(), 0, rows);
+        return v;
+    }
+
+    private static int checksum(ByteBuffer b) {
+        CRC32C crc = new CRC32C();
+        crc.update(b.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static StorageException corrupt(Path file, String what) {
+        return new StorageException("[Storage] Snapshot " + file + " " + what);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /* ------------------------------- output ------------------------------ */
+
+    // Buffered little-endian writer at a file position, with a running checksum
+    // from the last begin()
+    private static final class Output {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ORDER);
+        private final CRC32C crc = new CRC32C();
+        private long position; // file offset of buf[0]
+        private int summed;    // bytes of buf already in crc
+
+        Output(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        long offset() { return position + buf.position(); }
+
+        void begin() {
+            crc.reset();
+            summed = buf.position();
+        }
+
+        int end() {
+            sum();
+            return (int) crc.getValue();
+        }
+
+        void put(byte v) throws IOException { room(1); buf.put(v); }
+        void putInt(int v) throws IOException { room(4); buf.putInt(v); }
+        void putLong(long v) throws IOException { room(8); buf.putLong(v); }
+
+        void string(String s) throws IOException {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            putInt(b.length);
+            bytes(b, b.length);
+        }
+
+        void bytes(byte[] src, int n) throws IOException {
+            for (int i = 0; i < n; ) {
+                room(1);
+                int k = Math.min(n - i, buf.remaining());
+                buf.put(src, i, k);
+                i += k;
+            }
+        }
+
+        void ints(int[] src, int n) throws IOException {
+            for (int i = 0; i < n; ) {
+                room(4);
+                int k = Math.min(n - i, buf.remaining() / 4);
+                buf.asIntBuffer().put(src, i, k);
+                buf.position(buf.position() + k * 4);
+                i += k;
+            }
+        }
+
+        void longs(long[] src, int n) throws IOException {
+            for (int i = 0; i < n; ) {
+                room(8);
+                int k = Math.min(n - i, buf.remaining() / 8);
+                buf.asLongBuffer().put(src, i, k);
+                buf.position(buf.position() + k * 8);
+                i += k;
+            }
+        }
+
+        void doubles(double[] src, int n) throws IOException {
+            for (int i = 0; i < n; ) {
+                room(8);
+                int k = Math.min(n - i, buf.remaining() / 8);
+                buf.asDoubleBuffer().put(src, i, k);
+                buf.position(buf.position() + k * 8);
+                i += k;
+            }
+        }
+
+        private void room(int n) throws IOException {
+            if (buf.remaining() < n) flush();
+        }
+
+        void flush() throws IOException {
+            sum();
+            buf.flip();
+            while (buf.hasRemaining()) position += channel.write(buf, position);
+            buf.clear();
+            summed = 0;
+        }
+
+        private void sum() {
+            crc.update(buf.slice(summed, buf.position() - summed));
+            summed = buf.position();
+        }
+    }
+}
@@ -0,0 +1,6 @@
+package com.ziyingdeng.minidb.storage;
+
+public class StorageException extends RuntimeException {
+    public StorageException(String message) { super(message); }
+    public StorageException(String message, Throwable cause) { super(message, cause); }
+}
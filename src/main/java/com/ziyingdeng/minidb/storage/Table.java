@@ -0,0 +1,42 @@
+package com.ziyingdeng.minidb.storage;
+
+import java.util.Iterator;
+
+public interface Table {
+    String name();
+    Schema schema();
+    TableOptions options();
+    long rowCount();
+
+    // Append `rows` rows given column-wise in schema order; appends are all-or-nothing
+    default void append(ColumnVector[] columns, int rows) {
+        publish(stage(columns, rows));
+    }
+
+    // Write rows (and their index entries) without making them visible yet; checks
+    // primary key uniqueness first, against staged rows too. Runs under the table's
+    // monitor, so a caller holding it can order other work (logging) with the rows.
+    // Returns the row count to publish once the rows may be seen.
+    long stage(ColumnVector[] columns, int rows);
+
+    // Make every row up to `rows` visible; publishing a later count covers earlier ones
+    void publish(long rows);
+
+    // Rows written by stage() so far, visible or not
+    long stagedRowCount();
+
+    // Batches over the rows present when the scan starts. A scan may refill the same
+    // vectors for its next batch, so a batch is only valid until the next call.
+    default Iterator<RowBatch> scan() {
+        return scan(rowCount());
+    }
+
+    // Batches over the first `rows` rows, or the visible ones if there are fewer
+    Iterator<RowBatch> scan(long rows);
+
+    // Row id of the visible row with primary key `key`, or -1; the key must be INTEGER
+    long lookup(long key);
+
+    // One-row batch holding visible row `rowId`
+    RowBatch row(long rowId);
+}
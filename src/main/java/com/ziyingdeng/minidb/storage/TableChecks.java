@@ -0,0 +1,41 @@
+package com.ziyingdeng.minidb.storage;
+
+import java.util.Arrays;
+
+import com.ziyingdeng.minidb.index.KeyIndex;
+import com.ziyingdeng.minidb.parser.AST;
+
+// Validation shared by the table implementations before an append touches them
+final class TableChecks {
+    private TableChecks() {}
+
+    static void primaryKeyType(String table, Schema schema) {
+        if (schema.primaryKey() >= 0 && schema.column(schema.primaryKey()).type() != AST.DataType.INTEGER) {
+            throw new StorageException("[Storage] PRIMARY KEY of table '" + table + "' must be INTEGER");
+        }
+    }
+
+    static void columns(Schema schema, ColumnVector[] columns, int rows) {
+        if (columns.length != schema.size()) {
+            throw new StorageException("[Storage] Expected " + schema.size() + " columns, got " + columns.length);
+        }
+        for (int c = 0; c < columns.length; c++) {
+            if (columns[c].type() != schema.column(c).type() || columns[c].size() < rows) {
+                throw new StorageException("[Storage] Column '" + schema.column(c).name() + "' does not match the schema");
+            }
+        }
+    }
+
+    // Reject the whole append if a key repeats within it or is already taken
+    static void keys(String table, Schema schema, KeyIndex index, ColumnVector.Ints keys, int rows) {
+        String column = schema.column(schema.primaryKey()).name();
+        if (keys.hasNulls(0, rows)) throw new StorageException("[Storage] PRIMARY KEY '" + column + "' cannot be NULL");
+        int[] sorted = Arrays.copyOf(keys.array(), rows);
+        Arrays.sort(sorted);
+        for (int r = 0; r < rows; r++) {
+            if ((r > 0 && sorted[r] == sorted[r - 1]) || index.get(sorted[r]) != KeyIndex.ABSENT) {
+                throw new StorageException("[Storage] Duplicate PRIMARY KEY " + sorted[r] + " in table '" + table + "'");
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.ziyingdeng.minidb.storage;
+
+import java.util.Locale;
+import java.util.Map;
+
+import com.ziyingdeng.minidb.index.BPlusTree;
+import com.ziyingdeng.minidb.index.KeyIndex;
+import com.ziyingdeng.minidb.index.LongHashIndex;
+
+// Physical settings of a table from CREATE TABLE ... WITH (name = value, ...).
+// Kept as the option text too, so logs and snapshots store exactly what was given.
+public record TableOptions(Map<String, String> raw, IndexKind index, StorageKind storage, Compression compression) {
+    public static final TableOptions DEFAULT = new TableOptions(Map.of(), IndexKind.BTREE, StorageKind.MEMORY, Compression.AUTO);
+
+    // How the PRIMARY KEY is indexed: BTREE keeps keys ordered, HASH is a flatter
+    // open-addressing table for point lookups only
+    public enum IndexKind {
+        BTREE, HASH;
+
+        KeyIndex create() {
+            return this == BTREE ? new BPlusTree() : new LongHashIndex();
+        }
+    }
+
+    // Where the rows live: MEMORY in column chunks on the heap, OFFHEAP in the same
+    // chunks outside the heap, PAGED in slotted pages of the database file, cached
+    // by the buffer pool
+    public enum StorageKind { MEMORY, OFFHEAP, PAGED }
+
+    // Whether MEMORY tables encode their full chunks (dictionary, bit-packing,
+    // run-length); the other storage kinds do not compress
+    public enum Compression { AUTO, NONE }
+
+    public static TableOptions of(Map<String, String> options) {
+        return of(options, StorageKind.MEMORY);
+    }
+
+    // Validate option names and values; names are lower case. `storage` applies
+    // when the options do not name one, so it is not part of the raw text.
+    public static TableOptions of(Map<String, String> options, StorageKind storage) {
+        IndexKind index = IndexKind.BTREE;
+        Compression compression = Compression.AUTO;
+        for (Map.Entry<String, String> e : options.entrySet()) {
+            switch (e.getKey()) {
+                case "index" -> index = parse(IndexKind.class, e.getKey(), e.getValue());
+                case "storage" -> storage = parse(StorageKind.class, e.getKey(), e.getValue());
+                case "compression" -> compression = parse(Compression.class, e.getKey(), e.getValue());
+                default -> throw new StorageException("[Storage] Unknown table option '" + e.getKey() + "'");
+            }
+        }
+        return new TableOptions(Map.copyOf(options), index, storage, compression);
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String option, String value) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new StorageException("[Storage] Invalid value '" + value + "' for table option '" + option + "'");
+        }
+    }
+}
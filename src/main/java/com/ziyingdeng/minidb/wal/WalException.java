@@ -0,0 +1,6 @@
+package com.ziyingdeng.minidb.wal;
+
+public class WalException extends RuntimeException {
+    public WalException(String message) { super(message); }
+    public WalException(String message, Throwable cause) { super(message, cause); }
+}
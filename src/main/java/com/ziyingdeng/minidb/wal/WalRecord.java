@@ -0,0 +1,211 @@
+package com.ziyingdeng.minidb.wal;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.Schema;
+import com.ziyingdeng.minidb.storage.TableOptions;
+
+// Logical log records and their binary form. INSERT records carry the binary row
+// images column by column (null bitmap + packed values), exactly as they are
+// appended to the table, so replay needs no parsing or type checking.
+public sealed interface WalRecord {
+    byte CREATE_TABLE = 1;
+    byte INSERT = 2;
+
+    // column flags in CREATE_TABLE records
+    int NULLABLE = 1;
+    int PRIMARY_KEY = 2;
+
+    record CreateTable(String name, Schema schema, TableOptions options) implements WalRecord {
+        public CreateTable(String name, Schema schema) {
+            this(name, schema, TableOptions.DEFAULT);
+        }
+    }
+
+    // columns in schema order, `rows` rows each
+    record Insert(String table, ColumnVector[] columns, int rows) implements WalRecord {}
+
+    /* ------------------------------ encoding ------------------------------ */
+
+    static byte[] encode(WalRecord record) {
+        Writer w = new Writer();
+        switch (record) {
+            case CreateTable c -> {
+                w.u8(CREATE_TABLE);
+                w.string(c.name());
+                w.i32(c.schema().size());
+                for (int i = 0; i < c.schema().size(); i++) {
+                    Schema.ColumnDef def = c.schema().column(i);
+                    w.string(def.name());
+                    w.u8(def.type().ordinal());
+                    w.u8((def.nullable() ? NULLABLE : 0) | (i == c.schema().primaryKey() ? PRIMARY_KEY : 0));
+                    writeConst(w, def.defaultValue());
+                }
+                w.i32(c.options().raw().size());
+                for (Map.Entry<String, String> option : c.options().raw().entrySet()) {
+                    w.string(option.getKey());
+                    w.string(option.getValue());
+                }
+            }
+            case Insert ins -> {
+                w.u8(INSERT);
+                w.string(ins.table());
+                w.i32(ins.columns().length);
+                w.i32(ins.rows());
+                for (ColumnVector v : ins.columns()) writeVector(w, v, ins.rows());
+            }
+        }
+        return w.toByteArray();
+    }
+
+    static WalRecord decode(byte[] payload) {
+        ByteBuffer r = ByteBuffer.wrap(payload);
+        byte type = r.get();
+        return switch (type) {
+            case CREATE_TABLE -> {
+                String name = readString(r);
+                int n = r.getInt();
+                List<Schema.ColumnDef> defs = new ArrayList<>(n);
+                int primaryKey = -1;
+                for (int i = 0; i < n; i++) {
+                    String col = readString(r);
+                    AST.DataType dt = AST.DataType.values()[r.get()];
+                    int flags = r.get();
+                    if ((flags & PRIMARY_KEY) != 0) primaryKey = i;
+                    defs.add(new Schema.ColumnDef(col, dt, (flags & NULLABLE) != 0, readConst(r)));
+                }
+                Map<String, String> options = new HashMap<>();
+                for (int i = r.hasRemaining() ? r.getInt() : 0; i > 0; i--) options.put(readString(r), readString(r));
+                yield new CreateTable(name, new Schema(defs, primaryKey), TableOptions.of(options));
+            }
+            case INSERT -> {
+                String table = readString(r);
+                int n = r.getInt();
+                int rows = r.getInt();
+                ColumnVector[] columns = new ColumnVector[n];
+                for (int i = 0; i < n; i++) columns[i] = readVector(r, rows);
+                yield new Insert(table, columns, rows);
+            }
+            default -> throw new WalException("[WAL] Unknown record type " + type);
+        };
+    }
+
+    private static void writeVector(Writer w, ColumnVector v, int rows) {
+        w.u8(v.type().ordinal());
+        boolean anyNull = false;
+        for (int i = 0; i < rows && !anyNull; i++) anyNull = v.isNull(i);
+        w.u8(anyNull ? 1 : 0);
+        if (anyNull) {
+            for (int i = 0; i < rows; i += 8) {
+                int bits = 0;
+                for (int b = 0; b < 8 && i + b < rows; b++) if (v.isNull(i + b)) bits |= 1 << b;
+                w.u8(bits);
+            }
+        }
+        switch (v.type()) {
+            case INTEGER -> { for (int i = 0; i < rows; i++) w.i32(v.getInt(i)); }
+            case FLOAT -> { for (int i = 0; i < rows; i++) w.f64(v.getDouble(i)); }
+            case BOOLEAN -> { for (int i = 0; i < rows; i++) w.u8(v.getBoolean(i) ? 1 : 0); }
+            case STRING -> {
+                ColumnVector.Strings s = (ColumnVector.Strings) v;
+                for (int i = 0; i < rows; i++) w.bytes(s.bytes(), s.offsets()[i], s.byteLength(i));
+            }
+        }
+    }
+
+    private static ColumnVector readVector(ByteBuffer r, int rows) {
+        AST.DataType type = AST.DataType.values()[r.get()];
+        boolean anyNull = r.get() == 1;
+        byte[] nullBits = null;
+        if (anyNull) {
+            nullBits = new byte[(rows + 7) / 8];
+            r.get(nullBits);
+        }
+        ColumnVector v = ColumnVector.allocate(type, rows);
+        for (int i = 0; i < rows; i++) {
+            switch (type) {
+                case INTEGER -> v.appendInt(r.getInt());
+                case FLOAT -> v.appendDouble(r.getDouble());
+                case BOOLEAN -> v.appendBoolean(r.get() == 1);
+                case STRING -> {
+                    int len = r.getInt();
+                    ((ColumnVector.Strings) v).appendUtf8(r.array(), r.arrayOffset() + r.position(), len);
+                    r.position(r.position() + len);
+                }
+            }
+        }
+        if (anyNull) {
+            for (int i = 0; i < rows; i++) if ((nullBits[i >>> 3] & (1 << (i & 7))) != 0) v.setNull(i);
+        }
+        return v;
+    }
+
+    private static void writeConst(Writer w, AST.Const c) {
+        if (c == null) { w.u8(0xFF); return; }
+        w.u8(c.kind.ordinal());
+        switch (c.kind) {
+            case NULL -> {}
+            case BOOLEAN -> w.u8((Boolean) c.value ? 1 : 0);
+            case INTEGER -> w.i32((Integer) c.value);
+            case FLOAT -> w.f64((Double) c.value);
+            case STRING -> w.string((String) c.value);
+        }
+    }
+
+    private static AST.Const readConst(ByteBuffer r) {
+        int tag = r.get() & 0xFF;
+        if (tag == 0xFF) return null;
+        return switch (AST.Const.Kind.values()[tag]) {
+            case NULL -> AST.Const.ofNull();
+            case BOOLEAN -> AST.Const.ofBoolean(r.get() == 1);
+            case INTEGER -> AST.Const.ofInteger(r.getInt());
+            case FLOAT -> AST.Const.ofFloat(r.getDouble());
+            case STRING -> AST.Const.ofString(readString(r));
+        };
+    }
+
+    private static String readString(ByteBuffer r) {
+        int len = r.getInt();
+        String s = new String(r.array(), r.arrayOffset() + r.position(), len, StandardCharsets.UTF_8);
+        r.position(r.position() + len);
+        return s;
+    }
+
+    // Growable big-endian byte writer
+    final class Writer {
+        private byte[] buf = new byte[256];
+        private int pos;
+
+        void u8(int v) { ensure(1); buf[pos++] = (byte) v; }
+        void i32(int v) {
+            ensure(4);
+            buf[pos++] = (byte) (v >>> 24); buf[pos++] = (byte) (v >>> 16);
+            buf[pos++] = (byte) (v >>> 8); buf[pos++] = (byte) v;
+        }
+        void i64(long v) { i32((int) (v >>> 32)); i32((int) v); }
+        void f64(double v) { i64(Double.doubleToRawLongBits(v)); }
+        void bytes(byte[] src, int from, int len) {
+            i32(len);
+            ensure(len);
+            System.arraycopy(src, from, buf, pos, len);
+            pos += len;
+        }
+        void string(String s) {
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            bytes(b, 0, b.length);
+        }
+        byte[] toByteArray() { return Arrays.copyOf(buf, pos); }
+
+        private void ensure(int n) {
+            if (pos + n > buf.length) buf = Arrays.copyOf(buf, Math.max(pos + n, buf.length * 2));
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.ziyingdeng.minidb.wal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Append-only log in numbered segment files (wal-00000001.log, ...).
+// Frame: [int payload length][int CRC32C of payload][payload]
+//
+// Group commit: append() copies a record into the in-memory tail and returns its
+// sequence number; sync(seq) waits until it is on disk. The first waiter to find
+// no flush in progress becomes the leader: it takes the whole tail, writes it and
+// calls force() once, while later committers keep appending to a fresh tail. When
+// the leader finishes, every committer its batch covered returns, and one of the
+// rest leads the next batch. One force() therefore covers all concurrent commits.
+//
+// A snapshot covers the log up to a segment boundary: rollover() starts a new
+// segment, and once the snapshot is safe the older ones are deleted. Opening
+// with that segment number skips whatever older segments are still there.
+public class WriteAheadLog implements Closeable {
+    public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+    private static final int HEADER = 8;
+
+    private final Path dir;
+    private final long segmentSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition flushed = lock.newCondition();
+
+    private ByteBuffer tail = ByteBuffer.allocate(1 << 16); // appended, not yet written
+    private ByteBuffer spare = ByteBuffer.allocate(1 << 16);
+    private long appended;      // sequence number of the last appended record
+    private long durable;       // sequence number of the last record forced to disk
+    private boolean flushing;
+    private WalException failure; // sticky: after a failed write nothing is durable any more
+    private long syncs;
+
+    private FileChannel channel;
+    private int segment;
+
+    private WriteAheadLog(Path dir, long segmentSize) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+    }
+
+    // Replay every intact record in segments from `firstSegment` on, in order,
+    // truncate a torn tail left by a crash, and open the log for appending
+    public static WriteAheadLog open(Path dir, long segmentSize, int firstSegment, Consumer<WalRecord> replay) throws IOException {
+        Files.createDirectories(dir);
+        WriteAheadLog wal = new WriteAheadLog(dir, segmentSize);
+        wal.deleteBefore(firstSegment);
+        List<Path> segments = segments(dir);
+        for (int i = 0; i < segments.size(); i++) {
+            long valid = replaySegment(segments.get(i), replay);
+            if (valid < Files.size(segments.get(i))) {
+                try (FileChannel ch = FileChannel.open(segments.get(i), StandardOpenOption.WRITE)) {
+                    ch.truncate(valid);
+                }
+                for (Path later : segments.subList(i + 1, segments.size())) Files.delete(later); // unreachable after a torn record
+                segments = segments.subList(0, i + 1);
+                break;
+            }
+        }
+        wal.segment = segments.isEmpty() ? Math.max(1, firstSegment) : segmentNumber(segments.get(segments.size() - 1));
+        wal.channel = openSegment(dir, wal.segment);
+        return wal;
+    }
+
+    public static WriteAheadLog open(Path dir, long segmentSize, Consumer<WalRecord> replay) throws IOException {
+        return open(dir, segmentSize, 1, replay);
+    }
+
+    public static WriteAheadLog open(Path dir, Consumer<WalRecord> replay) throws IOException {
+        return open(dir, DEFAULT_SEGMENT_SIZE, 1, replay);
+    }
+
+    // Append and wait until durable
+    public void commit(WalRecord record) {
+        sync(append(WalRecord.encode(record)));
+    }
+
+    // Buffer an encoded record; returns its sequence number for sync()
+    public long append(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        lock.lock();
+        try {
+            checkFailure();
+            if (tail.remaining() < HEADER + payload.length) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(tail.capacity() * 2, tail.position() + HEADER + payload.length));
+                tail.flip();
+                bigger.put(tail);
+                tail = bigger;
+            }
+            tail.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            return ++appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Block until every record up to `seq` has been forced to disk
+    public void sync(long seq) {
+        lock.lock();
+        try {
+            while (durable < seq) {
+                checkFailure();
+                if (flushing) {
+                    flushed.awaitUninterruptibly();
+                } else {
+                    flushAsLeader();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called with the lock held and no flush in progress
+    private void flushAsLeader() {
+        flushing = true;
+        ByteBuffer batch = tail;
+        long target = appended;
+        tail = (spare != null) ? spare : ByteBuffer.allocate(batch.capacity());
+        spare = null;
+        lock.unlock();
+        WalException error = null;
+        try {
+            batch.flip();
+            if (channel.position() >= segmentSize) rotate();
+            while (batch.hasRemaining()) channel.write(batch);
+            channel.force(false);
+        } catch (IOException e) {
+            error = new WalException("[WAL] Write failed", e);
+        } finally {
+            lock.lock();
+            batch.clear();
+            spare = batch;
+            flushing = false;
+            if (error == null) {
+                durable = target;
+                syncs++;
+            } else {
+                failure = error;
+            }
+            flushed.signalAll();
+        }
+    }
+
+    // Force every record appended so far and continue in a new segment; returns
+    // its number. The records appended before the call are all in older segments.
+    public int rollover() {
+        lock.lock();
+        try {
+            while (flushing || durable < appended) {
+                checkFailure();
+                if (flushing) flushed.awaitUninterruptibly();
+                else flushAsLeader();
+            }
+            checkFailure();
+            rotate(); // no flush in progress, so the channel is ours
+            return segment;
+        } catch (IOException e) {
+            failure = new WalException("[WAL] Rollover failed", e);
+            throw failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Delete the segments before `segment`, once a snapshot holds their changes
+    public void deleteBefore(int segment) throws IOException {
+        for (Path p : segments(dir)) {
+            if (segmentNumber(p) < segment) Files.delete(p);
+        }
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        channel = openSegment(dir, ++segment);
+    }
+
+    private void checkFailure() {
+        if (failure != null) throw new WalException("[WAL] Log is unusable after an earlier failure", failure);
+    }
+
+    // Number of force() calls so far; with group commit this stays below the commit count
+    public long syncCount() {
+        lock.lock();
+        try {
+            return syncs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            while (flushing) flushed.awaitUninterruptibly();
+            if (durable < appended && failure == null) flushAsLeader();
+            channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* ------------------------------ segments ------------------------------ */
+
+    private static FileChannel openSegment(Path dir, int number) throws IOException {
+        FileChannel ch = FileChannel.open(dir.resolve(String.format("wal-%08d.log", number)),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        ch.position(ch.size());
+        return ch;
+    }
+
+    private static List<Path> segments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return new ArrayList<>(files
+                    .filter(p -> p.getFileName().toString().matches("wal-\\d{8}\\.log"))
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    private static int segmentNumber(Path p) {
+        String name = p.getFileName().toString();
+        return Integer.parseInt(name.substring(4, 12));
+    }
+
+    // Returns the length of the intact prefix of the segment
+    private static long replaySegment(Path file, Consumer<WalRecord> replay) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            long pos = 0;
+            while (pos + HEADER <= size) {
+                header.clear();
+                ch.read(header, pos);
+                header.flip();
+                int len = header.getInt();
+                int checksum = header.getInt();
+                if (len < 0 || pos + HEADER + len > size) break;
+                ByteBuffer payload = ByteBuffer.allocate(len);
+                while (payload.hasRemaining() && ch.read(payload, pos + HEADER + payload.position()) >= 0) {}
+                CRC32C crc = new CRC32C();
+                crc.update(payload.array());
+                if ((int) crc.getValue() != checksum) break;
+                replay.accept(WalRecord.decode(payload.array()));
+                pos += HEADER + len;
+            }
+            return pos;
+        }
+    }
+}
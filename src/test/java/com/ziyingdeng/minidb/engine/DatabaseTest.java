@@ -0,0 +1,461 @@
+package com.ziyingdeng.minidb.engine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.ziyingdeng.minidb.parser.PreparedStatement;
+import com.ziyingdeng.minidb.storage.MemoryTable;
+import com.ziyingdeng.minidb.storage.OffHeapTable;
+import com.ziyingdeng.minidb.storage.TableOptions;
+
+public class DatabaseTest {
+
+    private final Database db = new Database();
+
+    @Test
+    void createInsertSelectRoundTrip() {
+        db.execute("CREATE TABLE people (id INT NOT NULL, name STRING, score FLOAT, active BOOL);");
+        db.execute("INSERT INTO people VALUES (1, 'ann', 1.5, TRUE), (2, NULL, 2.5, FALSE);");
+
+        List<Object[]> rows = selectAll("people");
+
+        assertEquals(2, rows.size());
+        assertArrayEquals(new Object[] { 1, "ann", 1.5, true }, rows.get(0));
+        assertArrayEquals(new Object[] { 2, null, 2.5, false }, rows.get(1));
+    }
+
+    @Test
+    void insertWithColumnListFillsDefaultsAndNulls() {
+        db.execute("CREATE TABLE t (id INT, status STRING DEFAULT 'new', note TEXT);");
+        db.execute("INSERT INTO t (id) VALUES (7);");
+        db.execute("INSERT INTO t (note, id) VALUES ('x', 8);");
+
+        List<Object[]> rows = selectAll("t");
+
+        assertArrayEquals(new Object[] { 7, "new", null }, rows.get(0));
+        assertArrayEquals(new Object[] { 8, "new", "x" }, rows.get(1));
+    }
+
+    @Test
+    void integerLiteralsWidenIntoFloatColumns() {
+        db.execute("CREATE TABLE t (x FLOAT DEFAULT 3);");
+        db.execute("INSERT INTO t VALUES (1), (2);"); // columnar path
+        db.execute("INSERT INTO t VALUES (4), (NULL);");
+        db.execute("INSERT INTO t (x) VALUES (5.5), (6);"); // row path (mixed kinds)
+
+        List<Object[]> rows = selectAll("t");
+
+        assertEquals(List.of(1.0, 2.0, 4.0, 5.5, 6.0), rows.stream().filter(r -> r[0] != null).map(r -> r[0]).toList());
+    }
+
+    @Test
+    void manyRowsSpanSeveralChunks() {
+        db.execute("CREATE TABLE big (id INT, label STRING);");
+        StringBuilder sql = new StringBuilder("INSERT INTO big VALUES ");
+        for (int i = 0; i < 5000; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append('(').append(i).append(", 'row").append(i).append("')");
+        }
+        sql.append(';');
+        for (int k = 0; k < 20; k++) db.execute(sql.toString());
+
+        List<Object[]> rows = selectAll("big");
+
+        assertEquals(100_000, rows.size());
+        assertEquals(100_000, db.catalog().get("big").rowCount());
+        assertArrayEquals(new Object[] { 4999, "row4999" }, rows.get(99_999));
+        assertArrayEquals(new Object[] { 1234, "row1234" }, rows.get(5000 + 1234));
+    }
+
+    @Test
+    void rejectsNullInNotNullColumn() {
+        db.execute("CREATE TABLE t (id INT NOT NULL, name STRING);");
+
+        assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO t VALUES (NULL, 'a');"));
+        assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO t (name) VALUES ('a');"));
+        assertEquals(0, db.catalog().get("t").rowCount());
+    }
+
+    @Test
+    void badRowLeavesTableUnchanged() {
+        db.execute("CREATE TABLE t (id INT);");
+
+        assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO t VALUES (1), (2), ('three');"));
+        assertEquals(0, selectAll("t").size());
+    }
+
+    @Test
+    void rejectsInvalidStatements() {
+        db.execute("CREATE TABLE t (id INT, name STRING);");
+
+        assertThrows(ExecutionException.class, () -> db.execute("CREATE TABLE t (x INT);"));
+        assertThrows(ExecutionException.class, () -> db.execute("CREATE TABLE u (x INT, x INT);"));
+        assertThrows(ExecutionException.class, () -> db.execute("CREATE TABLE u (x INT NOT NULL DEFAULT NULL);"));
+        assertThrows(ExecutionException.class, () -> db.execute("CREATE TABLE u (x INT DEFAULT 'a');"));
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT * FROM missing;"));
+        assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO t (nope) VALUES (1);"));
+        assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO t (id, id) VALUES (1, 2);"));
+        assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO t VALUES (1);"));
+        assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO t VALUES ('a', 1);"));
+    }
+
+    @Test
+    void preparedStatementsExecuteWithBoundValues() {
+        db.execute("CREATE TABLE t (id INT, name STRING);");
+        PreparedStatement insert = db.prepare("INSERT INTO t (id, name) VALUES (?, ?);");
+
+        for (int i = 0; i < 10; i++) db.execute(insert, i, "n" + i);
+
+        assertEquals(10, selectAll("t").size());
+        assertEquals(insert, db.prepare("INSERT INTO t (id, name) VALUES (?, ?);"));
+        assertEquals(1, db.parseCache().hits());
+        assertThrows(ExecutionException.class, () -> db.execute(insert.template()));
+    }
+
+    @Test
+    void selectWhereFiltersRowsAcrossChunks() {
+        db.execute("CREATE TABLE t (id INT, name STRING, score FLOAT);");
+        StringBuilder sql = new StringBuilder("INSERT INTO t VALUES ");
+        for (int i = 0; i < 3000; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append('(').append(i).append(", ").append(i % 3 == 0 ? "NULL" : "'n" + i % 5 + "'").append(", ").append(i / 2.0).append(')');
+        }
+        db.execute(sql.append(';').toString());
+
+        assertEquals(10, select("SELECT * FROM t WHERE id >= 2990;").size());
+        // every third name is NULL: neither the comparison nor its negation keeps those rows
+        assertEquals(2000, select("SELECT * FROM t WHERE name <> 'x';").size());
+        assertEquals(2000, select("SELECT * FROM t WHERE NOT (name = 'x');").size());
+        List<Object[]> rows = select("SELECT * FROM t WHERE id < 10 AND (name = 'n1' OR score > 4);");
+        assertEquals(List.of(1, 9), rows.stream().map(r -> r[0]).toList());
+        assertEquals(0, select("SELECT * FROM t WHERE NULL;").size());
+    }
+
+    @Test
+    void aggregatesSkipNullsAndFollowTheFilter() {
+        db.execute("CREATE TABLE t (id INT PRIMARY KEY, v INT, x FLOAT, name STRING);");
+        PreparedStatement insert = db.prepare("INSERT INTO t VALUES (?, ?, ?, ?);");
+        long sum = 0;
+        for (int i = 0; i < 5_000; i++) {
+            db.execute(insert, i, i % 10 == 0 ? null : i - 2_500, i / 4.0, i % 3 == 0 ? null : "n");
+            if (i % 10 != 0) sum += i - 2_500;
+        }
+
+        Object[] all = select("SELECT COUNT(*), COUNT(v), COUNT(name), SUM(v), MIN(v), MAX(v), AVG(x), MAX(x) FROM t;").get(0);
+        assertArrayEquals(new Object[] { 5_000, 4_500, 3_333, (double) sum, -2_499, 2_499, 4_999 / 8.0, 4_999 / 4.0 }, all);
+        Object[] some = select("SELECT COUNT(*), SUM(v), MIN(x) FROM t WHERE id >= 4000 AND v < 2000;").get(0);
+        assertArrayEquals(new Object[] { 450, 787_500.0, 1_000.25 }, some); // ids 4001..4499, v = id - 2500
+        assertArrayEquals(new Object[] { 1, 4_116 - 2_500.0 }, select("SELECT COUNT(*), SUM(v) FROM t WHERE id = 4116;").get(0));
+        assertArrayEquals(new Object[] { 0, null, null }, select("SELECT COUNT(v), SUM(v), AVG(x) FROM t WHERE id < 0;").get(0));
+
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT SUM(name) FROM t;"));
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT MIN(nope) FROM t;"));
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT COUNT(*), COUNT(*) FROM t;"));
+    }
+
+    @Test
+    void integerSumsPastTheIntegerRangeAreExact() {
+        db.execute("CREATE TABLE t (id INT, v INT);");
+        PreparedStatement insert = db.prepare("INSERT INTO t VALUES (?, ?);");
+        for (int i = 0; i < 3_000; i++) db.execute(insert, i, i % 2 == 0 ? Integer.MAX_VALUE : 2_000_000_000);
+
+        Object[] all = select("SELECT SUM(v), AVG(v), MAX(v) FROM t;").get(0);
+        assertArrayEquals(new Object[] { 1_500 * (Integer.MAX_VALUE + 2_000_000_000.0), (Integer.MAX_VALUE + 2_000_000_000.0) / 2, Integer.MAX_VALUE }, all);
+        assertArrayEquals(new Object[] { 1_500 * 2_000_000_000.0 }, select("SELECT SUM(v) FROM t WHERE v < 2147483647;").get(0));
+    }
+
+    @Test
+    void selectWhereRejectsBadPredicates() {
+        db.execute("CREATE TABLE t (id INT, name STRING);");
+
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT * FROM t WHERE id + 1;"));
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT * FROM t WHERE name > 3;"));
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT * FROM t WHERE nope = 1;"));
+    }
+
+    @Test
+    void primaryKeyRejectsDuplicatesAndServesPointLookups() {
+        db.execute("CREATE TABLE t (id INT PRIMARY KEY, name STRING);");
+        db.execute("INSERT INTO t VALUES (3, 'c'), (1, 'a'), (2, 'b');");
+
+        assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO t VALUES (4, 'd'), (2, 'x');"));
+        assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO t VALUES (5, 'e'), (5, 'f');"));
+        assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO t (name) VALUES ('no key');"));
+        assertEquals(3, selectAll("t").size());
+
+        assertArrayEquals(new Object[] { 2, "b" }, select("SELECT * FROM t WHERE id = 2;").get(0));
+        assertEquals(0, select("SELECT * FROM t WHERE 4 = id;").size());
+        assertEquals(0, select("SELECT * FROM t WHERE id = 2 AND name = 'x';").size());
+        assertEquals(1, select("SELECT * FROM t WHERE name <> 'x' AND id = 3;").size());
+
+        PreparedStatement byId = db.prepare("SELECT * FROM t WHERE id = ?;");
+        assertArrayEquals(new Object[] { 1, "a" }, assertInstanceOf(Result.Rows.class, db.execute(byId, 1)).toList().get(0));
+    }
+
+    @Test
+    void primaryKeyLookupsReachEveryChunk() {
+        db.execute("CREATE TABLE t (id INT PRIMARY KEY, v INT);");
+        PreparedStatement insert = db.prepare("INSERT INTO t VALUES (?, ?), (?, ?), (?, ?), (?, ?);");
+        for (int i = 0; i < 100_000; i += 4) db.execute(insert, -i, i, -i - 1, i + 1, -i - 2, i + 2, -i - 3, i + 3);
+
+        for (int i = 0; i < 100_000; i += 997) {
+            assertArrayEquals(new Object[] { -i, i }, select("SELECT * FROM t WHERE id = " + -i + ";").get(0));
+        }
+    }
+
+    @Test
+    void hashIndexedPrimaryKeyBehavesLikeTheTree() {
+        db.execute("CREATE TABLE t (id INT PRIMARY KEY, v INT) WITH (index = hash);");
+        PreparedStatement insert = db.prepare("INSERT INTO t VALUES (?, ?);");
+        for (int i = 0; i < 5_000; i++) db.execute(insert, i * 31, i);
+
+        assertThrows(ExecutionException.class, () -> db.execute(insert, 31 * 17, 0));
+        assertArrayEquals(new Object[] { 31 * 17, 17 }, select("SELECT * FROM t WHERE id = 527;").get(0));
+        assertEquals(0, select("SELECT * FROM t WHERE id = 528;").size());
+        assertEquals(TableOptions.IndexKind.HASH, db.catalog().get("t").options().index());
+    }
+
+    @Test
+    void offHeapTablesReturnWhatHeapTablesReturn() {
+        for (String t : List.of("heap", "direct")) {
+            db.execute("CREATE TABLE " + t + " (id INT PRIMARY KEY, name STRING, score FLOAT, ok BOOLEAN)"
+                    + (t.equals("direct") ? " WITH (storage = offheap);" : ";"));
+        }
+        PreparedStatement heap = db.prepare("INSERT INTO heap VALUES (?, ?, ?, ?);");
+        PreparedStatement direct = db.prepare("INSERT INTO direct VALUES (?, ?, ?, ?);");
+        for (int i = 0; i < 7_000; i++) {
+            Object[] row = { i, i % 5 == 0 ? null : "n" + i, i % 7 == 0 ? null : i / 4.0, i % 3 == 0 ? null : i % 2 == 0 };
+            db.execute(heap, row);
+            db.execute(direct, row);
+        }
+        assertEquals(TableOptions.StorageKind.OFFHEAP, db.catalog().get("direct").options().storage());
+        assertTrue(((OffHeapTable) db.catalog().get("direct")).offHeapBytes() > 7_000 * 13);
+
+        List<Object[]> expected = selectAll("heap"), actual = selectAll("direct");
+        assertEquals(7_000, actual.size());
+        for (int i = 0; i < expected.size(); i++) assertArrayEquals(expected.get(i), actual.get(i));
+        assertEquals(select("SELECT * FROM heap WHERE score > 100 AND ok;").size(),
+                select("SELECT * FROM direct WHERE score > 100 AND ok;").size());
+        assertArrayEquals(new Object[] { 4_116, "n4116", null, null }, select("SELECT * FROM direct WHERE id = 4116;").get(0));
+    }
+
+    @Test
+    void compressedTablesAnswerLikeUncompressedOnes() {
+        for (String t : List.of("packed", "plain")) {
+            db.execute("CREATE TABLE " + t + " (id INT PRIMARY KEY, day INT, status STRING, ok BOOLEAN)"
+                    + (t.equals("plain") ? " WITH (compression = none);" : ";"));
+        }
+        String[] statuses = { "new", "paid", "shipped", "returned" };
+        PreparedStatement packed = db.prepare("INSERT INTO packed VALUES (?, ?, ?, ?);");
+        PreparedStatement plain = db.prepare("INSERT INTO plain VALUES (?, ?, ?, ?);");
+        for (int i = 0; i < 31_744; i++) { // fills the first five chunks, which are then sealed
+            Object[] row = { i, i / 500, i % 9 == 0 ? null : statuses[i * 7 % 4], i % 5 == 0 ? null : i % 3 == 0 };
+            db.execute(packed, row);
+            db.execute(plain, row);
+        }
+        assertEquals(TableOptions.Compression.NONE, db.catalog().get("plain").options().compression());
+        long packedBytes = ((MemoryTable) db.catalog().get("packed")).memoryBytes();
+        long plainBytes = ((MemoryTable) db.catalog().get("plain")).memoryBytes();
+        assertTrue(plainBytes > 3 * packedBytes, plainBytes + " vs " + packedBytes); // the INTEGER key stays plain
+
+        for (String where : List.of("status = 'paid'", "status >= 'p' AND ok", "NOT ok OR day < 3", "day = 17", "day > 30 AND status <> 'new'")) {
+            List<Object[]> expected = select("SELECT * FROM plain WHERE " + where + ";");
+            List<Object[]> actual = select("SELECT * FROM packed WHERE " + where + ";");
+            assertEquals(expected.size(), actual.size(), where);
+            for (int i = 0; i < expected.size(); i++) assertArrayEquals(expected.get(i), actual.get(i), where);
+        }
+        String aggregates = "SELECT COUNT(status), SUM(day), MIN(day), MAX(day), AVG(day) FROM ";
+        assertArrayEquals(select(aggregates + "plain WHERE id > 1234;").get(0), select(aggregates + "packed WHERE id > 1234;").get(0));
+        assertArrayEquals(select(aggregates + "plain;").get(0), select(aggregates + "packed;").get(0));
+        assertArrayEquals(new Object[] { 19_999, 39, "paid", false }, select("SELECT * FROM packed WHERE id = 19999;").get(0));
+    }
+
+    @Test
+    void rejectsInvalidTableOptions() {
+        assertThrows(ExecutionException.class, () -> db.execute("CREATE TABLE t (id INT) WITH (index = skiplist);"));
+        assertThrows(ExecutionException.class, () -> db.execute("CREATE TABLE t (id INT) WITH (colour = 'red');"));
+    }
+
+    @Test
+    void rejectsInvalidPrimaryKeys() {
+        assertThrows(ExecutionException.class, () -> db.execute("CREATE TABLE t (id STRING PRIMARY KEY);"));
+        assertThrows(ExecutionException.class, () -> db.execute("CREATE TABLE t (a INT PRIMARY KEY, b INT PRIMARY KEY);"));
+        assertThrows(ExecutionException.class, () -> db.execute("CREATE TABLE t (id INT NULL PRIMARY KEY);"));
+    }
+
+    @Test
+    void joinsMatchKeysAcrossTables() {
+        db.execute("CREATE TABLE customers (id INT PRIMARY KEY, name STRING);");
+        db.execute("CREATE TABLE orders (id INT PRIMARY KEY, customer INT, total FLOAT);");
+        db.execute("INSERT INTO customers VALUES (1, 'ann'), (2, 'bob'), (3, 'cy');");
+        db.execute("INSERT INTO orders VALUES (10, 1, 5.0), (11, 1, 7.5), (12, 3, 1.0), (13, NULL, 2.0), (14, 9, 3.0);");
+
+        Result.Rows joined = assertInstanceOf(Result.Rows.class,
+                db.execute("SELECT * FROM customers JOIN orders ON customers.id = orders.customer;").get(0));
+        assertEquals("customers.name", joined.schema().column(1).name());
+        assertEquals("orders.total", joined.schema().column(4).name());
+        List<Object[]> rows = joined.toList();
+        rows.sort((x, y) -> Integer.compare((Integer) x[2], (Integer) y[2]));
+        assertEquals(3, rows.size());
+        assertArrayEquals(new Object[] { 1, "ann", 10, 1, 5.0 }, rows.get(0));
+        assertArrayEquals(new Object[] { 3, "cy", 12, 3, 1.0 }, rows.get(2));
+
+        assertArrayEquals(new Object[] { 2, 12.5 },
+                select("SELECT COUNT(*), SUM(total) FROM orders JOIN customers ON customer = customers.id WHERE name = 'ann';").get(0));
+        assertArrayEquals(new Object[] { 1 }, select("SELECT COUNT(*) FROM customers JOIN orders ON customers.id = customer WHERE orders.id > 11;").get(0));
+        assertArrayEquals(new Object[] { 3 }, select("SELECT COUNT(customers.id) FROM customers WHERE customers.id > 0;").get(0));
+
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT * FROM customers JOIN orders ON id = customer;")); // ambiguous
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT * FROM customers JOIN orders ON orders.id = customer;"));
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT * FROM customers JOIN orders ON customers.name = customer;"));
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT * FROM customers JOIN customers ON id = id;"));
+    }
+
+    @Test
+    void orderByAndLimitShapeTheResult() {
+        db.execute("CREATE TABLE t (id INT PRIMARY KEY, v FLOAT, s STRING);");
+        db.execute("INSERT INTO t VALUES (1, 2.5, 'b'), (2, NULL, 'a'), (3, -1.0, 'c'), (4, 2.5, NULL), (5, 0.0, 'a');");
+
+        assertEquals(List.of(3, 5, 1, 4, 2), ids(select("SELECT * FROM t ORDER BY v;")));
+        assertEquals(List.of(2, 1, 4, 5, 3), ids(select("SELECT * FROM t ORDER BY v DESC;")));
+        assertEquals(List.of(2, 5, 1), ids(select("SELECT * FROM t ORDER BY s ASC LIMIT 3;")));
+        assertEquals(List.of(5, 4), ids(select("SELECT * FROM t WHERE id > 2 ORDER BY t.id DESC LIMIT 2;")));
+        assertEquals(List.of(1, 2), ids(select("SELECT * FROM t LIMIT 2;")));
+        assertEquals(0, select("SELECT * FROM t ORDER BY v LIMIT 0;").size());
+
+        db.execute("CREATE TABLE u (id INT PRIMARY KEY, t_id INT);");
+        db.execute("INSERT INTO u VALUES (10, 1), (11, 3), (12, 5);");
+        List<Object[]> joined = select("SELECT * FROM t JOIN u ON t.id = t_id ORDER BY u.id DESC LIMIT 2;");
+        assertEquals(List.of(5, 3), ids(joined));
+        assertEquals(12, joined.get(0)[3]);
+
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT * FROM t ORDER BY missing;"));
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT * FROM t JOIN u ON t.id = t_id ORDER BY id;")); // ambiguous
+    }
+
+    @Test
+    void groupByAggregatesEachGroup() {
+        db.execute("CREATE TABLE sales (id INT PRIMARY KEY, region STRING, shop INT, amount FLOAT, items INT);");
+        db.execute("INSERT INTO sales VALUES (1, 'east', 1, 10.0, 1), (2, 'west', 2, 5.0, 2), (3, 'east', 1, 2.5, 3),"
+                + " (4, 'east', 3, 1.0, NULL), (5, NULL, 4, 4.0, 5), (6, 'west', 2, NULL, 6);");
+
+        List<Object[]> byRegion = select("SELECT region, COUNT(*), SUM(amount), MAX(items), AVG(items) FROM sales GROUP BY region ORDER BY region;");
+        assertEquals(3, byRegion.size());
+        assertArrayEquals(new Object[] { "east", 3, 13.5, 3, 2.0 }, byRegion.get(0));
+        assertArrayEquals(new Object[] { "west", 2, 5.0, 6, 4.0 }, byRegion.get(1));
+        assertArrayEquals(new Object[] { null, 1, 4.0, 5, 5.0 }, byRegion.get(2));
+
+        assertEquals(List.of(2, 1), ids(select("SELECT shop, COUNT(*) FROM sales WHERE id > 1 GROUP BY shop ORDER BY COUNT(*) DESC LIMIT 2;")));
+        assertArrayEquals(new Object[] { 2, "east", 1 },
+                select("SELECT COUNT(*), region, shop FROM sales GROUP BY sales.region, shop ORDER BY COUNT(*) DESC LIMIT 1;").get(0));
+
+        db.execute("CREATE TABLE shops (id INT PRIMARY KEY, city STRING);");
+        db.execute("INSERT INTO shops VALUES (1, 'oslo'), (2, 'rome'), (3, 'oslo');");
+        List<Object[]> byCity = select("SELECT city, SUM(amount) FROM sales JOIN shops ON shop = shops.id GROUP BY city ORDER BY city;");
+        assertArrayEquals(new Object[] { "oslo", 13.5 }, byCity.get(0));
+        assertArrayEquals(new Object[] { "rome", 5.0 }, byCity.get(1));
+
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT region FROM sales;"));
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT region, shop, COUNT(*) FROM sales GROUP BY region;"));
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT region, COUNT(*) FROM sales GROUP BY region ORDER BY SUM(items);"));
+        assertThrows(ExecutionException.class, () -> db.execute("SELECT COUNT(*) FROM sales JOIN shops ON shop = shops.id GROUP BY id;"));
+    }
+
+    private static List<Object> ids(List<Object[]> rows) {
+        return rows.stream().map(row -> row[0]).toList();
+    }
+
+    @Test
+    void readTransactionsSeeOneCommitStampAcrossTables() {
+        db.execute("CREATE TABLE a (id INT PRIMARY KEY, v INT); CREATE TABLE b (id INT);");
+        db.execute("INSERT INTO a VALUES (1, 10), (2, 20); INSERT INTO b VALUES (1);");
+        try (ReadTransaction tx = db.beginRead()) {
+            db.execute("INSERT INTO a VALUES (3, 30); INSERT INTO b VALUES (2), (3);");
+            db.execute("CREATE TABLE c (id INT); INSERT INTO c VALUES (1);");
+
+            assertEquals(2, rowsOf(tx, "SELECT * FROM a;").size());
+            assertEquals(1, rowsOf(tx, "SELECT * FROM b;").size());
+            assertEquals(0, rowsOf(tx, "SELECT * FROM a WHERE id = 3;").size(), "the key index knows row 3, the stamp does not");
+            assertArrayEquals(new Object[] { 2, 30.0 }, rowsOf(tx, "SELECT COUNT(*), SUM(v) FROM a;").get(0));
+            assertEquals(0, rowsOf(tx, "SELECT * FROM c;").size());
+            assertThrows(ExecutionException.class, () -> tx.execute("INSERT INTO a VALUES (4, 40);"));
+
+            assertEquals(3, selectAll("a").size()); // statements outside read the latest commit
+            assertEquals(3, selectAll("b").size());
+            tx.close();
+            assertThrows(ExecutionException.class, () -> tx.execute("SELECT * FROM a;"));
+        }
+    }
+
+    @Test
+    void scansSeeWholeInsertsWhileInsertsRun() throws Exception {
+        db.execute("CREATE TABLE t (id INT PRIMARY KEY, v INT);");
+        PreparedStatement insert = db.prepare("INSERT INTO t VALUES " + "(?, 1), ".repeat(99) + "(?, 1);");
+        Thread writer = Thread.ofPlatform().start(() -> {
+            Object[] keys = new Object[100];
+            for (int batch = 0; batch < 200; batch++) {
+                for (int k = 0; k < 100; k++) keys[k] = batch * 100 + k;
+                db.execute(insert, keys);
+            }
+        });
+        int last = 0;
+        while (writer.isAlive() || last < 20_000) {
+            try (ReadTransaction tx = db.beginRead()) {
+                int count = (Integer) rowsOf(tx, "SELECT COUNT(*) FROM t;").get(0)[0];
+                assertEquals(0, count % 100, "an INSERT is seen whole or not at all");
+                assertTrue(count >= last);
+                assertEquals(count, rowsOf(tx, "SELECT * FROM t;").size()); // later commits stay hidden
+                last = count;
+            }
+        }
+        writer.join();
+    }
+
+    @Test
+    void joinsReadBothTablesAtOneCommitWhileInsertsRun() throws Exception {
+        db.execute("CREATE TABLE a (id INT, g INT);");
+        db.execute("CREATE TABLE b (seq INT, g INT);");
+        PreparedStatement intoA = db.prepare("INSERT INTO a VALUES (?, 0);"), intoB = db.prepare("INSERT INTO b VALUES (?, 0);");
+        int pairs = 400;
+        Thread writer = Thread.ofPlatform().start(() -> {
+            for (int k = 0; k < pairs; k++) {
+                db.execute(intoA, k);
+                Thread.yield(); // let the joins run between the two commits too
+                db.execute(intoB, k);
+                Thread.yield();
+            }
+        });
+        // every row of a matches every row of b, and b is never ahead of a at one commit
+        String join = "SELECT COUNT(*), MAX(id), MAX(seq) FROM a JOIN b ON a.g = b.g;";
+        while (writer.isAlive()) {
+            Object[] r = select(join).get(0);
+            int count = (Integer) r[0];
+            if (count == 0) continue;
+            int as = (Integer) r[1] + 1, bs = (Integer) r[2] + 1;
+            assertEquals(as * bs, count);
+            assertTrue(bs == as || bs == as - 1, as + " rows of a with " + bs + " rows of b");
+        }
+        writer.join();
+        assertArrayEquals(new Object[] { pairs * pairs, pairs - 1, pairs - 1 }, select(join).get(0));
+    }
+
+    private static List<Object[]> rowsOf(ReadTransaction tx, String sql) {
+        return assertInstanceOf(Result.Rows.class, tx.execute(sql).get(0)).toList();
+    }
+
+    private List<Object[]> select(String sql) {
+        return assertInstanceOf(Result.Rows.class, db.execute(sql).get(0)).toList();
+    }
+
+    private List<Object[]> selectAll(String table) {
+        List<Result> results = db.execute("SELECT * FROM " + table + ";");
+        return assertInstanceOf(Result.Rows.class, results.get(0)).toList();
+    }
+}
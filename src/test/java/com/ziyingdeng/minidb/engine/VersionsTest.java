@@ -0,0 +1,57 @@
+package com.ziyingdeng.minidb.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.MemoryTable;
+import com.ziyingdeng.minidb.storage.Schema;
+import com.ziyingdeng.minidb.storage.Table;
+
+public class VersionsTest {
+
+    private static final Schema SCHEMA = new Schema(List.of(new Schema.ColumnDef("id", AST.DataType.INTEGER, true, null)));
+
+    @Test
+    void readersSeeTheCountOfTheirStamp() {
+        Versions versions = new Versions();
+        Table t = new MemoryTable("t", SCHEMA);
+        assertEquals(0, versions.rows(t, Versions.LATEST), "not committed yet");
+        versions.commit(t, 0);
+        long created = versions.pin();
+        versions.commit(t, 10);
+        long ten = versions.pin();
+        versions.commit(t, 5); // an earlier INSERT that committed late: already covered
+        versions.commit(t, 30);
+
+        assertEquals(0, versions.rows(t, created));
+        assertEquals(10, versions.rows(t, ten));
+        assertEquals(30, versions.rows(t, Versions.LATEST));
+        assertEquals(0, versions.rows(t, created - 1));
+        assertEquals(3, versions.historySize("t"));
+    }
+
+    @Test
+    void historiesStayShortAndKeepWhatReadersPin() {
+        Versions versions = new Versions();
+        Table t = new MemoryTable("t", SCHEMA);
+        versions.commit(t, 0);
+        for (int i = 1; i <= 10_000; i++) versions.commit(t, i);
+        assertTrue(versions.historySize("t") <= 64, "nobody reads old counts: " + versions.historySize("t"));
+
+        long pinned = versions.pin();
+        for (int i = 10_001; i <= 20_000; i++) versions.commit(t, i);
+        assertEquals(10_000, versions.rows(t, pinned));
+        assertEquals(20_000, versions.rows(t, Versions.LATEST));
+        assertTrue(versions.historySize("t") <= 64);
+
+        versions.release(pinned);
+        for (int i = 20_001; i <= 20_100; i++) versions.commit(t, i);
+        assertEquals(20_100, versions.rows(t, Versions.LATEST));
+        assertTrue(versions.historySize("t") <= 64);
+    }
+}
@@ -0,0 +1,153 @@
+package com.ziyingdeng.minidb.exec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.ziyingdeng.minidb.expr.BatchRow;
+import com.ziyingdeng.minidb.expr.ExpressionException;
+import com.ziyingdeng.minidb.expr.Interpreter;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.Parser;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+public class FilterTest {
+
+    // (a INT NOT NULL, b INT, c FLOAT, flag BOOL, s STRING)
+    private static final Schema SCHEMA = new Schema(List.of(
+            new Schema.ColumnDef("a", AST.DataType.INTEGER, false, null),
+            new Schema.ColumnDef("b", AST.DataType.INTEGER, true, null),
+            new Schema.ColumnDef("c", AST.DataType.FLOAT, true, null),
+            new Schema.ColumnDef("flag", AST.DataType.BOOLEAN, true, null),
+            new Schema.ColumnDef("s", AST.DataType.STRING, true, null)));
+
+    private static final String[] PREDICATES = {
+        "a < 0", "a >= 10", "10 > a", "b = 3", "b <> 3", "b != 3", "a <= 2.5", "c > 50", "50.0 <= c", "c = b",
+        "flag", "NOT flag", "flag = FALSE", "s = 'k'", "s < 'k'", "'k' <= s", "s > 'é'",
+        "a < 0 AND b > 0", "a < 0 OR b > 0", "NOT (a < 0 OR b > 0)", "flag AND b < 0",
+        "flag OR NOT flag", "b > 0 AND (c < 20 OR NOT flag)", "a + b > 100", "a * 2 = b OR s = 'z'",
+        "b = NULL", "NULL OR a > 0", "NOT (NULL AND a > 0)", "TRUE", "FALSE", "1 = 1 AND a > 3",
+        "(a < 0 OR b > 0) = flag", "NOT ((flag AND b > 0) <> TRUE)"
+    };
+
+    @Test
+    void matchesInterpreterOnRandomRows() {
+        RowBatch batch = randomBatch(RowBatch.CAPACITY);
+        BatchRow row = new BatchRow().batch(batch);
+        for (String text : PREDICATES) {
+            AST.Expression e = where(text);
+            Interpreter interpreted = Interpreter.bind(e, SCHEMA);
+            List<Integer> expected = new ArrayList<>();
+            for (int r = 0; r < batch.size(); r++) {
+                if (interpreted.test(row.at(r))) expected.add(r);
+            }
+            assertEquals(expected, positions(Filter.compile(e, SCHEMA).apply(batch)), text);
+        }
+    }
+
+    @Test
+    void encodedColumnsFilterLikePlainOnes() {
+        RowBatch plain = randomBatch(RowBatch.CAPACITY);
+        ColumnVector[] columns = columns(plain);
+        columns[0] = ColumnVector.allocate(AST.DataType.INTEGER, RowBatch.CAPACITY);
+        for (int r = 0; r < RowBatch.CAPACITY; r++) columns[0].appendInt(r / 16 - 20); // runs of 16
+        plain = new RowBatch(columns, 0, RowBatch.CAPACITY);
+        ColumnVector[] encoded = new ColumnVector[columns.length];
+        for (int c = 0; c < encoded.length; c++) encoded[c] = ColumnVector.encode(columns[c]);
+        assertInstanceOf(ColumnVector.RunInts.class, encoded[0]);
+        assertInstanceOf(ColumnVector.PackedBools.class, encoded[3]);
+        assertInstanceOf(ColumnVector.Dict.class, encoded[4]);
+
+        // whole batches, and batches offset and already narrowed by another filter
+        RowBatch[] plains = { plain, Filter.compile(where("b <> 0"), SCHEMA).apply(new RowBatch(columns, 100, 900)) };
+        RowBatch[] codes = { new RowBatch(encoded, 0, RowBatch.CAPACITY),
+                Filter.compile(where("b <> 0"), SCHEMA).apply(new RowBatch(encoded, 100, 900)) };
+        for (int k = 0; k < plains.length; k++) {
+            for (String text : PREDICATES) {
+                Filter filter = Filter.compile(where(text), SCHEMA);
+                assertEquals(positions(filter.apply(plains[k])), positions(filter.apply(codes[k])), text);
+            }
+        }
+    }
+
+    @Test
+    void filtersAnAlreadyFilteredBatch() {
+        RowBatch batch = randomBatch(RowBatch.CAPACITY);
+        RowBatch first = Filter.compile(where("a >= 0"), SCHEMA).apply(batch);
+        RowBatch both = Filter.compile(where("b < 0 OR flag"), SCHEMA).apply(first);
+        RowBatch combined = Filter.compile(where("a >= 0 AND (b < 0 OR flag)"), SCHEMA).apply(batch);
+
+        assertEquals(positions(combined), positions(both));
+        for (int r = 0; r < both.size(); r++) {
+            assertEquals(combined.get(0, r), both.get(0, r));
+        }
+    }
+
+    @Test
+    void respectsBatchStartAndDropsEmptyBatches() {
+        RowBatch whole = randomBatch(3 * 100);
+        Iterator<RowBatch> batches = List.of(
+                new RowBatch(columns(whole), 0, 100),
+                new RowBatch(columns(whole), 100, 100),
+                new RowBatch(columns(whole), 200, 100)).iterator();
+        // a = position keeps exactly one row per batch
+        Iterator<RowBatch> out = Filter.compile(where("a = 150"), SCHEMA).apply(batches);
+
+        RowBatch only = out.next();
+        assertEquals(1, only.size());
+        assertEquals(150, only.get(0, 0));
+        assertFalse(out.hasNext());
+    }
+
+    @Test
+    void rejectsNonBooleanPredicates() {
+        assertThrows(ExpressionException.class, () -> Filter.compile(where("a + 1"), SCHEMA));
+        assertThrows(ExpressionException.class, () -> Filter.compile(where("s < 3"), SCHEMA));
+        assertThrows(ExpressionException.class, () -> Filter.compile(where("flag > TRUE"), SCHEMA));
+        assertThrows(ExpressionException.class, () -> Filter.compile(where("missing = 1"), SCHEMA));
+    }
+
+    /* =============================== Helpers ============================== */
+
+    private static AST.Expression where(String text) {
+        return ((AST.Select) new Parser("SELECT * FROM t WHERE " + text + ";").parse()).where();
+    }
+
+    private static List<Integer> positions(RowBatch b) {
+        List<Integer> out = new ArrayList<>();
+        for (int r = 0; r < b.size(); r++) out.add(b.rowIndex(r) - b.start());
+        return out;
+    }
+
+    private static ColumnVector[] columns(RowBatch b) {
+        ColumnVector[] out = new ColumnVector[b.columnCount()];
+        for (int c = 0; c < out.length; c++) out[c] = b.column(c);
+        return out;
+    }
+
+    // Column a holds the row number when rows <= 300, random values otherwise
+    private static RowBatch randomBatch(int rows) {
+        Random rnd = new Random(7);
+        String[] words = { "a", "k", "kk", "z", "é", "" };
+        ColumnVector[] columns = new ColumnVector[SCHEMA.size()];
+        for (int c = 0; c < columns.length; c++) columns[c] = ColumnVector.allocate(SCHEMA.column(c).type(), rows);
+        for (int r = 0; r < rows; r++) {
+            columns[0].appendInt(rows <= 300 ? r : rnd.nextInt(41) - 20);
+            if (rnd.nextInt(8) == 0) columns[1].appendNull(); else columns[1].appendInt(rnd.nextInt(11) - 5);
+            if (rnd.nextInt(8) == 0) columns[2].appendNull(); else columns[2].appendDouble(rnd.nextInt(200) / 2.0);
+            if (rnd.nextInt(8) == 0) columns[3].appendNull(); else columns[3].appendBoolean(rnd.nextBoolean());
+            if (rnd.nextInt(8) == 0) columns[4].appendNull(); else columns[4].appendString(words[rnd.nextInt(words.length)]);
+        }
+        return new RowBatch(columns, 0, rows);
+    }
+}
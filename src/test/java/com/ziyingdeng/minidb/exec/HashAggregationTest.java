@@ -0,0 +1,202 @@
+package com.ziyingdeng.minidb.exec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ziyingdeng.minidb.expr.ExpressionException;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+public class HashAggregationTest {
+
+    @TempDir
+    Path dir;
+
+    // (k INT, s STRING, b BOOL, v INT, x FLOAT)
+    private static final Schema SCHEMA = new Schema(List.of(
+            new Schema.ColumnDef("k", AST.DataType.INTEGER, true, null),
+            new Schema.ColumnDef("s", AST.DataType.STRING, true, null),
+            new Schema.ColumnDef("b", AST.DataType.BOOLEAN, true, null),
+            new Schema.ColumnDef("v", AST.DataType.INTEGER, true, null),
+            new Schema.ColumnDef("x", AST.DataType.FLOAT, true, null)));
+
+    private static final List<String> AGGREGATES = List.of(
+            "COUNT(*)", "COUNT(v)", "SUM(v)", "MIN(v)", "MAX(v)", "AVG(v)", "SUM(x)", "MIN(x)", "MAX(x)", "AVG(x)");
+
+    @Test
+    void groupsAgreeInMemorySpilledAndInParallel() {
+        List<Object[]> rows = rows(30_000);
+        ForkJoinPool one = new ForkJoinPool(1), four = new ForkJoinPool(4);
+        try {
+            for (List<String> groupBy : List.of(List.of("k"), List.of("s", "b"), List.of("x"), List.of("b", "k"))) {
+                List<AST.Aggregate> items = items(groupBy);
+                Set<List<Object>> expected = reference(rows, groupBy, items);
+                for (ForkJoinPool pool : List.of(one, four)) {
+                    String what = "GROUP BY " + groupBy + " on " + pool.getParallelism() + " threads";
+
+                    HashAggregation inMemory = HashAggregation.compile(items, groupBy, SCHEMA, pool, 1L << 30, dir);
+                    assertEquals(expected, result(inMemory.apply(TestBatches.of(SCHEMA, rows, 1_000))), what);
+                    assertEquals(0, inMemory.spillFiles(), what);
+
+                    HashAggregation spilled = HashAggregation.compile(items, groupBy, SCHEMA, pool, 64 << 10, dir);
+                    assertEquals(expected, result(spilled.apply(TestBatches.of(SCHEMA, rows, 1_000))), what + ", spilled");
+                    if (groupBy.contains("k")) assertTrue(spilled.spillFiles() > 0, what);
+                }
+            }
+        } finally {
+            one.shutdown();
+            four.shutdown();
+        }
+    }
+
+    @Test
+    void oversizedPartitionsAreSplitAgain() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) rows.add(new Object[] { i * 7, null, null, i % 5, null });
+        List<AST.Aggregate> items = List.of(new AST.Aggregate(null, "k"), aggregate("COUNT(*)"), aggregate("SUM(v)"));
+        ForkJoinPool one = new ForkJoinPool(1);
+        try {
+            HashAggregation aggregation = HashAggregation.compile(items, List.of("k"), SCHEMA, one, 32 << 10, dir);
+            assertEquals(reference(rows, List.of("k"), items), result(aggregation.apply(TestBatches.of(SCHEMA, rows, 1_000))));
+            assertTrue(aggregation.spillFiles() > 16, "spill files " + aggregation.spillFiles());
+        } finally {
+            one.shutdown();
+        }
+    }
+
+    @Test
+    void integerSumsPastTheIntegerRangeAreExact() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) rows.add(new Object[] { i % 4, null, null, i % 2 == 0 ? Integer.MAX_VALUE : Integer.MIN_VALUE + i % 4, null });
+        List<AST.Aggregate> items = List.of(new AST.Aggregate(null, "k"), aggregate("SUM(v)"), aggregate("MAX(v)"));
+        Set<List<Object>> expected = Set.of(
+                List.of(0, 5_000.0 * Integer.MAX_VALUE, Integer.MAX_VALUE),
+                List.of(1, 5_000.0 * (Integer.MIN_VALUE + 1), Integer.MIN_VALUE + 1),
+                List.of(2, 5_000.0 * Integer.MAX_VALUE, Integer.MAX_VALUE),
+                List.of(3, 5_000.0 * (Integer.MIN_VALUE + 3), Integer.MIN_VALUE + 3));
+        ForkJoinPool one = new ForkJoinPool(1);
+        try {
+            for (long budget : new long[] { 1L << 30, 1 << 10 }) {
+                HashAggregation aggregation = HashAggregation.compile(items, List.of("k"), SCHEMA, one, budget, dir);
+                assertEquals(expected, result(aggregation.apply(TestBatches.of(SCHEMA, rows, 1_000))), "budget " + budget);
+            }
+        } finally {
+            one.shutdown();
+        }
+    }
+
+    @Test
+    void rejectsColumnsOutsideGroupBy() {
+        assertThrows(ExpressionException.class,
+                () -> HashAggregation.compile(List.of(new AST.Aggregate(null, "v"), aggregate("COUNT(*)")), List.of("k"), SCHEMA));
+        assertThrows(ExpressionException.class, () -> HashAggregation.compile(List.of(aggregate("SUM(s)")), List.of("k"), SCHEMA));
+        assertThrows(ExpressionException.class, () -> HashAggregation.compile(List.of(aggregate("COUNT(*)")), List.of("k", "k"), SCHEMA));
+        assertThrows(ExpressionException.class, () -> HashAggregation.compile(List.of(aggregate("COUNT(*)")), List.of("nope"), SCHEMA));
+    }
+
+    // NULL every 13th value of a column; x is a multiple of 0.25, so FLOAT sums
+    // are exact in any order
+    private static List<Object[]> rows(int count) {
+        Random rnd = new Random(count);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[] {
+                rnd.nextInt(13) == 0 ? null : rnd.nextInt(5_000) - 100,
+                rnd.nextInt(13) == 0 ? null : "w" + rnd.nextInt(300),
+                rnd.nextInt(13) == 0 ? null : rnd.nextBoolean(),
+                rnd.nextInt(13) == 0 ? null : rnd.nextInt(2_000) - 1_000,
+                rnd.nextInt(13) == 0 ? null : rnd.nextInt(3) == 0 ? -0.0 : rnd.nextInt(400) / 4.0 - 50 });
+        }
+        return rows;
+    }
+
+    private static List<AST.Aggregate> items(List<String> groupBy) {
+        List<AST.Aggregate> items = new ArrayList<>();
+        for (String column : groupBy) items.add(new AST.Aggregate(null, column));
+        for (String a : AGGREGATES) items.add(aggregate(a));
+        return items;
+    }
+
+    private static AST.Aggregate aggregate(String text) {
+        String function = text.substring(0, text.indexOf('(')), column = text.substring(text.indexOf('(') + 1, text.length() - 1);
+        return new AST.Aggregate(AST.AggregateFunction.valueOf(function), column.equals("*") ? null : column);
+    }
+
+    // The result rows as a set, computed row by row from the groups' rows
+    private static Set<List<Object>> reference(List<Object[]> rows, List<String> groupBy, List<AST.Aggregate> items) {
+        Map<List<Object>, List<Object[]>> groups = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            List<Object> key = new ArrayList<>();
+            for (String column : groupBy) key.add(normalize(row[SCHEMA.indexOf(column)]));
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(row);
+        }
+        Set<List<Object>> out = new HashSet<>();
+        for (Map.Entry<List<Object>, List<Object[]>> group : groups.entrySet()) {
+            List<Object> row = new ArrayList<>();
+            for (AST.Aggregate item : items) {
+                if (item.function() == null) {
+                    row.add(group.getKey().get(groupBy.indexOf(item.column())));
+                    continue;
+                }
+                List<Object> values = new ArrayList<>();
+                for (Object[] r : group.getValue()) {
+                    Object v = item.column() == null ? 1 : r[SCHEMA.indexOf(item.column())];
+                    if (v != null) values.add(v);
+                }
+                row.add(normalize(expected(item, values)));
+            }
+            out.add(row);
+        }
+        return out;
+    }
+
+    private static Object expected(AST.Aggregate item, List<Object> values) {
+        if (item.function() == AST.AggregateFunction.COUNT) return values.size();
+        if (values.isEmpty()) return null;
+        boolean integer = values.get(0) instanceof Integer;
+        double[] d = values.stream().mapToDouble(v -> ((Number) v).doubleValue()).toArray();
+        long sum = values.stream().mapToLong(v -> integer ? (Integer) v : 0).sum();
+        return switch (item.function()) {
+            case SUM -> integer ? (double) sum : Arrays.stream(d).sum();
+            case AVG -> integer ? (double) sum / values.size() : Arrays.stream(d).sum() / values.size();
+            case MIN -> integer ? (Object) (int) Arrays.stream(d).min().getAsDouble() : Arrays.stream(d).min().getAsDouble();
+            case MAX -> integer ? (Object) (int) Arrays.stream(d).max().getAsDouble() : Arrays.stream(d).max().getAsDouble();
+            default -> throw new IllegalStateException(item.toString());
+        };
+    }
+
+    // GROUP BY puts -0.0 with 0.0, and a FLOAT sum may be either
+    private static Object normalize(Object v) {
+        return v instanceof Double d && d == 0 ? 0.0 : v;
+    }
+
+    private static Set<List<Object>> result(Iterator<RowBatch> batches) {
+        Set<List<Object>> out = new HashSet<>();
+        while (batches.hasNext()) {
+            RowBatch b = batches.next();
+            for (int r = 0; r < b.size(); r++) {
+                List<Object> row = new ArrayList<>();
+                for (int c = 0; c < b.columnCount(); c++) row.add(normalize(b.get(c, r)));
+                assertTrue(out.add(row), "group twice: " + row);
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,96 @@
+package com.ziyingdeng.minidb.exec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+import org.junit.jupiter.api.Test;
+
+import com.ziyingdeng.minidb.expr.ExpressionException;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+public class HashJoinTest {
+
+    // (l.k INT, l.s STRING) and (r.k INT, r.x FLOAT)
+    private static final Schema LEFT = new Schema(List.of(
+            new Schema.ColumnDef("l.k", AST.DataType.INTEGER, true, null),
+            new Schema.ColumnDef("l.s", AST.DataType.STRING, true, null)));
+    private static final Schema RIGHT = new Schema(List.of(
+            new Schema.ColumnDef("r.k", AST.DataType.INTEGER, true, null),
+            new Schema.ColumnDef("r.x", AST.DataType.FLOAT, true, null)));
+
+    @Test
+    void matchesNestedLoopsWhetherStreamedOrPartitioned() {
+        Random rnd = new Random(5);
+        List<Object[]> left = rows(rnd, 3_000, 500, i -> i % 9 == 0 ? null : "s" + i);
+        List<Object[]> right = rows(rnd, 5_000, 500, i -> i / 4.0);
+        List<String> expected = nestedLoop(left, right);
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (int partitionRows : new int[] { 1 << 20, 256, 7 }) {
+                HashJoin join = HashJoin.compile(LEFT, 0, RIGHT, 0, pool, partitionRows);
+                assertEquals(expected, sorted(join.apply(TestBatches.of(LEFT, left, 700), left.size(), TestBatches.of(RIGHT, right, 1024), right.size())),
+                        "partitionRows " + partitionRows);
+                // the build side is the smaller input; the output keeps left columns first
+                assertEquals(expected, sorted(join.apply(TestBatches.of(LEFT, left, 1024), 9_999, TestBatches.of(RIGHT, right, 300), 1)),
+                        "partitionRows " + partitionRows);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void joinsIntegersWithFloatsByValue() {
+        Schema floats = new Schema(List.of(new Schema.ColumnDef("f.x", AST.DataType.FLOAT, true, null)));
+        List<Object[]> left = List.of(new Object[] { 1, "a" }, new Object[] { 0, "b" }, new Object[] { null, "c" });
+        List<Object[]> right = List.of(new Object[] { 1.0 }, new Object[] { -0.0 }, new Object[] { 1.5 }, new Object[] { Double.NaN }, new Object[] { null });
+        HashJoin join = HashJoin.compile(LEFT, 0, floats, 0);
+        assertEquals(List.of("[0, b, -0.0]", "[1, a, 1.0]"), sorted(join.apply(TestBatches.of(LEFT, left, 2), 3, TestBatches.of(floats, right, 2), 5)));
+
+        Schema bools = new Schema(List.of(new Schema.ColumnDef("b.x", AST.DataType.BOOLEAN, true, null)));
+        assertThrows(ExpressionException.class, () -> HashJoin.compile(LEFT, 0, bools, 0));
+        assertThrows(ExpressionException.class, () -> HashJoin.compile(LEFT, 1, LEFT, 1));
+    }
+
+    // row i: a key in [0, keys), NULL every 50th row, then value(i)
+    private static List<Object[]> rows(Random rnd, int count, int keys, IntFunction<Object> value) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) rows.add(new Object[] { i % 50 == 0 ? null : rnd.nextInt(keys), value.apply(i) });
+        return rows;
+    }
+
+    private static List<String> nestedLoop(List<Object[]> left, List<Object[]> right) {
+        List<String> out = new ArrayList<>();
+        for (Object[] l : left) {
+            for (Object[] r : right) {
+                if (l[0] != null && l[0].equals(r[0])) out.add(Arrays.asList(l[0], l[1], r[0], r[1]).toString());
+            }
+        }
+        out.sort(null);
+        return out;
+    }
+
+    private static List<String> sorted(Iterator<RowBatch> batches) {
+        List<String> out = new ArrayList<>();
+        while (batches.hasNext()) {
+            RowBatch b = batches.next();
+            for (int r = 0; r < b.size(); r++) {
+                List<Object> row = new ArrayList<>();
+                for (int c = 0; c < b.columnCount(); c++) row.add(b.get(c, r));
+                out.add(row.toString());
+            }
+        }
+        out.sort(null);
+        return out;
+    }
+}
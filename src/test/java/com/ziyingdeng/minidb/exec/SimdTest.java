@@ -0,0 +1,84 @@
+package com.ziyingdeng.minidb.exec;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class SimdTest {
+    private final Simd scalar = new ScalarSimd();
+    private final Simd vector = new VectorSimd();
+
+    @Test
+    void vectorKernelsAreUsedWhenTheModuleIsPresent() {
+        assertInstanceOf(VectorSimd.class, Simd.INSTANCE); // surefire adds jdk.incubator.vector
+    }
+
+    @Test
+    void vectorAggregatesMatchScalarOnEveryRange() {
+        Random rnd = new Random(18);
+        int[] ints = new int[300];
+        double[] doubles = new double[300];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = rnd.nextInt(); // sums overflow int, not long
+            doubles[i] = rnd.nextGaussian() * 1e6;
+        }
+        for (int from = 0; from < 40; from++) {
+            for (int to = from + 1; to <= ints.length; to += 7) {
+                assertEquals(scalar.sum(ints, from, to), vector.sum(ints, from, to));
+                assertEquals(scalar.min(ints, from, to), vector.min(ints, from, to));
+                assertEquals(scalar.max(ints, from, to), vector.max(ints, from, to));
+                assertEquals(scalar.sum(doubles, from, to), vector.sum(doubles, from, to), 1e-3);
+                assertEquals(scalar.min(doubles, from, to), vector.min(doubles, from, to));
+                assertEquals(scalar.max(doubles, from, to), vector.max(doubles, from, to));
+            }
+        }
+    }
+
+    @Test
+    void vectorIntSumIsExactAcrossBlocksOfExtremeValues() {
+        int[] ints = new int[100_003]; // about three sum blocks and a tail
+        Arrays.fill(ints, Integer.MAX_VALUE);
+        assertEquals(100_003L * Integer.MAX_VALUE, vector.sum(ints, 0, ints.length));
+        Arrays.fill(ints, Integer.MIN_VALUE);
+        assertEquals(100_003L * Integer.MIN_VALUE, vector.sum(ints, 0, ints.length));
+        Random rnd = new Random(21);
+        for (int i = 0; i < ints.length; i++) ints[i] = rnd.nextBoolean() ? rnd.nextInt() : -1;
+        assertEquals(scalar.sum(ints, 0, ints.length), vector.sum(ints, 0, ints.length));
+        assertEquals(scalar.sum(ints, 5, 70_000), vector.sum(ints, 5, 70_000));
+    }
+
+    @Test
+    void vectorSelectMatchesScalarForEveryOutcomeMask() {
+        Random rnd = new Random(7);
+        int[] ints = new int[1_100];
+        double[] doubles = new double[1_100];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = rnd.nextInt(11) - 5;
+            doubles[i] = i % 97 == 0 ? Double.NaN : rnd.nextInt(11) - 5;
+        }
+        ints[3] = Integer.MIN_VALUE;
+        ints[4] = Integer.MAX_VALUE;
+        for (int accept = 0; accept < 8; accept++) {
+            for (int n : new int[] { 0, 5, 64, 1_000, 1_024 - 3 }) {
+                int base = ints.length - n;
+                assertArrayEquals(select(scalar, ints, base, n, 0, accept), select(vector, ints, base, n, 0, accept));
+                assertArrayEquals(select(scalar, doubles, base, n, 0.0, accept), select(vector, doubles, base, n, 0.0, accept));
+            }
+        }
+    }
+
+    private static int[] select(Simd simd, int[] values, int base, int n, int c, int accept) {
+        int[] out = new int[n];
+        return Arrays.copyOf(out, simd.select(values, base, n, c, accept, out));
+    }
+
+    private static int[] select(Simd simd, double[] values, int base, int n, double c, int accept) {
+        int[] out = new int[n];
+        return Arrays.copyOf(out, simd.select(values, base, n, c, accept, out));
+    }
+}
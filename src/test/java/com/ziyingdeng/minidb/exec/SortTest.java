@@ -0,0 +1,131 @@
+package com.ziyingdeng.minidb.exec;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.ConstantFolder;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+public class SortTest {
+
+    @TempDir
+    Path dir;
+
+    // (id INT, a INT, x FLOAT, s STRING, b BOOL); id is the input position
+    private static final Schema SCHEMA = new Schema(List.of(
+            new Schema.ColumnDef("id", AST.DataType.INTEGER, false, null),
+            new Schema.ColumnDef("a", AST.DataType.INTEGER, true, null),
+            new Schema.ColumnDef("x", AST.DataType.FLOAT, true, null),
+            new Schema.ColumnDef("s", AST.DataType.STRING, true, null),
+            new Schema.ColumnDef("b", AST.DataType.BOOLEAN, true, null)));
+
+    @Test
+    void sortsInMemoryAndThroughSpilledRunsAlike() {
+        List<Object[]> rows = rows(20_000);
+        for (int column = 1; column < SCHEMA.size(); column++) {
+            for (boolean descending : new boolean[] { false, true }) {
+                List<Object[]> expected = sorted(rows, column, descending);
+                String what = SCHEMA.column(column).name() + (descending ? " DESC" : "");
+
+                Sort inMemory = Sort.compile(SCHEMA, column, descending, -1, 1L << 30, dir);
+                assertRows(expected, inMemory.apply(TestBatches.of(SCHEMA, rows, 1_000)), what);
+                assertEquals(0, inMemory.spilledRuns());
+
+                Sort spilled = Sort.compile(SCHEMA, column, descending, -1, 64 << 10, dir);
+                assertRows(expected, spilled.apply(TestBatches.of(SCHEMA, rows, 1_000)), what);
+                assertTrue(spilled.spilledRuns() > 3, what + " spilled " + spilled.spilledRuns());
+            }
+        }
+    }
+
+    @Test
+    void limitKeepsTheFirstRowsOfTheOrder() {
+        List<Object[]> rows = rows(5_000);
+        for (int column = 1; column < SCHEMA.size(); column++) {
+            for (boolean descending : new boolean[] { false, true }) {
+                List<Object[]> expected = sorted(rows, column, descending);
+                for (int limit : new int[] { 1, 7, 1_500, 9_000 }) {
+                    Sort top = Sort.compile(SCHEMA, column, descending, limit, 1, dir); // a heap never spills
+                    assertRows(expected.subList(0, Math.min(limit, rows.size())), top.apply(TestBatches.of(SCHEMA, rows, 1_000)),
+                            SCHEMA.column(column).name() + (descending ? " DESC" : "") + " LIMIT " + limit);
+                }
+            }
+        }
+        assertTrue(!Sort.compile(SCHEMA, 1, false, 0).apply(TestBatches.of(SCHEMA, rows, 1_000)).hasNext());
+    }
+
+    @Test
+    void radixSortIsStableOverSignedKeys() {
+        Random rnd = new Random(3);
+        long[] keys = new long[10_000];
+        int[] rows = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = switch (i % 4) {
+                case 0 -> rnd.nextLong();
+                case 1 -> rnd.nextInt(50) - 25;
+                case 2 -> Long.MIN_VALUE + rnd.nextInt(3);
+                default -> Long.MAX_VALUE - rnd.nextInt(3);
+            };
+            rows[i] = i;
+        }
+        long[] original = keys.clone();
+        Sort.radixSort(keys, rows, keys.length);
+        for (int i = 1; i < keys.length; i++) {
+            assertTrue(keys[i - 1] < keys[i] || (keys[i - 1] == keys[i] && rows[i - 1] < rows[i]), "at " + i);
+        }
+        for (int i = 0; i < keys.length; i++) assertEquals(original[rows[i]], keys[i]);
+    }
+
+    // Few distinct values per column, so ties are common; NULL every 11th row
+    private static List<Object[]> rows(int count) {
+        Random rnd = new Random(count);
+        String[] words = { "", "a", "ab", "b", "\u00e9", "z", "\ud83d\ude00", "\ufffd" }; // U+1F600 sorts after U+FFFD by code point
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            boolean nulls = rnd.nextInt(11) == 0;
+            rows.add(new Object[] {
+                i,
+                nulls ? null : rnd.nextInt(200) - 100,
+                nulls ? null : rnd.nextInt(3) == 0 ? -0.0 : rnd.nextInt(100) / 4.0 - 10,
+                nulls ? null : words[rnd.nextInt(words.length)],
+                nulls ? null : rnd.nextBoolean() });
+        }
+        return rows;
+    }
+
+    // List.sort is stable, as ORDER BY is
+    @SuppressWarnings("unchecked")
+    private static List<Object[]> sorted(List<Object[]> rows, int column, boolean descending) {
+        Comparator<Object> values = (x, y) -> x instanceof String a ? ConstantFolder.compare(a, (String) y) : ((Comparable<Object>) x).compareTo(y);
+        Comparator<Object[]> order = Comparator.comparing(r -> r[column], Comparator.nullsLast(values));
+        List<Object[]> out = new ArrayList<>(rows);
+        out.sort(descending ? order.reversed() : order);
+        return out;
+    }
+
+    private static void assertRows(List<Object[]> expected, Iterator<RowBatch> batches, String what) {
+        int i = 0;
+        while (batches.hasNext()) {
+            RowBatch b = batches.next();
+            for (int r = 0; r < b.size(); r++, i++) {
+                Object[] row = new Object[b.columnCount()];
+                for (int c = 0; c < row.length; c++) row[c] = b.get(c, r);
+                assertArrayEquals(expected.get(i), row, what + " row " + i);
+            }
+        }
+        assertEquals(expected.size(), i, what);
+    }
+}
@@ -0,0 +1,52 @@
+package com.ziyingdeng.minidb.exec;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+// Operator input built from rows given as Object[] in schema order (null for NULL).
+// Batches come in the shapes scans and filters hand out: each starts past 0 in its
+// vectors, and every other one carries a selection vector.
+final class TestBatches {
+    private static final int PADDING = 3; // NULL rows before each batch's first row
+
+    private TestBatches() {}
+
+    // The rows in batches of `size`
+    static Iterator<RowBatch> of(Schema schema, List<Object[]> rows, int size) {
+        List<RowBatch> out = new ArrayList<>();
+        for (int from = 0; from < rows.size(); from += size) {
+            int n = Math.min(size, rows.size() - from);
+            ColumnVector[] cols = new ColumnVector[schema.size()];
+            for (int c = 0; c < cols.length; c++) {
+                cols[c] = ColumnVector.allocate(schema.column(c).type(), PADDING + n);
+                for (int k = 0; k < PADDING; k++) cols[c].appendNull();
+                for (int r = from; r < from + n; r++) append(cols[c], rows.get(r)[c]);
+            }
+            int[] sel = null;
+            if (from / size % 2 == 1) {
+                sel = new int[n];
+                for (int k = 0; k < n; k++) sel[k] = k;
+            }
+            out.add(new RowBatch(cols, PADDING, n, sel));
+        }
+        return out.iterator();
+    }
+
+    private static void append(ColumnVector v, Object value) {
+        if (value == null) {
+            v.appendNull();
+            return;
+        }
+        switch (v.type()) {
+            case INTEGER -> v.appendInt((Integer) value);
+            case FLOAT -> v.appendDouble((Double) value);
+            case STRING -> v.appendString((String) value);
+            case BOOLEAN -> v.appendBoolean((Boolean) value);
+        }
+    }
+}
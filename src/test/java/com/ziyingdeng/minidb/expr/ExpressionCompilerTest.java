@@ -0,0 +1,144 @@
+package com.ziyingdeng.minidb.expr;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.parser.Parser;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.RowBatch;
+import com.ziyingdeng.minidb.storage.Schema;
+
+public class ExpressionCompilerTest {
+
+    // (a INT NOT NULL, b INT, c FLOAT, flag BOOL)
+    private static final Schema SCHEMA = new Schema(List.of(
+            new Schema.ColumnDef("a", AST.DataType.INTEGER, false, null),
+            new Schema.ColumnDef("b", AST.DataType.INTEGER, true, null),
+            new Schema.ColumnDef("c", AST.DataType.FLOAT, true, null),
+            new Schema.ColumnDef("flag", AST.DataType.BOOLEAN, true, null)));
+
+    @Test
+    void compiledMatchesInterpreterOnRandomRows() {
+        String[] exprs = {
+            "a * 3 + b", "(a - b) / 7", "-a + 2 * -b", "c * 1.5 - a", "a / 2.0", "+c", "NOT flag", "NOT NOT flag",
+            "a", "c", "42", "a + NULL",
+            "a < b", "b >= 3", "c = a", "a * 1.5 <> c", "flag = TRUE", "NOT (a > 0)",
+            "a > 0 AND b > 0", "flag OR b < 0", "NOT (flag AND c > 50) OR a = b", "b > 0 AND NULL", "NULL OR flag"
+        };
+        RowBatch batch = randomBatch(500);
+        BatchRow row = new BatchRow().batch(batch);
+        for (String text : exprs) {
+            AST.Expression e = expr(text);
+            Evaluator compiled = ExpressionCompiler.compile(e, SCHEMA);
+            Interpreter interpreted = Interpreter.bind(e, SCHEMA);
+            assertEquals(interpreted.type(), compiled.type(), text);
+            for (int r = 0; r < batch.size(); r++) {
+                row.at(r);
+                Object expected = interpreted.eval(row);
+                assertEquals(expected == null, compiled.isNull(row), text + " @" + r);
+                if (compiled.type() == AST.DataType.BOOLEAN) {
+                    assertEquals(Boolean.TRUE.equals(expected), compiled.test(row), text + " @" + r);
+                    assertEquals(Boolean.FALSE.equals(expected), compiled.testFalse(row), text + " @" + r);
+                }
+                if (expected == null) continue;
+                switch (compiled.type()) {
+                    case INTEGER -> {
+                        assertEquals(expected, compiled.evalInt(row), text);
+                        assertEquals(((Integer) expected).doubleValue(), compiled.evalDouble(row), text);
+                    }
+                    case FLOAT -> assertEquals(expected, compiled.evalDouble(row), text);
+                    case BOOLEAN -> assertEquals(expected, compiled.evalBoolean(row), text);
+                    default -> throw new AssertionError(text);
+                }
+            }
+        }
+    }
+
+    @Test
+    void nullChecksSkipNotNullColumns() {
+        RowBatch batch = batch(new Object[][] { { 1, null, null, null } });
+        BatchRow row = new BatchRow().batch(batch).at(0);
+
+        assertFalse(ExpressionCompiler.compile(expr("a * 2"), SCHEMA).isNull(row));
+        assertTrue(ExpressionCompiler.compile(expr("a + b"), SCHEMA).isNull(row));
+        assertTrue(ExpressionCompiler.compile(expr("c + 1"), SCHEMA).isNull(row));
+
+        Evaluator alwaysNull = ExpressionCompiler.compile(expr("NULL + 1"), SCHEMA);
+        assertNull(alwaysNull.type());
+        assertTrue(alwaysNull.isNull(row));
+    }
+
+    @Test
+    void integerArithmeticIsChecked() {
+        RowBatch batch = batch(new Object[][] { { Integer.MAX_VALUE, 0, 0.0, true } });
+        BatchRow row = new BatchRow().batch(batch).at(0);
+
+        assertThrows(ExpressionException.class, () -> ExpressionCompiler.compile(expr("a + 1"), SCHEMA).evalInt(row));
+        assertThrows(ExpressionException.class, () -> ExpressionCompiler.compile(expr("a / b"), SCHEMA).evalInt(row));
+        assertThrows(ExpressionException.class, () -> ExpressionCompiler.compile(expr("a / c"), SCHEMA).evalDouble(row));
+        assertEquals(Integer.MAX_VALUE + 1.0, ExpressionCompiler.compile(expr("a + 1.0"), SCHEMA).evalDouble(row));
+    }
+
+    @Test
+    void rejectsIllTypedExpressions() {
+        assertThrows(ExpressionException.class, () -> ExpressionCompiler.compile(expr("flag + 1"), SCHEMA));
+        assertThrows(ExpressionException.class, () -> ExpressionCompiler.compile(expr("NOT a"), SCHEMA));
+        assertThrows(ExpressionException.class, () -> ExpressionCompiler.compile(expr("missing * 2"), SCHEMA));
+        assertThrows(ExpressionException.class, () -> ExpressionCompiler.compile(expr("1 + a"), SCHEMA).evalBoolean(null));
+    }
+
+    @Test
+    void logicalOperatorsUnderOtherOperatorsAreNotCompiled() {
+        assertTrue(ExpressionCompiler.canCompile(expr("NOT (flag AND b > 0) OR a = 1")));
+        assertFalse(ExpressionCompiler.canCompile(expr("(a > 0 AND b > 0) = flag")));
+        assertFalse(ExpressionCompiler.canCompile(expr("a > 0 AND (flag OR b > 0) <> TRUE")));
+        assertThrows(ExpressionException.class, () -> ExpressionCompiler.compile(expr("(a > 0 AND b > 0) = flag"), SCHEMA));
+    }
+
+    /* =============================== Helpers ============================== */
+
+    private static AST.Expression expr(String text) {
+        AST.Insert insert = (AST.Insert) new Parser("INSERT INTO t VALUES (" + text + ");").parse();
+        return insert.rows().get(0).get(0);
+    }
+
+    private static RowBatch randomBatch(int rows) {
+        Random rnd = new Random(1);
+        Object[][] data = new Object[rows][];
+        for (int r = 0; r < rows; r++) {
+            data[r] = new Object[] {
+                rnd.nextInt(2001) - 1000,
+                rnd.nextInt(10) == 0 ? null : rnd.nextInt(2001) - 1000,
+                rnd.nextInt(10) == 0 ? null : rnd.nextDouble() * 100,
+                rnd.nextInt(10) == 0 ? null : rnd.nextBoolean()
+            };
+        }
+        return batch(data);
+    }
+
+    private static RowBatch batch(Object[][] rows) {
+        ColumnVector[] columns = new ColumnVector[SCHEMA.size()];
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = ColumnVector.allocate(SCHEMA.column(c).type(), rows.length);
+            for (Object[] row : rows) {
+                switch (row[c]) {
+                    case null -> columns[c].appendNull();
+                    case Integer i -> columns[c].appendInt(i);
+                    case Double d -> columns[c].appendDouble(d);
+                    case Boolean b -> columns[c].appendBoolean(b);
+                    default -> throw new AssertionError(row[c]);
+                }
+            }
+        }
+        return new RowBatch(columns, 0, rows.length);
+    }
+}
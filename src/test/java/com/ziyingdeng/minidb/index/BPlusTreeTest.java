@@ -0,0 +1,88 @@
+package com.ziyingdeng.minidb.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class BPlusTreeTest {
+
+    @Test
+    void matchesTreeMapOnRandomInserts() {
+        BPlusTree tree = new BPlusTree();
+        TreeMap<Long, Long> expected = new TreeMap<>();
+        Random rnd = new Random(11);
+        for (int i = 0; i < 200_000; i++) {
+            long key = rnd.nextInt(150_000) - 75_000L;
+            boolean fresh = !expected.containsKey(key);
+            assertEquals(fresh, tree.insert(key, i), "key " + key);
+            if (fresh) expected.put(key, (long) i);
+        }
+        for (long key = -80_000; key < 80_000; key++) {
+            assertEquals(expected.getOrDefault(key, KeyIndex.ABSENT), tree.get(key), "key " + key);
+        }
+    }
+
+    @Test
+    void handlesAscendingDescendingAndExtremeKeys() {
+        BPlusTree tree = new BPlusTree();
+        for (long k = 0; k < 10_000; k++) assertTrue(tree.insert(k, k * 2));
+        for (long k = -1; k > -10_000; k--) assertTrue(tree.insert(k, -k));
+        assertTrue(tree.insert(Long.MIN_VALUE, 1));
+        assertTrue(tree.insert(Long.MAX_VALUE, 2));
+
+        assertFalse(tree.insert(5_000, 0));
+        assertEquals(10_000, tree.get(5_000));
+        assertEquals(9_999, tree.get(-9_999));
+        assertEquals(1, tree.get(Long.MIN_VALUE));
+        assertEquals(2, tree.get(Long.MAX_VALUE));
+        assertEquals(KeyIndex.ABSENT, tree.get(10_000));
+    }
+
+    @Test
+    void concurrentWritersAndReaders() throws InterruptedException {
+        BPlusTree tree = new BPlusTree();
+        int writers = 4, perWriter = 50_000;
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger badReads = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int id = w;
+            threads.add(Thread.ofPlatform().start(() -> {
+                // interleaved key ranges so writers contend on the same leaves; every key is tried twice
+                for (int i = 0; i < perWriter; i++) {
+                    long key = (long) i * writers + id;
+                    if (!tree.insert(key, key + 1)) duplicates.incrementAndGet();
+                    if (!tree.insert((long) i * writers + (id + 1) % writers, -2)) duplicates.incrementAndGet();
+                }
+            }));
+        }
+        Thread reader = Thread.ofPlatform().start(() -> {
+            Random rnd = new Random(3);
+            while (!done.get()) {
+                long key = rnd.nextInt(writers * perWriter);
+                long v = tree.get(key);
+                if (v != KeyIndex.ABSENT && v != key + 1 && v != -2) badReads.incrementAndGet();
+            }
+        });
+        for (Thread t : threads) t.join();
+        done.set(true);
+        reader.join();
+
+        assertEquals(0, badReads.get());
+        assertEquals(writers * perWriter, duplicates.get()); // each key went in exactly once
+        for (long key = 0; key < (long) writers * perWriter; key++) {
+            long v = tree.get(key);
+            assertTrue(v == key + 1 || v == -2, "key " + key);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.ziyingdeng.minidb.index;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class LongHashIndexTest {
+
+    @Test
+    void matchesHashMapOnRandomInserts() {
+        LongHashIndex index = new LongHashIndex();
+        Map<Long, Long> expected = new HashMap<>();
+        Random rnd = new Random(5);
+        for (int i = 0; i < 300_000; i++) {
+            long key = rnd.nextBoolean() ? rnd.nextInt(200_000) : rnd.nextLong();
+            boolean fresh = !expected.containsKey(key);
+            assertEquals(fresh, index.insert(key, i), "key " + key);
+            if (fresh) expected.put(key, (long) i);
+        }
+        assertEquals(expected.size(), index.size());
+        for (Map.Entry<Long, Long> e : expected.entrySet()) assertEquals(e.getValue(), index.get(e.getKey()));
+        for (long key = 200_000; key < 210_000; key++) {
+            assertEquals(expected.getOrDefault(key, KeyIndex.ABSENT), index.get(key));
+        }
+    }
+
+    @Test
+    void keysStayVisibleWhileSegmentsGrow() {
+        LongHashIndex index = new LongHashIndex();
+        boolean sawResize = false;
+        for (long key = 0; key < 50_000; key++) {
+            assertTrue(index.insert(key, key * 3));
+            sawResize |= index.resizing();
+            if (key % 1_000 == 0) {
+                for (long k = 0; k <= key; k += 7) assertEquals(k * 3, index.get(k), "key " + k);
+            }
+        }
+        assertTrue(sawResize);
+        assertFalse(index.insert(42, 0));
+        assertEquals(126, index.get(42));
+        assertTrue(index.insert(-1, 0)); // negative keys and value 0 are ordinary entries
+        assertEquals(0, index.get(-1));
+    }
+
+    @Test
+    void concurrentInsertsAndLookups() throws InterruptedException {
+        LongHashIndex index = new LongHashIndex();
+        int writers = 4, perWriter = 100_000;
+        AtomicInteger duplicates = new AtomicInteger();
+        AtomicInteger badReads = new AtomicInteger();
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int id = w;
+            threads.add(Thread.ofPlatform().start(() -> {
+                // every key is offered by two writers; exactly one must win
+                for (int i = 0; i < perWriter; i++) {
+                    if (!index.insert((long) i * writers + id, i)) duplicates.incrementAndGet();
+                    if (!index.insert((long) i * writers + (id + 1) % writers, i)) duplicates.incrementAndGet();
+                }
+            }));
+        }
+        Thread reader = Thread.ofPlatform().start(() -> {
+            Random rnd = new Random(9);
+            while (!done.get()) {
+                long key = rnd.nextInt(writers * perWriter);
+                long v = index.get(key);
+                if (v != KeyIndex.ABSENT && v != key / writers) badReads.incrementAndGet();
+            }
+        });
+        for (Thread t : threads) t.join();
+        done.set(true);
+        reader.join();
+
+        assertEquals(0, badReads.get());
+        assertEquals(writers * perWriter, duplicates.get());
+        assertEquals(writers * perWriter, index.size());
+        for (long key = 0; key < (long) writers * perWriter; key++) assertEquals(key / writers, index.get(key));
+    }
+}
@@ -0,0 +1,97 @@
+package com.ziyingdeng.minidb.loader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ziyingdeng.minidb.parser.AST.Const;
+import com.ziyingdeng.minidb.parser.AST.CreateTable;
+import com.ziyingdeng.minidb.parser.AST.Insert;
+import com.ziyingdeng.minidb.parser.AST.Statement;
+import com.ziyingdeng.minidb.parser.ParseException;
+
+public class DumpLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void loadsEveryStatementInOrder() throws IOException {
+        Path file = write("""
+                CREATE TABLE t (id INT, name STRING);
+                INSERT INTO t VALUES (1, 'a;b'), (2, 'c');
+                INSERT INTO t VALUES (3, 'd');
+                """);
+        List<Statement> out = new ArrayList<>();
+
+        DumpLoader.Stats stats = new DumpLoader(out::add).load(file);
+
+        assertEquals(3, stats.statements());
+        assertEquals(Files.size(file), stats.bytes());
+        assertInstanceOf(CreateTable.class, out.get(0));
+        Insert first = assertInstanceOf(Insert.class, out.get(1));
+        assertEquals("a;b", ((Const) first.rows().get(0).get(1)).value);
+    }
+
+    @Test
+    void statementsStraddlingWindowsAreRemapped() throws IOException {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            sql.append("INSERT INTO t VALUES (").append(i).append(", 'value ").append(i).append("');\n");
+        }
+        // a statement longer than the window forces it to grow
+        sql.append("INSERT INTO t VALUES ('").append("x".repeat(300)).append("');\n");
+        List<Statement> out = new ArrayList<>();
+
+        DumpLoader.Stats stats = new DumpLoader(out::add, 64).load(write(sql.toString()));
+
+        assertEquals(501, stats.statements());
+        Insert last = (Insert) out.get(499);
+        assertEquals(499, ((Const) last.rows().get(0).get(0)).value);
+        assertEquals("value 499", ((Const) last.rows().get(0).get(1)).value);
+        assertEquals(300, ((String) ((Const) ((Insert) out.get(500)).rows().get(0).get(0)).value).length());
+    }
+
+    @Test
+    void decodesUtf8StringLiterals() throws IOException {
+        List<Statement> out = new ArrayList<>();
+
+        new DumpLoader(out::add).load(write("INSERT INTO t VALUES ('Zürich', '東京');"));
+
+        Insert insert = (Insert) out.get(0);
+        assertEquals("Zürich", ((Const) insert.rows().get(0).get(0)).value);
+        assertEquals("東京", ((Const) insert.rows().get(0).get(1)).value);
+    }
+
+    @Test
+    void statementLongerThanTheLargestWindowIsRejected() throws IOException {
+        Path file = write("SELECT * FROM a;\nINSERT INTO t VALUES ('" + "x".repeat(300) + "');\nSELECT * FROM b;\n");
+
+        ParseException e = assertThrows(ParseException.class, () -> new DumpLoader(s -> {}, 16, 128).load(file));
+        assertTrue(e.getMessage().contains("offset 16"), e.getMessage());
+    }
+
+    @Test
+    void rejectsTruncatedFinalStatement() throws IOException {
+        Path file = write("SELECT * FROM a;\nSELECT * FROM b");
+
+        assertThrows(ParseException.class, () -> new DumpLoader(s -> {}).load(file));
+    }
+
+    private Path write(String sql) throws IOException {
+        Path file = dir.resolve("dump.sql");
+        Files.writeString(file, sql, StandardCharsets.UTF_8);
+        return file;
+    }
+}
@@ -3,9 +3,11 @@ package com.ziyingdeng.minidb.parser;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -136,6 +138,26 @@ public class LexerTest {
                 lexer.tokenize());
     }
 
+    @Test
+    void tokenizeSplitsQualifiedNamesAtTheDot() {
+        Lexer lexer = new Lexer("a JOIN b ON a.id = b.a_id");
+
+        assertEquals(
+                List.of(
+                        Token.identity("a"),
+                        Token.keyword(Keyword.Join),
+                        Token.identity("b"),
+                        Token.keyword(Keyword.On),
+                        Token.identity("a"),
+                        Token.symbol(TokenKind.DOT, "."),
+                        Token.identity("id"),
+                        Token.symbol(TokenKind.EQ, "="),
+                        Token.identity("b"),
+                        Token.symbol(TokenKind.DOT, "."),
+                        Token.identity("a_id")),
+                lexer.tokenize());
+    }
+
     @Test
     void tokenizeHandlesMixedCaseKeywords() {
         Lexer lexer = new Lexer("cReAtE tAbLe people");
@@ -247,4 +269,91 @@ public class LexerTest {
                         Token.symbol(TokenKind.SEMICOLON, ";")),
                 lexer.tokenize());
     }
+
+    /* ========================= primitive token stream ========================= */
+
+    @Test
+    void advanceExposesTokenOffsets() {
+        String sql = "INSERT INTO t VALUES ('ab', 12)";
+        Lexer lexer = new Lexer(sql);
+
+        assertEquals(TokenKind.KEYWORD, lexer.advance());
+        assertEquals(Keyword.Insert, lexer.tokenKeyword());
+        assertEquals(TokenKind.KEYWORD, lexer.advance());
+        assertEquals(TokenKind.IDENTITY, lexer.advance());
+        assertEquals(sql.indexOf('t', 12), lexer.tokenStart());
+        assertEquals(1, lexer.tokenLength());
+        assertEquals("t", lexer.tokenText());
+        assertEquals(TokenKind.KEYWORD, lexer.advance());
+        assertEquals(TokenKind.OPEN_PAREN, lexer.advance());
+        assertEquals(TokenKind.STRING, lexer.advance());
+        assertEquals(sql.indexOf("ab"), lexer.tokenStart());
+        assertEquals(2, lexer.tokenLength());
+        assertEquals("ab", lexer.tokenText());
+        assertEquals(TokenKind.COMMA, lexer.advance());
+        assertEquals(TokenKind.NUMBER, lexer.advance());
+        assertEquals(12, lexer.tokenInt());
+        assertEquals(TokenKind.CLOSE_PAREN, lexer.advance());
+        assertNull(lexer.advance());
+        assertNull(lexer.advance());
+    }
+
+    @Test
+    void advanceParsesNumbersFromOffsets() {
+        Lexer lexer = new Lexer("0 2147483647 3.14 0.05 100.0 1.2345678901234567890 2147483648");
+
+        lexer.advance();
+        assertEquals(0, lexer.tokenInt());
+        lexer.advance();
+        assertEquals(Integer.MAX_VALUE, lexer.tokenInt());
+        lexer.advance();
+        assertTrue(lexer.tokenIsFloat());
+        assertEquals(3.14, lexer.tokenDouble());
+        lexer.advance();
+        assertEquals(0.05, lexer.tokenDouble());
+        lexer.advance();
+        assertEquals(100.0, lexer.tokenDouble());
+        lexer.advance();
+        assertEquals(1.2345678901234567890, lexer.tokenDouble());
+        lexer.advance();
+        assertThrows(ParseException.class, lexer::tokenInt);
+    }
+
+    @Test
+    void advanceScansCharBufferInPlace() {
+        CharBuffer buffer = CharBuffer.wrap("xx SELECT * FROM t;yy", 3, 19);
+        Lexer lexer = new Lexer(buffer);
+
+        assertEquals(TokenKind.KEYWORD, lexer.advance());
+        assertEquals(TokenKind.ASTERISK, lexer.advance());
+        assertEquals(TokenKind.KEYWORD, lexer.advance());
+        assertEquals(TokenKind.IDENTITY, lexer.advance());
+        assertEquals("t", lexer.tokenText());
+        assertEquals(TokenKind.SEMICOLON, lexer.advance());
+        assertNull(lexer.advance());
+    }
+
+    @Test
+    void keywordAndSymbolTokensAreShared() {
+        Lexer lexer = new Lexer("SELECT ( SELECT (");
+
+        List<Token> tokens = lexer.tokenize();
+
+        assertSame(tokens.get(0), tokens.get(2));
+        assertSame(tokens.get(1), tokens.get(3));
+        assertSame(Token.symbol(TokenKind.OPEN_PAREN, "("), tokens.get(1));
+    }
+
+    @Test
+    void keywordMatchIsCaseInsensitiveOverCharRange() {
+        String text = "xxVarCharxx select_ INT2 inTO";
+
+        assertEquals(Keyword.Varchar, Keyword.match(text, 2, 7));
+        assertNull(Keyword.match(text, 12, 7)); // "select_"
+        assertNull(Keyword.match(text, 20, 4)); // "INT2"
+        assertEquals(Keyword.Into, Keyword.match(text, 25, 4));
+        assertEquals(Keyword.Key, Keyword.fromString("key"));
+        assertNull(Keyword.fromString(""));
+        assertNull(Keyword.fromString("selects"));
+    }
 }
@@ -0,0 +1,91 @@
+package com.ziyingdeng.minidb.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.ziyingdeng.minidb.parser.AST.Const;
+import com.ziyingdeng.minidb.parser.AST.Insert;
+import com.ziyingdeng.minidb.parser.AST.Statement;
+
+public class ParallelParserTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void parseKeepsOriginalOrder() {
+        String script = script(1000);
+
+        List<Statement> statements = new ParallelParser(pool, 128).parse(script);
+
+        assertEquals(new Parser(script).parseAll().size(), statements.size());
+        for (int i = 0; i < 1000; i++) {
+            Insert insert = (Insert) statements.get(i);
+            assertEquals(i, ((Const) insert.rows().get(0).get(0)).value);
+        }
+    }
+
+    @Test
+    void semicolonsInsideLiteralsNeverSplitStatements() {
+        // long literals full of ';' and "statement-looking" text guarantee slice cuts land inside them
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sql.append("INSERT INTO t VALUES (").append(i).append(", '")
+               .append("; SELECT * FROM x;".repeat(i % 7)).append("');\n");
+        }
+
+        List<Statement> statements = new ParallelParser(pool, 64).parse(sql);
+
+        assertEquals(200, statements.size());
+        Insert last = (Insert) statements.get(199);
+        assertEquals("; SELECT * FROM x;".repeat(199 % 7), ((Const) last.rows().get(0).get(1)).value);
+    }
+
+    @Test
+    void parsePrefixStopsBeforeIncompleteStatement() {
+        String complete = script(300);
+        String text = complete + "INSERT INTO t VALUES ('unterminated;";
+
+        ParallelParser.Result result = new ParallelParser(pool, 64).parsePrefix(text);
+
+        assertEquals(300, result.statements().size());
+        assertEquals(complete.lastIndexOf(';') + 1, result.consumed());
+    }
+
+    @Test
+    void parsePrefixStopsBeforeIncompleteStatementSpanningSlices() {
+        // the unterminated tail is most of the text, so several slices find no boundary
+        String complete = script(20);
+        String text = complete + "INSERT INTO t VALUES (1, '" + "x".repeat(2000);
+
+        ParallelParser.Result result = new ParallelParser(pool, 64).parsePrefix(text);
+
+        assertEquals(20, result.statements().size());
+        assertEquals(complete.lastIndexOf(';') + 1, result.consumed());
+    }
+
+    @Test
+    void parseRejectsMissingFinalSemicolon() {
+        String text = script(300) + "SELECT * FROM t";
+
+        assertThrows(ParseException.class, () -> new ParallelParser(pool, 64).parse(text));
+    }
+
+    private static String script(int rows) {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < rows; i++) {
+            sql.append("INSERT INTO t VALUES (").append(i).append(", 'v;").append(i).append("');\n");
+        }
+        return sql.toString();
+    }
+}
@@ -1,11 +1,14 @@
 package com.ziyingdeng.minidb.parser;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.List;
+import java.util.Map;
 
 import org.junit.jupiter.api.Test;
 
@@ -16,6 +19,7 @@ import com.ziyingdeng.minidb.parser.AST.DataType;
 import com.ziyingdeng.minidb.parser.AST.Expression;
 import com.ziyingdeng.minidb.parser.AST.Insert;
 import com.ziyingdeng.minidb.parser.AST.Select;
+import com.ziyingdeng.minidb.parser.AST.Statement;
 
 public class ParserTest {
 
@@ -55,6 +59,27 @@ public class ParserTest {
         assertEquals(Boolean.TRUE, active.nullable());
     }
 
+    @Test
+    void parseCreateTableHandlesPrimaryKey() {
+        CreateTable create = parseCreateTable("CREATE TABLE tbl (id INT PRIMARY KEY NOT NULL, name STRING);");
+
+        assertTrue(create.columns().get(0).primaryKey());
+        assertEquals(Boolean.FALSE, create.columns().get(0).nullable());
+        assertFalse(create.columns().get(1).primaryKey());
+        assertCreateTableFails("CREATE TABLE tbl (id INT PRIMARY);");
+    }
+
+    @Test
+    void parseCreateTableHandlesOptions() {
+        CreateTable create = parseCreateTable("CREATE TABLE tbl (id INT PRIMARY KEY) WITH (Index = hash, note = 'x y');");
+
+        assertEquals(Map.of("index", "hash", "note", "x y"), create.options());
+        assertEquals(Map.of(), parseCreateTable("CREATE TABLE tbl (id INT);").options());
+        assertCreateTableFails("CREATE TABLE tbl (id INT) WITH ();");
+        assertCreateTableFails("CREATE TABLE tbl (id INT) WITH (index hash);");
+        assertCreateTableFails("CREATE TABLE tbl (id INT) WITH (index = hash, index = btree);");
+    }
+
     @Test
     void parseCreateTableRejectsMissingSemicolon() {
         assertCreateTableFails("CREATE TABLE tbl (id INT)");
@@ -80,8 +105,10 @@ public class ParserTest {
     }
 
     @Test
-    void parseSelectRejectsMissingAsterisk() {
-        assertSelectFails("SELECT name FROM people;");
+    void parseSelectRejectsMissingSelectList() {
+        assertSelectFails("SELECT FROM people;");
+        assertSelectFails("SELECT name, FROM people;");
+        assertSelectFails("SELECT name * FROM people;");
     }
 
     @Test
@@ -94,6 +121,108 @@ public class ParserTest {
         assertSelectFails("SELECT * FROM ;");
     }
 
+    @Test
+    void parseSelectWhereBindsComparisonsTighterThanLogic() {
+        Select select = parseSelect("SELECT * FROM people WHERE age >= 18 AND NOT name = 'bob' OR vip;");
+
+        AST.Binary or = assertInstanceOf(AST.Binary.class, select.where());
+        assertEquals(AST.BinaryOp.OR, or.op());
+        assertEquals(new AST.ColumnRef("vip"), or.right());
+        AST.Binary and = assertInstanceOf(AST.Binary.class, or.left());
+        assertEquals(AST.BinaryOp.AND, and.op());
+        assertEquals(AST.BinaryOp.GE, assertInstanceOf(AST.Binary.class, and.left()).op());
+        AST.Unary not = assertInstanceOf(AST.Unary.class, and.right());
+        assertEquals(AST.BinaryOp.EQ, assertInstanceOf(AST.Binary.class, not.operand()).op());
+    }
+
+    @Test
+    void parseSelectWhereFoldsConstantPredicates() {
+        assertEquals(true, ((Const) parseSelect("SELECT * FROM t WHERE 1 < 2 AND 'a' <> 'b';").where()).value);
+        assertEquals(false, ((Const) parseSelect("SELECT * FROM t WHERE 2.0 != 2;").where()).value);
+        // NULL AND FALSE is FALSE, NULL OR TRUE is TRUE, anything else with NULL is NULL
+        assertEquals(false, ((Const) parseSelect("SELECT * FROM t WHERE NULL AND FALSE;").where()).value);
+        assertEquals(true, ((Const) parseSelect("SELECT * FROM t WHERE NULL OR 1 = 1;").where()).value);
+        assertEquals(Const.Kind.NULL, ((Const) parseSelect("SELECT * FROM t WHERE NULL = NULL;").where()).kind);
+    }
+
+    @Test
+    void parseSelectWhereRejectsMalformedPredicates() {
+        assertSelectFails("SELECT * FROM t WHERE;");
+        assertSelectFails("SELECT * FROM t WHERE a <;");
+        assertSelectFails("SELECT * FROM t WHERE 'a' < 1;");
+        assertSelectFails("SELECT * FROM t WHERE TRUE > FALSE;");
+    }
+
+    @Test
+    void parseSelectAggregates() {
+        Select select = parseSelect("SELECT count(*), SUM(v), Min(v), max(w), AVG(w) FROM t WHERE v > 0;");
+
+        assertEquals("[COUNT(*), SUM(v), MIN(v), MAX(w), AVG(w)]", select.aggregates().toString());
+        assertEquals(AST.AggregateFunction.SUM, select.aggregates().get(1).function());
+        assertEquals("v", select.aggregates().get(1).column());
+        assertTrue(parseSelect("SELECT * FROM t;").aggregates().isEmpty());
+        assertSelectFails("SELECT SUM(*) FROM t;");
+        assertSelectFails("SELECT MEDIAN(v) FROM t;");
+        assertSelectFails("SELECT COUNT(*), FROM t;");
+        assertSelectFails("SELECT *, COUNT(*) FROM t;");
+    }
+
+    @Test
+    void parseSelectJoin() {
+        Select select = parseSelect("SELECT COUNT(*), SUM(b.v) FROM a JOIN b ON a.id = b.a_id WHERE a.x > 1 AND y;");
+
+        assertEquals("a", select.tableName());
+        assertEquals(new AST.Join("b", "a.id", "b.a_id"), select.join());
+        assertEquals("b.v", select.aggregates().get(1).column());
+        AST.Binary and = assertInstanceOf(AST.Binary.class, select.where());
+        assertEquals(new AST.ColumnRef("a.x"), assertInstanceOf(AST.Binary.class, and.left()).left());
+        assertEquals(new AST.ColumnRef("y"), and.right());
+        assertEquals(new AST.Join("b", "id", "a_id"), parseSelect("SELECT * FROM a JOIN b ON id = a_id;").join());
+        assertNull(parseSelect("SELECT * FROM a;").join());
+        assertSelectFails("SELECT * FROM a JOIN b;");
+        assertSelectFails("SELECT * FROM a JOIN b ON a.id;");
+        assertSelectFails("SELECT * FROM a JOIN b ON a.id < b.id;");
+        assertSelectFails("SELECT * FROM a JOIN b ON a. = b.id;");
+    }
+
+    @Test
+    void parseSelectOrderByAndLimit() {
+        Select select = parseSelect("SELECT * FROM t WHERE x > 1 ORDER BY t.y DESC LIMIT 10;");
+
+        assertEquals(new AST.OrderBy("t.y", true), select.orderBy());
+        assertEquals(10, select.limit());
+        assertEquals(new AST.OrderBy("y", false), parseSelect("SELECT * FROM t ORDER BY y;").orderBy());
+        assertEquals(new AST.OrderBy("y", false), parseSelect("SELECT * FROM t ORDER BY y ASC;").orderBy());
+        Select limited = parseSelect("SELECT * FROM t LIMIT 0;");
+        assertNull(limited.orderBy());
+        assertEquals(0, limited.limit());
+        assertEquals(Select.NO_LIMIT, parseSelect("SELECT * FROM t;").limit());
+        assertSelectFails("SELECT * FROM t ORDER y;");
+        assertSelectFails("SELECT * FROM t ORDER BY;");
+        assertSelectFails("SELECT * FROM t LIMIT 1.5;");
+        assertSelectFails("SELECT * FROM t LIMIT x;");
+        assertSelectFails("SELECT * FROM t LIMIT -1;");
+        assertSelectFails("SELECT * FROM t LIMIT 1 ORDER BY y;");
+    }
+
+    @Test
+    void parseSelectGroupBy() {
+        Select select = parseSelect("SELECT t.k, s, COUNT(*), avg(v) FROM t WHERE v > 0 GROUP BY t.k, s ORDER BY COUNT(*) DESC LIMIT 5;");
+
+        assertEquals("[t.k, s, COUNT(*), AVG(v)]", select.aggregates().toString());
+        assertNull(select.aggregates().get(0).function());
+        assertEquals(List.of("t.k", "s"), select.groupBy());
+        assertEquals(new AST.OrderBy(new AST.Aggregate(AST.AggregateFunction.COUNT, null), true), select.orderBy());
+        assertEquals(5, select.limit());
+        assertEquals(List.of(), parseSelect("SELECT COUNT(*) FROM t;").groupBy());
+        assertSelectFails("SELECT * FROM t GROUP BY k;");
+        assertSelectFails("SELECT k FROM t GROUP k;");
+        assertSelectFails("SELECT k FROM t GROUP BY;");
+        assertSelectFails("SELECT k FROM t GROUP BY k,;");
+        assertSelectFails("SELECT k, LEN(s) FROM t GROUP BY k;");
+        assertSelectFails("SELECT k FROM t ORDER BY k GROUP BY k;");
+    }
+
     /* =============================== INSERT =============================== */
 
     @Test
@@ -102,7 +231,7 @@ public class ParserTest {
 
         assertEquals("tbl", insert.tableName());
         assertNull(insert.columns());
-        List<Expression> row = insert.values().get(0);
+        List<Expression> row = insert.rows().get(0);
         Const first = (Const) row.get(0);
         Const second = (Const) row.get(1);
         Const third = (Const) row.get(2);
@@ -119,9 +248,9 @@ public class ParserTest {
         Insert insert = parseInsert("INSERT INTO tbl (id, name) VALUES (1, 'a'), (2, 'b');");
 
         assertEquals(List.of("id", "name"), insert.columns());
-        assertEquals(2, insert.values().size());
-        Const secondRowFirst = (Const) insert.values().get(1).get(0);
-        Const secondRowSecond = (Const) insert.values().get(1).get(1);
+        assertEquals(2, insert.rows().size());
+        Const secondRowFirst = (Const) insert.rows().get(1).get(0);
+        Const secondRowSecond = (Const) insert.rows().get(1).get(1);
         assertEquals(Const.Kind.INTEGER, secondRowFirst.kind);
         assertEquals(2, secondRowFirst.value);
         assertEquals(Const.Kind.STRING, secondRowSecond.kind);
@@ -133,7 +262,7 @@ public class ParserTest {
         Insert insert = parseInsert("INSERT INTO tbl (phones, name, age) VALUES (('phone1', 'phone2'), 'Alice', 38);");
 
         assertEquals(List.of("phones", "name", "age"), insert.columns());
-        List<Expression> row = insert.values().get(0);
+        List<Expression> row = insert.rows().get(0);
         assertEquals(3, row.size());
         Const phones = (Const) row.get(0);
         assertEquals(Const.Kind.STRING, phones.kind);
@@ -144,6 +273,75 @@ public class ParserTest {
         assertEquals(38, age.value);
     }
 
+    @Test
+    void parseInsertFillsColumnBatchForLiteralRows() {
+        Insert insert = parseInsert("INSERT INTO tbl VALUES (1, 'a', 1.5, TRUE), (NULL, 'é', 2.5, NULL), (3, NULL, 0.25, FALSE);");
+
+        ColumnBatch batch = insert.batch();
+        assertEquals(3, batch.rowCount());
+        assertEquals(4, batch.columnCount());
+        ColumnBatch.Vector ids = batch.column(0);
+        assertEquals(Const.Kind.INTEGER, ids.kind());
+        assertEquals(1, ids.getInt(0));
+        assertTrue(ids.isNull(1));
+        assertEquals(3, ids.getInt(2));
+        ColumnBatch.Vector names = batch.column(1);
+        assertEquals(Const.Kind.STRING, names.kind());
+        assertEquals("a", names.getString(0));
+        assertEquals("é", names.getString(1));
+        assertTrue(names.isNull(2));
+        assertEquals(0.25, batch.column(2).getDouble(2));
+        assertEquals(false, batch.column(3).getBoolean(2));
+        assertTrue(batch.column(3).isNull(1));
+
+        // row-wise view is still available
+        assertEquals(3, insert.rowCount());
+        assertEquals("é", ((Const) insert.rows().get(1).get(1)).value);
+        assertEquals(Const.Kind.NULL, ((Const) insert.rows().get(1).get(0)).kind);
+    }
+
+    @Test
+    void parseInsertEqualsItsRowWiseForm() {
+        Insert columnWise = parseInsert("INSERT INTO tbl VALUES (1, 'a'), (NULL, 'b');");
+        Insert rowWise = new Insert("tbl", columnWise.columns(), List.of(
+                List.of(Const.ofInteger(1), Const.ofString("a")), List.of(Const.ofNull(), Const.ofString("b"))));
+
+        assertNull(columnWise.values());
+        assertEquals(rowWise, columnWise);
+        assertEquals(rowWise.hashCode(), columnWise.hashCode());
+    }
+
+    @Test
+    void parseInsertTypesAllNullPrefixFromLaterRows() {
+        Insert insert = parseInsert("INSERT INTO tbl VALUES (NULL), (NULL), ('x');");
+
+        ColumnBatch.Vector v = insert.batch().column(0);
+        assertEquals(Const.Kind.STRING, v.kind());
+        assertTrue(v.isNull(0));
+        assertTrue(v.isNull(1));
+        assertEquals("x", v.getString(2));
+    }
+
+    @Test
+    void parseInsertFallsBackToRowsOnMixedTypes() {
+        Insert insert = parseInsert("INSERT INTO tbl VALUES (1, 'a'), (2.5, 'b');");
+
+        assertNull(insert.batch());
+        assertEquals(2, insert.rows().size());
+        assertEquals(1, ((Const) insert.rows().get(0).get(0)).value);
+        assertEquals(2.5, ((Const) insert.rows().get(1).get(0)).value);
+        assertEquals("b", ((Const) insert.rows().get(1).get(1)).value);
+    }
+
+    @Test
+    void parseInsertFallsBackToRowsOnRaggedRows() {
+        Insert insert = parseInsert("INSERT INTO tbl VALUES (1, 'a'), (2), (3, 'c', TRUE);");
+
+        assertNull(insert.batch());
+        assertEquals(List.of(2, 1, 3), insert.rows().stream().map(List::size).toList());
+        assertEquals(Boolean.TRUE, ((Const) insert.rows().get(2).get(2)).value);
+    }
+
     @Test
     void parseInsertRejectsMissingValuesKeyword() {
         assertInsertFails("INSERT INTO tbl (id) (1);");
@@ -154,8 +352,103 @@ public class ParserTest {
         assertInsertFails("INSERT INTO tbl VALUES (1, 2;");
     }
 
+    /* ============================= EXPRESSIONS ============================ */
+
+    @Test
+    void constantDefaultIsFoldedAtParseTime() {
+        CreateTable create = parseCreateTable("CREATE TABLE t (ttl INT DEFAULT 60*60*24 NOT NULL, ratio FLOAT DEFAULT 1 / 4.0);");
+
+        Const ttl = assertInstanceOf(Const.class, create.columns().get(0).defaulExpr());
+        assertEquals(86400, ttl.value);
+        assertEquals(Boolean.FALSE, create.columns().get(0).nullable());
+        assertEquals(0.25, ((Const) create.columns().get(1).defaulExpr()).value);
+    }
+
+    @Test
+    void foldedValuesStayInColumnBatch() {
+        Insert insert = parseInsert("INSERT INTO t VALUES (-1, 2+3), (+4, (1 + 2) * 3), (7, 8 - 1);");
+
+        ColumnBatch batch = insert.batch();
+        assertEquals(3, batch.rowCount());
+        assertEquals(-1, batch.column(0).getInt(0));
+        assertEquals(5, batch.column(1).getInt(0));
+        assertEquals(4, batch.column(0).getInt(1));
+        assertEquals(9, batch.column(1).getInt(1));
+        assertEquals(7, batch.column(1).getInt(2));
+    }
+
+    @Test
+    void operatorPrecedenceAndTypes() {
+        assertEquals(14, fold("2 + 3 * 4").value);
+        assertEquals(20, fold("(2 + 3) * 4").value);
+        assertEquals(-6, fold("-2 * 3").value);
+        assertEquals(1, fold("7 / 2 - 2").value);      // INTEGER division truncates
+        assertEquals(3.5, fold("7 / 2.0").value);
+        assertEquals(false, fold("NOT TRUE").value);
+        assertEquals(Const.Kind.NULL, fold("1 + NULL * 2").kind);
+    }
+
+    @Test
+    void columnReferencesAreKeptAndConstantSubtreesFolded() {
+        Insert insert = parseInsert("INSERT INTO t VALUES (price * (1 + 2));");
+
+        AST.Binary mul = assertInstanceOf(AST.Binary.class, insert.rows().get(0).get(0));
+        assertEquals(AST.BinaryOp.MUL, mul.op());
+        assertEquals(new AST.ColumnRef("price"), mul.left());
+        assertEquals(3, ((Const) mul.right()).value);
+    }
+
+    @Test
+    void invalidConstantExpressionsFail() {
+        assertInsertFails("INSERT INTO t VALUES (1 / 0);");
+        assertInsertFails("INSERT INTO t VALUES (2147483647 + 1);");
+        assertInsertFails("INSERT INTO t VALUES ('a' + 1);");
+        assertInsertFails("INSERT INTO t VALUES (NOT 1);");
+        assertInsertFails("INSERT INTO t VALUES (1 +);");
+        assertInsertFails("INSERT INTO t VALUES ((1 + 2);");
+    }
+
+    /* =============================== PROGRAM ============================== */
+
+    @Test
+    void parseAllReturnsEveryStatement() {
+        Parser parser = new Parser("CREATE TABLE t (id INT); INSERT INTO t VALUES (1); SELECT * FROM t;");
+
+        List<Statement> statements = parser.parseAll();
+
+        assertEquals(3, statements.size());
+        assertInstanceOf(CreateTable.class, statements.get(0));
+        assertInstanceOf(Insert.class, statements.get(1));
+        assertInstanceOf(Select.class, statements.get(2));
+    }
+
+    @Test
+    void parseAllAcceptsEmptyProgram() {
+        assertEquals(List.of(), new Parser("  \n").parseAll());
+    }
+
+    @Test
+    void parseAllRejectsMissingSemicolon() {
+        Parser parser = new Parser("SELECT * FROM a; SELECT * FROM b");
+        assertThrows(ParseException.class, parser::parseAll);
+    }
+
+    @Test
+    void parseRangeIgnoresSurroundingText() {
+        String sql = "garbage SELECT * FROM people; garbage";
+        Parser parser = new Parser(sql, 8, 29);
+
+        Select select = assertInstanceOf(Select.class, parser.parse());
+        assertEquals("people", select.tableName());
+    }
+
     /* =============================== Helpers ============================== */
 
+    private static Const fold(String expr) {
+        Insert insert = parseInsert("INSERT INTO t VALUES (" + expr + ");");
+        return assertInstanceOf(Const.class, insert.rows().get(0).get(0));
+    }
+
     private static CreateTable parseCreateTable(String sql) {
         Parser parser = new Parser(sql);
         return assertInstanceOf(CreateTable.class, parser.parse());
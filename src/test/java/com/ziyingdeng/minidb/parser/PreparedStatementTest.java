@@ -0,0 +1,101 @@
+package com.ziyingdeng.minidb.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.ziyingdeng.minidb.parser.AST.Const;
+import com.ziyingdeng.minidb.parser.AST.CreateTable;
+import com.ziyingdeng.minidb.parser.AST.Expression;
+import com.ziyingdeng.minidb.parser.AST.Insert;
+import com.ziyingdeng.minidb.parser.AST.Param;
+
+public class PreparedStatementTest {
+
+    @Test
+    void placeholdersAreNumberedInOrder() {
+        PreparedStatement ps = PreparedStatement.prepare("INSERT INTO t (a, b, c) VALUES (?, 'x', ?), (?, NULL, 1);");
+
+        assertEquals(3, ps.parameterCount());
+        Insert template = assertInstanceOf(Insert.class, ps.template());
+        assertEquals(new Param(0), template.rows().get(0).get(0));
+        assertEquals(new Param(1), template.rows().get(0).get(2));
+        assertEquals(new Param(2), template.rows().get(1).get(0));
+    }
+
+    @Test
+    void bindSubstitutesValuesWithoutTouchingTemplate() {
+        PreparedStatement ps = PreparedStatement.prepare("INSERT INTO t (a, b) VALUES (?, ?);");
+
+        Insert first = assertInstanceOf(Insert.class, ps.bind(1, "one"));
+        Insert second = assertInstanceOf(Insert.class, ps.bind(2L, null));
+
+        List<Expression> row = first.rows().get(0);
+        assertEquals(1, ((Const) row.get(0)).value);
+        assertEquals("one", ((Const) row.get(1)).value);
+        assertEquals(2, ((Const) second.rows().get(0).get(0)).value);
+        assertEquals(Const.Kind.NULL, ((Const) second.rows().get(0).get(1)).kind);
+        assertEquals(new Param(0), ((Insert) ps.template()).rows().get(0).get(0));
+        assertEquals(List.of("a", "b"), first.columns());
+    }
+
+    @Test
+    void bindFillsColumnDefaults() {
+        PreparedStatement ps = PreparedStatement.prepare("CREATE TABLE t (a INT DEFAULT ?, b BOOL);");
+
+        CreateTable create = assertInstanceOf(CreateTable.class, ps.bind(7.5));
+
+        assertEquals(7.5, ((Const) create.columns().get(0).defaulExpr()).value);
+    }
+
+    @Test
+    void bindRejectsWrongArity() {
+        PreparedStatement ps = PreparedStatement.prepare("INSERT INTO t VALUES (?);");
+
+        assertThrows(IllegalArgumentException.class, ps::bind);
+        assertThrows(IllegalArgumentException.class, () -> ps.bind(1, 2));
+        assertThrows(IllegalArgumentException.class, () -> ps.bind(new Object()));
+    }
+
+    @Test
+    void bindFoldsExpressionsAroundPlaceholders() {
+        PreparedStatement ps = PreparedStatement.prepare("INSERT INTO t (a, b) VALUES (? + 1, -? * 2);");
+
+        Insert bound = assertInstanceOf(Insert.class, ps.bind(41, 1.5));
+
+        assertEquals(42, ((Const) bound.rows().get(0).get(0)).value);
+        assertEquals(-3.0, ((Const) bound.rows().get(0).get(1)).value);
+    }
+
+    @Test
+    void parseCacheCountsHitsAndEvictsLeastRecentlyUsed() {
+        ParseCache cache = new ParseCache(2);
+
+        PreparedStatement a = cache.prepare("SELECT * FROM a;");
+        cache.prepare("SELECT * FROM b;");
+        assertSame(a, cache.prepare("SELECT * FROM a;")); // a is now most recent
+        cache.prepare("SELECT * FROM c;");                 // evicts b
+
+        assertEquals(1, cache.hits());
+        assertEquals(3, cache.misses());
+        assertEquals(2, cache.size());
+        assertSame(a, cache.prepare("SELECT * FROM a;"));
+        assertNotSame(null, cache.prepare("SELECT * FROM b;"));
+        assertEquals(2, cache.hits());
+        assertEquals(4, cache.misses());
+    }
+
+    @Test
+    void parseCacheDoesNotCacheFailures() {
+        ParseCache cache = new ParseCache(4);
+
+        assertThrows(ParseException.class, () -> cache.prepare("SELECT FROM;"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,119 @@
+package com.ziyingdeng.minidb.parser;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import com.ziyingdeng.minidb.parser.AST.Const;
+import com.ziyingdeng.minidb.parser.AST.Insert;
+import com.ziyingdeng.minidb.parser.AST.Select;
+import com.ziyingdeng.minidb.parser.AST.Statement;
+
+public class StatementReaderTest {
+
+    @Test
+    void readsStatementsInOrder() {
+        StatementReader reader = Parser.statements(new StringReader(
+                "SELECT * FROM a;\nSELECT * FROM b;\n"));
+
+        assertEquals("a", assertInstanceOf(Select.class, reader.next()).tableName());
+        assertEquals("b", assertInstanceOf(Select.class, reader.next()).tableName());
+        assertFalse(reader.hasNext());
+        assertEquals(2, reader.count());
+    }
+
+    @Test
+    void semicolonInsideStringDoesNotEndStatement() {
+        StatementReader reader = Parser.statements(new StringReader(
+                "INSERT INTO t VALUES ('a;b'); SELECT * FROM t;"));
+
+        Insert insert = assertInstanceOf(Insert.class, reader.next());
+        assertEquals("a;b", ((Const) insert.rows().get(0).get(0)).value);
+        assertInstanceOf(Select.class, reader.next());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    void statementsSpanningChunkBoundariesAreReassembled() {
+        StringBuilder sql = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sql.append("INSERT INTO t VALUES (").append(i).append(", 'x;").append(i).append("');\n");
+        }
+
+        List<Statement> statements = Parser.stream(new TrickleReader(sql.toString(), 7))
+                .collect(Collectors.toList());
+
+        assertEquals(2000, statements.size());
+        Insert last = (Insert) statements.get(1999);
+        assertEquals(1999, ((Const) last.rows().get(0).get(0)).value);
+        assertEquals("x;1999", ((Const) last.rows().get(0).get(1)).value);
+    }
+
+    @Test
+    void readsFromByteChannel() {
+        byte[] bytes = "INSERT INTO t VALUES ('café');".getBytes(StandardCharsets.UTF_8);
+        StatementReader reader = Parser.statements(Channels.newChannel(new ByteArrayInputStream(bytes)));
+
+        Insert insert = assertInstanceOf(Insert.class, reader.next());
+        assertEquals("café", ((Const) insert.rows().get(0).get(0)).value);
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    void trailingWhitespaceEndsScript() {
+        StatementReader reader = Parser.statements(new StringReader("SELECT * FROM a;  \n\t"));
+
+        assertTrue(reader.hasNext());
+        reader.next();
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    void trailingCharsTheLexerRejectsAreNotBlank() {
+        StatementReader reader = Parser.statements(new StringReader("SELECT * FROM a; \f\u00a0"));
+
+        reader.next();
+        assertThrows(ParseException.class, reader::hasNext);
+    }
+
+    @Test
+    void missingFinalSemicolonIsRejected() {
+        StatementReader reader = Parser.statements(new StringReader("SELECT * FROM a; SELECT * FROM b"));
+
+        reader.next();
+        assertThrows(ParseException.class, reader::hasNext);
+    }
+
+    // Hands out at most `step` chars per read to exercise chunk boundaries
+    private static class TrickleReader extends Reader {
+        private final String text;
+        private final int step;
+        private int pos;
+
+        TrickleReader(String text, int step) { this.text = text; this.step = step; }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (pos >= text.length()) return -1;
+            int n = Math.min(Math.min(len, step), text.length() - pos);
+            text.getChars(pos, pos + n, cbuf, off);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -0,0 +1,143 @@
+package com.ziyingdeng.minidb.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.ziyingdeng.minidb.engine.Database;
+import com.ziyingdeng.minidb.parser.AST;
+
+public class ServerTest {
+    private Server server;
+
+    @BeforeEach
+    void start() throws IOException {
+        server = Server.start(new Database(), 0);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        server.close();
+    }
+
+    @Test
+    void statementsRoundTripWithTypedRows() throws IOException {
+        try (Client client = connect()) {
+            List<Client.Reply> replies = client.query("CREATE TABLE t (id INT PRIMARY KEY, name STRING, score FLOAT, ok BOOL);"
+                    + "INSERT INTO t VALUES (1, 'ann', 1.5, TRUE), (2, NULL, NULL, FALSE), (3, 'zoë', -2.0, NULL);"
+                    + "SELECT * FROM t WHERE id >= 2;");
+
+            assertEquals(new Client.Created("t"), replies.get(0));
+            assertEquals(new Client.Inserted(3), replies.get(1));
+            Client.Rows rows = assertInstanceOf(Client.Rows.class, replies.get(2));
+            assertEquals(List.of("id", "name", "score", "ok"), rows.columns());
+            assertEquals(AST.DataType.FLOAT, rows.types().get(2));
+            assertArrayEquals(new Object[] { 2, null, null, false }, rows.rows().get(0));
+            assertArrayEquals(new Object[] { 3, "zoë", -2.0, null }, rows.rows().get(1));
+
+            Client.Rows count = assertInstanceOf(Client.Rows.class, client.query("SELECT COUNT(*), MAX(score) FROM t;").get(0));
+            assertArrayEquals(new Object[] { 3, 1.5 }, count.rows().get(0));
+        }
+    }
+
+    @Test
+    void errorsEndTheQueryButNotTheConnection() throws IOException {
+        try (Client client = connect()) {
+            client.query("CREATE TABLE t (id INT NOT NULL);");
+            List<Client.Reply> replies = client.query("INSERT INTO t VALUES (1); INSERT INTO t VALUES (NULL); INSERT INTO t VALUES (3);");
+            assertEquals(new Client.Inserted(1), replies.get(0));
+            assertTrue(assertInstanceOf(Client.Error.class, replies.get(1)).message().startsWith("[Executor]"));
+            assertEquals(2, replies.size(), "the statement after the error does not run");
+
+            assertInstanceOf(Client.Error.class, client.query("SELEC * FROM t;").get(0));
+            assertEquals(1, ((Client.Rows) client.query("SELECT * FROM t;").get(0)).rows().size());
+        }
+    }
+
+    @Test
+    void pipelinedQueriesAndLargeResultsStreamInOrder() throws IOException {
+        try (Client client = connect()) {
+            client.query("CREATE TABLE t (id INT, label STRING);");
+            for (int i = 0; i < 500; i++) client.send("INSERT INTO t VALUES (" + (2 * i) + ", 'row'), (" + (2 * i + 1) + ", NULL);");
+            client.send("SELECT * FROM t;");
+            client.flush();
+            for (int i = 0; i < 500; i++) assertEquals(List.of(new Client.Inserted(2)), client.receive());
+            List<Object[]> rows = ((Client.Rows) client.receive().get(0)).rows();
+            assertEquals(1000, rows.size());
+            for (int i = 0; i < 5_000; i++) client.send("INSERT INTO t VALUES (" + (1000 + i) + ", 'more');");
+            client.flush();
+            for (int i = 0; i < 5_000; i++) client.receive();
+
+            rows = ((Client.Rows) client.query("SELECT * FROM t;").get(0)).rows(); // several DATA frames and flushes
+            assertEquals(6_000, rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                assertEquals(i, rows.get(i)[0]);
+                assertEquals(i < 1000 && i % 2 == 1 ? null : i < 1000 ? "row" : "more", rows.get(i)[1]);
+            }
+        }
+    }
+
+    @Test
+    void manyIdleConnectionsAndConcurrentClients() throws Exception {
+        List<Client> idle = new ArrayList<>();
+        try {
+            for (int i = 0; i < 1_000; i++) idle.add(connect());
+            try (Client setup = connect()) {
+                setup.query("CREATE TABLE kv (k INT PRIMARY KEY, v INT);");
+            }
+            try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> done = new ArrayList<>();
+                for (int t = 0; t < 16; t++) {
+                    int base = t * 1_000;
+                    done.add(clients.submit(() -> {
+                        try (Client c = connect()) {
+                            for (int i = 0; i < 200; i++) c.query("INSERT INTO kv VALUES (" + (base + i) + ", " + i + ");");
+                            Client.Rows r = (Client.Rows) c.query("SELECT * FROM kv WHERE k = " + (base + 199) + ";").get(0);
+                            assertArrayEquals(new Object[] { base + 199, 199 }, r.rows().get(0));
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> f : done) f.get();
+            }
+            assertTrue(server.connections() >= 1_000);
+            Client.Rows count = (Client.Rows) idle.get(500).query("SELECT COUNT(*) FROM kv;").get(0);
+            assertArrayEquals(new Object[] { 16 * 200 }, count.rows().get(0));
+        } finally {
+            for (Client c : idle) c.close();
+        }
+    }
+
+    @Test
+    void droppedConnectionsGoToTheErrorHandler() throws Exception {
+        BlockingQueue<String> errors = new LinkedBlockingQueue<>();
+        server.onError(errors::add);
+        try (Socket s = new Socket("127.0.0.1", server.port())) {
+            s.getOutputStream().write(new byte[] { 0x7F, 0, 0, 0, 'Q' }); // length past MAX_FRAME
+            assertEquals(-1, s.getInputStream().read());
+        }
+
+        String error = errors.poll(10, TimeUnit.SECONDS);
+        assertEquals("[Server] Connection dropped: [Server] Invalid frame length " + 0x7F000000, error);
+    }
+
+    private Client connect() throws IOException {
+        return Client.connect("127.0.0.1", server.port());
+    }
+}
@@ -0,0 +1,80 @@
+package com.ziyingdeng.minidb.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.ziyingdeng.minidb.parser.AST;
+
+public class ColumnVectorTest {
+    private static final int ROWS = 1 << 16;
+
+    @Test
+    void lowCardinalityStringsBecomeSortedDictionaryCodes() {
+        List<String> words = List.of("pending", "shipped", "cancelled", "é", "");
+        ColumnVector plain = ColumnVector.allocate(AST.DataType.STRING, ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            if (i % 11 == 0) plain.appendNull();
+            else plain.appendString(words.get(i % words.size()));
+        }
+        ColumnVector.Dict dict = assertInstanceOf(ColumnVector.Dict.class, ColumnVector.encode(plain));
+        assertSameValues(plain, dict);
+        assertEquals(5, dict.dictionary().length);
+        assertEquals(0, dict.dictionary()[0].length);
+        assertEquals("é", new String(dict.dictionary()[4], StandardCharsets.UTF_8));
+        assertTrue(dict.code(2) < dict.code(1), "codes follow byte order: cancelled < pending");
+        assertTrue(plain.memoryBytes() > 10 * dict.memoryBytes(), plain.memoryBytes() + " vs " + dict.memoryBytes());
+
+        ColumnVector many = ColumnVector.allocate(AST.DataType.STRING, ROWS);
+        for (int i = 0; i < ROWS; i++) many.appendString("id-" + i % 257);
+        assertSame(many, ColumnVector.encode(many), "257 distinct values stay plain");
+    }
+
+    @Test
+    void booleansPackToBitsAndClusteredIntegersToRuns() {
+        ColumnVector bools = ColumnVector.allocate(AST.DataType.BOOLEAN, ROWS);
+        ColumnVector sorted = ColumnVector.allocate(AST.DataType.INTEGER, ROWS);
+        ColumnVector random = ColumnVector.allocate(AST.DataType.INTEGER, ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            if (i % 13 == 0) bools.appendNull();
+            else bools.appendBoolean(Integer.bitCount(i) % 2 == 0);
+            if (i == 500) sorted.appendNull();
+            else sorted.appendInt(i / 100);
+            random.appendInt(i * 31 % 7);
+        }
+        ColumnVector packed = assertInstanceOf(ColumnVector.PackedBools.class, ColumnVector.encode(bools));
+        assertSameValues(bools, packed);
+        assertTrue(bools.memoryBytes() >= 4 * packed.memoryBytes());
+
+        ColumnVector runs = assertInstanceOf(ColumnVector.RunInts.class, ColumnVector.encode(sorted));
+        assertSameValues(sorted, runs);
+        assertTrue(sorted.memoryBytes() > 20 * runs.memoryBytes());
+        assertSame(random, ColumnVector.encode(random), "runs of one row stay plain");
+    }
+
+    @Test
+    void encodedVectorsAreReadOnlyButCopyOut() {
+        ColumnVector plain = ColumnVector.allocate(AST.DataType.STRING, 100);
+        for (int i = 0; i < 100; i++) plain.appendString(i % 2 == 0 ? "x" : "y");
+        ColumnVector dict = ColumnVector.encode(plain);
+        assertThrows(StorageException.class, () -> dict.appendString("z"));
+        assertThrows(StorageException.class, dict::appendNull);
+
+        ColumnVector copy = ColumnVector.allocate(AST.DataType.STRING, 10);
+        copy.appendFrom(dict, 3, 10);
+        for (int i = 0; i < 10; i++) assertEquals(plain.get(3 + i), copy.get(i));
+    }
+
+    private static void assertSameValues(ColumnVector expected, ColumnVector actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) assertEquals(expected.get(i), actual.get(i), "row " + i);
+        assertEquals(expected.hasNulls(0, expected.size()), actual.hasNulls(0, actual.size()));
+    }
+}
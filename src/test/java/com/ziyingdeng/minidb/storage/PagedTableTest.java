@@ -0,0 +1,94 @@
+package com.ziyingdeng.minidb.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static com.ziyingdeng.minidb.storage.TestRows.SCHEMA;
+import static com.ziyingdeng.minidb.storage.TestRows.checkRow;
+import static com.ziyingdeng.minidb.storage.TestRows.rows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PagedTableTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void rowsRoundTripThroughASmallPool() throws IOException {
+        try (BufferPool pool = new BufferPool(PageFile.open(dir.resolve("data.db")), 4)) {
+            PagedTable t = PagedTable.open("t", SCHEMA, TableOptions.DEFAULT, pool);
+            for (int from = 0; from < 20_000; from += 3_000) t.append(rows(from, Math.min(3_000, 20_000 - from)), Math.min(3_000, 20_000 - from));
+            assertEquals(20_000, t.rowCount());
+
+            int seen = 0;
+            for (Iterator<RowBatch> it = t.scan(); it.hasNext(); ) {
+                RowBatch b = it.next();
+                for (int r = 0; r < b.size(); r++) checkRow(b, r, seen++);
+            }
+            assertEquals(20_000, seen);
+            assertTrue(pool.evictions() > 0, "20k rows do not fit in 4 frames");
+
+            checkRow(t.row(t.lookup(12_345)), 0, 12_345);
+            assertEquals(-1, t.lookup(20_000));
+            assertThrows(StorageException.class, () -> t.append(rows(19_999, 1), 1));
+        }
+    }
+
+    @Test
+    void reopenKeepsCheckpointedRowsOnly() throws IOException {
+        try (BufferPool pool = new BufferPool(PageFile.open(dir.resolve("data.db")), 8)) {
+            PagedTable t = PagedTable.open("t", SCHEMA, TableOptions.DEFAULT, pool);
+            t.append(rows(0, 1_000), 1_000);
+            t.checkpoint();
+            t.append(rows(1_000, 500), 500); // reaches the file below, but no checkpoint counts it
+        }
+        try (BufferPool pool = new BufferPool(PageFile.open(dir.resolve("data.db")), 8)) {
+            PagedTable t = PagedTable.open("t", SCHEMA, TableOptions.DEFAULT, pool);
+            assertEquals(1_000, t.rowCount());
+            assertEquals(-1, t.lookup(1_200));
+            checkRow(t.row(t.lookup(999)), 0, 999);
+
+            t.append(rows(1_000, 2_000), 2_000); // the cut-off rows come back, as recovery would append them
+            int seen = 0;
+            for (Iterator<RowBatch> it = t.scan(); it.hasNext(); ) {
+                RowBatch b = it.next();
+                for (int r = 0; r < b.size(); r++) checkRow(b, r, seen++);
+            }
+            assertEquals(3_000, seen);
+        }
+    }
+
+    @Test
+    void clockEvictsUnreferencedPagesFirst() throws IOException {
+        try (BufferPool pool = new BufferPool(PageFile.open(dir.resolve("data.db")), 3)) {
+            int[] ids = new int[4];
+            for (int i = 0; i < 4; i++) {
+                BufferPool.Page p = pool.allocate();
+                p.data().putInt(0, 100 + i);
+                ids[i] = p.id();
+                pool.unpin(p, true);
+            }
+            assertEquals(1, pool.evictions()); // the fourth page displaced the first
+            BufferPool.Page first = pool.pin(ids[0]);
+            assertEquals(100, first.data().getInt(0)); // written back when evicted, read again
+            pool.unpin(first, false);
+            assertEquals(1, pool.misses());
+
+            BufferPool.Page a = pool.pin(ids[0]), b = pool.pin(ids[3]);
+            BufferPool.Page c = pool.pin(ids[1]); // miss: evicts the only unpinned frame
+            assertThrows(StorageException.class, () -> pool.pin(ids[2]), "every frame is pinned");
+            pool.unpin(a, false);
+            pool.unpin(b, false);
+            pool.unpin(c, false);
+            assertSame(a, pool.pin(ids[0]));
+            assertEquals(3.0 / 5, pool.hitRate(), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.ziyingdeng.minidb.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static com.ziyingdeng.minidb.storage.TestRows.SCHEMA;
+import static com.ziyingdeng.minidb.storage.TestRows.checkRow;
+import static com.ziyingdeng.minidb.storage.TestRows.rows;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SnapshotTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void memoryTableRoundTripsAndReadsChunksOnDemand() throws IOException {
+        TableOptions options = TableOptions.of(Map.of("index", "hash"));
+        MemoryTable t = new MemoryTable("t", SCHEMA, options);
+        t.append(rows(0, 70_000), 70_000); // six full chunks, then 5,488 rows of a 64K one
+        t.append(rows(70_000, 10), 10);
+        Path file = dir.resolve("snapshot.mdb");
+        Snapshot.write(file, List.of(t), Map.of("t", 70_000L), 3); // the last 10 rows are after the cut
+
+        try (Snapshot snapshot = Snapshot.open(file)) {
+            assertEquals(3, snapshot.walSegment());
+            Snapshot.TableImage image = snapshot.tables().get(0);
+            assertEquals(70_000, image.rows());
+            assertEquals(7, image.chunks().size());
+            assertEquals(0, image.schema().primaryKey());
+            assertEquals(1.5, image.schema().column(2).defaultValue().value);
+            assertEquals(Map.of("index", "hash"), image.options());
+
+            MemoryTable restored = (MemoryTable) snapshot.restore(image, TableOptions.of(image.options()));
+            assertEquals(70_000, restored.rowCount());
+            assertEquals(0, restored.memoryBytes(), "nothing is read on restore");
+            long id = restored.lookup(54_321);
+            assertEquals(0, restored.memoryBytes(), "a lookup reads the key column only");
+            checkRow(restored.row(id), 0, 54_321);
+            assertTrue(restored.memoryBytes() > 0);
+
+            restored.append(rows(70_000, 1_000), 1_000); // fills the restored partial chunk further
+            assertThrows(StorageException.class, () -> restored.append(rows(69_999, 1), 1));
+            int seen = 0;
+            for (Iterator<RowBatch> it = restored.scan(); it.hasNext(); ) {
+                RowBatch b = it.next();
+                for (int r = 0; r < b.size(); r++) checkRow(b, r, seen++);
+            }
+            assertEquals(71_000, seen);
+            checkRow(restored.row(restored.lookup(70_500)), 0, 70_500);
+        }
+    }
+
+    @Test
+    void damageIsReportedWhereItIsRead() throws IOException {
+        MemoryTable t = new MemoryTable("t", SCHEMA);
+        t.append(rows(0, 5_000), 5_000);
+        Path file = dir.resolve("snapshot.mdb");
+        Snapshot.write(file, List.of(t), Map.of("t", 5_000L), 1);
+
+        long block;
+        try (Snapshot snapshot = Snapshot.open(file)) {
+            block = snapshot.tables().get(0).chunks().get(2).columns()[1].offset();
+        }
+        flip(file, block + 20);
+        try (Snapshot snapshot = Snapshot.open(file)) {
+            Snapshot.TableImage image = snapshot.tables().get(0);
+            Table restored = snapshot.restore(image, TableOptions.DEFAULT);
+            checkRow(restored.row(10), 0, 10); // the first chunk is intact
+            assertThrows(StorageException.class, () -> restored.row(4_000));
+        }
+
+        long catalog;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            catalog = ch.size() - 4;
+        }
+        flip(file, catalog);
+        assertThrows(StorageException.class, () -> Snapshot.open(file).close());
+    }
+
+    private static void flip(Path file, long at) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            ch.read(b, at);
+            b.put(0, (byte) ~b.get(0)).rewind();
+            ch.write(b, at);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.ziyingdeng.minidb.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+
+import com.ziyingdeng.minidb.parser.AST;
+
+// Rows derived from their id, for tables that must give them back intact
+final class TestRows {
+    private TestRows() {}
+
+    // (id INT PRIMARY KEY, name STRING, score FLOAT DEFAULT 1.5, ok BOOLEAN)
+    static final Schema SCHEMA = new Schema(List.of(
+            new Schema.ColumnDef("id", AST.DataType.INTEGER, false, null),
+            new Schema.ColumnDef("name", AST.DataType.STRING, true, null),
+            new Schema.ColumnDef("score", AST.DataType.FLOAT, true, AST.Const.ofFloat(1.5)),
+            new Schema.ColumnDef("ok", AST.DataType.BOOLEAN, true, null)), 0);
+
+    // row i: id i, name "n<i>" or NULL every 7th row, score i / 2, ok i % 3 == 0
+    static ColumnVector[] rows(int from, int count) {
+        ColumnVector[] cols = new ColumnVector[SCHEMA.size()];
+        for (int c = 0; c < cols.length; c++) cols[c] = ColumnVector.allocate(SCHEMA.column(c).type(), count);
+        for (int i = from; i < from + count; i++) {
+            cols[0].appendInt(i);
+            if (i % 7 == 0) cols[1].appendNull();
+            else cols[1].appendString("n" + i);
+            cols[2].appendDouble(i / 2.0);
+            cols[3].appendBoolean(i % 3 == 0);
+        }
+        return cols;
+    }
+
+    // Row r of the batch is row i
+    static void checkRow(RowBatch b, int r, int i) {
+        assertEquals(i, b.get(0, r));
+        if (i % 7 == 0) assertNull(b.get(1, r));
+        else assertEquals("n" + i, b.get(1, r));
+        assertEquals(i / 2.0, b.get(2, r));
+        assertEquals(i % 3 == 0, b.get(3, r));
+    }
+}
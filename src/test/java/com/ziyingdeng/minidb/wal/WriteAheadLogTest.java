@@ -0,0 +1,256 @@
+package com.ziyingdeng.minidb.wal;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.ziyingdeng.minidb.engine.Database;
+import com.ziyingdeng.minidb.engine.ExecutionException;
+import com.ziyingdeng.minidb.engine.Result;
+import com.ziyingdeng.minidb.parser.AST;
+import com.ziyingdeng.minidb.storage.ColumnVector;
+import com.ziyingdeng.minidb.storage.Schema;
+import com.ziyingdeng.minidb.storage.TableOptions;
+
+public class WriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsRoundTripThroughEncoding() {
+        Schema schema = new Schema(List.of(
+                new Schema.ColumnDef("id", AST.DataType.INTEGER, false, null),
+                new Schema.ColumnDef("name", AST.DataType.STRING, true, AST.Const.ofString("x"))));
+        WalRecord.CreateTable create = assertInstanceOf(WalRecord.CreateTable.class,
+                WalRecord.decode(WalRecord.encode(new WalRecord.CreateTable("t", schema))));
+        assertEquals("t", create.name());
+        assertEquals(2, create.schema().size());
+        assertEquals("id", create.schema().column(0).name());
+        assertEquals(false, create.schema().column(0).nullable());
+        assertEquals(AST.DataType.STRING, create.schema().column(1).type());
+        assertEquals("x", create.schema().column(1).defaultValue().value);
+
+        WalRecord.Insert insert = assertInstanceOf(WalRecord.Insert.class,
+                WalRecord.decode(WalRecord.encode(insertOf("t", 1, 2, 3))));
+        assertEquals(3, insert.rows());
+        assertEquals("r3", insert.columns()[0].getString(2));
+        assertEquals(2, insert.columns()[1].getInt(1));
+    }
+
+    @Test
+    void replaysCommittedRecordsAfterReopen() throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(dir, r -> {})) {
+            for (int i = 0; i < 5; i++) wal.commit(insertOf("t", i));
+        }
+
+        List<WalRecord> replayed = new ArrayList<>();
+        try (WriteAheadLog wal = WriteAheadLog.open(dir, replayed::add)) {
+            wal.commit(insertOf("t", 5));
+        }
+        assertEquals(5, replayed.size());
+
+        replayed.clear();
+        WriteAheadLog.open(dir, replayed::add).close();
+        assertEquals(6, replayed.size());
+        assertEquals(5, ((WalRecord.Insert) replayed.get(5)).columns()[1].getInt(0));
+    }
+
+    @Test
+    void truncatesTornTail() throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(dir, r -> {})) {
+            wal.commit(insertOf("t", 1));
+            wal.commit(insertOf("t", 2));
+        }
+        Path segment = dir.resolve("wal-00000001.log");
+        long size = Files.size(segment);
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ch.truncate(size - 3); // crash in the middle of the second record
+        }
+
+        List<WalRecord> replayed = new ArrayList<>();
+        try (WriteAheadLog wal = WriteAheadLog.open(dir, replayed::add)) {
+            assertEquals(1, replayed.size());
+            wal.commit(insertOf("t", 3));
+        }
+        replayed.clear();
+        WriteAheadLog.open(dir, replayed::add).close();
+        assertEquals(2, replayed.size());
+        assertEquals(3, ((WalRecord.Insert) replayed.get(1)).columns()[1].getInt(0));
+    }
+
+    @Test
+    void rotatesSegments() throws IOException {
+        try (WriteAheadLog wal = WriteAheadLog.open(dir, 64, r -> {})) {
+            for (int i = 0; i < 10; i++) wal.commit(insertOf("t", i));
+        }
+        try (var files = Files.list(dir)) {
+            assertTrue(files.count() > 1);
+        }
+        List<WalRecord> replayed = new ArrayList<>();
+        WriteAheadLog.open(dir, 64, replayed::add).close();
+        assertEquals(10, replayed.size());
+    }
+
+    @Test
+    void concurrentCommitsShareForces() throws Exception {
+        int threads = 16, perThread = 50;
+        try (WriteAheadLog wal = WriteAheadLog.open(dir, r -> {})) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                done.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) wal.commit(insertOf("t", i));
+                }));
+            }
+            for (Future<?> f : done) f.get();
+            pool.shutdown();
+            assertTrue(wal.syncCount() <= threads * perThread);
+        }
+        List<WalRecord> replayed = new ArrayList<>();
+        WriteAheadLog.open(dir, replayed::add).close();
+        assertEquals(threads * perThread, replayed.size());
+    }
+
+    @Test
+    void databaseSurvivesRestart() throws IOException {
+        try (Database db = Database.open(dir)) {
+            db.execute("CREATE TABLE t (id INT, name STRING);");
+            db.execute("INSERT INTO t VALUES (1, 'a'), (2, NULL);");
+            db.execute("INSERT INTO t (id) VALUES (3);");
+        }
+        try (Database db = Database.open(dir)) {
+            db.execute("INSERT INTO t VALUES (4, 'd');");
+        }
+        try (Database db = Database.open(dir)) {
+            List<Object[]> rows = assertInstanceOf(Result.Rows.class, db.execute("SELECT * FROM t;").get(0)).toList();
+            assertEquals(4, rows.size());
+            assertArrayEquals(new Object[] { 1, "a" }, rows.get(0));
+            assertArrayEquals(new Object[] { 2, null }, rows.get(1));
+            assertArrayEquals(new Object[] { 3, null }, rows.get(2));
+            assertArrayEquals(new Object[] { 4, "d" }, rows.get(3));
+        }
+    }
+
+    @Test
+    void primaryKeyIsRebuiltOnReplay() throws IOException {
+        try (Database db = Database.open(dir)) {
+            db.execute("CREATE TABLE t (id INT PRIMARY KEY, name STRING) WITH (index = hash);");
+            db.execute("INSERT INTO t VALUES (1, 'a'), (2, 'b');");
+            assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO t VALUES (3, 'c'), (1, 'x');"));
+        }
+        try (Database db = Database.open(dir)) {
+            assertEquals(0, db.catalog().get("t").schema().primaryKey());
+            assertEquals(TableOptions.IndexKind.HASH, db.catalog().get("t").options().index());
+            assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO t VALUES (2, 'y');"));
+            List<Object[]> rows = assertInstanceOf(Result.Rows.class, db.execute("SELECT * FROM t WHERE id = 2;").get(0)).toList();
+            assertArrayEquals(new Object[] { 2, "b" }, rows.get(0));
+            assertEquals(2, db.catalog().get("t").rowCount());
+        }
+    }
+
+    @Test
+    void pagedTableRecoversRowsLoggedAfterItsCheckpoint() throws IOException {
+        try (Database db = Database.open(dir)) {
+            db.execute("CREATE TABLE t (id INT PRIMARY KEY, name STRING);");
+            db.execute("INSERT INTO t VALUES (1, 'a'), (2, 'b');");
+        } // checkpointed: both rows are in data.db
+        Database crashed = Database.open(dir, 8);
+        assertEquals(TableOptions.StorageKind.PAGED, crashed.catalog().get("t").options().storage());
+        crashed.execute("INSERT INTO t VALUES (3, 'c');");
+        crashed.execute("INSERT INTO t VALUES (4, 'd'), (5, 'e');");
+        crashed.bufferPool().flush(); // the pages hold all five rows, the header still counts two
+        // no close(): the log alone has rows 3-5 as committed
+
+        try (Database db = Database.open(dir)) {
+            List<Object[]> rows = assertInstanceOf(Result.Rows.class, db.execute("SELECT * FROM t;").get(0)).toList();
+            assertEquals(5, rows.size());
+            for (int i = 0; i < 5; i++) assertEquals(i + 1, rows.get(i)[0]);
+            assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO t VALUES (4, 'x');"));
+        }
+    }
+
+    @Test
+    void memoryTablesStayAvailableInADurableDatabase() throws IOException {
+        try (Database db = Database.open(dir)) {
+            db.execute("CREATE TABLE m (id INT) WITH (storage = memory);");
+            db.execute("INSERT INTO m VALUES (1), (2);");
+        }
+        try (Database db = Database.open(dir)) {
+            assertEquals(TableOptions.StorageKind.MEMORY, db.catalog().get("m").options().storage());
+            assertEquals(2, db.catalog().get("m").rowCount());
+        }
+        try (Database db = new Database()) {
+            assertThrows(ExecutionException.class, () -> db.execute("CREATE TABLE p (id INT) WITH (storage = paged);"));
+        }
+    }
+
+    @Test
+    void checkpointReplacesTheLogWithASnapshot() throws IOException {
+        try (Database db = Database.open(dir)) {
+            db.execute("CREATE TABLE m (id INT PRIMARY KEY, name STRING) WITH (storage = memory);");
+            db.execute("CREATE TABLE o (id INT, v FLOAT) WITH (storage = offheap);");
+            db.execute("CREATE TABLE p (id INT PRIMARY KEY);");
+            for (int i = 0; i < 3_000; i += 500) insertRows(db, i, 500);
+            db.checkpoint();
+            insertRows(db, 3_000, 100); // only in the log
+        }
+        assertTrue(Files.exists(dir.resolve("snapshot.mdb")));
+        assertTrue(Files.notExists(dir.resolve("wal").resolve("wal-00000001.log")), "the snapshot covers the first segment");
+
+        for (int reopen = 0; reopen < 2; reopen++) {
+            try (Database db = Database.open(dir)) {
+                assertEquals(TableOptions.StorageKind.OFFHEAP, db.catalog().get("o").options().storage());
+                for (String t : List.of("m", "o", "p")) assertEquals(3_100, db.catalog().get(t).rowCount(), t);
+                List<Object[]> rows = assertInstanceOf(Result.Rows.class, db.execute("SELECT * FROM m WHERE id = 3050;").get(0)).toList();
+                assertArrayEquals(new Object[] { 3_050, "r3050" }, rows.get(0));
+                assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO m VALUES (17, 'x');"));
+                assertThrows(ExecutionException.class, () -> db.execute("INSERT INTO p VALUES (2999);"));
+                rows = assertInstanceOf(Result.Rows.class, db.execute("SELECT * FROM o WHERE id >= 2998 AND id < 3001;").get(0)).toList();
+                assertEquals(3, rows.size());
+                assertArrayEquals(new Object[] { 2_999, 1_499.5 }, rows.get(1));
+                db.checkpoint(); // from restored tables this time
+            }
+        }
+    }
+
+    private static void insertRows(Database db, int from, int count) {
+        StringBuilder m = new StringBuilder("INSERT INTO m VALUES ");
+        StringBuilder o = new StringBuilder("INSERT INTO o VALUES ");
+        StringBuilder p = new StringBuilder("INSERT INTO p VALUES ");
+        for (int i = from; i < from + count; i++) {
+            String sep = i == from ? "" : ", ";
+            m.append(sep).append('(').append(i).append(", 'r").append(i).append("')");
+            o.append(sep).append('(').append(i).append(", ").append(i / 2.0).append(')');
+            p.append(sep).append('(').append(i).append(')');
+        }
+        db.execute(m + ";" + o + ";" + p + ";");
+    }
+
+    // (name STRING, id INT) rows named "r<i>"
+    private static WalRecord.Insert insertOf(String table, int... ids) {
+        ColumnVector names = ColumnVector.allocate(AST.DataType.STRING, ids.length);
+        ColumnVector values = ColumnVector.allocate(AST.DataType.INTEGER, ids.length);
+        for (int id : ids) {
+            names.appendString("r" + id);
+            values.appendInt(id);
+        }
+        return new WalRecord.Insert(table, new ColumnVector[] { names, values }, ids.length);
+    }
+}